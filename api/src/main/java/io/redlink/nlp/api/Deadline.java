@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2022 Redlink GmbH.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.redlink.nlp.api;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A deadline and cancellation token for the processing of a document (see
+ * {@link ProcessingData#setDeadline(Deadline)}).<p>
+ * Processing is cooperative: {@link Processor}s check the deadline at
+ * section and sentence boundaries and stop early if it is
+ * {@link #isExpired() expired}. Results extracted up to that point are
+ * kept and the processor is marked as truncated (see
+ * {@link ProcessingData#getTruncated()}).<p>
+ * A deadline can be {@link #cancel() cancelled} at any time by any thread.
+ * Deadlines created by {@link #limit(long, TimeUnit)} also expire if the
+ * deadline they where created from expires.<p>
+ * This class is thread safe.
+ */
+public final class Deadline {
+
+    private final long deadline;
+    private final boolean bounded;
+    private final Deadline parent;
+    private volatile boolean cancelled;
+
+    private Deadline(long deadline, boolean bounded, Deadline parent) {
+        this.deadline = deadline;
+        this.bounded = bounded;
+        this.parent = parent;
+    }
+
+    /**
+     * Creates a deadline that expires after the parsed duration
+     *
+     * @param duration the duration
+     * @param unit     the unit of the duration
+     * @return the deadline
+     */
+    public static Deadline after(long duration, TimeUnit unit) {
+        return new Deadline(System.nanoTime() + unit.toNanos(duration), true, null);
+    }
+
+    /**
+     * Creates a deadline that only expires if it gets {@link #cancel() cancelled}
+     *
+     * @return the deadline
+     */
+    public static Deadline unbounded() {
+        return new Deadline(0, false, null);
+    }
+
+    /**
+     * Creates a deadline that expires after the parsed duration or when this
+     * deadline expires (whatever comes first). Cancelling the returned
+     * deadline does not cancel this one.
+     *
+     * @param duration the duration
+     * @param unit     the unit of the duration
+     * @return the deadline
+     */
+    public Deadline limit(long duration, TimeUnit unit) {
+        long limit = System.nanoTime() + unit.toNanos(duration);
+        return new Deadline(bounded && deadline - limit < 0 ? deadline : limit, true, this);
+    }
+
+    /**
+     * Cancels the processing
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * If this deadline (or the one it was created from) was cancelled
+     *
+     * @return the state
+     */
+    public boolean isCancelled() {
+        return cancelled || parent != null && parent.isCancelled();
+    }
+
+    /**
+     * If this deadline is over or it was cancelled
+     *
+     * @return the state
+     */
+    public boolean isExpired() {
+        return isCancelled() || bounded && System.nanoTime() - deadline >= 0;
+    }
+
+    /**
+     * If this deadline expires after some time. Unbounded deadlines only
+     * expire if cancelled.
+     *
+     * @return the state
+     */
+    public boolean isBounded() {
+        return bounded;
+    }
+
+    /**
+     * The remaining time
+     *
+     * @param unit the unit
+     * @return the remaining time. <code>0</code> if expired and
+     * {@link Long#MAX_VALUE} if unbounded (and not cancelled)
+     */
+    public long getRemaining(TimeUnit unit) {
+        if (isCancelled()) {
+            return 0;
+        }
+        if (!bounded) {
+            return Long.MAX_VALUE;
+        }
+        return unit.convert(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return "Deadline [remaining=" + (bounded ? getRemaining(TimeUnit.MILLISECONDS) + "ms" : "unbounded")
+                + ", cancelled=" + isCancelled() + "]";
+    }
+}
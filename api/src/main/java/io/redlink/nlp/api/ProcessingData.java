@@ -19,6 +19,7 @@ package io.redlink.nlp.api;
 import io.redlink.nlp.api.annotation.Annotations;
 import io.redlink.nlp.api.model.Annotated;
 import io.redlink.nlp.api.model.Annotation;
+import io.redlink.nlp.api.model.Shareable;
 import io.redlink.nlp.api.model.Value;
 import java.io.Closeable;
 import java.io.IOException;
@@ -47,6 +48,10 @@ public class ProcessingData extends Annotated implements Closeable {
 
     private Map<String, Object> configuration;
 
+    private volatile boolean shared = false;
+
+    private volatile Deadline deadline;
+
     public ProcessingData(Content content, Map<String, Object> configuration) {
         this.configuration = configuration == null ? new HashMap<>() : configuration;
         assert content != null;
@@ -269,6 +274,72 @@ public class ProcessingData extends Annotated implements Closeable {
         return getValues(Annotations.LANGUAGE);
     }
 
+    /**
+     * Sets the deadline for processing this document. Processors stop early
+     * if the deadline expires (see {@link Processor#deadlineExceeded(ProcessingData)}).
+     * While processed by a {@link ProcessingPipeline} this is temporarily
+     * replaced with the deadline of the current stage.
+     *
+     * @param deadline the deadline or <code>null</code> for none
+     */
+    public void setDeadline(Deadline deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * The deadline for processing this document
+     *
+     * @return the deadline or <code>null</code> if none
+     */
+    public Deadline getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * If the {@link #getDeadline() deadline} of this document is expired
+     * (or it was cancelled)
+     *
+     * @return the state. <code>false</code> if no deadline is set
+     */
+    public boolean isExpired() {
+        Deadline deadline = this.deadline;
+        return deadline != null && deadline.isExpired();
+    }
+
+    /**
+     * The keys of the processors that did not (completely) process this
+     * document because the {@link #getDeadline() deadline} expired.
+     *
+     * @return the keys of the truncated processors. An empty list if none
+     */
+    public List<String> getTruncated() {
+        return getAnnotations(Annotations.TRUNCATED);
+    }
+
+    /**
+     * Switches this ProcessingData and all its {@link Shareable} annotation
+     * values (e.g. the AnalyzedText) to a thread safe mode. Used by the
+     * {@link ProcessingPipeline} while processors run concurrently on this
+     * document. MUST only be called while no processor is running.
+     *
+     * @param shared the state
+     */
+    public void setShared(boolean shared) {
+        this.shared = shared;
+        for (String key : getKeys()) {
+            for (Value<?> value : getValues(key)) {
+                if (value.value() instanceof Shareable) {
+                    ((Shareable) value.value()).setShared(shared);
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean isShared() {
+        return shared;
+    }
+
     @Override
     public void close() throws IOException {
         content.close();
@@ -293,6 +364,30 @@ public class ProcessingData extends Annotated implements Closeable {
          */
         public static final String TEMPORAL_CONTEXT = "context.temporal";
 
+        /**
+         * If the processed text continues the text processed by the previous
+         * call (e.g. the previous window of a text stream).
+         * Processors may keep context (e.g. adaptive data of models) of the
+         * previous call (value: boolean, default: <code>false</code>)
+         */
+        public static final String STREAM_CONTINUED = "stream.continued";
+
+        /**
+         * If more text of the same stream will be processed by the next call.
+         * Processors may keep context they would otherwise
+         * reset after processing (value: boolean, default: <code>false</code>)
+         */
+        public static final String STREAM_CONTINUES = "stream.continues";
+
+        /**
+         * The context of the processed stream. Processors keep context of
+         * the stream (e.g. model instances with adaptive data) in it rather
+         * than in thread locals, so that it is released if the stream ends or
+         * fails (value: <code>io.redlink.nlp.model.stream.StreamContext</code>,
+         * set by the <code>StreamingAnalyzer</code>)
+         */
+        public static final String STREAM_CONTEXT = "stream.context";
+
     }
 
 }
@@ -0,0 +1,1323 @@
+/*
+ * Copyright (c) 2022 Redlink GmbH.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.redlink.nlp.api;
+
+import io.redlink.nlp.api.cache.ResultCache;
+import io.redlink.nlp.api.content.StringContent;
+import io.redlink.nlp.api.provenance.ProvenanceTracker;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Executes a chain of {@link Processor}s. The order of the processors is
+ * resolved once (by their {@link Processor.Phase phase} and weight) when the
+ * pipeline is created.<p>
+ * Processors that are disabled for a {@link ProcessingData} (see
+ * {@link Processor#isEnabled(ProcessingData)}) are skipped. For every
+ * processor the wall time and the bytes allocated by the calling thread
+ * (if supported by the JVM) are recorded as {@link StageStats}.<p>
+ * Several documents can be processed concurrently by using
+ * {@link #processAsync(ProcessingData)} or {@link #processAll(Collection)}.
+ * Those use the executor registered as {@link #PROCESSING_THREAD_POOL_NAME}
+ * or the {@link ForkJoinPool#commonPool()} if none is present. Processors
+ * implementing {@link Processor#processAsync(ProcessingData) asynchronous
+ * processing} (e.g. I/O bound ones) do not block a thread of the executor
+ * while they wait, so that the number of threads does not limit the number
+ * of concurrent remote requests.<p>
+ * Processors with the same weight (e.g. {@link Processor.Phase#stem} and
+ * {@link Processor.Phase#stopword}) that declare their
+ * {@link Processor#getReads() reads} and {@link Processor#getWrites() writes}
+ * are scheduled as a dependency graph: a processor only waits for the
+ * processors of its group that write data it reads or writes (or read data
+ * it writes) and otherwise runs concurrently with them on the same
+ * document. Those run on a dedicated executor (see
+ * {@link #setStageExecutor(Executor)}). While
+ * processors run concurrently the document is
+ * {@link ProcessingData#setShared(boolean) shared}.<p>
+ * Processing of a document can be limited by its
+ * {@link ProcessingData#setDeadline(Deadline) deadline} and/or the
+ * {@link #setBudget(long, TimeUnit) budget} of the pipeline. The remaining
+ * time is split over the remaining processors based on their average
+ * processing time so that a single processor can not consume the time of
+ * all later ones. Processors without statistics (e.g. after a cold start)
+ * may use all of the remaining time. Processors stop early if their share
+ * expires and are marked as {@link ProcessingData#getTruncated() truncated}.<p>
+ * Optionally the pipeline {@link #warmUp() warms up} the processors after
+ * their initialization by processing the bundled sample documents (see
+ * {@link #WARMUP_RESOURCE_FOLDER}) several times, so that the JIT compiles
+ * the hot paths before real documents are processed. Use
+ * {@link #isReady()} (e.g. for a readiness probe) to only route traffic to
+ * an instance after the warm-up.<p>
+ * If a {@link ResultCache} is configured, results of documents processed
+ * earlier (e.g. exact duplicates) are restored instead of processing the
+ * document again. Only documents processed without failures and
+ * truncations are cached.<p>
+ * If a {@link ProvenanceTracker} is configured, the processors (and their
+ * {@link Processor#getFingerprint() fingerprints}) that produced the results
+ * are recorded. This allows to {@link #reprocess(ProcessingData) re-process}
+ * stored documents incrementally after the configuration of some processors
+ * changed: only those processors and the processors depending on their
+ * results are executed again.<p>
+ * This class is thread safe.
+ */
+@Component
+public class ProcessingPipeline {
+
+    /**
+     * The name of the optional {@link ExecutorService} bean used to process
+     * documents concurrently
+     */
+    public static final String PROCESSING_THREAD_POOL_NAME = "processing";
+
+    /**
+     * The classpath folder with the sample documents used to
+     * {@link #warmUp() warm up} the processors. The sample of a language is
+     * expected in <code>{folder}/{language}.txt</code> (UTF-8 encoded)
+     */
+    public static final String WARMUP_RESOURCE_FOLDER = "warmup";
+
+    /**
+     * The minimum weight of a stage when splitting the time of a deadline.
+     * Ensures that fast stages get a reasonable share
+     */
+    private static final long MIN_STAGE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * The default executor for processors of a document running concurrently.
+     * Threads processing documents block until those tasks complete. So this
+     * is an unbounded pool of daemon threads separate from the executor used
+     * for documents (e.g. the {@link ForkJoinPool#commonPool()}).
+     */
+    private static final ExecutorService DEFAULT_STAGE_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "nlp-stage-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final Processor[] processors;
+    private final StageStats[] stats;
+
+    private volatile Executor executor = ForkJoinPool.commonPool();
+
+    /**
+     * Groups of processors with the same weight that can run concurrently
+     * by the index of their first processor
+     */
+    private final StageGroup[] groups;
+    private volatile boolean concurrentStages = true;
+    private volatile Executor stageExecutor = DEFAULT_STAGE_EXECUTOR;
+
+    private volatile long budgetNanos = -1;
+
+    @Autowired(required = false)
+    @Qualifier(StartupConfiguration.STARTUP_THREAD_POOL_NAME)
+    private Optional<ExecutorService> startupExecutor = Optional.empty();
+
+    private volatile int warmupIterations = 0;
+    private volatile List<String> warmupLanguages = Arrays.asList("de", "en", "es", "fr", "it");
+    private volatile boolean warmedUp = false;
+    private volatile long warmupTime = -1;
+
+    private volatile ResultCache resultCache;
+
+    private volatile ProvenanceTracker provenanceTracker;
+
+    /**
+     * Creates a pipeline for all available processors. Creates an empty
+     * pipeline if no processor is available.
+     *
+     * @param processors the provider of the processors
+     */
+    @Autowired
+    public ProcessingPipeline(ObjectProvider<Processor> processors) {
+        this(processors.stream().collect(Collectors.toList()));
+    }
+
+    /**
+     * Creates a pipeline for the parsed processors
+     *
+     * @param processors the processors. Will be sorted by their phase
+     */
+    public ProcessingPipeline(List<Processor> processors) {
+        this.processors = processors == null ? new Processor[0] : processors.toArray(new Processor[0]);
+        Arrays.sort(this.processors);
+        this.stats = new StageStats[this.processors.length];
+        for (int i = 0; i < this.processors.length; i++) {
+            stats[i] = new StageStats(this.processors[i]);
+        }
+        this.groups = StageGroup.create(this.processors);
+        log.debug("Created ProcessingPipeline with {} processors: {}", this.processors.length,
+                Arrays.toString(this.processors));
+    }
+
+    /**
+     * Sets the executor used to process documents concurrently
+     *
+     * @param executorService the executor. If <code>null</code> the
+     *                        {@link ForkJoinPool#commonPool()} is used
+     */
+    @Autowired(required = false)
+    public void setExecutor(@Qualifier(PROCESSING_THREAD_POOL_NAME) Executor executorService) {
+        this.executor = executorService == null ? ForkJoinPool.commonPool() : executorService;
+    }
+
+    /**
+     * Enables/disables the concurrent execution of independent processors
+     * with the same weight (enabled by default)
+     *
+     * @param concurrentStages the state
+     */
+    public void setConcurrentStages(boolean concurrentStages) {
+        this.concurrentStages = concurrentStages;
+    }
+
+    /**
+     * Sets the executor used to run independent processors of a single
+     * document concurrently. This SHOULD NOT be the same bounded executor
+     * as used for {@link #setExecutor(Executor) processing documents} as
+     * tasks of the document executor wait for tasks of this one.
+     *
+     * @param stageExecutor the executor. If <code>null</code> a cached pool
+     *                      of daemon threads shared by all pipelines is used
+     */
+    public void setStageExecutor(Executor stageExecutor) {
+        this.stageExecutor = stageExecutor == null ? DEFAULT_STAGE_EXECUTOR : stageExecutor;
+    }
+
+    /**
+     * Sets the maximum time for processing a single document. If the
+     * document has already a {@link ProcessingData#getDeadline() deadline}
+     * the earlier one is used.
+     *
+     * @param budget the budget. <code>&lt;= 0</code> for no budget
+     * @param unit   the unit of the budget
+     */
+    public void setBudget(long budget, TimeUnit unit) {
+        this.budgetNanos = budget <= 0 ? -1 : unit.toNanos(budget);
+    }
+
+    /**
+     * Sets the cache for processing results
+     *
+     * @param resultCache the cache or <code>null</code> to disable caching
+     */
+    @Autowired(required = false)
+    public void setResultCache(ResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    /**
+     * Sets the tracker used to record the provenance of results
+     *
+     * @param provenanceTracker the tracker or <code>null</code> to disable
+     *                          the tracking (and incremental re-processing)
+     */
+    @Autowired(required = false)
+    public void setProvenanceTracker(ProvenanceTracker provenanceTracker) {
+        this.provenanceTracker = provenanceTracker;
+    }
+
+    /**
+     * Sets how often the sample documents are processed by the
+     * {@link #warmUp() warm-up}. <code>0</code> (the default) disables the
+     * warm-up. A few iterations are typically enough for the JIT to compile
+     * the hot paths of the processors.
+     *
+     * @param warmupIterations the number of iterations
+     */
+    @Value("${nlp.warmup.iterations:0}")
+    public void setWarmupIterations(int warmupIterations) {
+        this.warmupIterations = Math.max(0, warmupIterations);
+    }
+
+    /**
+     * Sets the languages of the sample documents used by the
+     * {@link #warmUp() warm-up}. Processors not supporting a language just
+     * skip its sample.
+     *
+     * @param languages the languages. Samples are loaded from
+     *                  {@link #WARMUP_RESOURCE_FOLDER}
+     */
+    @Value("${nlp.warmup.languages:de,en,es,fr,it}")
+    public void setWarmupLanguages(String... languages) {
+        this.warmupLanguages = languages == null ? Collections.emptyList() : Arrays.asList(languages);
+    }
+
+    /**
+     * Starts the {@link #warmUp() warm-up} by using the startup executor
+     * (if enabled)
+     */
+    @PostConstruct
+    protected void startWarmup() {
+        if (warmupIterations > 0) {
+            Executor warmupExecutor = startupExecutor.isPresent() ? startupExecutor.get() : ForkJoinPool.commonPool();
+            warmupExecutor.execute(this::warmUp);
+        }
+    }
+
+    /**
+     * Processes the sample documents of the configured languages
+     * {@link #setWarmupIterations(int) several times} with all processors.
+     * Waits for the initialization of the processors. The time spent by
+     * every processor is available via {@link StageStats#getWarmupNanos()}
+     * and reported to the {@link Processor#getMetrics() metrics} of the
+     * processor. Warm-up documents are not included in the other
+     * statistics. Does nothing if the warm-up was already done or is
+     * disabled.
+     */
+    public synchronized void warmUp() {
+        int iterations = warmupIterations;
+        if (warmedUp || iterations < 1) {
+            return;
+        }
+        Map<String, String> samples = new LinkedHashMap<>();
+        for (String language : warmupLanguages) {
+            String sample = loadSample(language);
+            if (sample != null) {
+                samples.put(language, sample);
+            }
+        }
+        log.info("Warm up {} processors with samples for {} ({} iterations)", processors.length,
+                samples.keySet(), iterations);
+        long[] nanos = new long[processors.length];
+        long start = System.nanoTime();
+        for (int it = 0; it < iterations; it++) {
+            for (Map.Entry<String, String> sample : samples.entrySet()) {
+                Map<String, Object> config = new HashMap<>();
+                config.put(ProcessingData.Configuration.LANGUAGE, sample.getKey());
+                ProcessingData processingData = new ProcessingData(new StringContent(sample.getValue()), config);
+                for (int i = 0; i < processors.length; i++) {
+                    long stageStart = System.nanoTime();
+                    try {
+                        processors[i].warmUp(processingData);
+                    } catch (ProcessingException | RuntimeException e) {
+                        log.warn("Unable to warm up {} with the '{}' sample ({}: {})", processors[i].getKey(),
+                                sample.getKey(), e.getClass().getSimpleName(), e.getMessage());
+                        break; //later processors might depend on the failed one
+                    } finally {
+                        nanos[i] += System.nanoTime() - stageStart;
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < processors.length; i++) {
+            //also processors not reached by any sample need to be initialized
+            processors[i].awaitInitialized();
+            stats[i].warmupNanos = nanos[i];
+            processors[i].getMetrics().warmedUp(nanos[i]);
+        }
+        warmupTime = (System.nanoTime() - start) / 1_000_000;
+        warmedUp = true;
+        log.info("Warm-up completed in {}ms", warmupTime);
+    }
+
+    private String loadSample(String language) {
+        String resource = WARMUP_RESOURCE_FOLDER + '/' + language + ".txt";
+        try (InputStream in = ProcessingPipeline.class.getClassLoader().getResourceAsStream(resource)) {
+            if (in == null) {
+                log.warn("No warm-up sample for language {} (missing classpath resource {})", language, resource);
+                return null;
+            }
+            return IOUtils.toString(in, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            log.warn("Unable to read warm-up sample {} ({}: {})", resource, e.getClass().getSimpleName(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * If all processors are initialized and the {@link #warmUp() warm-up}
+     * (if enabled) has completed. Intended to be used by readiness probes.
+     * Documents can be processed before (but with higher latencies).
+     *
+     * @return the readiness state
+     */
+    public boolean isReady() {
+        if (warmupIterations > 0 && !warmedUp) {
+            return false;
+        }
+        for (Processor processor : processors) {
+            if (!processor.isInitialized()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The time needed for the {@link #warmUp() warm-up} (including waiting
+     * for the initialization of the processors)
+     *
+     * @return the time in milliseconds or <code>-1</code> if the warm-up has
+     * not (yet) completed
+     */
+    public long getWarmupTime() {
+        return warmupTime;
+    }
+
+    /**
+     * The processors in the order they are executed
+     *
+     * @return the read-only list of processors
+     */
+    public List<Processor> getProcessors() {
+        return Collections.unmodifiableList(Arrays.asList(processors));
+    }
+
+    /**
+     * Processes the parsed data with all enabled processors. Processing
+     * stops with the first failing processor.
+     *
+     * @param processingData the data to process
+     * @throws ProcessingException if a processor fails. Runtime exceptions
+     *                             thrown by processors are wrapped
+     */
+    public void process(ProcessingData processingData) throws ProcessingException {
+        ResultCache cache = resultCache;
+        String cacheKey = cache == null ? null : cacheKey(cache, processingData);
+        if (cacheKey != null && cache.restore(cacheKey, processingData)) {
+            return;
+        }
+        processStages(processingData, null);
+        if (cacheKey != null) {
+            store(cache, cacheKey, processingData);
+        }
+    }
+
+    /**
+     * Incrementally re-processes a document that was processed before (e.g.
+     * an AnalyzedText loaded from a store). Processors whose
+     * {@link Processor#getFingerprint() fingerprint} differs from the
+     * recorded one (or that have not processed the document) are executed
+     * again. The same applies to later processors that read data written by
+     * them and to processors that write the same annotations. The results
+     * of all those processors are {@link ProvenanceTracker#drop(ProcessingData, Collection)
+     * dropped} before they are executed. If one of them does not declare
+     * its {@link Processor#getWrites() writes} the document is processed
+     * completely.<p>
+     * Data not included in the stored results (e.g. document level
+     * annotations like the {@link io.redlink.nlp.api.annotation.Annotations#LANGUAGE})
+     * needs to be restored by the caller. Documents without recorded
+     * provenance are processed as by {@link #process(ProcessingData)}. The
+     * {@link ResultCache} is not used.
+     *
+     * @param processingData the document with the stored results
+     * @return the executed processors. An empty list if all results are up
+     * to date
+     * @throws ProcessingException   if a processor fails
+     * @throws IllegalStateException if no {@link ProvenanceTracker} is
+     *                               configured
+     */
+    public List<Processor> reprocess(ProcessingData processingData) throws ProcessingException {
+        ProvenanceTracker tracker = provenanceTracker;
+        if (tracker == null) {
+            throw new IllegalStateException("Incremental processing requires a ProvenanceTracker");
+        }
+        Map<String, String> recorded = tracker.getFingerprints(processingData);
+        boolean[] selected = new boolean[processors.length];
+        boolean complete = recorded.isEmpty();
+        for (int i = 0; i < processors.length && !complete; i++) {
+            Processor processor = processors[i];
+            selected[i] = processor.isEnabled(processingData)
+                    && !Objects.equals(recorded.get(processor.getKey()), processor.getFingerprint());
+        }
+        if (!complete) {
+            selectAffected(selected, processingData);
+            for (int i = 0; i < processors.length && !complete; i++) {
+                //unable to drop the results of processors not declaring their writes
+                complete = selected[i] && processors[i].getWrites() == null;
+            }
+        }
+        List<Processor> outdated = new ArrayList<>();
+        for (int i = 0; i < processors.length; i++) {
+            selected[i] = (complete || selected[i]) && processors[i].isEnabled(processingData);
+            if (selected[i]) {
+                outdated.add(processors[i]);
+            }
+        }
+        if (outdated.isEmpty()) {
+            log.debug("Results of {} are up to date", processingData);
+            return outdated;
+        }
+        log.debug("Re-process {} with {}", processingData, outdated);
+        if (!recorded.isEmpty()) {
+            tracker.drop(processingData, outdated);
+        }
+        processStages(processingData, selected);
+        return outdated;
+    }
+
+    /**
+     * Adds the processors affected by the selected ones: later processors
+     * that read data written by a selected one (or do not declare their
+     * access) and processors writing the same annotations as a selected
+     * one (as their results can not be told apart)
+     */
+    private void selectAffected(boolean[] selected, ProcessingData processingData) {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 0; i < processors.length; i++) {
+                if (selected[i] || !processors[i].isEnabled(processingData)) {
+                    continue;
+                }
+                for (int j = 0; j < processors.length && !selected[i]; j++) {
+                    if (selected[j] && (j < i && dependsOn(processors[i], processors[j])
+                            || writesSameAnnotation(processors[i], processors[j]))) {
+                        selected[i] = true;
+                        changed = true;
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean dependsOn(Processor processor, Processor other) {
+        Set<String> reads = processor.getReads();
+        Set<String> writes = other.getWrites();
+        return reads == null || writes == null || !Collections.disjoint(reads, writes);
+    }
+
+    private static boolean writesSameAnnotation(Processor p1, Processor p2) {
+        Set<String> w1 = p1.getWrites();
+        Set<String> w2 = p2.getWrites();
+        if (w1 == null || w2 == null) {
+            return false;
+        }
+        for (String key : w1) {
+            if (!key.startsWith(Processor.SPAN_ACCESS_PREFIX) && w2.contains(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The cache key for the parsed document
+     *
+     * @return the key or <code>null</code> if the document is not cacheable
+     */
+    private String cacheKey(ResultCache cache, ProcessingData processingData) {
+        for (Processor processor : processors) {
+            if (processor.isEnabled(processingData) && !processor.isCacheable(processingData)) {
+                return null;
+            }
+        }
+        return cache.key(processingData, getProcessors());
+    }
+
+    private void store(ResultCache cache, String cacheKey, ProcessingData processingData) {
+        if (!processingData.getTruncated().isEmpty()) {
+            return; //incomplete results
+        }
+        try {
+            cache.store(cacheKey, processingData);
+        } catch (RuntimeException e) {
+            log.warn("Unable to cache the results for {} ({}: {})", processingData,
+                    e.getClass().getSimpleName(), e.getMessage());
+        }
+    }
+
+    /**
+     * Processes the document with the selected stages
+     *
+     * @param selected the selected stages or <code>null</code> for all
+     */
+    private void processStages(ProcessingData processingData, boolean[] selected) throws ProcessingException {
+        ProvenanceTracker tracker = provenanceTracker;
+        if (tracker != null) {
+            tracker.begin(processingData);
+        }
+        Deadline deadline = processingData.getDeadline();
+        Deadline docDeadline = applyBudget(deadline);
+        try {
+            for (int i = 0; i < processors.length; i++) {
+                StageGroup group = concurrentStages ? groups[i] : null;
+                int to = group == null ? i + 1 : group.to;
+                if (!isSelected(selected, i, to)) {
+                    i = to - 1;
+                    continue;
+                }
+                processingData.setDeadline(stageDeadline(docDeadline, i, to, selected));
+                if (group != null) {
+                    processGroup(group, processingData, selected);
+                } else {
+                    processStage(i, processingData);
+                }
+                if (tracker != null) {
+                    tracker.record(processingData, enabled(processingData, i, to, selected));
+                }
+                i = to - 1;
+            }
+        } finally {
+            processingData.setDeadline(deadline);
+        }
+    }
+
+    private static boolean isSelected(boolean[] selected, int from, int to) {
+        if (selected == null) {
+            return true;
+        }
+        for (int i = from; i < to; i++) {
+            if (selected[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<Processor> enabled(ProcessingData processingData, int from, int to, boolean[] selected) {
+        List<Processor> enabled = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            if ((selected == null || selected[i]) && processors[i].isEnabled(processingData)) {
+                enabled.add(processors[i]);
+            }
+        }
+        return enabled;
+    }
+
+    private Deadline applyBudget(Deadline deadline) {
+        long budget = budgetNanos;
+        if (budget <= 0) {
+            return deadline;
+        }
+        return deadline == null ? Deadline.after(budget, TimeUnit.NANOSECONDS) :
+                deadline.limit(budget, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * The deadline for the stages [from, to) based on the share of their
+     * average processing time on the average time of all remaining
+     * (selected) stages. Stages without statistics (e.g. after a cold start)
+     * are not limited as their share can not be estimated. For later
+     * stages without statistics the mean of the others is assumed.
+     */
+    private Deadline stageDeadline(Deadline deadline, int from, int to, boolean[] selected) {
+        if (deadline == null || !deadline.isBounded() || deadline.isExpired()) {
+            return deadline;
+        }
+        long known = 0;
+        int numKnown = 0;
+        boolean unknownStage = false;
+        for (int i = from; i < stats.length; i++) {
+            if (selected != null && !selected[i]) {
+                continue;
+            }
+            long count = stats[i].getCount();
+            if (count > 0) {
+                known += Math.max(MIN_STAGE_NANOS, stats[i].getTotalNanos() / count);
+                numKnown++;
+            } else if (i < to) {
+                unknownStage = true;
+            }
+        }
+        if (unknownStage || numKnown == 0) {
+            return deadline; //give the remaining time to the stages without statistics
+        }
+        //stages without statistics are weighted with the mean of the others
+        long unknown = known / numKnown;
+        double total = 0;
+        double share = 0;
+        for (int i = from; i < stats.length; i++) {
+            if (selected != null && !selected[i]) {
+                continue;
+            }
+            long count = stats[i].getCount();
+            long weight = count > 0 ? Math.max(MIN_STAGE_NANOS, stats[i].getTotalNanos() / count) : unknown;
+            total += weight;
+            if (i < to) {
+                share += weight;
+            }
+        }
+        long remaining = deadline.getRemaining(TimeUnit.NANOSECONDS);
+        return deadline.limit((long) (remaining * (share / total)), TimeUnit.NANOSECONDS);
+    }
+
+    private void processStage(int i, ProcessingData processingData) throws ProcessingException {
+        Processor processor = processors[i];
+        StageStats stage = stats[i];
+        if (!processor.isEnabled(processingData)) {
+            stage.skipped.increment();
+            return;
+        }
+        if (processingData.isExpired()) {
+            stage.truncated.increment();
+            processor.truncated(processingData);
+            return;
+        }
+        long allocStart = Allocation.get();
+        long start = System.nanoTime();
+        try {
+            processor.process(processingData);
+        } catch (ProcessingException e) {
+            stage.failed.increment();
+            throw e;
+        } catch (RuntimeException e) {
+            stage.failed.increment();
+            throw new ProcessingException("Unable to process " + processingData + " with "
+                    + processor.getKey() + " (" + e.getClass().getSimpleName() + ": " + e.getMessage() + ")",
+                    e, processor, processingData);
+        } finally {
+            stage.record(System.nanoTime() - start, allocStart < 0 ? -1 : Allocation.get() - allocStart);
+        }
+        if (processingData.getDeadline() != null && processingData.getTruncated().contains(processor.getKey())) {
+            stage.truncated.increment();
+        }
+    }
+
+    /**
+     * Processes the parsed stage by using {@link Processor#processAsync(ProcessingData)}
+     *
+     * @return the future completed after the stage. Completed exceptionally
+     * with a {@link CompletionException} with the {@link ProcessingException}
+     * as cause on failures
+     */
+    private CompletableFuture<Void> processStageAsync(int i, ProcessingData processingData) {
+        Processor processor = processors[i];
+        StageStats stage = stats[i];
+        if (!processor.isEnabled(processingData)) {
+            stage.skipped.increment();
+            return CompletableFuture.completedFuture(null);
+        }
+        if (processingData.isExpired()) {
+            stage.truncated.increment();
+            processor.truncated(processingData);
+            return CompletableFuture.completedFuture(null);
+        }
+        long allocStart = Allocation.get();
+        long start = System.nanoTime();
+        CompletableFuture<Void> result;
+        try {
+            result = processor.processAsync(processingData).toCompletableFuture();
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        //allocations can only be measured if the processor completed synchronously
+        long allocated = allocStart < 0 || !result.isDone() ? -1 : Allocation.get() - allocStart;
+        return result.handle((v, e) -> {
+            long duration = System.nanoTime() - start;
+            stage.record(duration, allocated);
+            if (e != null) {
+                stage.failed.increment();
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new CompletionException(cause instanceof ProcessingException ? cause :
+                        new ProcessingException("Unable to process " + processingData + " with "
+                                + processor.getKey() + " (" + cause.getClass().getSimpleName() + ": "
+                                + cause.getMessage() + ")", (Exception) cause, processor, processingData));
+            }
+            if (processingData.getDeadline() != null && processingData.getTruncated().contains(processor.getKey())) {
+                stage.truncated.increment();
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Runs the processors of the parsed group according to their dependencies.
+     * If a processor fails, processors depending on it are not executed and
+     * the exception of the first failed processor (in the order of the
+     * pipeline) is thrown after all running processors have completed.
+     */
+    private void processGroup(StageGroup group, ProcessingData processingData, boolean[] selected)
+            throws ProcessingException {
+        int enabled = enabled(processingData, group.from, group.to, selected).size();
+        if (enabled < 2) { //nothing to parallelize
+            for (int i = group.from; i < group.to; i++) {
+                if (selected == null || selected[i]) {
+                    processStage(i, processingData);
+                }
+            }
+            return;
+        }
+        try {
+            processGroupAsync(group, processingData, selected).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof ProcessingException) {
+                throw (ProcessingException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Starts the processors of the parsed group according to their
+     * dependencies by using the stage executor. Asynchronous processors do
+     * not block a thread of the stage executor while they are waiting.
+     *
+     * @return the future completed after all processors of the group have
+     * completed. Completed exceptionally with the failure of the first failed
+     * processor (in the order of the pipeline)
+     */
+    private CompletableFuture<Void> processGroupAsync(StageGroup group, ProcessingData processingData,
+                                                      boolean[] selected) {
+        CompletableFuture<?>[] tasks = new CompletableFuture<?>[group.to - group.from];
+        processingData.setShared(true);
+        for (int k = 0; k < tasks.length; k++) {
+            int[] deps = group.dependencies[k];
+            CompletableFuture<?> ready;
+            if (deps.length == 0) {
+                ready = CompletableFuture.completedFuture(null);
+            } else {
+                CompletableFuture<?>[] depTasks = new CompletableFuture<?>[deps.length];
+                for (int d = 0; d < deps.length; d++) {
+                    depTasks[d] = tasks[deps[d]];
+                }
+                ready = CompletableFuture.allOf(depTasks);
+            }
+            int stageIdx = group.from + k;
+            if (selected != null && !selected[stageIdx]) {
+                tasks[k] = ready;
+                continue;
+            }
+            tasks[k] = ready.thenComposeAsync(v -> processStageAsync(stageIdx, processingData), stageExecutor);
+        }
+        return CompletableFuture.allOf(tasks).handle((v, e) -> {
+            processingData.setShared(false);
+            if (e != null) {
+                //allOf completes after all tasks. Report the first failure in the order of the pipeline
+                for (CompletableFuture<?> task : tasks) {
+                    task.join(); //all completed: throws the failure of a failed task
+                }
+                throw e instanceof CompletionException ? (CompletionException) e : new CompletionException(e);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Processes the parsed data by using the executor of this pipeline. Stages
+     * are processed by using {@link Processor#processAsync(ProcessingData)}.
+     * While an asynchronous processor (e.g. one calling a remote service) is
+     * waiting no thread of the executor is blocked, so that a worker thread
+     * can keep many of such requests in flight. Processing continues on the
+     * executor as soon as the processor completes.
+     *
+     * @param processingData the data to process
+     * @return the future completed with the parsed data or exceptionally
+     * with the {@link ProcessingException}
+     */
+    public CompletableFuture<ProcessingData> processAsync(ProcessingData processingData) {
+        return CompletableFuture.supplyAsync(() -> {
+            ResultCache cache = resultCache;
+            String cacheKey = cache == null ? null : cacheKey(cache, processingData);
+            if (cacheKey != null && cache.restore(cacheKey, processingData)) {
+                return CompletableFuture.completedFuture(processingData);
+            }
+            ProvenanceTracker tracker = provenanceTracker;
+            if (tracker != null) {
+                tracker.begin(processingData);
+            }
+            Deadline deadline = processingData.getDeadline();
+            CompletableFuture<Void> stages;
+            try {
+                stages = processStagesAsync(processingData, 0, applyBudget(deadline));
+            } catch (RuntimeException | Error e) {
+                processingData.setDeadline(deadline);
+                throw e;
+            }
+            return stages.handle((v, e) -> {
+                processingData.setDeadline(deadline);
+                if (e != null) {
+                    throw e instanceof CompletionException ? (CompletionException) e : new CompletionException(e);
+                }
+                if (cacheKey != null) {
+                    store(cache, cacheKey, processingData);
+                }
+                return processingData;
+            });
+        }, executor).thenCompose(f -> f);
+    }
+
+    /**
+     * Processes the stages starting from the parsed index. Stages completing
+     * synchronously are processed by the calling thread. After an
+     * asynchronous stage processing continues on the executor.
+     */
+    private CompletableFuture<Void> processStagesAsync(ProcessingData processingData, int from, Deadline docDeadline) {
+        ProvenanceTracker tracker = provenanceTracker;
+        for (int i = from; i < processors.length; i++) {
+            StageGroup group = concurrentStages ? groups[i] : null;
+            int to = group == null ? i + 1 : group.to;
+            processingData.setDeadline(stageDeadline(docDeadline, i, to, null));
+            CompletableFuture<Void> stage;
+            if (group != null && enabled(processingData, i, to, null).size() > 1) {
+                stage = processGroupAsync(group, processingData, null);
+            } else {
+                stage = CompletableFuture.completedFuture(null);
+                for (int j = i; j < to; j++) {
+                    int stageIdx = j;
+                    stage = stage.thenCompose(v -> processStageAsync(stageIdx, processingData));
+                }
+            }
+            int first = i;
+            if (!stage.isDone()) {
+                return stage.thenComposeAsync(v -> {
+                    if (tracker != null) {
+                        tracker.record(processingData, enabled(processingData, first, to, null));
+                    }
+                    return processStagesAsync(processingData, to, docDeadline);
+                }, executor);
+            } else if (stage.isCompletedExceptionally()) {
+                return stage;
+            }
+            if (tracker != null) {
+                tracker.record(processingData, enabled(processingData, first, to, null));
+            }
+            i = to - 1;
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Processes all parsed documents concurrently by using the executor of
+     * this pipeline and waits until all of them are processed. Failures
+     * are isolated per document.
+     *
+     * @param data the documents to process
+     * @return the exceptions of the failed documents (see
+     * {@link ProcessingException#getAnalyzedText()}). An empty list if all
+     * documents where processed successfully
+     */
+    public List<ProcessingException> processAll(Collection<ProcessingData> data) {
+        List<CompletableFuture<ProcessingData>> futures = new ArrayList<>(data.size());
+        for (ProcessingData pd : data) {
+            futures.add(processAsync(pd));
+        }
+        List<ProcessingException> failures = new ArrayList<>();
+        for (CompletableFuture<ProcessingData> future : futures) {
+            try {
+                future.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof ProcessingException) {
+                    failures.add((ProcessingException) e.getCause());
+                } else if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                } else {
+                    throw e;
+                }
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Processes the parsed documents as batches. Every processor is called
+     * once with all documents it is enabled for (see
+     * {@link Processor#process(List)}). This allows processors to amortize
+     * per call overhead (e.g. model lookups or remote calls) over several
+     * documents. Failures are isolated per document: a failed document is not
+     * parsed to later processors. Processors are called one after the other
+     * (also if they could run concurrently). The
+     * {@link #setBudget(long, TimeUnit) budget} is applied to every document,
+     * but not split over the processors. Documents with an expired deadline
+     * are not parsed to later processors.
+     *
+     * @param batch the documents to process
+     * @return the exceptions of the failed documents. An empty list if all
+     * documents where processed successfully
+     */
+    public List<ProcessingException> processBatch(List<ProcessingData> batch) {
+        ResultCache cache = resultCache;
+        if (cache == null) {
+            return processBatchWithBudget(batch);
+        }
+        Map<ProcessingData, String> cacheKeys = new IdentityHashMap<>();
+        List<ProcessingData> toProcess = new ArrayList<>(batch.size());
+        for (ProcessingData processingData : batch) {
+            String cacheKey = cacheKey(cache, processingData);
+            if (cacheKey == null || !cache.restore(cacheKey, processingData)) {
+                toProcess.add(processingData);
+                if (cacheKey != null) {
+                    cacheKeys.put(processingData, cacheKey);
+                }
+            }
+        }
+        List<ProcessingException> failures = processBatchWithBudget(toProcess);
+        for (ProcessingException e : failures) {
+            cacheKeys.remove(e.getAnalyzedText());
+        }
+        for (Map.Entry<ProcessingData, String> entry : cacheKeys.entrySet()) {
+            store(cache, entry.getValue(), entry.getKey());
+        }
+        return failures;
+    }
+
+    private List<ProcessingException> processBatchWithBudget(List<ProcessingData> batch) {
+        Deadline[] deadlines = new Deadline[batch.size()];
+        for (int d = 0; d < deadlines.length; d++) {
+            ProcessingData processingData = batch.get(d);
+            deadlines[d] = processingData.getDeadline();
+            processingData.setDeadline(applyBudget(deadlines[d]));
+        }
+        try {
+            return processBatchStages(batch);
+        } finally {
+            for (int d = 0; d < deadlines.length; d++) {
+                batch.get(d).setDeadline(deadlines[d]);
+            }
+        }
+    }
+
+    private List<ProcessingException> processBatchStages(List<ProcessingData> batch) {
+        ProvenanceTracker tracker = provenanceTracker;
+        if (tracker != null) {
+            batch.forEach(tracker::begin);
+        }
+        List<ProcessingData> active = new ArrayList<>(batch);
+        List<ProcessingException> failures = new ArrayList<>();
+        for (int i = 0; i < processors.length && !active.isEmpty(); i++) {
+            Processor processor = processors[i];
+            StageStats stage = stats[i];
+            List<ProcessingData> enabled = new ArrayList<>(active.size());
+            for (ProcessingData processingData : active) {
+                if (!processor.isEnabled(processingData)) {
+                    stage.skipped.increment();
+                } else if (processingData.isExpired()) {
+                    stage.truncated.increment();
+                    processor.truncated(processingData);
+                } else {
+                    enabled.add(processingData);
+                }
+            }
+            if (enabled.isEmpty()) {
+                continue;
+            }
+            long allocStart = Allocation.get();
+            long start = System.nanoTime();
+            List<ProcessingException> stageFailures;
+            try {
+                stageFailures = processor.process(enabled);
+            } catch (RuntimeException e) { //e.g. failed initialization: all documents fail
+                stageFailures = new ArrayList<>(enabled.size());
+                for (ProcessingData processingData : enabled) {
+                    stageFailures.add(new ProcessingException("Unable to process " + processingData + " with "
+                            + processor.getKey() + " (" + e.getClass().getSimpleName() + ": " + e.getMessage() + ")",
+                            e, processor, processingData));
+                }
+            }
+            stage.recordBatch(enabled.size(), stageFailures.size(), System.nanoTime() - start,
+                    allocStart < 0 ? -1 : Allocation.get() - allocStart);
+            for (ProcessingException e : stageFailures) {
+                failures.add(e);
+                active.remove(e.getAnalyzedText());
+                enabled.remove(e.getAnalyzedText());
+            }
+            if (tracker != null) {
+                for (ProcessingData processingData : enabled) {
+                    tracker.record(processingData, Collections.singletonList(processor));
+                }
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * The statistics of all stages of this pipeline
+     *
+     * @return the stats in the order of the processors
+     */
+    public List<StageStats> getStageStats() {
+        return Collections.unmodifiableList(Arrays.asList(stats));
+    }
+
+    /**
+     * Statistics of a single stage (processor) of the pipeline
+     */
+    public static final class StageStats {
+
+        private final Processor processor;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder skipped = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder truncated = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAdder allocated = new LongAdder();
+        private volatile long warmupNanos = 0;
+
+        private StageStats(Processor processor) {
+            this.processor = processor;
+        }
+
+        private void record(long duration, long allocatedBytes) {
+            count.increment();
+            nanos.add(duration);
+            if (allocatedBytes > 0) {
+                allocated.add(allocatedBytes);
+            }
+        }
+
+        private void recordBatch(int docs, int failedDocs, long duration, long allocatedBytes) {
+            count.add(docs);
+            failed.add(failedDocs);
+            nanos.add(duration);
+            if (allocatedBytes > 0) {
+                allocated.add(allocatedBytes);
+            }
+        }
+
+        /**
+         * The processor of this stage
+         *
+         * @return the processor
+         */
+        public Processor getProcessor() {
+            return processor;
+        }
+
+        /**
+         * The number of documents processed (including failed ones)
+         *
+         * @return the count
+         */
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * The number of documents the processor was skipped because it was
+         * disabled
+         *
+         * @return the count
+         */
+        public long getSkipped() {
+            return skipped.sum();
+        }
+
+        /**
+         * The number of documents the processor failed for
+         *
+         * @return the count
+         */
+        public long getFailed() {
+            return failed.sum();
+        }
+
+        /**
+         * The number of documents the processor did not (completely) process
+         * because their deadline expired
+         *
+         * @return the count
+         */
+        public long getTruncated() {
+            return truncated.sum();
+        }
+
+        /**
+         * The summed wall time of this stage
+         *
+         * @return the time in nanoseconds
+         */
+        public long getTotalNanos() {
+            return nanos.sum();
+        }
+
+        /**
+         * The time the processor spent processing the warm-up documents
+         * (including waiting for its initialization)
+         *
+         * @return the time in nanoseconds. <code>0</code> if no warm-up was done
+         */
+        public long getWarmupNanos() {
+            return warmupNanos;
+        }
+
+        /**
+         * The summed bytes allocated by the processing thread. Allocations of
+         * other threads (e.g. used by a processor internally) are not included
+         *
+         * @return the allocated bytes or <code>0</code> if not supported by the JVM
+         */
+        public long getAllocatedBytes() {
+            return allocated.sum();
+        }
+
+        @Override
+        public String toString() {
+            return "StageStats [processor=" + processor.getKey() + ", count=" + getCount()
+                    + ", skipped=" + getSkipped() + ", failed=" + getFailed() + ", truncated=" + getTruncated()
+                    + ", totalMs=" + getTotalNanos() / 1_000_000 + ", allocated=" + getAllocatedBytes() + "]";
+        }
+    }
+
+    /**
+     * A range of processors with the same weight and the dependencies
+     * between them. Processors depend on an earlier processor of the group
+     * if one of them writes data the other one reads. Processors that do not
+     * declare their reads and writes depend on all earlier ones (and all
+     * later ones depend on them).
+     */
+    private static final class StageGroup {
+
+        private final int from;
+        private final int to;
+        /**
+         * The indexes (relative to {@link #from}) of the processors a processor depends on
+         */
+        private final int[][] dependencies;
+
+        private StageGroup(int from, int to, int[][] dependencies) {
+            this.from = from;
+            this.to = to;
+            this.dependencies = dependencies;
+        }
+
+        /**
+         * Creates the groups for the parsed sorted processors
+         *
+         * @return the groups by the index of their first processor. Only
+         * groups with at least two processors that can run concurrently are
+         * created.
+         */
+        static StageGroup[] create(Processor[] processors) {
+            StageGroup[] groups = new StageGroup[processors.length];
+            int from = 0;
+            while (from < processors.length) {
+                int to = from + 1;
+                while (to < processors.length && processors[from].compareTo(processors[to]) == 0) {
+                    to++;
+                }
+                if (to - from > 1) {
+                    int[][] dependencies = new int[to - from][];
+                    boolean concurrent = false;
+                    for (int j = from; j < to; j++) {
+                        List<Integer> deps = new ArrayList<>();
+                        for (int i = from; i < j; i++) {
+                            if (conflicts(processors[i], processors[j])) {
+                                deps.add(i - from);
+                            }
+                        }
+                        concurrent = concurrent || deps.size() < j - from;
+                        dependencies[j - from] = deps.stream().mapToInt(Integer::intValue).toArray();
+                    }
+                    if (concurrent) {
+                        groups[from] = new StageGroup(from, to, dependencies);
+                    }
+                }
+                from = to;
+            }
+            return groups;
+        }
+
+        private static boolean conflicts(Processor p1, Processor p2) {
+            Set<String> r1 = p1.getReads();
+            Set<String> w1 = p1.getWrites();
+            Set<String> r2 = p2.getReads();
+            Set<String> w2 = p2.getWrites();
+            if (r1 == null || w1 == null || r2 == null || w2 == null) {
+                return true;
+            }
+            return !Collections.disjoint(w1, r2) || !Collections.disjoint(w2, r1)
+                    || writeSameAnnotation(w1, w2);
+        }
+
+        /**
+         * Writes to the same annotation do not commute (e.g. the order of
+         * values appended to the same annotation). Adding Spans of the same
+         * type does (as equivalent Spans are atomically registered only once).
+         */
+        private static boolean writeSameAnnotation(Set<String> w1, Set<String> w2) {
+            for (String key : w1) {
+                if (!key.startsWith(Processor.SPAN_ACCESS_PREFIX) && w2.contains(key)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Reads the bytes allocated by the current thread if supported by the JVM
+     */
+    private static final class Allocation {
+
+        private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN = init();
+
+        private Allocation() {
+        }
+
+        private static com.sun.management.ThreadMXBean init() {
+            try {
+                ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+                if (bean instanceof com.sun.management.ThreadMXBean) {
+                    com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+                    if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+                        return sunBean;
+                    }
+                }
+            } catch (RuntimeException | LinkageError e) {
+                LoggerFactory.getLogger(ProcessingPipeline.class).debug("Allocation tracking not supported ({}: {})",
+                        e.getClass().getSimpleName(), e.getMessage());
+            }
+            return null;
+        }
+
+        /**
+         * @return the allocated bytes of the current thread or <code>-1</code>
+         * if not supported
+         */
+        static long get() {
+            return THREAD_MX_BEAN == null ? -1 : THREAD_MX_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+    }
+}
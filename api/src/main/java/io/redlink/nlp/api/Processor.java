@@ -16,8 +16,23 @@
 package io.redlink.nlp.api;
 
 
+import io.redlink.nlp.api.annotation.Annotations;
+import io.redlink.nlp.api.metrics.ProcessorMetrics;
+import io.redlink.nlp.api.metrics.ProcessorMetricsFactory;
+import io.redlink.nlp.api.metrics.TextSize;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -108,17 +123,33 @@ public abstract class Processor implements Comparable<Processor> {
         }
     }
 
+    /**
+     * Prefix used for the keys of span types in {@link #getReads()} and
+     * {@link #getWrites()}
+     */
+    public static final String SPAN_ACCESS_PREFIX = "span:";
+
     protected final Logger log = LoggerFactory.getLogger(this.getClass());
 
     private final CountDownLatch initComplete;
+    /**
+     * Completed after the initialization. Used to chain asynchronous
+     * processing without blocking a thread while waiting for the initialization
+     */
+    private final CompletableFuture<Void> initFuture = new CompletableFuture<>();
     private Exception initException = null;
     private final AtomicBoolean initExceptionRecorded = new AtomicBoolean(false);
-    private long startupTime = -1;
+    private volatile long startupTime = -1;
 
     @Autowired(required = false)
     @Qualifier(StartupConfiguration.STARTUP_THREAD_POOL_NAME)
     private Optional<ExecutorService> executorService = Optional.empty();
 
+    @Autowired(required = false)
+    private Optional<ProcessorMetricsFactory> metricsFactory = Optional.empty();
+
+    private volatile ProcessorMetrics metrics = ProcessorMetrics.NOOP;
+
     private final int weight;
     private final String key;
     private final String name;
@@ -144,8 +175,12 @@ public abstract class Processor implements Comparable<Processor> {
 
     @PostConstruct
     protected final void postConstruct() {
+        if (metrics == ProcessorMetrics.NOOP) { //not explicitly set
+            metrics = metricsFactory.map(f -> f.create(this)).orElse(ProcessorMetrics.NOOP);
+        }
         initComplete.countDown();
         final long bootTime = System.currentTimeMillis();
+        final long bootNanos = System.nanoTime();
         executorService.orElseGet(Executors::newSingleThreadExecutor)
                 .execute(() -> {
                     try {
@@ -159,8 +194,10 @@ public abstract class Processor implements Comparable<Processor> {
                         initException = t;
                     } finally {
                         startupTime = System.currentTimeMillis() - bootTime;
+                        metrics.initialized(System.nanoTime() - bootNanos);
                         log.debug("Initialisation of {} took {}ms", getClass().getSimpleName(), startupTime);
                         initComplete.countDown();
+                        initFuture.complete(null);
                     }
                 });
     }
@@ -183,6 +220,77 @@ public abstract class Processor implements Comparable<Processor> {
         return name;
     }
 
+    /**
+     * The version of this processor. Part of the {@link #getFingerprint()
+     * fingerprint} of this processor. Processors SHOULD
+     * override this if their results can change without a new version of
+     * their artifact (e.g. if models are loaded from outside the classpath).
+     *
+     * @return the implementation version of the package of this processor
+     * or <code>unknown</code> if not available
+     */
+    public String getVersion() {
+        Package pkg = getClass().getPackage();
+        String version = pkg == null ? null : pkg.getImplementationVersion();
+        return version == null ? "unknown" : version;
+    }
+
+    /**
+     * A fingerprint of everything besides the document that influences the
+     * results of this processor. By default the key, the
+     * {@link #getVersion() version} and the
+     * {@link #getDefaultConfiguration() default configuration}. Processors
+     * with additional state (e.g. vocabularies) SHOULD override this and
+     * include it by using {@link #fingerprint(Object...)}.<p>
+     * Used to detect outdated results (see
+     * {@link io.redlink.nlp.api.provenance.ProvenanceTracker}) and as part of
+     * the key of cached results.
+     *
+     * @return the fingerprint
+     */
+    public String getFingerprint() {
+        Map<String, Object> config = getDefaultConfiguration();
+        return fingerprint(key, getVersion(), config == null ? null : new TreeMap<>(config));
+    }
+
+    /**
+     * Computes a (SHA-256) fingerprint over the {@link String#valueOf(Object)
+     * string representations} of the parsed parts
+     *
+     * @param parts the parts
+     * @return the fingerprint as hex string
+     */
+    protected static String fingerprint(Object... parts) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by this JVM", e);
+        }
+        for (Object part : parts) {
+            digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * If the results of this processor for the parsed document can be cached
+     * (see {@link io.redlink.nlp.api.cache.ResultCache}). Processors whose
+     * results depend on something not part of the document or its
+     * configuration (e.g. the current time) MUST return <code>false</code>.
+     *
+     * @param processingData the document
+     * @return <code>true</code> by default
+     */
+    public boolean isCacheable(ProcessingData processingData) {
+        return true;
+    }
+
 
     /**
      * processes the parsed data
@@ -190,6 +298,261 @@ public abstract class Processor implements Comparable<Processor> {
      * @param processingData the data to process
      */
     public final void process(ProcessingData processingData) throws ProcessingException {
+        ensureInitStarted();
+        if (isEnabled(processingData)) { //check if enabled
+            log.trace("call {} (name: {}) for {}", getKey(), getName(), processingData);
+            if (awaitInit()) {
+                ProcessorMetrics metrics = this.metrics;
+                long start = System.nanoTime();
+                try {
+                    doProcessing(processingData);
+                } catch (ProcessingException | RuntimeException e) {
+                    metrics.failed(System.nanoTime() - start);
+                    throw e;
+                }
+                processed(metrics, System.nanoTime() - start, processingData);
+            }
+        } else {
+            log.trace("{} (name: {}) disabled", getKey(), getName());
+        }
+    }
+
+    /**
+     * Processes the parsed data asynchronously (see
+     * {@link #doProcessingAsync(ProcessingData)}). Unless this processor
+     * implements asynchronous processing the data is processed by the
+     * calling thread and the returned stage is already completed. If this
+     * processor is not yet initialized processing is started by the thread
+     * completing the initialization. The calling thread does not wait.
+     *
+     * @param processingData the data to process
+     * @return the stage completed after the data was processed. Completed
+     * exceptionally with a {@link ProcessingException} or a
+     * {@link RuntimeException} on failures
+     */
+    public final CompletionStage<Void> processAsync(ProcessingData processingData) {
+        ensureInitStarted();
+        if (!isEnabled(processingData)) {
+            log.trace("{} (name: {}) disabled", getKey(), getName());
+            return CompletableFuture.completedFuture(null);
+        }
+        log.trace("call {} (name: {}) async for {}", getKey(), getName(), processingData);
+        if (!initFuture.isDone()) {
+            return initFuture.thenCompose(v -> doProcessAsync(processingData));
+        }
+        return doProcessAsync(processingData);
+    }
+
+    private CompletionStage<Void> doProcessAsync(ProcessingData processingData) {
+        try {
+            if (!awaitInit()) {
+                return CompletableFuture.completedFuture(null);
+            }
+        } catch (IllegalStateException e) { //failed initialization
+            return CompletableFuture.failedFuture(e);
+        }
+        ProcessorMetrics metrics = this.metrics;
+        long start = System.nanoTime();
+        CompletionStage<Void> result;
+        try {
+            result = doProcessingAsync(processingData);
+        } catch (ProcessingException | RuntimeException e) {
+            metrics.failed(System.nanoTime() - start);
+            return CompletableFuture.failedFuture(e);
+        }
+        return result.whenComplete((v, e) -> {
+            if (e != null) {
+                metrics.failed(System.nanoTime() - start);
+            } else {
+                processed(metrics, System.nanoTime() - start, processingData);
+            }
+        });
+    }
+
+    private static void processed(ProcessorMetrics metrics, long duration, ProcessingData processingData) {
+        if (metrics != ProcessorMetrics.NOOP) {
+            TextSize size = getTextSize(processingData);
+            if (size != null) {
+                metrics.processed(duration, size.getCharCount(), size.getTokenCount());
+            } else {
+                metrics.processed(duration, 0, 0);
+            }
+        }
+    }
+
+    private static TextSize getTextSize(ProcessingData processingData) {
+        Object text = processingData.getAnnotation(TextSize.ANNOTATION_KEY);
+        return text instanceof TextSize ? (TextSize) text : null;
+    }
+
+    /**
+     * Processes the parsed documents as a batch. Documents this processor is
+     * not {@link #isEnabled(ProcessingData) enabled} for are skipped. Failures
+     * are isolated per document: a failing document does not affect the
+     * processing of the others.
+     *
+     * @param batch the documents to process
+     * @return the exceptions of the documents that failed. An empty list if
+     * all documents where processed successfully
+     * @see #doProcessing(List)
+     */
+    public final List<ProcessingException> process(List<ProcessingData> batch) {
+        ensureInitStarted();
+        List<ProcessingData> enabled = new ArrayList<>(batch.size());
+        for (ProcessingData processingData : batch) {
+            if (isEnabled(processingData)) {
+                enabled.add(processingData);
+            }
+        }
+        log.trace("call {} (name: {}) for batch of {}/{} documents", getKey(), getName(), enabled.size(), batch.size());
+        if (enabled.isEmpty() || !awaitInit()) {
+            return Collections.emptyList();
+        }
+        ProcessorMetrics metrics = this.metrics;
+        long start = System.nanoTime();
+        List<ProcessingException> failures = doProcessing(enabled);
+        if (metrics != ProcessorMetrics.NOOP) { //the average time is recorded for every document
+            long duration = (System.nanoTime() - start) / enabled.size();
+            for (ProcessingData processingData : enabled) {
+                if (isFailed(processingData, failures)) {
+                    metrics.failed(duration);
+                } else {
+                    TextSize size = getTextSize(processingData);
+                    metrics.processed(duration, size == null ? 0 : size.getCharCount(),
+                            size == null ? 0 : size.getTokenCount());
+                }
+            }
+        }
+        return failures;
+    }
+
+    private static boolean isFailed(ProcessingData processingData, List<ProcessingException> failures) {
+        for (ProcessingException e : failures) {
+            if (e.getAnalyzedText() == processingData) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Records that the parsed document is skipped because its language is
+     * not supported by this processor. To be called by implementations.
+     *
+     * @param processingData the skipped document
+     */
+    protected final void unsupportedLanguage(ProcessingData processingData) {
+        metrics.unsupportedLanguage();
+    }
+
+    /**
+     * Checks if the {@link ProcessingData#getDeadline() deadline} of the
+     * parsed document is expired. If so this processor is marked as
+     * truncated for the document. To be called by implementations at
+     * section and sentence boundaries. Implementations are expected to stop
+     * processing but keep the results extracted so far.
+     *
+     * @param processingData the processed document
+     * @return <code>true</code> if processing should stop
+     */
+    protected final boolean deadlineExceeded(ProcessingData processingData) {
+        if (processingData.isExpired()) {
+            truncated(processingData);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Marks this processor as truncated for the parsed document (see
+     * {@link ProcessingData#getTruncated()}). Only needed by implementations
+     * that check {@link ProcessingData#isExpired()} directly (e.g. in tasks
+     * executed by other threads).
+     *
+     * @param processingData the processed document
+     */
+    protected final void truncated(ProcessingData processingData) {
+        if (!processingData.getTruncated().contains(key)) {
+            processingData.addAnnotation(Annotations.TRUNCATED, key);
+        }
+    }
+
+    /**
+     * The metrics of this processor
+     *
+     * @return the metrics. {@link ProcessorMetrics#NOOP} if none are configured
+     */
+    public ProcessorMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the metrics of this processor. Intended for usage outside
+     * Spring. MUST BE called before the processor is used.
+     *
+     * @param metrics the metrics or <code>null</code> to disable metrics
+     */
+    public void setMetrics(ProcessorMetrics metrics) {
+        this.metrics = metrics == null ? ProcessorMetrics.NOOP : metrics;
+    }
+
+    /**
+     * The time needed to initialize this processor
+     *
+     * @return the time in milliseconds or <code>-1</code> if the
+     * initialization has not yet completed
+     */
+    public long getStartupTime() {
+        return startupTime;
+    }
+
+    /**
+     * If the initialization of this processor has completed (successfully
+     * or not)
+     *
+     * @return the state
+     */
+    public boolean isInitialized() {
+        return initComplete.getCount() == 0;
+    }
+
+    /**
+     * Processes the parsed document without recording metrics. Used by the
+     * {@link ProcessingPipeline} to warm up this processor. Unlike
+     * {@link #process(ProcessingData)} this does not report a failed
+     * initialization, so that it is still thrown on the first real call.
+     *
+     * @param processingData the warm-up document
+     * @return <code>false</code> if the document was not processed because
+     * this processor is disabled or not initialized
+     */
+    final boolean warmUp(ProcessingData processingData) throws ProcessingException {
+        if (!awaitInitialized() || initException != null || !isEnabled(processingData)) {
+            return false;
+        }
+        doProcessing(processingData);
+        return true;
+    }
+
+    /**
+     * Starts the initialization (if not yet started) and waits for it to
+     * complete. Unlike {@link #process(ProcessingData)} this does not report
+     * a failed initialization.
+     *
+     * @return <code>false</code> if interrupted while waiting
+     */
+    final boolean awaitInitialized() {
+        ensureInitStarted();
+        try {
+            initComplete.await();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void ensureInitStarted() {
         //check if we are running outside Spring
         if (initComplete.getCount() > 1) { //so call postConstruct manually
             synchronized (this) { //but ensure to call postConstruct only once
@@ -199,27 +562,42 @@ public abstract class Processor implements Comparable<Processor> {
 
             }
         }
-        if (processingData.getConfiguration(enabledKey, true)) { //check if enabled
-            log.trace("call {} (name: {}) for {}", getKey(), getName(), processingData);
-            //await initialization
-            try {
-                initComplete.await();
-                if (initException != null) {
-                    if (initExceptionRecorded.compareAndSet(false, true)) {
-                        throw new IllegalStateException("Error during initialisation", initException);
-                    } else {
-                        return;
-                    }
+    }
+
+    /**
+     * Waits for the initialization to complete
+     *
+     * @return <code>true</code> if initialized. <code>false</code> if the
+     * initialization failed and the exception was already thrown earlier
+     * @throws IllegalStateException on the first call after a failed initialization
+     */
+    private boolean awaitInit() {
+        try {
+            initComplete.await();
+            if (initException != null) {
+                if (initExceptionRecorded.compareAndSet(false, true)) {
+                    throw new IllegalStateException("Error during initialisation", initException);
+                } else {
+                    return false;
                 }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                throw new IllegalStateException("Interrupted during initialisation", e);
             }
-
-            doProcessing(processingData);
-        } else {
-            log.trace("{} (name: {}) disabled", getKey(), getName());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted during initialisation", e);
         }
+        return true;
+    }
+
+    /**
+     * If this processor is enabled for the parsed data. Processors are enabled
+     * by default and can be disabled by setting <code>{key}.enabled</code>
+     * to <code>false</code> in the {@link ProcessingData#getConfiguration()}
+     *
+     * @param processingData the data
+     * @return <code>true</code> if enabled
+     */
+    public final boolean isEnabled(ProcessingData processingData) {
+        return processingData.getConfiguration(enabledKey, true);
     }
 
     /**
@@ -229,6 +607,79 @@ public abstract class Processor implements Comparable<Processor> {
      */
     protected abstract void doProcessing(ProcessingData processingData) throws ProcessingException;
 
+    /**
+     * Asynchronous processing of the parsed data. The default implementation
+     * calls {@link #doProcessing(ProcessingData)} and returns a completed
+     * stage. I/O bound processors (e.g. calling remote services) SHOULD
+     * override this to return without blocking the calling thread. The
+     * returned stage is typically completed by an other thread (e.g. the one
+     * of a non-blocking HTTP client) and MUST only complete after all
+     * results are added to the parsed data.
+     *
+     * @param processingData the data to process
+     * @return the stage completed after the data was processed
+     * @throws ProcessingException if the processing fails before the
+     *                             asynchronous part was started
+     */
+    protected CompletionStage<Void> doProcessingAsync(ProcessingData processingData) throws ProcessingException {
+        doProcessing(processingData);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Processes a batch of documents. The default implementation calls
+     * {@link #doProcessing(ProcessingData)} for every document. Processors
+     * can override this to amortize per call overhead (e.g. by grouping
+     * documents by {@link #groupByLanguage(List) language}) but MUST isolate
+     * failures per document.
+     *
+     * @param batch the documents this processor is enabled for
+     * @return the exceptions of the documents that failed
+     */
+    protected List<ProcessingException> doProcessing(List<ProcessingData> batch) {
+        List<ProcessingException> failures = new ArrayList<>();
+        for (ProcessingData processingData : batch) {
+            try {
+                doProcessing(processingData);
+            } catch (ProcessingException | RuntimeException e) {
+                failures.add(toProcessingException(processingData, e));
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Groups the parsed documents by their {@link ProcessingData#getLanguage() language}
+     *
+     * @param batch the documents
+     * @return the documents by language in the order of the first document
+     * of a language. Documents with an unknown language use the <code>null</code> key
+     */
+    protected static Map<String, List<ProcessingData>> groupByLanguage(List<ProcessingData> batch) {
+        Map<String, List<ProcessingData>> byLanguage = new LinkedHashMap<>();
+        for (ProcessingData processingData : batch) {
+            byLanguage.computeIfAbsent(processingData.getLanguage(), l -> new ArrayList<>()).add(processingData);
+        }
+        return byLanguage;
+    }
+
+    /**
+     * Converts an exception that occurred while processing the parsed document
+     * to a {@link ProcessingException}
+     *
+     * @param processingData the document
+     * @param e              the exception
+     * @return the parsed exception if it is a {@link ProcessingException}.
+     * Otherwise a new one with the parsed one as cause
+     */
+    protected final ProcessingException toProcessingException(ProcessingData processingData, Exception e) {
+        if (e instanceof ProcessingException) {
+            return (ProcessingException) e;
+        }
+        return new ProcessingException("Unable to process " + processingData + " with " + getKey()
+                + " (" + e.getClass().getSimpleName() + ": " + e.getMessage() + ")", e, this, processingData);
+    }
+
     /**
      * Returns a map with all supported configuration parameters as key
      * and the default value as value.
@@ -237,6 +688,39 @@ public abstract class Processor implements Comparable<Processor> {
      */
     public abstract Map<String, Object> getDefaultConfiguration();
 
+    /**
+     * The data read by this processor. Keys are either annotation keys (see
+     * {@link io.redlink.nlp.api.model.Annotation#getKey()}) or span types
+     * prefixed with {@link #SPAN_ACCESS_PREFIX} (e.g. <code>span:Token</code>).
+     * Annotation keys cover annotations of the {@link ProcessingData} as well
+     * as of Spans.<p>
+     * Used by the {@link ProcessingPipeline} to run processors with the same
+     * weight concurrently if they do not access data written by the other.
+     *
+     * @return the read keys or <code>null</code> if not declared. Processors
+     * that do not declare their reads and writes are never executed
+     * concurrently
+     * @see #getWrites()
+     */
+    public Set<String> getReads() {
+        return null;
+    }
+
+    /**
+     * The data written (added, modified or removed) by this processor. Keys
+     * use the same format as {@link #getReads()}. Data that is written MUST
+     * NOT be included in the reads. Processors that write the same annotation
+     * key are executed sequentially (in their pipeline order) as concurrent
+     * writes do not commute (e.g. the order of annotation values). Processors
+     * that only add Spans of the same type may be executed concurrently.
+     *
+     * @return the written keys or <code>null</code> if not declared
+     * @see #getReads()
+     */
+    public Set<String> getWrites() {
+        return null;
+    }
+
     @Override
     public int compareTo(Processor other) {
         return Integer.compare(this.weight, other.weight);
@@ -73,4 +73,10 @@ public interface Annotations {
      */
     Annotation<NamedEntity> NAMED_ENTITY = new Annotation<>("redlink:namedentity", NamedEntity.class);
 
+    /**
+     * The keys of the processors that stopped early because the
+     * {@link io.redlink.nlp.api.Deadline} of the document expired
+     */
+    Annotation<String> TRUNCATED = new Annotation<>("redlink:truncated", String.class);
+
 }
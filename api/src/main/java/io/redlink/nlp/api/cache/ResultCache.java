@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2022 Redlink GmbH.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.redlink.nlp.api.cache;
+
+import io.redlink.nlp.api.ProcessingData;
+import io.redlink.nlp.api.Processor;
+import java.util.List;
+
+/**
+ * Caches the results of processing documents with a
+ * {@link io.redlink.nlp.api.ProcessingPipeline}. If a cache is configured
+ * the pipeline looks up the results before processing a document and
+ * rehydrates the {@link ProcessingData} on a hit instead of processing it.<p>
+ * Implementations MUST BE thread safe.
+ */
+public interface ResultCache {
+
+    /**
+     * Computes the key for the parsed document. The key MUST cover everything
+     * that influences the results: the text, the language, the effective
+     * configuration and the {@link Processor#getFingerprint() fingerprints}
+     * of the processors.
+     *
+     * @param processingData the document
+     * @param processors     the processors of the pipeline
+     * @return the key or <code>null</code> if the document can not be cached
+     */
+    String key(ProcessingData processingData, List<Processor> processors);
+
+    /**
+     * Restores the results cached for the parsed key
+     *
+     * @param key            the key
+     * @param processingData the document to add the cached results to
+     * @return <code>true</code> on a hit. <code>false</code> if no results are
+     * cached for the key (the document was not modified)
+     */
+    boolean restore(String key, ProcessingData processingData);
+
+    /**
+     * Stores the results of the parsed processed document
+     *
+     * @param key            the key
+     * @param processingData the processed document
+     */
+    void store(String key, ProcessingData processingData);
+
+    /**
+     * The number of lookups that restored results
+     *
+     * @return the hits
+     */
+    long getHits();
+
+    /**
+     * The number of lookups that did not find results
+     *
+     * @return the misses
+     */
+    long getMisses();
+
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2022 Redlink GmbH.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.redlink.nlp.api.content;
+
+import io.redlink.nlp.api.Content;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link Content} that keeps up to {@link #getMemoryThreshold()} bytes
+ * in-memory and spills larger contents to a temporary file (see
+ * {@link TmpFileContent}).<p>
+ * The content is written by using the {@link #getOutputStream()} and becomes
+ * available when the stream is closed. In-memory contents are exposed as
+ * {@link #getBinaryContent() binary content}, spilled ones as
+ * {@link #getLocalCopy() local copy}. For <code>text/plain</code> contents
+ * the {@link #getPlainContent() plain content} is decoded only once (using the
+ * charset of the mime type). Large spilled files are memory mapped (see
+ * {@link FileContent#MAPPED_PLAIN_CONTENT_THRESHOLD}).<p>
+ * Unlike {@link StringContent} a text parsed to the constructor is encoded
+ * only once and the text itself is kept as plain content.
+ */
+public class BufferedContent implements Content {
+
+    /**
+     * The default in-memory threshold (1MByte)
+     */
+    public static final int DEFAULT_MEMORY_THRESHOLD = 1024 * 1024;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final int memoryThreshold;
+    private final String name;
+    private String mimeType;
+    private Optional<String> baseUrl = Optional.empty();
+
+    private byte[] data; //in-memory content
+    private TmpFileContent spilled; //spilled content
+    private CharSequence plainContent; //lazily initialized
+
+    public BufferedContent(String mimeType) {
+        this(null, mimeType, DEFAULT_MEMORY_THRESHOLD);
+    }
+
+    /**
+     * @param name            the name or <code>null</code> if none
+     * @param mimeType        the mime type
+     * @param memoryThreshold the maximum number of bytes kept in-memory
+     */
+    public BufferedContent(String name, String mimeType, int memoryThreshold) {
+        if (memoryThreshold < 0) {
+            throw new IllegalArgumentException("The parsed memory threshold MUST NOT be negative!");
+        }
+        this.name = StringUtils.isBlank(name) ? null : name;
+        this.mimeType = mimeType;
+        this.memoryThreshold = memoryThreshold;
+        this.data = new byte[0];
+    }
+
+    /**
+     * Creates a <code>text/plain</code> content for the parsed text. The
+     * text is encoded once (as <code>UTF-8</code>) and kept as
+     * {@link #getPlainContent() plain content}.
+     *
+     * @param text            the text
+     * @param name            the name or <code>null</code> if none
+     * @param memoryThreshold the maximum number of bytes kept in-memory
+     * @throws IOException if the encoded text could not be spilled to disk
+     */
+    public BufferedContent(CharSequence text, String name, int memoryThreshold) throws IOException {
+        this(name, "text/plain; charset=UTF-8", memoryThreshold);
+        assert text != null;
+        try (Writer out = new OutputStreamWriter(getOutputStream(), StandardCharsets.UTF_8)) {
+            out.append(text);
+        }
+        synchronized (this) {
+            plainContent = text;
+        }
+    }
+
+    public int getMemoryThreshold() {
+        return memoryThreshold;
+    }
+
+    /**
+     * If the content was spilled to a temporary file
+     *
+     * @return the state
+     */
+    public synchronized boolean isSpilled() {
+        return spilled != null;
+    }
+
+    /**
+     * A stream replacing the current content. The written data becomes
+     * available after the stream is closed.
+     *
+     * @return the stream to write the content to
+     */
+    public OutputStream getOutputStream() {
+        return new SpillingOutputStream();
+    }
+
+    @Override
+    public Optional<String> getName() {
+        return Optional.ofNullable(name);
+    }
+
+    @Override
+    public synchronized InputStream getContent() throws IOException {
+        return spilled != null ? spilled.getContent() : new ByteArrayInputStream(data);
+    }
+
+    @Override
+    public synchronized void setMimeType(String mimeType) {
+        this.mimeType = mimeType;
+        this.plainContent = null; //the charset might have changed
+        if (spilled != null) {
+            spilled.setMimeType(mimeType);
+        }
+    }
+
+    @Override
+    public String getMimeType() {
+        return mimeType == null ? "application/octet-stream" : mimeType;
+    }
+
+    @Override
+    public void setBaseUrl(String url) {
+        this.baseUrl = Optional.ofNullable(url);
+    }
+
+    @Override
+    public Optional<String> getBaseUrl() {
+        return baseUrl;
+    }
+
+    @Override
+    public synchronized Optional<Path> getLocalCopy() {
+        return spilled != null ? spilled.getLocalCopy() : Optional.empty();
+    }
+
+    /**
+     * The in-memory content. The returned array MUST NOT be modified.
+     *
+     * @return the content or {@link Optional#empty()} if spilled to disk
+     */
+    @Override
+    public synchronized Optional<byte[]> getBinaryContent() {
+        return spilled != null ? Optional.empty() : Optional.of(data);
+    }
+
+    /**
+     * The decoded text of <code>text/plain</code> contents
+     *
+     * @return the plain content or {@link Optional#empty()} for other
+     * contents or if the spilled content could not be read
+     */
+    @Override
+    public synchronized Optional<CharSequence> getPlainContent() {
+        if (plainContent == null && FileContent.isPlainText(getMimeType())) {
+            if (spilled == null) {
+                plainContent = new String(data, FileContent.getCharset(getMimeType()));
+            } else {
+                plainContent = spilled.getPlainContent().orElse(null); //mapped if large
+                if (plainContent == null) {
+                    try {
+                        plainContent = new String(Files.readAllBytes(spilled.file),
+                                FileContent.getCharset(getMimeType()));
+                    } catch (IOException e) {
+                        log.warn("Unable to read plain content of {} ({} - {})", spilled.file,
+                                e.getClass().getSimpleName(), e.getMessage());
+                        log.debug("STACKTRACE", e);
+                    }
+                }
+            }
+        }
+        return Optional.ofNullable(plainContent);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        setContent(new byte[0], null);
+    }
+
+    private synchronized void setContent(byte[] data, TmpFileContent spilled) throws IOException {
+        TmpFileContent old = this.spilled;
+        this.data = data;
+        this.spilled = spilled;
+        this.plainContent = null;
+        if (old != null) {
+            old.close();
+        }
+    }
+
+    /**
+     * Buffers written data in-memory and switches to a temporary file as
+     * soon as the {@link #memoryThreshold} is exceeded
+     */
+    private class SpillingOutputStream extends OutputStream {
+
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private TmpFileContent file;
+        private OutputStream out = buffer;
+        private boolean closed;
+
+        @Override
+        public void write(int b) throws IOException {
+            ensureCapacity(1);
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ensureCapacity(len);
+            out.write(b, off, len);
+        }
+
+        private void ensureCapacity(int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream already closed");
+            }
+            if (buffer != null && buffer.size() + len > memoryThreshold) {
+                file = new TmpFileContent(name, getMimeType());
+                out = file.getOutputStream();
+                buffer.writeTo(out);
+                buffer = null;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            out.close();
+            if (file != null) {
+                file.setMimeType(getMimeType()); //might have changed while writing
+                setContent(new byte[0], file);
+            } else {
+                setContent(buffer.toByteArray(), null);
+                buffer = null;
+            }
+        }
+    }
+}
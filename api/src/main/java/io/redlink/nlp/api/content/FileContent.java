@@ -18,20 +18,42 @@ package io.redlink.nlp.api.content;
 import io.redlink.nlp.api.Content;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  *
  */
 public class FileContent implements Content {
 
+    /**
+     * The minimum file size (in bytes) of <code>text/plain</code> contents
+     * that are exposed as {@link MappedCharSequence} by
+     * {@link #getPlainContent()}. For smaller files reading the text to the
+     * heap is more efficient.
+     */
+    public static final long MAPPED_PLAIN_CONTENT_THRESHOLD = 1024 * 1024;
+
+    private static final Pattern CHARSET_PATTERN = Pattern.compile("charset=([^;]+)", Pattern.CASE_INSENSITIVE);
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
     private String name;
     protected final Path file;
     private String mimeType;
     private Optional<String> baseUrl = Optional.empty();
+    private MappedCharSequence plainContent; //lazily initialized
 
     public FileContent(Path path, String mimeType) {
         assert path != null;
@@ -41,8 +63,9 @@ public class FileContent implements Content {
     }
 
     @Override
-    public void setMimeType(String mimeType) {
+    public synchronized void setMimeType(String mimeType) {
         this.mimeType = mimeType;
+        closePlainContent(); //the charset might have changed
     }
 
     public void setName(String name) {
@@ -84,13 +107,83 @@ public class FileContent implements Content {
         return Optional.empty(); //we do not have content in-memory
     }
 
+    /**
+     * For <code>text/plain</code> files with at least
+     * {@link #MAPPED_PLAIN_CONTENT_THRESHOLD} bytes this returns a
+     * {@link MappedCharSequence} so that the text does not need to be loaded
+     * to the heap. The file is decoded on the first call using the charset
+     * of the mime type (default <code>UTF-8</code>).
+     *
+     * @return the mapped plain content or {@link Optional#empty()} for other
+     * contents, smaller files or if the file could not be mapped
+     */
     @Override
-    public Optional<CharSequence> getPlainContent() {
-        return Optional.empty(); //we do not have plain content in-memory
+    public synchronized Optional<CharSequence> getPlainContent() {
+        if (plainContent == null && isMappable()) {
+            try {
+                plainContent = MappedCharSequence.open(file, getCharset());
+            } catch (IOException | RuntimeException e) {
+                log.warn("Unable to map plain content of {} ({} - {})", file, e.getClass().getSimpleName(), e.getMessage());
+                log.debug("STACKTRACE", e);
+            }
+        }
+        return Optional.ofNullable(plainContent);
+    }
+
+    private boolean isMappable() {
+        if (!isPlainText(getMimeType())) {
+            return false;
+        }
+        try {
+            return Files.size(file) >= MAPPED_PLAIN_CONTENT_THRESHOLD;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private Charset getCharset() {
+        return getCharset(getMimeType());
+    }
+
+    /**
+     * If the parsed mime type is <code>text/plain</code> (ignoring parameters)
+     */
+    static boolean isPlainText(String mimeType) {
+        String mime = mimeType;
+        int paramsIdx = mime.indexOf(';');
+        if (paramsIdx > 0) {
+            mime = mime.substring(0, paramsIdx);
+        }
+        return "text/plain".equals(mime.trim().toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * The charset parameter of the parsed mime type
+     *
+     * @return the charset or <code>UTF-8</code> if not present or not supported
+     */
+    static Charset getCharset(String mimeType) {
+        Matcher m = CHARSET_PATTERN.matcher(mimeType);
+        if (m.find()) {
+            try {
+                return Charset.forName(m.group(1).trim().replace("\"", ""));
+            } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+                LoggerFactory.getLogger(FileContent.class).debug(
+                        "Unsupported charset in mime type {} (using UTF-8)", mimeType);
+            }
+        }
+        return StandardCharsets.UTF_8;
     }
 
     @Override
-    public void close() throws IOException {
-        //nothing to do here
+    public synchronized void close() throws IOException {
+        closePlainContent();
+    }
+
+    private void closePlainContent() {
+        if (plainContent != null) {
+            plainContent.close(); //mapped memory is released on GC
+            plainContent = null;
+        }
     }
 }
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2022 Redlink GmbH.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.redlink.nlp.api.content;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A read-only {@link CharSequence} backed by memory-mapped files. This allows
+ * to process very large texts without holding them on the heap.<p>
+ * The text is decoded once to a temporary file using UTF-16 (big endian) so
+ * that {@link #charAt(int)} is a constant time lookup. The temporary file is
+ * deleted as soon as it is mapped (on operating systems that support this).
+ * Otherwise it is deleted by {@link #close()}. The memory is released when
+ * this instance is garbage collected.<p>
+ * {@link #subSequence(int, int)} returns views sharing the mapped memory. Only
+ * {@link #toString()} copies the characters to the heap.<p>
+ * This class is thread safe.
+ */
+public final class MappedCharSequence implements CharSequence, Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MappedCharSequence.class);
+
+    /**
+     * The number of chars per mapped segment (2^29 chars = 1GByte)
+     */
+    private static final int SEGMENT_SHIFT = 29;
+    private static final int SEGMENT_MASK = (1 << SEGMENT_SHIFT) - 1;
+    private static final int BUFFER_SIZE = 8192;
+
+    private final ByteBuffer[] segments;
+    private final int offset;
+    private final int length;
+    /**
+     * The temporary file or <code>null</code> for {@link #subSequence(int, int) views}
+     */
+    private final Path file;
+
+    private MappedCharSequence(ByteBuffer[] segments, int offset, int length, Path file) {
+        this.segments = segments;
+        this.offset = offset;
+        this.length = length;
+        this.file = file;
+    }
+
+    /**
+     * Decodes the parsed file and maps the decoded text to memory.
+     *
+     * @param file    the text file
+     * @param charset the charset of the file
+     * @return the mapped char sequence
+     * @throws IOException on any error while reading the file or writing the
+     *                     temporary file. Also if the text has more as
+     *                     {@link Integer#MAX_VALUE} chars
+     */
+    public static MappedCharSequence open(Path file, Charset charset) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, charset)) {
+            return open(reader);
+        }
+    }
+
+    /**
+     * Reads the text from the parsed reader and maps it to memory. The parsed
+     * reader is not closed.
+     *
+     * @param reader the reader
+     * @return the mapped char sequence
+     * @throws IOException on any error while reading the text or writing the
+     *                     temporary file. Also if the text has more as
+     *                     {@link Integer#MAX_VALUE} chars
+     */
+    public static MappedCharSequence open(Reader reader) throws IOException {
+        Path tmp = Files.createTempFile(null, ".utf16");
+        MappedCharSequence mapped = null;
+        try {
+            mapped = map(reader, tmp);
+            return mapped;
+        } finally {
+            if (mapped == null) { //nothing mapped: delete the file right away
+                delete(tmp);
+            }
+        }
+    }
+
+    private static MappedCharSequence map(Reader reader, Path tmp) throws IOException {
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.DELETE_ON_CLOSE)) {
+            char[] chars = new char[BUFFER_SIZE];
+            ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE * 2);
+            long length = 0;
+            for (int read = reader.read(chars); read >= 0; read = reader.read(chars)) {
+                length += read;
+                if (length > Integer.MAX_VALUE) {
+                    throw new IOException("Unable to map text with more as " + Integer.MAX_VALUE + " chars");
+                }
+                bytes.clear();
+                bytes.asCharBuffer().put(chars, 0, read);
+                bytes.limit(read * 2);
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+            }
+            int numSegments = (int) ((length + SEGMENT_MASK) >> SEGMENT_SHIFT);
+            ByteBuffer[] segments = new ByteBuffer[numSegments];
+            for (int i = 0; i < numSegments; i++) {
+                long start = (long) i << SEGMENT_SHIFT;
+                long size = Math.min(length - start, 1L << SEGMENT_SHIFT);
+                //mapped buffers stay valid after the channel is closed
+                segments[i] = channel.map(MapMode.READ_ONLY, start * 2, size * 2);
+            }
+            //DELETE_ON_CLOSE is not supported for mapped files on all OS
+            return new MappedCharSequence(segments, 0, (int) length, tmp);
+        }
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Unable to delete temporary file {} ({} - {})", file, e.getClass().getSimpleName(), e.getMessage());
+            LOG.debug("STACKTRACE", e);
+        }
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index: " + index + ", length: " + length);
+        }
+        int idx = offset + index;
+        return segments[idx >>> SEGMENT_SHIFT].getChar((idx & SEGMENT_MASK) << 1);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("start: " + start + ", end: " + end + ", length: " + length);
+        }
+        return new MappedCharSequence(segments, offset + start, end - start, null);
+    }
+
+    @Override
+    public String toString() {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            int idx = offset + i;
+            chars[i] = segments[idx >>> SEGMENT_SHIFT].getChar((idx & SEGMENT_MASK) << 1);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Deletes the temporary file if it was not already deleted while mapping
+     * it. The mapped memory stays valid until this instance is garbage
+     * collected. Closing a {@link #subSequence(int, int) view} has no effect.
+     */
+    @Override
+    public void close() {
+        if (file != null) {
+            delete(file);
+        }
+    }
+}
@@ -40,6 +40,7 @@ public class TmpFileContent extends FileContent {
 
     @Override
     public void close() throws IOException {
+        super.close();
         Files.deleteIfExists(file); //delete the tmp file when existing
     }
 
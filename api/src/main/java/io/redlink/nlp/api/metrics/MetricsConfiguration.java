@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2022 Redlink GmbH.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.redlink.nlp.api.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Registers a {@link ProcessorMetricsFactory} for Micrometer if it is
+ * present on the classpath. If no {@link MeterRegistry} bean is available
+ * processors use {@link ProcessorMetrics#NOOP}.
+ */
+@Configuration
+@ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+public class MetricsConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean(ProcessorMetricsFactory.class)
+    protected ProcessorMetricsFactory getProcessorMetricsFactory(ObjectProvider<MeterRegistry> registry) {
+        return processor -> {
+            MeterRegistry meterRegistry = registry.getIfAvailable();
+            return meterRegistry == null ? ProcessorMetrics.NOOP :
+                    new MicrometerProcessorMetrics(meterRegistry, processor);
+        };
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2022 Redlink GmbH.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.redlink.nlp.api.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import io.redlink.nlp.api.Processor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ProcessorMetrics} backed by a Micrometer {@link MeterRegistry}. All
+ * meters are tagged with the {@link Processor#getKey() key} of the processor:<ul>
+ * <li><code>nlp.processor.duration</code>: timer (with percentile histogram)
+ * of successfully processed documents
+ * <li><code>nlp.processor.documents</code>: processed documents (use the rate
+ * for documents per second)
+ * <li><code>nlp.processor.chars</code> and <code>nlp.processor.tokens</code>:
+ * processed characters and tokens
+ * <li><code>nlp.processor.skipped</code>: documents skipped because of an
+ * unsupported language (tag <code>reason=language</code>)
+ * <li><code>nlp.processor.failures</code>: failed documents
+ * <li><code>nlp.processor.init</code>: the initialization time
+ * <li><code>nlp.processor.warmup</code>: the time spent processing warm-up
+ * documents
+ * </ul>
+ * Meters are registered on creation, so recording does not allocate.
+ */
+public class MicrometerProcessorMetrics implements ProcessorMetrics {
+
+    private static final String PREFIX = "nlp.processor.";
+    private static final String TAG = "processor";
+
+    private final Timer duration;
+    private final Counter documents;
+    private final Counter chars;
+    private final Counter tokens;
+    private final Counter skipped;
+    private final Counter failures;
+    private volatile double initMillis = Double.NaN;
+    private volatile double warmupMillis = Double.NaN;
+
+    public MicrometerProcessorMetrics(MeterRegistry registry, Processor processor) {
+        String key = processor.getKey();
+        duration = Timer.builder(PREFIX + "duration")
+                .description("Processing time of documents")
+                .tag(TAG, key)
+                .publishPercentileHistogram()
+                .register(registry);
+        documents = Counter.builder(PREFIX + "documents").tag(TAG, key)
+                .description("Processed documents").baseUnit("documents").register(registry);
+        chars = Counter.builder(PREFIX + "chars").tag(TAG, key)
+                .description("Processed characters").baseUnit("characters").register(registry);
+        tokens = Counter.builder(PREFIX + "tokens").tag(TAG, key)
+                .description("Processed tokens").baseUnit("tokens").register(registry);
+        skipped = Counter.builder(PREFIX + "skipped").tag(TAG, key).tag("reason", "language")
+                .description("Documents skipped because of an unsupported language").register(registry);
+        failures = Counter.builder(PREFIX + "failures").tag(TAG, key)
+                .description("Failed documents").register(registry);
+        TimeGauge.builder(PREFIX + "init", this, TimeUnit.MILLISECONDS, m -> m.initMillis)
+                .description("Initialization time").tag(TAG, key).register(registry);
+        TimeGauge.builder(PREFIX + "warmup", this, TimeUnit.MILLISECONDS, m -> m.warmupMillis)
+                .description("Warm-up time").tag(TAG, key).register(registry);
+    }
+
+    @Override
+    public void initialized(long nanos) {
+        initMillis = nanos / 1_000_000d;
+    }
+
+    @Override
+    public void warmedUp(long nanos) {
+        warmupMillis = nanos / 1_000_000d;
+    }
+
+    @Override
+    public void processed(long nanos, int chars, int tokens) {
+        duration.record(nanos, TimeUnit.NANOSECONDS);
+        documents.increment();
+        if (chars > 0) {
+            this.chars.increment(chars);
+        }
+        if (tokens > 0) {
+            this.tokens.increment(tokens);
+        }
+    }
+
+    @Override
+    public void failed(long nanos) {
+        failures.increment();
+    }
+
+    @Override
+    public void unsupportedLanguage() {
+        skipped.increment();
+    }
+
+}
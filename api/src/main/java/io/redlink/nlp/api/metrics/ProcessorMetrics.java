@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2022 Redlink GmbH.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.redlink.nlp.api.metrics;
+
+/**
+ * Receives the measurements of a single {@link io.redlink.nlp.api.Processor}.
+ * Implementations are called for every processed document and MUST NOT
+ * allocate objects on those calls.
+ *
+ * @see ProcessorMetricsFactory
+ */
+public interface ProcessorMetrics {
+
+    /**
+     * Does not record anything
+     */
+    ProcessorMetrics NOOP = new ProcessorMetrics() {
+    };
+
+    /**
+     * Called after the initialization of the processor completed
+     * (successfully or not)
+     *
+     * @param nanos the duration of the initialization
+     */
+    default void initialized(long nanos) {
+    }
+
+    /**
+     * Called after the warm-up of the processor completed (see
+     * {@link io.redlink.nlp.api.ProcessingPipeline#warmUp()})
+     *
+     * @param nanos the time the processor spent processing warm-up documents
+     */
+    default void warmedUp(long nanos) {
+    }
+
+    /**
+     * Called after a document was processed successfully
+     *
+     * @param nanos  the processing time
+     * @param chars  the number of characters of the processed text or
+     *               <code>0</code> if not known
+     * @param tokens the number of tokens of the processed text or
+     *               <code>0</code> if not known
+     */
+    default void processed(long nanos, int chars, int tokens) {
+    }
+
+    /**
+     * Called if the processing of a document failed
+     *
+     * @param nanos the processing time until the failure
+     */
+    default void failed(long nanos) {
+    }
+
+    /**
+     * Called by processors that skip a document because its language is
+     * not supported
+     */
+    default void unsupportedLanguage() {
+    }
+
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2022 Redlink GmbH.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.redlink.nlp.api.metrics;
+
+import io.redlink.nlp.api.Processor;
+
+/**
+ * Creates the {@link ProcessorMetrics} for {@link Processor}s. If a bean
+ * of this type is present, it is used by all processors. Otherwise
+ * {@link ProcessorMetrics#NOOP} is used.
+ *
+ * @see MicrometerProcessorMetrics
+ */
+public interface ProcessorMetricsFactory {
+
+    /**
+     * Creates the metrics for the parsed processor
+     *
+     * @param processor the processor
+     * @return the metrics. MUST NOT be <code>null</code>
+     */
+    ProcessorMetrics create(Processor processor);
+
+}
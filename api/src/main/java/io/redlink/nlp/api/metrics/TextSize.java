@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2022 Redlink GmbH.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.redlink.nlp.api.metrics;
+
+/**
+ * Implemented by the annotation holding the analyzed text of a
+ * {@link io.redlink.nlp.api.ProcessingData} so that processors can report
+ * the number of processed characters and tokens without depending on the
+ * text model.
+ */
+public interface TextSize {
+
+    /**
+     * The key of the annotation holding the analyzed text. MUST BE the same
+     * as the key used by the text model.
+     */
+    String ANNOTATION_KEY = "redlink:analyzedtext";
+
+    /**
+     * The number of characters
+     *
+     * @return the number of characters of the text
+     */
+    int getCharCount();
+
+    /**
+     * The number of tokens
+     *
+     * @return the number of tokens of the text
+     */
+    int getTokenCount();
+
+}
@@ -17,13 +17,21 @@ package io.redlink.nlp.api.model;
 
 import io.redlink.nlp.api.annotation.Annotations;
 import io.redlink.nlp.api.annotation.Keyword;
+import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.stream.Collectors;
+import org.springframework.data.annotation.AccessType;
+import org.springframework.data.annotation.AccessType.Type;
+import org.springframework.data.annotation.Transient;
 
 /**
  * Base class for objects that can be {@link Annotated} with {@link Value}s
@@ -62,21 +70,166 @@ import java.util.stream.Collectors;
  * value will remove an annotation. The exception is {@link #setAnnotation(Object)} as this method
  * can not determine the key to remove if the parsed value is <code>null</code>. Therefore a
  * {@link #removeAnnotations(Class)}
+ * <p>
+ * Annotations are stored in compact parallel arrays: the ids of the keys
+ * (as assigned by the {@link AnnotationKeyRegistry}) in a sorted <code>int[]</code>
+ * and the values in an <code>Object[]</code>. A value is either a single
+ * {@link Value} or a <code>Value[]</code> sorted by {@link Value#PROBABILITY_COMPARATOR}.
+ * This avoids a {@link java.util.HashMap} (and an {@link java.util.ArrayList} per
+ * multi valued key) for every annotated object (e.g. every Token of a text).
+ * For persistence the annotations are exposed as {@link #getAnnotations() Map}
+ * (keys to a {@link Value} or a {@link List} of values).
+ * <p>
+ * Instances are not thread safe unless {@link #isShared()} returns
+ * <code>true</code>. Shared instances synchronize all reads and writes of
+ * annotations on the instance. This allows several processors to
+ * concurrently add annotations with different keys (e.g. stems and stop
+ * words for the same Token).
  *
  * @author Rupert Westenthaler
  */
 public abstract class Annotated {
 
-    private Map<String, Object> annotations;
+    private static final Value<?>[] EMPTY_VALUES = new Value<?>[0];
+
+    /**
+     * The ids of the keys (sorted). Process specific, so not persisted
+     */
+    @Transient
+    private int[] keyIds;
+    /**
+     * The {@link Value} or <code>Value[]</code> for the key at the same index
+     */
+    @Transient
+    private Object[] values;
+    @Transient
+    private int size;
+
+    @AccessType(Type.PROPERTY)
+    private Map<String, Object> annotations; //not used just to make spring data happy
 
     /**
      * Getter for all keys used by Annotations
      *
-     * @return the Set with all keys. An empty Set if none
+     * @return a read-only snapshot of all keys. An empty Set if none
      */
-    @SuppressWarnings("unchecked")
     public Set<String> getKeys() {
-        return annotations == null ? Collections.EMPTY_SET : annotations.keySet();
+        if (isShared()) {
+            synchronized (this) {
+                return keySnapshot();
+            }
+        }
+        return keySnapshot();
+    }
+
+    private Set<String> keySnapshot() {
+        if (size == 0) {
+            return Collections.emptySet();
+        }
+        final int[] ids = Arrays.copyOf(keyIds, size);
+        return new AbstractSet<String>() {
+
+            @Override
+            public Iterator<String> iterator() {
+                return new Iterator<String>() {
+
+                    private int idx = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return idx < ids.length;
+                    }
+
+                    @Override
+                    public String next() {
+                        if (idx >= ids.length) {
+                            throw new NoSuchElementException();
+                        }
+                        return AnnotationKeyRegistry.getKey(ids[idx++]);
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof String && Arrays.binarySearch(ids,
+                        AnnotationKeyRegistry.lookupId((String) o)) >= 0;
+            }
+
+            @Override
+            public int size() {
+                return ids.length;
+            }
+        };
+    }
+
+    /**
+     * All annotations as Map. Used for persistence (e.g. by Spring Data).
+     * Use the typed getters to access annotations.
+     *
+     * @return a read-only snapshot mapping the keys to a {@link Value} or
+     * a {@link List} of values sorted by probability
+     */
+    @AccessType(Type.PROPERTY)
+    public Map<String, Object> getAnnotations() {
+        if (isShared()) {
+            synchronized (this) {
+                return annotationSnapshot();
+            }
+        }
+        return annotationSnapshot();
+    }
+
+    private Map<String, Object> annotationSnapshot() {
+        Map<String, Object> map = new LinkedHashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            Object value = values[i];
+            map.put(AnnotationKeyRegistry.getKey(keyIds[i]), value instanceof Value<?> ? value :
+                    Collections.unmodifiableList(Arrays.asList((Value<?>[]) value)));
+        }
+        return Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Replaces all annotations with the parsed ones. Used for persistence
+     * (e.g. by Spring Data).
+     *
+     * @param annotations maps keys to a {@link Value} or a {@link Collection}
+     *                    of values. <code>null</code> to remove all annotations
+     * @throws IllegalArgumentException if a mapped value is of an other type
+     */
+    public void setAnnotations(Map<String, Object> annotations) {
+        if (isShared()) {
+            synchronized (this) {
+                doSetAnnotations(annotations);
+            }
+        } else {
+            doSetAnnotations(annotations);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void doSetAnnotations(Map<String, Object> annotations) {
+        checkModifiable();
+        while (size > 0) {
+            values[--size] = null;
+        }
+        if (annotations == null) {
+            return;
+        }
+        for (Map.Entry<String, Object> entry : annotations.entrySet()) {
+            Object value = entry.getValue();
+            if (value == null || value instanceof Value<?>) {
+                doSetValueInternal(AnnotationKeyRegistry.getId(entry.getKey()), (Value<?>) value);
+            } else if (value instanceof Collection<?>) {
+                doSetValuesInternal(AnnotationKeyRegistry.getId(entry.getKey()),
+                        new ArrayList<>((Collection) value));
+            } else {
+                throw new IllegalArgumentException("Unsupported value " + value + " (type: "
+                        + value.getClass().getName() + ") for key " + entry.getKey()
+                        + " (expected: Value or Collection<Value>)");
+            }
+        }
     }
 
     /**
@@ -99,17 +252,7 @@ public abstract class Annotated {
      * @return the Value with the highest probability
      */
     public final Value<?> getValue(String key) {
-        if (annotations == null) {
-            return null;
-        }
-        Object value = annotations.get(key);
-        if (value instanceof Value<?>) {
-            return (Value<?>) value;
-        } else if (value != null) {
-            return ((List<Value<?>>) value).get(0);
-        } else {
-            return null;
-        }
+        return first(get(AnnotationKeyRegistry.lookupId(key)));
     }
 
     /**
@@ -129,20 +272,9 @@ public abstract class Annotated {
      * @param key the Key
      * @return all Value sorted by probability
      */
-    @SuppressWarnings("unchecked")
+    @SuppressWarnings({"unchecked", "rawtypes"})
     public final List<Value<?>> getValues(String key) {
-        if (annotations == null) {
-            return Collections.emptyList();
-        }
-        Object value = annotations.get(key);
-        if (value instanceof Value<?>) {
-            List<?> singleton = Collections.singletonList((Value<?>) value);
-            return (List<Value<?>>) singleton;
-        } else if (value != null) {
-            return Collections.unmodifiableList((List<Value<?>>) value);
-        } else {
-            return Collections.emptyList();
-        }
+        return (List) asList(get(AnnotationKeyRegistry.lookupId(key)));
     }
 
     /**
@@ -168,17 +300,7 @@ public abstract class Annotated {
      */
     @SuppressWarnings("unchecked")
     public final <V> Value<V> getValue(Annotation<V> annotation) {
-        if (annotations == null) {
-            return null;
-        }
-        Object value = annotations.get(annotation.getKey());
-        if (value instanceof Value<?>) {
-            return (Value<V>) value;
-        } else if (value != null) {
-            return ((List<Value<V>>) value).get(0);
-        } else {
-            return null;
-        }
+        return (Value<V>) first(get(annotation.keyId));
     }
 
     /**
@@ -201,20 +323,9 @@ public abstract class Annotated {
      * @throws ClassCastException if the returned value of
      *                            {@link Annotation#getKey()} is not of type V
      */
-    @SuppressWarnings("unchecked")
+    @SuppressWarnings({"unchecked", "rawtypes"})
     public final <V> List<Value<V>> getValues(Annotation<V> annotation) {
-        if (annotations == null) {
-            return Collections.emptyList();
-        }
-        Object value = annotations.get(annotation.getKey());
-        if (value instanceof Value<?>) {
-            List<?> singleton = Collections.singletonList((Value<?>) value);
-            return (List<Value<V>>) singleton;
-        } else if (value != null) {
-            return Collections.unmodifiableList((List<Value<V>>) value);
-        } else {
-            return Collections.emptyList();
-        }
+        return (List) asList(get(annotation.keyId));
     }
 
     /**
@@ -225,7 +336,7 @@ public abstract class Annotated {
      * @param values     the annotation to append
      */
     public <V> void addAnnotations(Annotation<V> annotation, List<V> values) {
-        addValuesInternal(annotation.getKey(), values.stream().map(Value::value).collect(Collectors.toList()));
+        addValuesInternal(annotation.keyId, values.stream().map(Value::value).collect(Collectors.toList()));
     }
 
     /**
@@ -236,7 +347,7 @@ public abstract class Annotated {
      */
     @SuppressWarnings({"unchecked", "rawtypes"})
     public <V> void addValues(Annotation<V> annotation, List<Value<V>> values) {
-        addValuesInternal(annotation.getKey(), (List) values);
+        addValuesInternal(annotation.keyId, (List) values);
     }
 
     /**
@@ -249,7 +360,7 @@ public abstract class Annotated {
      * @param values the values
      */
     public void addAnnotations(String key, List<?> values) {
-        addValuesInternal(key, values.stream().map(Value::value).collect(Collectors.toList()));
+        addValuesInternal(AnnotationKeyRegistry.getId(key), values.stream().map(Value::value).collect(Collectors.toList()));
     }
 
     /**
@@ -262,45 +373,52 @@ public abstract class Annotated {
      * @param values the values
      */
     public void addValues(String key, List<Value<?>> values) {
-        addValuesInternal(key, values);
+        addValuesInternal(AnnotationKeyRegistry.getId(key), values);
     }
 
     /**
      * Just here because of Java generics combined with Collections ...
      *
-     * @param key    the key
+     * @param keyId  the id of the key
      * @param values the values
      */
-    @SuppressWarnings("unchecked")
-    private void addValuesInternal(String key, List<Value<?>> values) {
+    private void addValuesInternal(int keyId, List<Value<?>> values) {
+        if (isShared()) {
+            synchronized (this) {
+                doAddValuesInternal(keyId, values);
+            }
+        } else {
+            doAddValuesInternal(keyId, values);
+        }
+    }
+
+    private void doAddValuesInternal(int keyId, List<Value<?>> values) {
         if (values == null || values.isEmpty()) {
             return;
         }
-        Map<String, Object> map = initAnnotations();
-        Object currentValue = annotations.get(key);
-        Object newValues;
+        Object currentValue = get(keyId);
+        Value<?>[] newValues;
         if (currentValue == null) {
             if (values.size() == 1) {
-                newValues = values.get(0);
-            } else {
-                values = new ArrayList<>(values); //copy
-                Collections.sort(values, Value.PROBABILITY_COMPARATOR); //sort
-                newValues = values;
+                put(keyId, values.get(0));
+                return;
             }
+            newValues = values.toArray(EMPTY_VALUES);
         } else if (currentValue instanceof Value<?>) {
-            List<Value<?>> newValuesList = new ArrayList<>(Math.max(4, values.size() + 1));
-            newValuesList.add((Value<?>) currentValue);
-            newValuesList.addAll(values);
-            Collections.sort(newValuesList, Value.PROBABILITY_COMPARATOR); //sort
-            newValues = newValuesList;
-        } else { //an ArrayList
-            ((List<Value<?>>) currentValue).addAll(values);
-            Collections.sort((List<Value<?>>) currentValue, Value.PROBABILITY_COMPARATOR); //sort
-            newValues = null; //no need to put new values
-        }
-        if (newValues != null) {
-            map.put(key, newValues);
+            newValues = new Value<?>[values.size() + 1];
+            newValues[0] = (Value<?>) currentValue;
+            for (int i = 0; i < values.size(); i++) {
+                newValues[i + 1] = values.get(i);
+            }
+        } else { //an array
+            Value<?>[] current = (Value<?>[]) currentValue;
+            newValues = Arrays.copyOf(current, current.length + values.size());
+            for (int i = 0; i < values.size(); i++) {
+                newValues[current.length + i] = values.get(i);
+            }
         }
+        Arrays.sort(newValues, Value.PROBABILITY_COMPARATOR); //stable sort
+        put(keyId, newValues);
     }
 
     /**
@@ -310,7 +428,7 @@ public abstract class Annotated {
      * @param values     the values for the annotation
      */
     public <V> void setAnnotations(Annotation<V> annotation, List<V> values) {
-        setValuesInternal(annotation.getKey(), values == null ? null : values.stream().map(Value::value).collect(Collectors.toList()));
+        setValuesInternal(annotation.keyId, values == null ? null : values.stream().map(Value::value).collect(Collectors.toList()));
     }
 
     /**
@@ -321,7 +439,7 @@ public abstract class Annotated {
      */
     @SuppressWarnings({"rawtypes", "unchecked"})
     public <V> void setValues(Annotation<V> annotation, List<Value<V>> values) {
-        setValuesInternal(annotation.getKey(), (List) values);
+        setValuesInternal(annotation.keyId, (List) values);
     }
 
     /**
@@ -333,7 +451,8 @@ public abstract class Annotated {
      * @param values the values
      */
     public void setAnnotations(String key, List<?> values) {
-        setValuesInternal(key, values == null ? null : values.stream().map(Value::value).collect(Collectors.toList()));
+        setValuesInternal(getKeyId(key, values == null || values.isEmpty()),
+                values == null ? null : values.stream().map(Value::value).collect(Collectors.toList()));
     }
 
     /**
@@ -345,35 +464,36 @@ public abstract class Annotated {
      * @param values the values
      */
     public void setValues(String key, List<Value<?>> values) {
-        setValuesInternal(key, values);
+        setValuesInternal(getKeyId(key, values == null || values.isEmpty()), values);
     }
 
     /**
      * Just here because of Java generics combined with Collections ...
      *
-     * @param key    the key
+     * @param keyId  the id of the key
      * @param values the values
      */
-    private void setValuesInternal(String key, List<Value<?>> values) {
-        Map<String, Object> map = initAnnotations();
-        if (values == null || values.isEmpty()) {
-            map.remove(key);
-        } else if (values.size() == 1) {
-            map.put(key, values.get(0));
+    private void setValuesInternal(int keyId, List<Value<?>> values) {
+        if (isShared()) {
+            synchronized (this) {
+                doSetValuesInternal(keyId, values);
+            }
         } else {
-            //we need to copy, because users might change the parsed Array!
-            values = new ArrayList<>(values);
-            Collections.sort(values, Value.PROBABILITY_COMPARATOR);
-            map.put(key, values);
+            doSetValuesInternal(keyId, values);
         }
-
     }
 
-    private Map<String, Object> initAnnotations() {
-        if (annotations == null) { //avoid sync for the typical case
-            annotations = new HashMap<String, Object>();
+    private void doSetValuesInternal(int keyId, List<Value<?>> values) {
+        if (values == null || values.isEmpty()) {
+            remove(keyId);
+        } else if (values.size() == 1) {
+            put(keyId, values.get(0));
+        } else {
+            //we need to copy, because users might change the parsed Array!
+            Value<?>[] newValues = values.toArray(EMPTY_VALUES);
+            Arrays.sort(newValues, Value.PROBABILITY_COMPARATOR);
+            put(keyId, newValues);
         }
-        return annotations;
     }
 
     /**
@@ -406,7 +526,7 @@ public abstract class Annotated {
      * @param value      the value to append
      */
     public <V> void addAnnotation(Annotation<V> annotation, V value) {
-        addValue(annotation.getKey(), Value.value(value));
+        addValueInternal(annotation.keyId, Value.value(value));
     }
 
     /**
@@ -416,7 +536,7 @@ public abstract class Annotated {
      * @param value      the value to append
      */
     public <V> void addValue(Annotation<V> annotation, Value<V> value) {
-        addValue(annotation.getKey(), value);
+        addValueInternal(annotation.keyId, value);
     }
 
     /**
@@ -442,23 +562,43 @@ public abstract class Annotated {
      */
     public void addValue(String key, Value<?> value) {
         if (value != null) {
-            Map<String, Object> map = initAnnotations();
-            Object currentValue = map.get(key);
-            if (currentValue == null) {
-                map.put(key, value);
-            } else if (currentValue instanceof Value<?>) {
-                List<Value<?>> newValues = new ArrayList<>(4);
-                newValues.add((Value<?>) currentValue);
-                newValues.add(value);
-                Collections.sort(newValues, Value.PROBABILITY_COMPARATOR);
-                map.put(key, newValues);
-            } else { //list
-                List<Value<?>> currentValueList = (List<Value<?>>) currentValue;
-                //insert the new value at the correct position
-                int pos = Collections.binarySearch(currentValueList, value, Value.PROBABILITY_COMPARATOR);
-                currentValueList.add(pos >= 0 ? pos : Math.abs(pos + 1), value);
-                //no put required
+            addValueInternal(AnnotationKeyRegistry.getId(key), value);
+        }
+    }
+
+    private void addValueInternal(int keyId, Value<?> value) {
+        if (isShared()) {
+            synchronized (this) {
+                doAddValueInternal(keyId, value);
             }
+        } else {
+            doAddValueInternal(keyId, value);
+        }
+    }
+
+    private void doAddValueInternal(int keyId, Value<?> value) {
+        if (value == null) {
+            return;
+        }
+        Object currentValue = get(keyId);
+        if (currentValue == null) {
+            put(keyId, value);
+        } else if (currentValue instanceof Value<?>) {
+            Value<?> current = (Value<?>) currentValue;
+            put(keyId, Value.PROBABILITY_COMPARATOR.compare(value, current) < 0 ?
+                    new Value<?>[]{value, current} : new Value<?>[]{current, value});
+        } else { //array
+            Value<?>[] current = (Value<?>[]) currentValue;
+            //insert the new value after all values with the same or a higher probability
+            int pos = current.length;
+            while (pos > 0 && Value.PROBABILITY_COMPARATOR.compare(current[pos - 1], value) > 0) {
+                pos--;
+            }
+            Value<?>[] newValues = new Value<?>[current.length + 1];
+            System.arraycopy(current, 0, newValues, 0, pos);
+            newValues[pos] = value;
+            System.arraycopy(current, pos, newValues, pos + 1, current.length - pos);
+            put(keyId, newValues);
         }
     }
 
@@ -479,7 +619,7 @@ public abstract class Annotated {
      * @param value      the value for the annotation
      */
     public <V> void setValue(Annotation<V> annotation, Value<V> value) {
-        setValue(annotation.getKey(), value);
+        setValueInternal(annotation.keyId, value);
     }
 
     /**
@@ -524,14 +664,24 @@ public abstract class Annotated {
      * @param value the annotation value
      */
     public void setValue(String key, Value<?> value) {
-        if (annotations == null && value == null) {
-            return;
+        setValueInternal(getKeyId(key, value == null), value);
+    }
+
+    private void setValueInternal(int keyId, Value<?> value) {
+        if (isShared()) {
+            synchronized (this) {
+                doSetValueInternal(keyId, value);
+            }
+        } else {
+            doSetValueInternal(keyId, value);
         }
-        Map<String, Object> map = initAnnotations();
+    }
+
+    private void doSetValueInternal(int keyId, Value<?> value) {
         if (value == null) {
-            map.remove(key);
+            remove(keyId);
         } else {
-            map.put(key, value);
+            put(keyId, value);
         }
     }
 
@@ -584,6 +734,146 @@ public abstract class Annotated {
     }
 
 
+    /**
+     * The id for the parsed key
+     *
+     * @param key    the key
+     * @param remove if the id is used to remove values. In this case unknown
+     *               keys are not registered
+     * @return the id or <code>-1</code> if <code>remove</code> and the key is unknown
+     */
+    private static int getKeyId(String key, boolean remove) {
+        return remove ? AnnotationKeyRegistry.lookupId(key) : AnnotationKeyRegistry.getId(key);
+    }
+
+    private int indexOf(int keyId) {
+        if (keyId < 0) {
+            return -1;
+        }
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midId = keyIds[mid];
+            if (midId < keyId) {
+                low = mid + 1;
+            } else if (midId > keyId) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * @return the {@link Value}, <code>Value[]</code> or <code>null</code> if none
+     */
+    private Object get(int keyId) {
+        if (isShared()) {
+            synchronized (this) {
+                return doGet(keyId);
+            }
+        }
+        return doGet(keyId);
+    }
+
+    private Object doGet(int keyId) {
+        int idx = indexOf(keyId);
+        return idx >= 0 ? values[idx] : null;
+    }
+
+    /**
+     * If this instance is shared by several threads. In this case all
+     * accesses to the annotations are synchronized. Subclasses that can be
+     * accessed concurrently (e.g. while processors are executed in parallel)
+     * override this. The check is done on every access, so implementations
+     * MUST BE cheap.
+     *
+     * @return <code>true</code> if shared. <code>false</code> by default
+     */
+    protected boolean isShared() {
+        return false;
+    }
+
+    /**
+     * Called before annotations are modified. Subclasses that support a
+     * read-only state can override this to throw an {@link IllegalStateException}.
+     *
+     * @throws IllegalStateException if the annotations of this instance
+     *                               can not be modified
+     */
+    protected void checkModifiable() {
+        //modifiable by default
+    }
+
+    /**
+     * Trims the internal arrays to the current number of annotations. Intended
+     * to be called if no further annotations are expected to be added.
+     */
+    protected void compactAnnotations() {
+        if (size == 0) {
+            keyIds = null;
+            values = null;
+        } else if (size < keyIds.length) {
+            keyIds = Arrays.copyOf(keyIds, size);
+            values = Arrays.copyOf(values, size);
+        }
+    }
+
+    private void put(int keyId, Object value) {
+        checkModifiable();
+        int idx = indexOf(keyId);
+        if (idx >= 0) {
+            values[idx] = value;
+            return;
+        }
+        idx = -(idx + 1);
+        if (keyIds == null) {
+            keyIds = new int[4];
+            values = new Object[4];
+        } else if (size == keyIds.length) {
+            keyIds = Arrays.copyOf(keyIds, size + 4);
+            values = Arrays.copyOf(values, size + 4);
+        }
+        System.arraycopy(keyIds, idx, keyIds, idx + 1, size - idx);
+        System.arraycopy(values, idx, values, idx + 1, size - idx);
+        keyIds[idx] = keyId;
+        values[idx] = value;
+        size++;
+    }
+
+    private void remove(int keyId) {
+        checkModifiable();
+        int idx = indexOf(keyId);
+        if (idx >= 0) {
+            size--;
+            System.arraycopy(keyIds, idx + 1, keyIds, idx, size - idx);
+            System.arraycopy(values, idx + 1, values, idx, size - idx);
+            values[size] = null;
+        }
+    }
+
+    private static Value<?> first(Object value) {
+        if (value instanceof Value<?>) {
+            return (Value<?>) value;
+        } else if (value != null) {
+            return ((Value<?>[]) value)[0];
+        } else {
+            return null;
+        }
+    }
+
+    private static List<Value<?>> asList(Object value) {
+        if (value instanceof Value<?>) {
+            return Collections.singletonList((Value<?>) value);
+        } else if (value != null) {
+            return Collections.unmodifiableList(Arrays.asList((Value<?>[]) value));
+        } else {
+            return Collections.emptyList();
+        }
+    }
+
     private String getAnnoKey(Object value) {
         return getAnnoKey(value.getClass());
     }
@@ -33,6 +33,10 @@ public final class Annotation<V> {
      * The type of the used Value
      */
     final Class<V> valueType;
+    /**
+     * The id of the key as registered with the {@link AnnotationKeyRegistry}
+     */
+    final int keyId;
 
     public Annotation(String key, Class<V> valueType) {
         if (key == null || valueType == null) {
@@ -40,6 +44,7 @@ public final class Annotation<V> {
         }
         this.key = key;
         this.valueType = valueType;
+        this.keyId = AnnotationKeyRegistry.getId(key);
     }
 
     public String getKey() {
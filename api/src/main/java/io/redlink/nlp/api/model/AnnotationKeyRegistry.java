@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2022 Redlink GmbH.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.redlink.nlp.api.model;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Global registry that interns annotation keys to small <code>int</code> ids.
+ * {@link Annotated} uses those ids to store annotations in compact arrays
+ * instead of a {@link java.util.HashMap} per instance.<p>
+ * Ids are assigned in the order keys are first used and are only valid
+ * within the current JVM. They MUST NOT be persisted.<p>
+ * This class is thread safe.
+ */
+public final class AnnotationKeyRegistry {
+
+    private static final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private static final Object lock = new Object();
+    /**
+     * Keys by id. Elements are written before the id is published via
+     * {@link #ids}.
+     */
+    private static volatile String[] keys = new String[64];
+    private static int size = 0; //guarded by lock
+
+    private AnnotationKeyRegistry() {/*static only*/}
+
+    /**
+     * Getter for the id of the parsed key. Registers the key if not yet known.
+     *
+     * @param key the annotation key. MUST NOT be <code>null</code>
+     * @return the id of the key
+     * @throws IllegalArgumentException if the parsed key is <code>null</code>
+     */
+    public static int getId(String key) {
+        if (key == null) {
+            throw new IllegalArgumentException("The parsed key MUST NOT be NULL!");
+        }
+        Integer id = ids.get(key);
+        if (id != null) {
+            return id;
+        }
+        synchronized (lock) {
+            id = ids.get(key);
+            if (id == null) {
+                String[] current = keys;
+                if (size == current.length) {
+                    current = Arrays.copyOf(current, size * 2);
+                    keys = current;
+                }
+                current[size] = key;
+                id = size++;
+                ids.put(key, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * Getter for the id of an already registered key. Other than
+     * {@link #getId(String)} this does not register unknown keys.
+     *
+     * @param key the annotation key
+     * @return the id or <code>-1</code> if the key is not registered
+     */
+    public static int lookupId(String key) {
+        Integer id = key == null ? null : ids.get(key);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Getter for the key with the parsed id
+     *
+     * @param id the id as returned by {@link #getId(String)}
+     * @return the key
+     * @throws IndexOutOfBoundsException if the parsed id is not valid
+     */
+    public static String getKey(int id) {
+        String key = id >= 0 ? keys[id] : null;
+        if (key == null) {
+            throw new IndexOutOfBoundsException("Unknown annotation key id " + id);
+        }
+        return key;
+    }
+
+    /**
+     * The number of registered keys
+     *
+     * @return the number of keys
+     */
+    public static int size() {
+        return ids.size();
+    }
+
+}
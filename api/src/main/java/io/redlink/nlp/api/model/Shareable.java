@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2022 Redlink GmbH.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.redlink.nlp.api.model;
+
+/**
+ * Implemented by annotation values that can be switched to a thread safe
+ * mode while several processors access them concurrently (e.g. the
+ * AnalyzedText). When a {@link io.redlink.nlp.api.ProcessingData} is
+ * {@link io.redlink.nlp.api.ProcessingData#setShared(boolean) shared} all its
+ * annotation values implementing this interface are shared as well.<p>
+ * Implementations are expected to avoid any synchronization costs while
+ * not shared.
+ */
+public interface Shareable {
+
+    /**
+     * Switches the thread safe mode on or off. MUST only be called while
+     * no other thread accesses the instance (e.g. before concurrent
+     * processors are started or after all of them have completed)
+     *
+     * @param shared the state
+     */
+    void setShared(boolean shared);
+
+}
@@ -20,6 +20,8 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.springframework.data.annotation.PersistenceConstructor;
 
 public final class Value<T> {
@@ -29,6 +31,23 @@ public final class Value<T> {
      */
     public static final double UNKNOWN_PROBABILITY = -1.0d;
 
+    /**
+     * Shared {@link Boolean#TRUE} value with {@link #UNKNOWN_PROBABILITY}
+     */
+    public static final Value<Boolean> TRUE = new Value<>(Boolean.TRUE);
+    /**
+     * Shared {@link Boolean#FALSE} value with {@link #UNKNOWN_PROBABILITY}
+     */
+    public static final Value<Boolean> FALSE = new Value<>(Boolean.FALSE);
+
+    /**
+     * The maximum number of values cached by {@link #canonical(Object)}. Only
+     * a safeguard against the usage with values of open sets. Values not
+     * cached before this limit is reached are never canonicalised.
+     */
+    private static final int MAX_CANONICAL_VALUES = 4096;
+    private static final ConcurrentMap<Object, Value<?>> canonicalValues = new ConcurrentHashMap<>();
+
     /**
      * The value
      */
@@ -76,6 +95,66 @@ public final class Value<T> {
         return new Value<T>(value, probability);
     }
 
+    /**
+     * Returns a shared instance for the parsed value with an
+     * {@link #UNKNOWN_PROBABILITY unknown probability}. As Values are immutable
+     * those can be used by any number of annotations.<p>
+     * This is intended for values of closed sets (e.g. POS, NER or Phrase
+     * tags of a tag set, Boolean flags, constants) that are annotated to
+     * a lot of Spans. Values of open sets (e.g. lemmas) MUST NOT be parsed
+     * as this would fill up the cache.<p>
+     * The cache is capped to 4096 values. Once
+     * the cap is reached values that are not yet cached are never
+     * canonicalised: every call returns a new Value for those.
+     *
+     * @param value the value. MUST be immutable
+     * @return the canonical Value
+     * @throws IllegalArgumentException if the parsed value is <code>null</code>
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Value<T> canonical(T value) {
+        if (value instanceof Boolean) {
+            return (Value<T>) ((Boolean) value ? TRUE : FALSE);
+        } else if (value == null) {
+            throw new IllegalArgumentException("The parsed Value MUST NOT be NULL!");
+        }
+        Value<?> canonical = canonicalValues.get(value);
+        if (canonical == null) {
+            canonical = new Value<>(value);
+            if (canonicalValues.size() < MAX_CANONICAL_VALUES) {
+                Value<?> present = canonicalValues.putIfAbsent(value, canonical);
+                if (present != null) {
+                    canonical = present;
+                }
+            }
+        }
+        return (Value<T>) canonical;
+    }
+
+    /**
+     * Returns the {@link #canonical(Object) canonical} Value if the parsed
+     * probability is {@link #UNKNOWN_PROBABILITY unknown}. Otherwise a new
+     * Value is created, as values with probabilities (e.g. tags of a
+     * statistical model) would mostly fill the cache with single use entries.
+     *
+     * @param value       the value. MUST be immutable
+     * @param probability the probability or {@link #UNKNOWN_PROBABILITY}
+     * @return the canonical or a new Value
+     * @throws IllegalArgumentException if the parsed value is <code>null</code>
+     *                                  or the probability is not valid
+     */
+    public static <T> Value<T> canonical(T value, double probability) {
+        return probability == UNKNOWN_PROBABILITY ? canonical(value) : new Value<>(value, probability);
+    }
+
+    /**
+     * Clears the cache of {@link #canonical(Object) canonical} Values. Only
+     * intended to be used by tests.
+     */
+    static void clearCanonicalValues() {
+        canonicalValues.clear();
+    }
+
     @SafeVarargs
     public static <T> List<Value<T>> values(T... values) {
         if (values == null || values.length < 1) {
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2022 Redlink GmbH.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.redlink.nlp.api.provenance;
+
+import io.redlink.nlp.api.ProcessingData;
+import io.redlink.nlp.api.Processor;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Records which {@link Processor} (and with what
+ * {@link Processor#getFingerprint() fingerprint}) produced the results of a
+ * document. The provenance needs to be stored together with the results
+ * (e.g. as part of the serialized form) so that a
+ * {@link io.redlink.nlp.api.ProcessingPipeline} can
+ * {@link io.redlink.nlp.api.ProcessingPipeline#reprocess(ProcessingData) re-process}
+ * a stored document incrementally after the configuration of some
+ * processors has changed.<p>
+ * Implementations MUST BE thread safe.
+ */
+public interface ProvenanceTracker {
+
+    /**
+     * Called by the pipeline before the first processor processes the
+     * document. Results already present (e.g. sections added by the caller)
+     * MUST NOT be attributed to any processor by later calls to
+     * {@link #record(ProcessingData, Collection)}.
+     *
+     * @param processingData the document
+     */
+    default void begin(ProcessingData processingData) {
+    }
+
+    /**
+     * Records that the parsed processors have processed the document. Called
+     * by the pipeline after every stage (or group of concurrently executed
+     * stages). Results added since the last call are attributed to the
+     * parsed processors. Processors that were
+     * {@link ProcessingData#getTruncated() truncated} are attributed with
+     * their results, but their fingerprint is not recorded.
+     *
+     * @param processingData the document
+     * @param processors     the processors that processed the document
+     */
+    void record(ProcessingData processingData, Collection<Processor> processors);
+
+    /**
+     * The fingerprints recorded for the parsed document
+     *
+     * @param processingData the document
+     * @return the fingerprints by {@link Processor#getKey() processor key}.
+     * An empty map if no provenance was recorded for the document
+     */
+    Map<String, String> getFingerprints(ProcessingData processingData);
+
+    /**
+     * Removes the results of the parsed processors and their recorded
+     * fingerprints. Annotations with a key {@link Processor#getWrites() written}
+     * by the processors are removed from the document and all spans. Spans
+     * produced by the processors are removed if no other processor added
+     * annotations to them. If a processor does not declare its writes all
+     * spans produced by processors and all annotations of spans are removed.
+     * Document level annotations are kept in this case.
+     *
+     * @param processingData the document
+     * @param processors     the processors
+     */
+    void drop(ProcessingData processingData, Collection<Processor> processors);
+
+}
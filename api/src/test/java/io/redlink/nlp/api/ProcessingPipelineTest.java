@@ -0,0 +1,586 @@
+/*
+ * Copyright (c) 2022 Redlink GmbH.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.redlink.nlp.api;
+
+import io.redlink.nlp.api.cache.ResultCache;
+import io.redlink.nlp.api.content.StringContent;
+import io.redlink.nlp.api.metrics.ProcessorMetrics;
+import io.redlink.nlp.api.model.Annotation;
+import io.redlink.nlp.api.provenance.ProvenanceTracker;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ProcessingPipelineTest {
+
+    private static final Annotation<String> TRACE = new Annotation<>("test:trace", String.class);
+
+    @Test
+    public void testOrderAndSkipping() throws ProcessingException {
+        ProcessingPipeline pipeline = new ProcessingPipeline(Arrays.asList(
+                new TraceProcessor("c", Processor.Phase.post),
+                new TraceProcessor("a", Processor.Phase.pre),
+                new TraceProcessor("b", Processor.Phase.nlp)));
+        Assert.assertEquals("test.a", pipeline.getProcessors().get(0).getKey());
+        Assert.assertEquals("test.c", pipeline.getProcessors().get(2).getKey());
+
+        ProcessingData pd = createData(Collections.singletonMap("test.b.enabled", false));
+        pipeline.process(pd);
+        Assert.assertEquals(Arrays.asList("a", "c"), pd.getAnnotations(TRACE));
+        ProcessingPipeline.StageStats bStats = pipeline.getStageStats().get(1);
+        Assert.assertEquals(0, bStats.getCount());
+        Assert.assertEquals(1, bStats.getSkipped());
+        Assert.assertEquals(1, pipeline.getStageStats().get(0).getCount());
+    }
+
+    @Test
+    public void testProcessAll() {
+        ProcessingPipeline pipeline = new ProcessingPipeline(Arrays.asList(
+                new TraceProcessor("a", Processor.Phase.pre),
+                new TraceProcessor("fail", Processor.Phase.nlp),
+                new TraceProcessor("b", Processor.Phase.post)));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            pipeline.setExecutor(executor);
+            List<ProcessingData> data = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                //every 4th document fails
+                data.add(createData(Collections.singletonMap("test.fail.enabled", i % 4 == 0)));
+            }
+            List<ProcessingException> failures = pipeline.processAll(data);
+            Assert.assertEquals(5, failures.size());
+            for (ProcessingException e : failures) {
+                Assert.assertEquals("test.fail", e.getProcessor().getKey());
+                //processing stops with the failed processor
+                Assert.assertEquals(Collections.singletonList("a"), e.getAnalyzedText().getAnnotations(TRACE));
+            }
+            Assert.assertEquals(20, pipeline.getStageStats().get(0).getCount());
+            Assert.assertEquals(5, pipeline.getStageStats().get(1).getFailed());
+            Assert.assertEquals(15, pipeline.getStageStats().get(2).getCount());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testProcessAsync() throws InterruptedException {
+        AsyncProcessor remote = new AsyncProcessor("remote", Processor.Phase.nlp);
+        ProcessingPipeline pipeline = new ProcessingPipeline(Arrays.asList(
+                new TraceProcessor("a", Processor.Phase.pre),
+                remote,
+                new TraceProcessor("b", Processor.Phase.post)));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            pipeline.setExecutor(executor);
+            List<CompletableFuture<ProcessingData>> futures = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                futures.add(pipeline.processAsync(createData(Collections.emptyMap())));
+            }
+            //a single worker thread keeps the requests of all documents in flight
+            long until = System.currentTimeMillis() + 5000;
+            while (remote.pending.size() < 10 && System.currentTimeMillis() < until) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(10, remote.pending.size());
+            for (CompletableFuture<ProcessingData> future : futures) {
+                Assert.assertFalse(future.isDone());
+            }
+            //requests started while the processor was initializing are not sent in order
+            remote.pending.poll().completeExceptionally(new IllegalStateException("remote failure"));
+            remote.pending.forEach(f -> f.complete(null));
+            int failed = 0;
+            for (CompletableFuture<ProcessingData> future : futures) {
+                try {
+                    Assert.assertEquals(Arrays.asList("a", "remote", "b"), future.join().getAnnotations(TRACE));
+                } catch (CompletionException e) {
+                    Assert.assertTrue(e.getCause() instanceof ProcessingException);
+                    Assert.assertEquals("test.remote", ((ProcessingException) e.getCause()).getProcessor().getKey());
+                    failed++;
+                }
+            }
+            Assert.assertEquals(1, failed);
+            Assert.assertEquals(10, pipeline.getStageStats().get(1).getCount());
+            Assert.assertEquals(1, pipeline.getStageStats().get(1).getFailed());
+            Assert.assertEquals(9, pipeline.getStageStats().get(2).getCount());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testProcessBatch() {
+        ProcessingPipeline pipeline = new ProcessingPipeline(Arrays.asList(
+                new TraceProcessor("a", Processor.Phase.pre),
+                new TraceProcessor("fail", Processor.Phase.nlp),
+                new TraceProcessor("b", Processor.Phase.post)));
+        List<ProcessingData> batch = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            //every 5th document fails
+            batch.add(createData(Collections.singletonMap("test.fail.enabled", i % 5 == 0)));
+        }
+        List<ProcessingException> failures = pipeline.processBatch(batch);
+        Assert.assertEquals(2, failures.size());
+        Assert.assertSame(batch.get(0), failures.get(0).getAnalyzedText());
+        Assert.assertSame(batch.get(5), failures.get(1).getAnalyzedText());
+        for (int i = 0; i < batch.size(); i++) {
+            Assert.assertEquals(i % 5 == 0 ? Collections.singletonList("a") : Arrays.asList("a", "b"),
+                    batch.get(i).getAnnotations(TRACE));
+        }
+        Assert.assertEquals(10, pipeline.getStageStats().get(0).getCount());
+        Assert.assertEquals(2, pipeline.getStageStats().get(1).getCount());
+        Assert.assertEquals(8, pipeline.getStageStats().get(1).getSkipped());
+        Assert.assertEquals(2, pipeline.getStageStats().get(1).getFailed());
+        Assert.assertEquals(8, pipeline.getStageStats().get(2).getCount());
+    }
+
+    @Test
+    public void testConcurrentStages() throws ProcessingException {
+        //stem and stopword have the same weight and are independent. The barrier
+        //ensures that they are executed concurrently
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        TraceProcessor stem = new TraceProcessor("stem", Processor.Phase.stem, barrier,
+                Collections.singleton("test:token"), Collections.singleton("test:stem"));
+        TraceProcessor stopword = new TraceProcessor("stopword", Processor.Phase.stopword, barrier,
+                Collections.singleton("test:token"), Collections.singleton("test:stopword"));
+        //lemma reads the stems so it needs to wait for the stemmer
+        TraceProcessor lemma = new TraceProcessor("lemma", Processor.Phase.lemma, null,
+                Collections.singleton("test:stem"), Collections.singleton("test:lemma"));
+        ProcessingPipeline pipeline = new ProcessingPipeline(Arrays.asList(
+                new TraceProcessor("a", Processor.Phase.pre), stem, stopword, lemma,
+                new TraceProcessor("b", Processor.Phase.post)));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            pipeline.setStageExecutor(executor);
+            for (int i = 0; i < 10; i++) {
+                ProcessingData pd = createData(Collections.emptyMap());
+                pipeline.process(pd);
+                List<String> trace = pd.getAnnotations(TRACE);
+                Assert.assertEquals(5, trace.size());
+                Assert.assertEquals("a", trace.get(0));
+                Assert.assertEquals("b", trace.get(4));
+                Assert.assertTrue(trace.indexOf("stem") < trace.indexOf("lemma"));
+                Assert.assertTrue(trace.contains("stopword"));
+            }
+            Assert.assertEquals(10, pipeline.getStageStats().get(1).getCount());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testConcurrentStagesWritingSameData() throws ProcessingException {
+        //ner and time both write mentions. The order of the values needs to be deterministic
+        TraceProcessor ner = new TraceProcessor("ner", Processor.Phase.ner, null,
+                Collections.singleton("test:token"), Collections.singleton("test:mention"));
+        TraceProcessor time = new TraceProcessor("time", Processor.Phase.ner, null,
+                Collections.singleton("test:token"), Collections.singleton("test:mention"));
+        ProcessingPipeline pipeline = new ProcessingPipeline(Arrays.asList(ner, time));
+        for (int i = 0; i < 10; i++) {
+            ProcessingData pd = createData(Collections.emptyMap());
+            pipeline.process(pd);
+            Assert.assertEquals(Arrays.asList("ner", "time"), pd.getAnnotations(TRACE));
+        }
+    }
+
+    @Test
+    public void testConcurrentStagesAddingSpans() throws ProcessingException {
+        //ner and time both add Chunks but write different annotations
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        TraceProcessor ner = new TraceProcessor("ner", Processor.Phase.ner, barrier,
+                Collections.singleton("test:token"),
+                new HashSet<>(Arrays.asList(Processor.SPAN_ACCESS_PREFIX + "Chunk", "test:ner")));
+        TraceProcessor time = new TraceProcessor("time", Processor.Phase.ner, barrier,
+                Collections.singleton("test:token"),
+                new HashSet<>(Arrays.asList(Processor.SPAN_ACCESS_PREFIX + "Chunk", "test:time")));
+        ProcessingPipeline pipeline = new ProcessingPipeline(Arrays.asList(ner, time));
+        ProcessingData pd = createData(Collections.emptyMap());
+        pipeline.process(pd);
+        Assert.assertEquals(2, pd.getAnnotations(TRACE).size());
+    }
+
+    @Test
+    public void testConcurrentStageFailure() {
+        TraceProcessor fail = new TraceProcessor("fail", Processor.Phase.ner, null,
+                Collections.emptySet(), Collections.singleton("test:ner"));
+        TraceProcessor linking = new TraceProcessor("linking", Processor.Phase.entityLinking, null,
+                Collections.singleton("test:ner"), Collections.singleton("test:link"));
+        TraceProcessor other = new TraceProcessor("other", Processor.Phase.ner, null,
+                Collections.emptySet(), Collections.singleton("test:time"));
+        ProcessingPipeline pipeline = new ProcessingPipeline(Arrays.asList(fail, linking, other));
+        ProcessingData pd = createData(Collections.emptyMap());
+        try {
+            pipeline.process(pd);
+            Assert.fail("ProcessingException expected");
+        } catch (ProcessingException e) {
+            Assert.assertEquals("test.fail", e.getProcessor().getKey());
+        }
+        //linking depends on the failed processor, other is independent
+        Assert.assertEquals(Collections.singletonList("other"), pd.getAnnotations(TRACE));
+        Assert.assertFalse(pd.isShared());
+    }
+
+    @Test
+    public void testMetrics() {
+        AtomicInteger processed = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        ProcessorMetrics metrics = new ProcessorMetrics() {
+            @Override
+            public void processed(long nanos, int chars, int tokens) {
+                processed.incrementAndGet();
+            }
+
+            @Override
+            public void failed(long nanos) {
+                failed.incrementAndGet();
+            }
+        };
+        TraceProcessor a = new TraceProcessor("a", Processor.Phase.pre);
+        TraceProcessor fail = new TraceProcessor("fail", Processor.Phase.nlp);
+        a.setMetrics(metrics);
+        fail.setMetrics(metrics);
+        ProcessingPipeline pipeline = new ProcessingPipeline(Arrays.asList(a, fail));
+        List<ProcessingData> batch = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            batch.add(createData(Collections.singletonMap("test.fail.enabled", i % 2 == 0)));
+        }
+        Assert.assertEquals(2, pipeline.processBatch(batch).size());
+        //a processed all 4 documents, fail only the 2 enabled ones
+        Assert.assertEquals(4, processed.get());
+        Assert.assertEquals(2, failed.get());
+        Assert.assertSame(metrics, a.getMetrics());
+        a.setMetrics(null);
+        Assert.assertSame(ProcessorMetrics.NOOP, a.getMetrics());
+    }
+
+    @Test
+    public void testDeadline() throws ProcessingException {
+        Deadline deadline = Deadline.unbounded();
+        TraceProcessor cancel = new TraceProcessor("cancel", Processor.Phase.nlp) {
+            @Override
+            protected void doProcessing(ProcessingData processingData) {
+                super.doProcessing(processingData);
+                deadline.cancel();
+            }
+        };
+        ProcessingPipeline pipeline = new ProcessingPipeline(Arrays.asList(
+                new TraceProcessor("a", Processor.Phase.pre), cancel,
+                new TraceProcessor("b", Processor.Phase.post)));
+        ProcessingData pd = createData(Collections.emptyMap());
+        pd.setDeadline(deadline);
+        pipeline.process(pd);
+        Assert.assertEquals(Arrays.asList("a", "cancel"), pd.getAnnotations(TRACE));
+        Assert.assertEquals(Collections.singletonList("test.b"), pd.getTruncated());
+        Assert.assertEquals(1, pipeline.getStageStats().get(2).getTruncated());
+        Assert.assertSame(deadline, pd.getDeadline());
+    }
+
+    @Test
+    public void testBudget() throws ProcessingException {
+        ProcessingPipeline pipeline = new ProcessingPipeline(Arrays.asList(
+                new TraceProcessor("a", Processor.Phase.pre),
+                new TraceProcessor("b", Processor.Phase.post)));
+        ProcessingData pd = createData(Collections.emptyMap());
+        pipeline.setBudget(1, TimeUnit.NANOSECONDS);
+        pipeline.process(pd);
+        Assert.assertTrue(pd.getAnnotations(TRACE).isEmpty());
+        Assert.assertEquals(Arrays.asList("test.a", "test.b"), pd.getTruncated());
+        Assert.assertNull(pd.getDeadline());
+
+        pipeline.setBudget(1, TimeUnit.MINUTES);
+        pd = createData(Collections.emptyMap());
+        pipeline.process(pd);
+        Assert.assertEquals(Arrays.asList("a", "b"), pd.getAnnotations(TRACE));
+        Assert.assertTrue(pd.getTruncated().isEmpty());
+    }
+
+    @Test
+    public void testColdStartBudget() throws ProcessingException {
+        List<Long> remaining = new ArrayList<>();
+        TraceProcessor first = new TraceProcessor("first", Processor.Phase.pre) {
+            @Override
+            protected void doProcessing(ProcessingData processingData) {
+                super.doProcessing(processingData);
+                remaining.add(processingData.getDeadline().getRemaining(TimeUnit.SECONDS));
+            }
+        };
+        ProcessingPipeline pipeline = new ProcessingPipeline(Arrays.asList(first,
+                new TraceProcessor("a", Processor.Phase.nlp),
+                new TraceProcessor("b", Processor.Phase.post)));
+        pipeline.setBudget(1, TimeUnit.MINUTES);
+        pipeline.process(createData(Collections.emptyMap()));
+        //without statistics the first stage is not limited to an even share of the budget
+        Assert.assertEquals(1, remaining.size());
+        Assert.assertTrue(remaining.get(0) > 30);
+    }
+
+    @Test
+    public void testDeadlineLimit() {
+        Deadline deadline = Deadline.unbounded();
+        Assert.assertFalse(deadline.isBounded());
+        Assert.assertEquals(Long.MAX_VALUE, deadline.getRemaining(TimeUnit.SECONDS));
+        Deadline limited = deadline.limit(1, TimeUnit.MINUTES);
+        Assert.assertTrue(limited.isBounded());
+        Assert.assertTrue(limited.getRemaining(TimeUnit.SECONDS) <= 60);
+        //a limit can not extend a deadline
+        Assert.assertTrue(limited.limit(1, TimeUnit.DAYS).getRemaining(TimeUnit.SECONDS) <= 60);
+        //cancelling is propagated to limited deadlines but not the other way around
+        limited.cancel();
+        Assert.assertFalse(deadline.isExpired());
+        Deadline other = deadline.limit(1, TimeUnit.MINUTES);
+        deadline.cancel();
+        Assert.assertTrue(other.isExpired());
+        Assert.assertEquals(0, other.getRemaining(TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    public void testWarmUp() {
+        ProcessingPipeline pipeline = new ProcessingPipeline(Arrays.asList(
+                new TraceProcessor("a", Processor.Phase.pre),
+                new TraceProcessor("fail", Processor.Phase.nlp),
+                new TraceProcessor("b", Processor.Phase.post)));
+        pipeline.setWarmupIterations(3);
+        pipeline.setWarmupLanguages("de", "en", "xx"); //no sample for 'xx'
+        Assert.assertFalse(pipeline.isReady());
+        Assert.assertEquals(-1, pipeline.getWarmupTime());
+        pipeline.warmUp(); //failing processors do not fail the warm-up
+        Assert.assertTrue(pipeline.isReady());
+        Assert.assertTrue(pipeline.getWarmupTime() >= 0);
+        for (ProcessingPipeline.StageStats stage : pipeline.getStageStats()) {
+            //warm-up documents are not included in the statistics
+            Assert.assertEquals(0, stage.getCount());
+            Assert.assertEquals(0, stage.getFailed());
+        }
+        Assert.assertTrue(pipeline.getStageStats().get(0).getWarmupNanos() > 0);
+        //processing stops with the failed processor
+        Assert.assertEquals(0, pipeline.getStageStats().get(2).getWarmupNanos());
+    }
+
+    @Test
+    public void testResultCache() throws ProcessingException {
+        //caches the trace of the processed documents by their configuration
+        Map<String, List<String>> traces = new HashMap<>();
+        ResultCache cache = new ResultCache() {
+            @Override
+            public String key(ProcessingData processingData, List<Processor> processors) {
+                return processingData.getConfiguration().toString();
+            }
+
+            @Override
+            public boolean restore(String key, ProcessingData processingData) {
+                List<String> trace = traces.get(key);
+                if (trace != null) {
+                    processingData.addAnnotations(TRACE, trace);
+                }
+                return trace != null;
+            }
+
+            @Override
+            public void store(String key, ProcessingData processingData) {
+                traces.put(key, processingData.getAnnotations(TRACE));
+            }
+
+            @Override
+            public long getHits() {
+                return 0;
+            }
+
+            @Override
+            public long getMisses() {
+                return 0;
+            }
+        };
+        ProcessingPipeline pipeline = new ProcessingPipeline(Arrays.asList(
+                new TraceProcessor("a", Processor.Phase.pre),
+                new TraceProcessor("b", Processor.Phase.post)));
+        pipeline.setResultCache(cache);
+        for (int i = 0; i < 3; i++) {
+            ProcessingData pd = createData(Collections.singletonMap("test.a.enabled", i != 1));
+            pipeline.process(pd);
+            Assert.assertEquals(i != 1 ? Arrays.asList("a", "b") : Collections.singletonList("b"),
+                    pd.getAnnotations(TRACE));
+        }
+        Assert.assertEquals(2, traces.size());
+        //the 3rd document was restored from the cache
+        Assert.assertEquals(1, pipeline.getStageStats().get(0).getCount());
+        Assert.assertEquals(2, pipeline.getStageStats().get(1).getCount());
+    }
+
+    @Test
+    public void testReprocess() throws ProcessingException {
+        Map<String, String> fingerprints = new HashMap<>();
+        Set<String> dropped = new HashSet<>();
+        ProvenanceTracker tracker = new ProvenanceTracker() {
+            @Override
+            public void record(ProcessingData processingData, Collection<Processor> processors) {
+                processors.forEach(p -> fingerprints.put(p.getKey(), p.getFingerprint()));
+            }
+
+            @Override
+            public Map<String, String> getFingerprints(ProcessingData processingData) {
+                return new HashMap<>(fingerprints);
+            }
+
+            @Override
+            public void drop(ProcessingData processingData, Collection<Processor> processors) {
+                processors.forEach(p -> dropped.add(p.getKey()));
+                processors.forEach(p -> fingerprints.remove(p.getKey()));
+            }
+        };
+        TraceProcessor a = new TraceProcessor("a", Processor.Phase.pre, null,
+                Collections.emptySet(), Collections.singleton("test:a"));
+        TraceProcessor b = new TraceProcessor("b", Processor.Phase.nlp, null,
+                Collections.singleton("test:a"), Collections.singleton("test:b"));
+        TraceProcessor c = new TraceProcessor("c", Processor.Phase.post, null,
+                Collections.singleton("test:x"), Collections.singleton("test:c"));
+        ProcessingPipeline pipeline = new ProcessingPipeline(Arrays.asList(a, b, c));
+        ProcessingData pd = createData(Collections.emptyMap());
+        try {
+            pipeline.reprocess(pd);
+            Assert.fail("IllegalStateException expected without a ProvenanceTracker");
+        } catch (IllegalStateException e) {
+            //expected
+        }
+        pipeline.setProvenanceTracker(tracker);
+        //no provenance recorded: processed completely
+        Assert.assertEquals(3, pipeline.reprocess(pd).size());
+        Assert.assertEquals(3, fingerprints.size());
+        Assert.assertTrue(dropped.isEmpty());
+        Assert.assertTrue(pipeline.reprocess(pd).isEmpty());
+        Assert.assertEquals(Arrays.asList("a", "b", "c"), pd.getAnnotations(TRACE));
+
+        //b depends on a, c is independent
+        a.config.put("test.a.param", "changed");
+        Assert.assertEquals(Arrays.asList(a, b), pipeline.reprocess(pd));
+        Assert.assertEquals(new HashSet<>(Arrays.asList("test.a", "test.b")), dropped);
+        Assert.assertEquals(Arrays.asList("a", "b", "c", "a", "b"), pd.getAnnotations(TRACE));
+        Assert.assertEquals(a.getFingerprint(), fingerprints.get("test.a"));
+        Assert.assertEquals(2, pipeline.getStageStats().get(0).getCount());
+        Assert.assertEquals(1, pipeline.getStageStats().get(2).getCount());
+
+        //processors writing the same annotation are re-processed together
+        dropped.clear();
+        TraceProcessor d = new TraceProcessor("d", Processor.Phase.extraction, null,
+                Collections.emptySet(), new HashSet<>(Arrays.asList("test:c", "span:Chunk")));
+        pipeline = new ProcessingPipeline(Arrays.asList(a, b, c, d));
+        pipeline.setProvenanceTracker(tracker);
+        Assert.assertEquals(Arrays.asList(d, c), pipeline.reprocess(pd));
+
+        //results of processors not declaring their writes can not be dropped
+        TraceProcessor e = new TraceProcessor("e", Processor.Phase.post);
+        pipeline = new ProcessingPipeline(Arrays.asList(a, b, c, e));
+        pipeline.setProvenanceTracker(tracker);
+        Assert.assertEquals(4, pipeline.reprocess(pd).size());
+    }
+
+    private static ProcessingData createData(Map<String, Object> config) {
+        return new ProcessingData(new StringContent("test"), new HashMap<>(config));
+    }
+
+    /**
+     * Completes processing when the test completes the pending future
+     */
+    private static class AsyncProcessor extends TraceProcessor {
+
+        private final Queue<CompletableFuture<Void>> pending = new ConcurrentLinkedQueue<>();
+
+        AsyncProcessor(String name, Phase phase) {
+            super(name, phase);
+        }
+
+        @Override
+        protected CompletionStage<Void> doProcessingAsync(ProcessingData processingData) {
+            CompletableFuture<Void> request = new CompletableFuture<>();
+            pending.add(request);
+            return request.thenRun(() -> doProcessing(processingData));
+        }
+    }
+
+    private static class TraceProcessor extends Processor {
+
+        private final String name;
+        private final CyclicBarrier barrier;
+        private final Set<String> reads;
+        private final Set<String> writes;
+        private final Map<String, Object> config = new HashMap<>();
+
+        TraceProcessor(String name, Phase phase) {
+            this(name, phase, null, null, null);
+        }
+
+        TraceProcessor(String name, Phase phase, CyclicBarrier barrier, Set<String> reads, Set<String> writes) {
+            super("test." + name, name, phase);
+            this.name = name;
+            this.barrier = barrier;
+            this.reads = reads;
+            this.writes = writes;
+        }
+
+        @Override
+        protected void init() {
+            //nothing to do
+        }
+
+        @Override
+        protected void doProcessing(ProcessingData processingData) {
+            if ("fail".equals(name)) {
+                throw new IllegalStateException("test failure");
+            }
+            if (barrier != null) {
+                try {
+                    barrier.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException | BrokenBarrierException | TimeoutException e) {
+                    throw new IllegalStateException("processors not executed concurrently", e);
+                }
+            }
+            processingData.addAnnotation(TRACE, name);
+        }
+
+        @Override
+        public Set<String> getReads() {
+            return reads;
+        }
+
+        @Override
+        public Set<String> getWrites() {
+            return writes;
+        }
+
+        @Override
+        public Map<String, Object> getDefaultConfiguration() {
+            return config;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2022 Redlink GmbH.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.redlink.nlp.api.content;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BufferedContentTest {
+
+    private static final String TEXT = "Grüß Gott! Das ist ein Test mit Umlauten (äöü) und Emoji 😀.\n";
+
+    @Test
+    public void testInMemory() throws IOException {
+        try (BufferedContent content = new BufferedContent(null, "text/plain; charset=ISO-8859-1", 1024)) {
+            Assert.assertEquals(0, content.getBinaryContent().get().length);
+            String latin1 = TEXT.substring(0, TEXT.indexOf('\uD83D')); //no Emoji in ISO-8859-1
+            try (OutputStream out = content.getOutputStream()) {
+                out.write(latin1.getBytes(StandardCharsets.ISO_8859_1));
+            }
+            Assert.assertFalse(content.isSpilled());
+            Assert.assertFalse(content.getLocalCopy().isPresent());
+            Assert.assertArrayEquals(latin1.getBytes(StandardCharsets.ISO_8859_1), content.getBinaryContent().get());
+            try (InputStream in = content.getContent()) {
+                Assert.assertEquals(latin1, IOUtils.toString(in, StandardCharsets.ISO_8859_1));
+            }
+            CharSequence plain = content.getPlainContent().get();
+            Assert.assertEquals(latin1, plain.toString());
+            //decoded only once
+            Assert.assertSame(plain, content.getPlainContent().get());
+            content.setMimeType("application/octet-stream");
+            Assert.assertFalse(content.getPlainContent().isPresent());
+        }
+    }
+
+    @Test
+    public void testSpillToDisk() throws IOException {
+        int threshold = TEXT.length() * 3;
+        Path file;
+        try (BufferedContent content = new BufferedContent("test.txt", "text/plain", threshold)) {
+            try (OutputStream out = content.getOutputStream()) {
+                for (int i = 0; i < 5; i++) {
+                    out.write(TEXT.getBytes(StandardCharsets.UTF_8));
+                }
+                //not visible before the stream is closed
+                Assert.assertFalse(content.isSpilled());
+            }
+            Assert.assertTrue(content.isSpilled());
+            Assert.assertFalse(content.getBinaryContent().isPresent());
+            file = content.getLocalCopy().get();
+            Assert.assertEquals(TEXT.getBytes(StandardCharsets.UTF_8).length * 5, Files.size(file));
+            StringBuilder expected = new StringBuilder();
+            for (int i = 0; i < 5; i++) {
+                expected.append(TEXT);
+            }
+            Assert.assertEquals(expected.toString(), content.getPlainContent().get().toString());
+            try (InputStream in = content.getContent()) {
+                Assert.assertEquals(expected.toString(), IOUtils.toString(in, StandardCharsets.UTF_8));
+            }
+            //replacing the content with a smaller one deletes the spilled file
+            try (OutputStream out = content.getOutputStream()) {
+                out.write(TEXT.getBytes(StandardCharsets.UTF_8));
+            }
+            Assert.assertFalse(content.isSpilled());
+            Assert.assertFalse(Files.exists(file));
+            Assert.assertEquals(TEXT, content.getPlainContent().get().toString());
+
+            try (OutputStream out = content.getOutputStream()) {
+                out.write(new byte[threshold + 1]);
+            }
+            file = content.getLocalCopy().get();
+            Assert.assertTrue(Files.exists(file));
+        }
+        Assert.assertFalse(Files.exists(file));
+    }
+
+    @Test
+    public void testText() throws IOException {
+        StringBuilder text = new StringBuilder(TEXT);
+        try (BufferedContent content = new BufferedContent(text, null, 1024)) {
+            Assert.assertFalse(content.isSpilled());
+            Assert.assertSame(text, content.getPlainContent().get());
+            Assert.assertArrayEquals(TEXT.getBytes(StandardCharsets.UTF_8), content.getBinaryContent().get());
+        }
+        try (BufferedContent content = new BufferedContent(text, null, 16)) {
+            Assert.assertTrue(content.isSpilled());
+            Assert.assertSame(text, content.getPlainContent().get());
+            Assert.assertEquals(TEXT, new String(Files.readAllBytes(content.getLocalCopy().get()),
+                    StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2022 Redlink GmbH.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.redlink.nlp.api.content;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FileContentTest {
+
+    private static final String TEXT = "Grüß Gott! Das ist ein Test mit Umlauten (äöü) und Emoji 😀.\n";
+
+    @Test
+    public void testMappedCharSequence() throws IOException {
+        MappedCharSequence mapped = MappedCharSequence.open(new StringReader(TEXT));
+        try {
+            Assert.assertEquals(TEXT.length(), mapped.length());
+            Assert.assertEquals(TEXT, mapped.toString());
+            for (int i = 0; i < TEXT.length(); i++) {
+                Assert.assertEquals(TEXT.charAt(i), mapped.charAt(i));
+            }
+            CharSequence sub = mapped.subSequence(5, 9);
+            Assert.assertEquals("Gott", sub.toString());
+            Assert.assertEquals("ott", sub.subSequence(1, 4).toString());
+            Assert.assertEquals('G', sub.charAt(0));
+            try {
+                sub.charAt(4);
+                Assert.fail("IndexOutOfBoundsException expected");
+            } catch (IndexOutOfBoundsException e) {
+                //expected
+            }
+            ((MappedCharSequence) sub).close(); //no effect for views
+        } finally {
+            mapped.close();
+        }
+        //mapped memory stays valid after close
+        Assert.assertEquals(TEXT, mapped.toString());
+        try (MappedCharSequence empty = MappedCharSequence.open(new StringReader(""))) {
+            Assert.assertEquals(0, empty.length());
+        }
+    }
+
+    @Test
+    public void testMappedPlainContent() throws IOException {
+        try (TmpFileContent content = new TmpFileContent("text/plain; charset=ISO-8859-1")) {
+            Assert.assertFalse(content.getPlainContent().isPresent()); //empty file
+            String latin1 = TEXT.substring(0, TEXT.indexOf('\uD83D')); //no Emoji in ISO-8859-1
+            int num = (int) (FileContent.MAPPED_PLAIN_CONTENT_THRESHOLD / latin1.length()) + 1;
+            try (OutputStream out = content.getOutputStream()) {
+                for (int i = 0; i < num; i++) {
+                    out.write(latin1.getBytes(StandardCharsets.ISO_8859_1));
+                }
+            }
+            Optional<CharSequence> plain = content.getPlainContent();
+            Assert.assertTrue(plain.isPresent());
+            Assert.assertEquals(latin1.length() * num, plain.get().length());
+            Assert.assertEquals(latin1, plain.get().subSequence(0, latin1.length()).toString());
+            Assert.assertSame(plain.get(), content.getPlainContent().get());
+            content.setMimeType("application/octet-stream");
+            Assert.assertFalse(content.getPlainContent().isPresent());
+        }
+    }
+}
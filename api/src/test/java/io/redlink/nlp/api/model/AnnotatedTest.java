@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2022 Redlink GmbH.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.redlink.nlp.api.model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AnnotatedTest {
+
+    private static final Annotation<String> TEST_ANNO = new Annotation<>("test:string", String.class);
+
+    @Test
+    public void testValueOrdering() {
+        Annotated annotated = new Annotated() {
+        };
+        annotated.addValue(TEST_ANNO, Value.value("unknown"));
+        annotated.addValue(TEST_ANNO, Value.value("low", 0.2));
+        annotated.addValue(TEST_ANNO, Value.value("high", 0.9));
+        annotated.addValue(TEST_ANNO, Value.value("low2", 0.2));
+        annotated.addValues(TEST_ANNO, Arrays.asList(Value.value("mid", 0.5), Value.value("low3", 0.2)));
+        //sorted by probability, unknown last and the order of addition kept for the same probability
+        Assert.assertEquals(Arrays.asList("high", "mid", "low", "low2", "low3", "unknown"),
+                annotated.getAnnotations(TEST_ANNO));
+        Assert.assertEquals("high", annotated.getAnnotation(TEST_ANNO.getKey()));
+
+        annotated.setAnnotation(TEST_ANNO, "single");
+        Assert.assertEquals(Collections.singletonList("single"), annotated.getAnnotations(TEST_ANNO));
+        annotated.setAnnotation(TEST_ANNO, null);
+        Assert.assertNull(annotated.getValue(TEST_ANNO));
+        Assert.assertTrue(annotated.getValues(TEST_ANNO).isEmpty());
+    }
+
+    @Test
+    public void testKeys() {
+        Annotated annotated = new Annotated() {
+        };
+        Assert.assertTrue(annotated.getKeys().isEmpty());
+        annotated.addAnnotation("test:b", "b");
+        annotated.addAnnotation(TEST_ANNO, "a");
+        annotated.addAnnotation("test:c", 1);
+        Assert.assertEquals(new HashSet<>(Arrays.asList("test:b", TEST_ANNO.getKey(), "test:c")),
+                new HashSet<>(annotated.getKeys()));
+        Assert.assertTrue(annotated.getKeys().contains("test:c"));
+        Assert.assertFalse(annotated.getKeys().contains("test:unknown"));
+        Set<String> keys = annotated.getKeys();
+        annotated.setValues("test:b", null);
+        Assert.assertEquals(3, keys.size()); //a snapshot
+        Assert.assertEquals(2, annotated.getKeys().size());
+        List<Value<?>> values = annotated.getValues("test:c");
+        Assert.assertEquals(1, values.get(0).value());
+        //removing an unknown key MUST NOT register it
+        int numKeys = AnnotationKeyRegistry.size();
+        annotated.setValue("test:never-used", null);
+        Assert.assertEquals(numKeys, AnnotationKeyRegistry.size());
+    }
+
+    @Test
+    public void testAnnotationMap() {
+        Annotated annotated = new Annotated() {
+        };
+        annotated.addValue(TEST_ANNO, Value.value("low", 0.2));
+        annotated.addValue(TEST_ANNO, Value.value("high", 0.9));
+        annotated.addAnnotation("test:c", 1);
+        Map<String, Object> map = annotated.getAnnotations();
+        Assert.assertEquals(2, map.size());
+        Assert.assertEquals(Value.value(1), map.get("test:c"));
+        Assert.assertEquals(Arrays.asList(Value.value("high", 0.9), Value.value("low", 0.2)),
+                map.get(TEST_ANNO.getKey()));
+
+        //round trip as done by persistence frameworks
+        Annotated restored = new Annotated() {
+        };
+        restored.addAnnotation("test:removed", "value");
+        restored.setAnnotations(map);
+        Assert.assertEquals(annotated.getKeys(), restored.getKeys());
+        Assert.assertEquals(Arrays.asList("high", "low"), restored.getAnnotations(TEST_ANNO));
+        Assert.assertEquals(1, restored.getAnnotation("test:c"));
+        Assert.assertEquals(map, restored.getAnnotations());
+
+        restored.setAnnotations(null);
+        Assert.assertTrue(restored.getKeys().isEmpty());
+        Assert.assertTrue(restored.getAnnotations().isEmpty());
+    }
+}
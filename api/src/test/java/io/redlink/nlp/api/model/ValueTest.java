@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2022 Redlink GmbH.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.redlink.nlp.api.model;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ValueTest {
+
+    @Before
+    @After
+    public void clearCanonicalValues() {
+        Value.clearCanonicalValues();
+    }
+
+    @Test
+    public void testBooleans() {
+        Assert.assertSame(Value.TRUE, Value.canonical(Boolean.TRUE));
+        Assert.assertSame(Value.FALSE, Value.canonical(false));
+        Assert.assertEquals(Value.UNKNOWN_PROBABILITY, Value.TRUE.probability(), 0d);
+        Assert.assertEquals(Value.value(Boolean.TRUE), Value.TRUE);
+    }
+
+    @Test
+    public void testCanonical() {
+        Value<String> noun = Value.canonical("NN");
+        Assert.assertSame(noun, Value.canonical(new String("NN")));
+        Assert.assertSame(noun, Value.canonical("NN", Value.UNKNOWN_PROBABILITY));
+        Assert.assertEquals("NN", noun.value());
+        Assert.assertEquals(Value.UNKNOWN_PROBABILITY, noun.probability(), 0d);
+        Assert.assertNotSame(noun, Value.canonical("VB"));
+    }
+
+    @Test
+    public void testCanonicalWithProbability() {
+        Value<String> noun = Value.canonical("NN");
+        //values with a probability are never cached
+        Value<String> probable = Value.canonical("NN", 0.8);
+        Assert.assertNotSame(noun, probable);
+        Assert.assertNotSame(probable, Value.canonical("NN", 0.8));
+        Assert.assertEquals(Value.value("NN", 0.8), probable);
+        Assert.assertSame(noun, Value.canonical("NN"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCanonicalNull() {
+        Value.canonical(null);
+    }
+
+    @Test
+    public void testCanonicalCap() {
+        for (int i = 0; i < 4096; i++) {
+            Assert.assertSame(Value.canonical(i), Value.canonical(i));
+        }
+        //values cached before the cap is reached are still shared
+        Assert.assertSame(Value.canonical(0), Value.canonical(0));
+        //others are never canonicalised
+        Assert.assertNotSame(Value.canonical(4096), Value.canonical(4096));
+        Assert.assertNotSame(Value.canonical("NN"), Value.canonical("NN"));
+        Assert.assertEquals(Value.canonical("NN"), Value.canonical("NN"));
+        //Booleans do not use the cache
+        Assert.assertSame(Value.TRUE, Value.canonical(Boolean.TRUE));
+    }
+}
@@ -40,6 +40,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Set;
 import java.util.TimeZone;
+import java.util.function.BooleanSupplier;
 import java.util.regex.Pattern;
 import org.apache.commons.lang3.BooleanUtils;
 import org.apache.commons.lang3.ObjectUtils;
@@ -267,6 +268,24 @@ public class DucklingTimeParser {
      * @return a List of extracted {@link DateToken}s
      */
     public List<DateToken> parse(String message, final String language, Date referenceDate, Boolean includeLatent) {
+        return parse(message, language, referenceDate, includeLatent, () -> false);
+    }
+
+    /**
+     * Parse a message for DateTokens. Messages with several mentions are
+     * re-parsed for every mention (to use the last mention as context). The
+     * parsed <code>cancelled</code> supplier is checked before every re-parse.
+     *
+     * @param message       the message to parse
+     * @param language      the language of the message
+     * @param referenceDate the context/reference date for relative times/dates (e.g. "next week")
+     * @param includeLatent if low confidence results should be considered. <code>null</code> will
+     *                      use the default set for the parser instance.
+     * @param cancelled     if parsing should stop. Tokens extracted so far are returned
+     * @return a List of extracted {@link DateToken}s
+     */
+    public List<DateToken> parse(String message, final String language, Date referenceDate, Boolean includeLatent,
+                                 BooleanSupplier cancelled) {
         init();
         LOG.debug("Analyzing ({}) {}", language, message);
         // Reference-Time
@@ -315,7 +334,7 @@ public class DucklingTimeParser {
             }
             //still more tokens ... we need to re-parse those with the last
             //extracted time as context
-            if (tokens.size() > nextIdx) {
+            if (tokens.size() > nextIdx && !cancelled.getAsBoolean()) {
                 context = value.getDate(); //use the extracted time as context
                 contextGrain = value.getGrain();
                 if (contextGrain.ordinal() >= Grain.day.ordinal()) {
@@ -333,7 +352,7 @@ public class DucklingTimeParser {
                 }
                 offset = token.getOffsetEnd();
                 tokens = extractTokens(offset, message, language, context, includeLatent);
-            } else { //no more tokens
+            } else { //no more tokens (or cancelled)
                 tokens.clear();
             }
         }
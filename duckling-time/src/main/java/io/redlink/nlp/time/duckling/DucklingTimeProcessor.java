@@ -19,10 +19,12 @@ package io.redlink.nlp.time.duckling;
 import io.redlink.nlp.api.ProcessingData;
 import io.redlink.nlp.api.ProcessingData.Configuration;
 import io.redlink.nlp.api.Processor;
+import io.redlink.nlp.api.annotation.Annotations;
 import io.redlink.nlp.api.model.Value;
 import io.redlink.nlp.model.AnalyzedText;
 import io.redlink.nlp.model.Chunk;
 import io.redlink.nlp.model.NlpAnnotations;
+import io.redlink.nlp.model.Span.SpanTypeEnum;
 import io.redlink.nlp.model.SpanCollection;
 import io.redlink.nlp.model.section.SectionTag;
 import io.redlink.nlp.model.temporal.DateTimeValue;
@@ -34,6 +36,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.DateFormatUtils;
 import org.springframework.stereotype.Component;
@@ -64,6 +67,10 @@ public class DucklingTimeProcessor extends Processor {
     @org.springframework.beans.factory.annotation.Value("${time.duckling.includelatent:false}")
     private boolean includeLatent = false;
 
+    private static final Set<String> READS = NlpUtils.accessKeys(Annotations.LANGUAGE, SpanTypeEnum.TextSection,
+            NlpAnnotations.SECTION_ANNOTATION, NlpAnnotations.TEMPORAL_CONTEXT);
+    private static final Set<String> WRITES = NlpUtils.accessKeys(SpanTypeEnum.Chunk, NlpAnnotations.TEMPORAL_ANNOTATION);
+
     private final DucklingTimeParser ducklingParser;
 
     public DucklingTimeProcessor() {
@@ -82,6 +89,26 @@ public class DucklingTimeProcessor extends Processor {
         ducklingParser.init();
     }
 
+    @Override
+    public Set<String> getReads() {
+        return READS;
+    }
+
+    @Override
+    public Set<String> getWrites() {
+        return WRITES;
+    }
+
+    /**
+     * Relative dates (e.g. "next week") are resolved against the current
+     * time if no temporal context is configured. So results can only be
+     * cached if a temporal context is present.
+     */
+    @Override
+    public boolean isCacheable(ProcessingData processingData) {
+        return processingData.getConfiguration().get(Configuration.TEMPORAL_CONTEXT) != null;
+    }
+
     @Override
     protected void doProcessing(ProcessingData processingData) {
         AnalyzedText at = NlpUtils.getOrInitAnalyzedText(processingData);
@@ -105,6 +132,7 @@ public class DucklingTimeProcessor extends Processor {
         log.trace(" - include latent: {}", includeLatent);
         if (!ducklingParser.isLanguageSupported(lang)) {
             log.trace("language '{}' of {} is not supported by {}. WIll not extract date/tume values", lang, processingData, getName());
+            unsupportedLanguage(processingData);
             return;
         }
         final Date globalTempContext;
@@ -126,7 +154,7 @@ public class DucklingTimeProcessor extends Processor {
             sections = Collections.singleton(at).iterator();
         }
         int processedUntil = -1;
-        while (sections.hasNext()) {
+        while (sections.hasNext() && !deadlineExceeded(processingData)) {
             SpanCollection section = sections.next();
             if (isContentSection(section) && section.getEnd() > processedUntil) {
                 String content;
@@ -148,7 +176,8 @@ public class DucklingTimeProcessor extends Processor {
                 }
                 List<DateToken> dateTokens = null;
                 try {
-                    dateTokens = ducklingParser.parse(content, lang, tempContext, includeLatent);
+                    dateTokens = ducklingParser.parse(content, lang, tempContext, includeLatent,
+                            () -> deadlineExceeded(processingData));
                     processedUntil = section.getEnd();
                 } catch (RuntimeException e) {
                     if (log.isWarnEnabled()) {
@@ -217,7 +217,7 @@ public class LangdetectProcessor extends Processor {
                 }
                 contentSection = isContentSection(sectionStats);
             }
-            section.addAnnotation(SECTION_CLASSIFICATION_CONTENT_SECTION, contentSection);
+            section.addValue(SECTION_CLASSIFICATION_CONTENT_SECTION, Value.canonical(contentSection));
             if (contentSection) {
                 LOG.trace("  ... content section ({})", sectionStats);
                 contentSections.add(new ImmutablePair<Float, Section>(contentRank(sectionStats), section));
@@ -16,17 +16,24 @@
 package io.redlink.nlp.model;
 
 import io.redlink.nlp.api.ProcessingData;
+import io.redlink.nlp.api.metrics.TextSize;
 import io.redlink.nlp.api.model.Annotation;
 import io.redlink.nlp.api.model.AnnotationKey;
+import io.redlink.nlp.api.model.Shareable;
 import java.io.IOException;
 import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.LinkedList;
-import java.util.NavigableMap;
-import java.util.TreeMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.data.annotation.AccessType;
 import org.springframework.data.annotation.AccessType.Type;
@@ -39,7 +46,7 @@ import org.springframework.data.annotation.Transient;
  * @author Rupert Westenthaler
  */
 @AnnotationKey(AnalyzedText.ANNOTATION_KEY)
-public class AnalyzedText extends SpanCollection implements Iterable<Span> {
+public class AnalyzedText extends SpanCollection implements Iterable<Span>, Shareable, TextSize {
 
     /**
      * Annotation key used for the {@link AnnotationKey} annotation and the
@@ -58,7 +65,13 @@ public class AnalyzedText extends SpanCollection implements Iterable<Span> {
     @Transient //the text is saved in Document#getContent()
     private CharSequence text;
     @Transient //the spans collection is used instead
-    protected NavigableMap<Span, Span> spansMap = new TreeMap<>();
+    final SpanIndex spanIndex = new SpanIndex();
+
+    @Transient
+    private volatile boolean frozen = false;
+
+    @Transient
+    volatile boolean shared = false;
 
     @AccessType(Type.PROPERTY)
     private Collection<Span> spans; //not used just to make spring data happy
@@ -138,6 +151,25 @@ public class AnalyzedText extends SpanCollection implements Iterable<Span> {
         return register(new Sentence(context, this, start, end));
     }
 
+    /**
+     * Adds several Sentences with a single merge into the index
+     *
+     * @param starts the start indexes
+     * @param ends   the end indexes
+     * @return the Sentences
+     * @throws IllegalArgumentException if the parsed arrays do not have the
+     *                                  same length
+     * @see #addSentence(int, int)
+     */
+    public Sentence[] addSentences(int[] starts, int[] ends) {
+        checkBulkOffsets(starts, ends);
+        Sentence[] sentences = new Sentence[starts.length];
+        for (int i = 0; i < sentences.length; i++) {
+            sentences[i] = new Sentence(context, this, starts[i], ends[i]);
+        }
+        return registerAll(sentences);
+    }
+
     /**
      * All sentences of the Analysed texts.<p>
      * Returned Iterators MUST NOT throw {@link ConcurrentModificationException}
@@ -171,6 +203,232 @@ public class AnalyzedText extends SpanCollection implements Iterable<Span> {
         return filter(Chunk.class);
     }
 
+    /**
+     * All Spans of the parsed types that overlap with the parsed range. A Span
+     * overlaps if <code>span.start &lt; end</code> and <code>span.end &gt; start</code>.<p>
+     * In contrast to {@link #getEnclosed(Set, int, int)} this also returns
+     * Spans that start before the parsed range. Lookups use the
+     * {@link SpanIndex} and do not scan over all spans of the text.<p>
+     * The returned list is a snapshot. Spans added afterwards are not considered.
+     *
+     * @param start the absolute start offset of the range
+     * @param end   the absolute end offset of the range
+     * @param types the {@link SpanTypeEnum types} of Spans included
+     * @return the overlapping Spans in their natural order
+     */
+    public List<Span> getOverlapping(int start, int end, Set<SpanTypeEnum> types) {
+        if (end <= start) {
+            return Collections.emptyList();
+        }
+        return spanIndex.getOverlapping(start, end, types);
+    }
+
+    /**
+     * All Spans of the parsed types that cover the parsed offset
+     * (<code>span.start &lt;= offset &lt; span.end</code>). This can be used
+     * to lookup e.g. the Sentence or the Sections of a Token.<p>
+     * The returned list is a snapshot. Spans added afterwards are not considered.
+     *
+     * @param offset the absolute offset
+     * @param types  the {@link SpanTypeEnum types} of Spans included
+     * @return the covering Spans in their natural order
+     * @see #getOverlapping(int, int, Set)
+     */
+    public List<Span> getCovering(int offset, Set<SpanTypeEnum> types) {
+        return spanIndex.getOverlapping(offset, offset + 1, types);
+    }
+
+    /**
+     * Creates a {@link StagingBuffer} for the parsed section. Workers processing
+     * different sections concurrently write to their own buffer. Buffers are
+     * merged at the end by {@link #mergeStagingBuffers(List)}
+     *
+     * @param section the section (a Span of this AnalyzedText or this
+     *                AnalyzedText itself)
+     * @return the staging buffer
+     * @throws IllegalArgumentException if the parsed section is not part of
+     *                                  this AnalyzedText
+     * @see #processConcurrently(List, BiConsumer, Executor)
+     */
+    public StagingBuffer createStagingBuffer(SpanCollection section) {
+        if (section == null || section.getContext() != this) {
+            throw new IllegalArgumentException("The parsed section MUST BE part of this AnalyzedText!");
+        }
+        return new StagingBuffer(this, section);
+    }
+
+    /**
+     * Merges the parsed staging buffers in the parsed order. Staged Spans
+     * not yet present are added. For already present Spans the annotations
+     * of the staged one are copied. This gives the same result as adding
+     * the staged Spans sequentially in the order of the parsed buffers.<p>
+     * This is the barrier for concurrent writes. It MUST only be called
+     * after all workers writing to the parsed buffers have completed.
+     *
+     * @param buffers the buffers to merge
+     * @throws IllegalArgumentException if a parsed buffer was created for an
+     *                                  other AnalyzedText
+     */
+    public void mergeStagingBuffers(List<StagingBuffer> buffers) {
+        for (StagingBuffer buffer : buffers) {
+            if (buffer.getContext() != this) {
+                throw new IllegalArgumentException("Unable to merge StagingBuffer of an other AnalyzedText!");
+            }
+        }
+        for (StagingBuffer buffer : buffers) {
+            for (SpanTypeEnum type : SpanTypeEnum.values()) {
+                List<Span> staged = buffer.getStaged(type);
+                if (!staged.isEmpty()) {
+                    registerAll(staged.toArray(new Span[0]));
+                }
+            }
+        }
+    }
+
+    /**
+     * Processes the parsed sections concurrently. Every section gets its own
+     * {@link StagingBuffer} that is parsed to the worker. After all workers
+     * have completed the buffers are merged in the order of the parsed
+     * sections. So results are the same as if the sections were processed
+     * sequentially.<p>
+     * If a worker fails no buffer is merged and the exception is re-thrown.
+     *
+     * @param sections the sections to process. Typically non overlapping
+     *                 Sections of this AnalyzedText
+     * @param worker   the worker processing a section. Called concurrently
+     *                 for different sections
+     * @param executor the executor used to run the workers. Use
+     *                 <code>Runnable::run</code> for sequential processing
+     * @param <S>      the type of the sections
+     */
+    public <S extends SpanCollection> void processConcurrently(List<S> sections,
+                                                               BiConsumer<S, StagingBuffer> worker, Executor executor) {
+        List<StagingBuffer> buffers = new ArrayList<>(sections.size());
+        CompletableFuture<?>[] tasks = new CompletableFuture<?>[sections.size()];
+        for (S section : sections) {
+            StagingBuffer buffer = createStagingBuffer(section);
+            tasks[buffers.size()] = CompletableFuture.runAsync(() -> worker.accept(section, buffer), executor);
+            buffers.add(buffer);
+        }
+        try {
+            CompletableFuture.allOf(tasks).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+        mergeStagingBuffers(buffers);
+    }
+
+    /**
+     * Freezes this AnalyzedText. This is intended to be called after all
+     * processors that add Spans or annotations have completed (e.g. before
+     * results are cached or consumed by several threads).<p>
+     * Freezing compacts the span index and the annotations of all spans into
+     * arrays of their exact size. Iterations over a frozen AnalyzedText
+     * (e.g. the Tokens of a Sentence) directly walk those arrays.<p>
+     * A frozen AnalyzedText is read-only: adding or removing Spans as well as
+     * modifying annotations of Spans throws an {@link IllegalStateException}.
+     * It can be read by several threads without any locking as long as it
+     * is shared with those threads after this method returns.<p>
+     * Calling this method on an already frozen AnalyzedText has no effect.
+     *
+     * @return this AnalyzedText
+     */
+    public AnalyzedText freeze() {
+        if (!frozen) {
+            spanIndex.freeze();
+            for (Span span : spanIndex.values()) {
+                span.compactAnnotations();
+            }
+            compactAnnotations();
+            frozen = true;
+        }
+        return this;
+    }
+
+    /**
+     * The length of the text
+     *
+     * @return the number of characters
+     */
+    @Override
+    public int getCharCount() {
+        return getEnd();
+    }
+
+    /**
+     * The number of Tokens of this AnalyzedText. Does not iterate over
+     * the tokens.
+     *
+     * @return the number of tokens
+     */
+    @Override
+    public int getTokenCount() {
+        return spanIndex.getStore(SpanTypeEnum.Token).size();
+    }
+
+    /**
+     * Switches this AnalyzedText to a thread safe mode. While shared, all
+     * accesses to the span index and to the annotations of Spans are
+     * synchronized. This allows several processors to concurrently add
+     * Spans and annotations (e.g. Chunks of different NER processors or
+     * the stems and stop word annotations of Tokens).<p>
+     * The {@link io.redlink.nlp.api.ProcessingPipeline} shares the
+     * AnalyzedText (via {@link ProcessingData#setShared(boolean)}) while
+     * processors run concurrently. Sequential processing does not pay for
+     * any synchronization.
+     *
+     * @param shared the state. MUST only be changed while no other thread
+     *               accesses this AnalyzedText
+     */
+    @Override
+    public void setShared(boolean shared) {
+        spanIndex.setShared(shared);
+        this.shared = shared;
+    }
+
+    /**
+     * If this AnalyzedText is frozen
+     *
+     * @return <code>true</code> if frozen. Otherwise <code>false</code>
+     * @see #freeze()
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * Collects statistics about the Spans and annotations of this
+     * AnalyzedText. All Spans are inspected.
+     *
+     * @return the statistics
+     * @see #stats(int)
+     */
+    public AnalyzedTextStats stats() {
+        return stats(1);
+    }
+
+    /**
+     * Collects statistics about the Spans and annotations of this
+     * AnalyzedText. Span counts are exact but only every n-th Span of a type
+     * is inspected for annotations. This makes it cheap enough to collect
+     * statistics for every processed document (e.g. with a sample rate of
+     * <code>100</code>).
+     *
+     * @param sampleRate only every n-th Span is inspected. <code>1</code> to
+     *                   inspect all Spans
+     * @return the statistics with annotation counts and memory estimates
+     * extrapolated from the inspected Spans
+     * @throws IllegalArgumentException if the parsed sample rate is &lt; 1
+     */
+    public AnalyzedTextStats stats(int sampleRate) {
+        return AnalyzedTextStats.collect(this, sampleRate);
+    }
+
     /**
      * Allows to set the text if not directly parsed to the constructor. The
      * parsed text MUST NOT be NULL and MUST have the same length as the
@@ -224,7 +482,7 @@ public class AnalyzedText extends SpanCollection implements Iterable<Span> {
      */
     @AccessType(Type.PROPERTY)
     public Collection<Span> getSpans() {
-        return Collections.unmodifiableCollection(spansMap.values());
+        return Collections.unmodifiableCollection(spanIndex.values());
     }
 
     /**
@@ -0,0 +1,319 @@
+/*
+ * Copyright (c) 2022 Redlink GmbH.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.redlink.nlp.model;
+
+import io.redlink.nlp.api.model.Annotated;
+import io.redlink.nlp.api.model.Value;
+import io.redlink.nlp.model.Span.SpanTypeEnum;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Statistics about the Spans and annotations of an {@link AnalyzedText} as
+ * returned by {@link AnalyzedText#stats()} and {@link AnalyzedText#stats(int)}.
+ * Intended to be reported as metrics to find inputs that cause a high memory
+ * usage (e.g. thousands of phrase Chunks).<p>
+ * Span counts are exact. Annotation counts and memory estimates are
+ * extrapolated from the sampled Spans if a {@link #getSampleRate() sample rate}
+ * &gt; 1 was used.<p>
+ * Memory estimates are rough approximations of the retained heap assuming a
+ * 64bit JVM with compressed object pointers. Instances shared by several
+ * Spans (e.g. canonical {@link Value}s or tags) are only counted once.
+ */
+public final class AnalyzedTextStats {
+
+    //rough estimates for the shallow sizes of objects
+    private static final int SPAN_BYTES = 32 + 24; //Span incl. its int[2]
+    private static final int ARRAY_BYTES = 16;
+    private static final int REF_BYTES = 4;
+    private static final int VALUE_BYTES = 24;
+    private static final int STRING_BYTES = 40;
+    private static final int OBJECT_BYTES = 32;
+
+    private final int sampleRate;
+    private final int textLength;
+    private final Map<SpanTypeEnum, Integer> spanCounts;
+    private final Map<String, KeyStats> keyStats;
+    private final long spanBytes;
+
+    private AnalyzedTextStats(int sampleRate, int textLength, Map<SpanTypeEnum, Integer> spanCounts,
+                              Map<String, KeyStats> keyStats, long spanBytes) {
+        this.sampleRate = sampleRate;
+        this.textLength = textLength;
+        this.spanCounts = Collections.unmodifiableMap(spanCounts);
+        this.keyStats = Collections.unmodifiableMap(keyStats);
+        this.spanBytes = spanBytes;
+    }
+
+    /**
+     * Collects the statistics for the parsed AnalyzedText
+     *
+     * @param at         the analyzed text
+     * @param sampleRate only every n-th Span of each type is inspected for annotations
+     * @return the stats
+     */
+    static AnalyzedTextStats collect(AnalyzedText at, int sampleRate) {
+        if (sampleRate < 1) {
+            throw new IllegalArgumentException("The sample rate MUST BE >= 1 (parsed: " + sampleRate + ")!");
+        }
+        Collector collector = new Collector(sampleRate);
+        collector.collect(at); //the annotations of the text itself are not sampled
+        Map<SpanTypeEnum, Integer> spanCounts = new EnumMap<>(SpanTypeEnum.class);
+        long spanBytes = 0;
+        for (SpanTypeEnum type : SpanTypeEnum.values()) {
+            if (type == SpanTypeEnum.Text) {
+                spanCounts.put(type, 1);
+                continue;
+            }
+            SpanStore store = at.spanIndex.getStore(type);
+            //the index range of all spans
+            int[] range = store.indexRange(-1, 0, Integer.MAX_VALUE,
+                    Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+            int size = range[2] - range[1];
+            spanCounts.put(type, size);
+            spanBytes += (long) size * SPAN_BYTES;
+            for (int i = range[1]; i < range[2]; i += sampleRate) {
+                collector.collect(store.getAt(i, range[0]));
+            }
+        }
+        return new AnalyzedTextStats(sampleRate, at.getEnd(), spanCounts, collector.keyStats, spanBytes);
+    }
+
+    /**
+     * The sample rate used to collect the annotation statistics
+     *
+     * @return <code>1</code> if all spans where inspected. Otherwise only
+     * every n-th span was inspected
+     */
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * The length of the text
+     *
+     * @return the number of chars
+     */
+    public int getTextLength() {
+        return textLength;
+    }
+
+    /**
+     * The number of Spans of the parsed type
+     *
+     * @param type the type
+     * @return the number of spans
+     */
+    public int getSpanCount(SpanTypeEnum type) {
+        return spanCounts.getOrDefault(type, 0);
+    }
+
+    /**
+     * The number of Spans per type
+     *
+     * @return the read-only map with the span counts
+     */
+    public Map<SpanTypeEnum, Integer> getSpanCounts() {
+        return spanCounts;
+    }
+
+    /**
+     * The keys of all annotations found in the (sampled) Spans
+     *
+     * @return the sorted keys
+     */
+    public Set<String> getKeys() {
+        return keyStats.keySet();
+    }
+
+    /**
+     * The statistics for annotations with the parsed key
+     *
+     * @param key the annotation key
+     * @return the stats or <code>null</code> if no (sampled) Span has
+     * annotations with this key
+     */
+    public KeyStats getKeyStats(String key) {
+        return keyStats.get(key);
+    }
+
+    /**
+     * The statistics for all annotation keys
+     *
+     * @return the read-only map with the stats by key
+     */
+    public Map<String, KeyStats> getAllKeyStats() {
+        return keyStats;
+    }
+
+    /**
+     * The estimated bytes retained by the Spans (excluding annotations)
+     *
+     * @return the estimated bytes
+     */
+    public long getEstimatedSpanBytes() {
+        return spanBytes;
+    }
+
+    /**
+     * The estimated bytes retained by the Spans and their annotations. The
+     * text itself is not included as it is not owned by the AnalyzedText.
+     *
+     * @return the estimated bytes
+     */
+    public long getEstimatedBytes() {
+        long bytes = spanBytes;
+        for (KeyStats stats : keyStats.values()) {
+            bytes += stats.getEstimatedBytes();
+        }
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return "AnalyzedTextStats [textLength=" + textLength + ", sampleRate=" + sampleRate
+                + ", spans=" + spanCounts + ", estimatedBytes=" + getEstimatedBytes()
+                + ", keys=" + keyStats.values() + "]";
+    }
+
+    /**
+     * Statistics for the annotations of a single key
+     */
+    public static final class KeyStats {
+
+        private final String key;
+        private long annotated;
+        private long values;
+        private long bytes;
+
+        private KeyStats(String key) {
+            this.key = key;
+        }
+
+        /**
+         * The annotation key
+         *
+         * @return the key
+         */
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * The number of Spans annotated with this key
+         *
+         * @return the (extrapolated) number of spans
+         */
+        public long getAnnotatedSpans() {
+            return annotated;
+        }
+
+        /**
+         * The number of values of this key over all Spans
+         *
+         * @return the (extrapolated) number of values
+         */
+        public long getValueCount() {
+            return values;
+        }
+
+        /**
+         * The average number of values per annotated Span
+         *
+         * @return the average number of values
+         */
+        public double getAverageValues() {
+            return annotated == 0 ? 0 : values / (double) annotated;
+        }
+
+        /**
+         * The estimated bytes retained by annotations with this key
+         *
+         * @return the (extrapolated) estimated bytes
+         */
+        public long getEstimatedBytes() {
+            return bytes;
+        }
+
+        @Override
+        public String toString() {
+            return key + " [spans=" + annotated + ", values=" + values + ", bytes=" + bytes + "]";
+        }
+    }
+
+    /**
+     * Collects the stats of the inspected Spans
+     */
+    private static final class Collector {
+
+        private final int sampleRate;
+        private final Map<String, KeyStats> keyStats = new TreeMap<>();
+        /**
+         * Used to only count shared instances once
+         */
+        private final Map<Object, Boolean> seen = new IdentityHashMap<>();
+
+        Collector(int sampleRate) {
+            this.sampleRate = sampleRate;
+        }
+
+        void collect(Annotated annotated) {
+            Set<String> keys = annotated.getKeys();
+            if (keys.isEmpty()) {
+                return;
+            }
+            //the Span is the text itself if not sampled
+            int weight = annotated instanceof AnalyzedText ? 1 : sampleRate;
+            //the int[] with the key ids and the Object[] with the values
+            long arrayBytes = 2L * (ARRAY_BYTES + keys.size() * REF_BYTES);
+            for (String key : keys) {
+                List<Value<?>> vs = annotated.getValues(key);
+                long bytes = arrayBytes / keys.size();
+                if (vs.size() > 1) {
+                    bytes += ARRAY_BYTES + vs.size() * REF_BYTES;
+                }
+                for (Value<?> value : vs) {
+                    if (seen.put(value, Boolean.TRUE) == null) {
+                        bytes += VALUE_BYTES + estimate(value.value());
+                    }
+                }
+                KeyStats stats = keyStats.computeIfAbsent(key, KeyStats::new);
+                stats.annotated += weight;
+                stats.values += (long) weight * vs.size();
+                stats.bytes += weight * bytes;
+            }
+        }
+
+        private long estimate(Object value) {
+            if (value == null || value instanceof Boolean || value instanceof Enum) {
+                return 0; //shared constants
+            } else if (seen.put(value, Boolean.TRUE) != null) {
+                return 0; //already counted
+            } else if (value instanceof CharSequence) {
+                return STRING_BYTES + 2L * ((CharSequence) value).length();
+            } else if (value instanceof Number) {
+                return 16;
+            } else {
+                return OBJECT_BYTES;
+            }
+        }
+    }
+}
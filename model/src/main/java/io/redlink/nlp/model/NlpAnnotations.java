@@ -198,6 +198,23 @@ public final class NlpAnnotations {
      */
     public final static Annotation<LinkedEntity> LINKED_ENTITY_ANNOTATION = new Annotation<>(
             "stanbol_enhancer_nlp_linkedentity", LinkedEntity.class);
+
+    /**
+     * The keys of the processors that produced a {@link Span}
+     *
+     * @see io.redlink.nlp.model.provenance.AnalyzedTextProvenanceTracker
+     */
+    public final static Annotation<String> PRODUCER_ANNOTATION = new Annotation<>(
+            "stanbol_enhancer_nlp_producer", String.class);
+
+    /**
+     * The processors that processed an {@link AnalyzedText} with their
+     * fingerprints (<code>{key}={fingerprint}</code>)
+     *
+     * @see io.redlink.nlp.model.provenance.AnalyzedTextProvenanceTracker
+     */
+    public final static Annotation<String> PROVENANCE_ANNOTATION = new Annotation<>(
+            "stanbol_enhancer_nlp_provenance", String.class);
     /*
      * Currently only used as part of MorphoFeatures
      */
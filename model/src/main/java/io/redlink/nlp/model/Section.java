@@ -60,6 +60,26 @@ public final class Section extends SpanCollection {
         return register(new Sentence(context, this, start, end));
     }
 
+    /**
+     * Adds several Sentences relative to this text section with a single
+     * merge into the index
+     *
+     * @param starts the starts relative to this section
+     * @param ends   the ends relative to this section
+     * @return the sentences
+     * @throws IllegalArgumentException if the parsed arrays do not have the
+     *                                  same length
+     * @see #addSentence(int, int)
+     */
+    public Sentence[] addSentences(int[] starts, int[] ends) {
+        checkBulkOffsets(starts, ends);
+        Sentence[] sentences = new Sentence[starts.length];
+        for (int i = 0; i < sentences.length; i++) {
+            sentences[i] = new Sentence(context, this, starts[i], ends[i]);
+        }
+        return registerAll(sentences);
+    }
+
     /**
      * The Sentences covered by this text section<p>
      * Returned Iterators MUST NOT throw {@link ConcurrentModificationException}
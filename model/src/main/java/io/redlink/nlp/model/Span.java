@@ -134,6 +134,36 @@ public abstract class Span extends Annotated implements Comparable<Span> {
     }
 
 
+    /**
+     * Spans of a {@link AnalyzedText#isFrozen() frozen} AnalyzedText can not
+     * be annotated.
+     *
+     * @throws IllegalStateException if the context of this span is frozen
+     */
+    @Override
+    protected void checkModifiable() {
+        if (context != null && context.isFrozen()) {
+            throw new IllegalStateException("Unable to modify annotations of " + type + ' '
+                    + Arrays.toString(span) + " because the AnalyzedText is frozen!");
+        }
+    }
+
+    /**
+     * Spans are shared if their context is {@link AnalyzedText#setShared(boolean) shared}
+     */
+    @Override
+    protected boolean isShared() {
+        return context != null && context.shared;
+    }
+
+    /**
+     * Overridden to make this method accessible for {@link AnalyzedText#freeze()}
+     */
+    @Override
+    protected void compactAnnotations() {
+        super.compactAnnotations();
+    }
+
     /**
      * The type of the Span
      *
@@ -200,6 +230,18 @@ public abstract class Span extends Annotated implements Comparable<Span> {
         }
     }
 
+    /**
+     * A view over the section of the text selected by this span. Other than
+     * {@link #getSpan()} this does not copy the characters. Intended for
+     * read-only checks (e.g. lookups in a set of stop words).
+     *
+     * @return the view over the selected section of the text
+     * @see SpanView
+     */
+    public SpanView getSpanView() {
+        return new SpanView(getContext().getText(), span[0], span[1]);
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
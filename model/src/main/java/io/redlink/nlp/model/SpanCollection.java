@@ -15,15 +15,18 @@
  */
 package io.redlink.nlp.model;
 
+import java.util.AbstractList;
 import java.util.Collections;
 import java.util.ConcurrentModificationException;
+import java.util.EnumSet;
 import java.util.Iterator;
-import java.util.NavigableMap;
-import java.util.NoSuchElementException;
+import java.util.List;
+import java.util.RandomAccess;
 import java.util.Set;
 import java.util.SortedSet;
 import org.apache.commons.collections4.IteratorUtils;
 import org.apache.commons.collections4.functors.InstanceofPredicate;
+import org.springframework.data.annotation.Transient;
 
 
 /**
@@ -34,6 +37,11 @@ import org.apache.commons.collections4.functors.InstanceofPredicate;
  */
 public abstract class SpanCollection extends Span {
 
+    private static final Set<SpanTypeEnum> ALL_TYPES = Collections.unmodifiableSet(EnumSet.allOf(SpanTypeEnum.class));
+
+    @Transient //lazily initialized
+    private TokenRange tokenRange;
+
     /**
      * Allows to create a {@link SpanCollection} without setting the AnalysedText context.
      * {@link #setContext(AnalyzedText)} needs to be called before using
@@ -73,8 +81,7 @@ public abstract class SpanCollection extends Span {
      * @return sorted iterator over the selected Spans.
      */
     public Iterator<Span> getEnclosed(final Set<SpanTypeEnum> types) {
-        return IteratorUtils.filteredIterator(getIterator(),
-                span -> types.contains(span.getType()));
+        return getIterator(types, null);
     }
 
     /**
@@ -104,14 +111,13 @@ public abstract class SpanCollection extends Span {
         } else if (endIdx > span[1]) {
             endIdx = span[1];
         }
-        return IteratorUtils.filteredIterator(getIterator(new SubSetHelperSpan(startIdx, endIdx)),
-                span -> types.contains(span.getType()));
+        return getIterator(types, new SubSetHelperSpan(startIdx, endIdx));
     }
 
     /**
      * Iterator that does not throw {@link ConcurrentModificationException} but
      * considers modifications to the underlying set by using the
-     * {@link NavigableMap#higherKey(Object)} method for iterating over the
+     * {@link SpanStore#higher(Span)} method for iterating over the
      * Elements!<p>
      * This allows to add new {@link Span}s to the {@link SpanCollection} while
      * iterating (e.g. add {@link Token}s and/or {@link Chunk}s while iterating
@@ -126,7 +132,7 @@ public abstract class SpanCollection extends Span {
     /**
      * Iterator that does not throw {@link ConcurrentModificationException} but
      * considers modifications to the underlying set by using the
-     * {@link NavigableMap#higherKey(Object)} method for iterating over the
+     * {@link SpanStore#higher(Span)} method for iterating over the
      * Elements!<p>
      * This allows to add new {@link Span}s to the {@link SpanCollection} while
      * iterating (e.g. add {@link Token}s and/or {@link Chunk}s while iterating
@@ -137,52 +143,26 @@ public abstract class SpanCollection extends Span {
      * @return the iterator
      */
     protected Iterator<Span> getIterator(final SubSetHelperSpan section) {
+        return getIterator(ALL_TYPES, section);
+    }
+
+    /**
+     * Iterator over the Spans of the parsed types. Only the {@link SpanStore}s
+     * of the requested types are visited.
+     *
+     * @param types   the types of the spans to iterate
+     * @param section the (sub-)section of the current section to iterate or
+     *                <code>null</code> to iterate the whole section.
+     * @return the iterator
+     * @see #getIterator(SubSetHelperSpan)
+     */
+    private Iterator<Span> getIterator(final Set<SpanTypeEnum> types, final SubSetHelperSpan section) {
         //create a virtual Span with the end of the section to iterate over
         final Span end = new SubSetHelperSpan(
                 section == null ? getEnd() : //if no section is defined use the parent
                         section.getEnd()); //use the end of the desired section
-        return new Iterator<Span>() {
-
-            boolean init = false;
-            boolean removed = true;
-            //init with the first span of the iterator
-            private Span span = section == null ?
-                    SpanCollection.this : section;
-
-            @Override
-            public boolean hasNext() {
-                return getNext() != null;
-            }
-
-            private Span getNext() {
-                Span next = context.spansMap.higherKey(span);
-                return next == null || next.compareTo(end) >= 0 ? null : next;
-            }
-
-            @Override
-            public Span next() {
-                init = true;
-                span = getNext();
-                removed = false;
-                if (span == null) {
-                    throw new NoSuchElementException();
-                }
-                return span;
-            }
-
-            @Override
-            public void remove() {
-                if (!init) {
-                    throw new IllegalStateException("remove can not be called before the first call to next");
-                }
-                if (removed) {
-                    throw new IllegalStateException("the current Span was already removed!");
-                }
-                context.spansMap.remove(span);
-                removed = true;
-            }
-
-        };
+        //init with the first span of the iterator
+        return context.spanIndex.iterator(types, section == null ? this : section, end);
     }
 
     /**
@@ -203,6 +183,68 @@ public abstract class SpanCollection extends Span {
         return register(new Token(context, this, start, end));
     }
 
+    /**
+     * Adds several Tokens <b>relative</b> to the current Span. This is
+     * considerably faster as calling {@link #addToken(int, int)} for every
+     * token as all tokens are inserted into the index with a single merge.
+     *
+     * @param starts the starts of the tokens relative to this Span
+     * @param ends   the ends of the tokens relative to this Span
+     * @return the created and added tokens. Already existing tokens are
+     * returned instead of new instances.
+     * @throws IllegalArgumentException if the parsed arrays do not have the
+     *                                  same length or any token would extend this span
+     * @see #addToken(int, int)
+     */
+    public Token[] addTokens(int[] starts, int[] ends) {
+        checkBulkOffsets(starts, ends);
+        Token[] tokens = new Token[starts.length];
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = new Token(context, this, starts[i], ends[i]);
+        }
+        return registerAll(tokens);
+    }
+
+    /**
+     * Validates the offsets parsed to bulk add methods
+     */
+    protected static void checkBulkOffsets(int[] starts, int[] ends) {
+        if (starts == null || ends == null) {
+            throw new IllegalArgumentException("The parsed start and end offsets MUST NOT be NULL!");
+        }
+        if (starts.length != ends.length) {
+            throw new IllegalArgumentException("The parsed start and end offsets MUST BE of the same length"
+                    + " (starts: " + starts.length + ", ends: " + ends.length + ")!");
+        }
+    }
+
+    /**
+     * Bulk version of {@link #register(Span)}. All parsed spans MUST BE of the
+     * same type. The parsed array is updated with the registered instances
+     * (already existing ones replace parsed ones).
+     *
+     * @param spans the newly created spans to register
+     * @return the parsed array with the registered instances
+     */
+    protected <T extends Span> T[] registerAll(T[] spans) {
+        Span[] registered = context.spanIndex.putAll(spans);
+        for (int i = 0; i < spans.length; i++) {
+            T span = spans[i];
+            @SuppressWarnings("unchecked")
+            T current = (T) registered[i];
+            if (current == span) {
+                span.context = context;
+            } else {
+                //copy already existing annotations (if any)
+                for (String key : span.getKeys()) {
+                    current.addValues(key, span.getValues(key));
+                }
+                spans[i] = current;
+            }
+        }
+        return spans;
+    }
+
     /**
      * Registers the parsed - newly created token - with the {@link #getContext()}.
      * If the parsed {@link Span} already exists (an other Span instance with the
@@ -222,14 +264,13 @@ public abstract class SpanCollection extends Span {
      * @return the parsed or an already existing instance
      */
     protected <T extends Span> T register(T span) {
-        //check if this token already exists
+        span.context = context; //set this as context for the parsed span
+        //add the span if it does not already exist (atomically if shared)
         @SuppressWarnings("unchecked")
-        T current = (T) context.spansMap.get(span);
+        T current = (T) context.spanIndex.putIfAbsent(span);
         //NOTE: type safety is ensured by the SpanTypeEnum in combination with the
         //      Compareable implementation of SpanImpl.
-        if (current == null) { //add the new one
-            context.spansMap.put(span, span);
-            span.context = context; //set this as context for the parsed span
+        if (current == null) { //the new one was added
             return span;
         } else { //else return the already contained token
             //copy already existing annotations (if any)
@@ -249,6 +290,82 @@ public abstract class SpanCollection extends Span {
         return filter(Token.class);
     }
 
+    /**
+     * Random access view over the Tokens of this SpanCollection. Other than
+     * {@link #getTokens()} this does not lookup the next Token on every step but
+     * directly accesses the sorted Token array of the {@link AnalyzedText}.
+     * The range of this collection within this array is calculated once and
+     * only updated if Tokens are added or removed.<p>
+     * The returned list is read-only and reflects additions and removals of
+     * Tokens. Modifications while using the list (e.g. indexes obtained
+     * before adding a Token) need to be handled by the caller.
+     *
+     * @return the Tokens of this collection
+     */
+    public List<Token> getTokenList() {
+        return new TokenList();
+    }
+
+    /**
+     * The {@link TokenRange} of this collection. Recalculated if the Tokens
+     * of the AnalyzedText were modified.
+     *
+     * @return the current range
+     */
+    private TokenRange getTokenRange() {
+        SpanStore store = context.spanIndex.getStore(SpanTypeEnum.Token);
+        TokenRange range = tokenRange;
+        if (range == null || range.modCount != store.getModCount()) {
+            //same bounds as used by getIterator(..): all tokens after this span
+            //and before the virtual token starting at the end of this span
+            int[] indexes = store.indexRange(getStart(), getType().ordinal(), getEnd(),
+                    getEnd(), SpanTypeEnum.Token.ordinal(), Integer.MAX_VALUE);
+            range = new TokenRange(indexes[0], indexes[1], indexes[2]);
+            tokenRange = range;
+        }
+        return range;
+    }
+
+    /**
+     * The <code>[first, last)</code> index range of the Tokens of a
+     * SpanCollection within the Token array of the AnalyzedText. Immutable so
+     * that it can be safely shared between threads reading a
+     * {@link AnalyzedText#freeze() frozen} AnalyzedText.
+     */
+    private static final class TokenRange {
+
+        final int modCount;
+        final int first;
+        final int last;
+
+        TokenRange(int modCount, int first, int last) {
+            this.modCount = modCount;
+            this.first = first;
+            this.last = Math.max(first, last);
+        }
+    }
+
+    /**
+     * Live view over the Tokens of this collection based on the {@link TokenRange}
+     */
+    private final class TokenList extends AbstractList<Token> implements RandomAccess {
+
+        @Override
+        public Token get(int index) {
+            TokenRange range = getTokenRange();
+            if (index < 0 || index >= range.last - range.first) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + (range.last - range.first));
+            }
+            return (Token) context.spanIndex.getStore(SpanTypeEnum.Token).getAt(range.first + index, range.modCount);
+        }
+
+        @Override
+        public int size() {
+            TokenRange range = getTokenRange();
+            return range.last - range.first;
+        }
+    }
+
     /**
      * Internal helper to generate correctly generic typed {@link Iterator}s for
      * filtered {@link Span} types
@@ -261,9 +378,35 @@ public abstract class SpanCollection extends Span {
      */
     @SuppressWarnings("unchecked")
     protected <T extends Span> Iterator<T> filter(final Class<T> clazz) {
-        return (Iterator<T>) IteratorUtils.filteredIterator(
-                getIterator(),
-                new InstanceofPredicate(clazz));
+        SpanTypeEnum type = getSpanType(clazz);
+        if (type != null) { //use the index for the type
+            return (Iterator<T>) getIterator(EnumSet.of(type), null);
+        } else {
+            return (Iterator<T>) IteratorUtils.filteredIterator(
+                    getIterator(),
+                    new InstanceofPredicate(clazz));
+        }
+    }
+
+    /**
+     * The {@link SpanTypeEnum} of the parsed Span implementation
+     *
+     * @param clazz the Span implementation
+     * @return the type or <code>null</code> if the parsed class is not
+     * a Span implementation with a single type
+     */
+    private static SpanTypeEnum getSpanType(Class<?> clazz) {
+        if (clazz == Token.class) {
+            return SpanTypeEnum.Token;
+        } else if (clazz == Chunk.class) {
+            return SpanTypeEnum.Chunk;
+        } else if (clazz == Sentence.class) {
+            return SpanTypeEnum.Sentence;
+        } else if (clazz == Section.class) {
+            return SpanTypeEnum.TextSection;
+        } else {
+            return null;
+        }
     }
 
     /**
@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) 2022 Redlink GmbH.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.redlink.nlp.model;
+
+import io.redlink.nlp.model.Span.SpanTypeEnum;
+import io.redlink.nlp.model.SpanStore.SpanIterator;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Holds the {@link Span}s of an {@link AnalyzedText} in one {@link SpanStore}
+ * per {@link SpanTypeEnum}. This allows typed iterations (e.g. over all
+ * {@link Token}s of a {@link Sentence}) to only visit spans of the requested
+ * type. Iterations over several types merge the iterators of the according
+ * stores so that spans are returned in their natural order.<p>
+ * Returned iterators do not throw {@link ConcurrentModificationException}s
+ * but consider additions of spans.
+ */
+final class SpanIndex {
+
+    private static final SpanTypeEnum[] TYPES = SpanTypeEnum.values();
+
+    private final SpanStore[] stores = new SpanStore[TYPES.length];
+
+    SpanIndex() {
+        for (int i = 0; i < stores.length; i++) {
+            stores[i] = new SpanStore();
+        }
+    }
+
+    /**
+     * The store for spans of the parsed type
+     *
+     * @param type the type
+     * @return the store
+     */
+    SpanStore getStore(SpanTypeEnum type) {
+        return stores[type.ordinal()];
+    }
+
+    /**
+     * Freezes all stores of this index
+     *
+     * @see SpanStore#freeze()
+     */
+    void freeze() {
+        for (SpanStore store : stores) {
+            store.freeze();
+        }
+    }
+
+    /**
+     * Switches the thread safe mode of all stores of this index
+     *
+     * @param shared the state
+     * @see SpanStore#setShared(boolean)
+     */
+    void setShared(boolean shared) {
+        for (SpanStore store : stores) {
+            store.setShared(shared);
+        }
+    }
+
+    /**
+     * Getter for the Span with the same type, start and end as the parsed one
+     *
+     * @param key the span used as key
+     * @return the contained span or <code>null</code> if none
+     */
+    Span get(Span key) {
+        return getStore(key.getType()).get(key);
+    }
+
+    /**
+     * Adds the parsed span to the index
+     *
+     * @param span the span to add
+     * @return the replaced span or <code>null</code> if none
+     */
+    Span put(Span span) {
+        return getStore(span.getType()).put(span);
+    }
+
+    /**
+     * Adds the parsed span to the index if no equivalent span is present
+     *
+     * @param span the span to add
+     * @return the already present span or <code>null</code> if the parsed
+     * span was added
+     * @see SpanStore#putIfAbsent(Span)
+     */
+    Span putIfAbsent(Span span) {
+        return getStore(span.getType()).putIfAbsent(span);
+    }
+
+    /**
+     * Adds all parsed spans. All spans MUST BE of the same type
+     *
+     * @param spans the spans to add
+     * @return the registered instance for every parsed span
+     * @see SpanStore#putAll(Span[])
+     */
+    Span[] putAll(Span[] spans) {
+        return spans.length == 0 ? spans : getStore(spans[0].getType()).putAll(spans);
+    }
+
+    /**
+     * Removes the Span with the same type, start and end as the parsed one
+     *
+     * @param key the span used as key
+     * @return the removed span or <code>null</code> if none was present
+     */
+    Span remove(Span key) {
+        return getStore(key.getType()).remove(key);
+    }
+
+    /**
+     * The number of Spans in this index
+     *
+     * @return the number of spans
+     */
+    int size() {
+        int size = 0;
+        for (SpanStore store : stores) {
+            size = size + store.size();
+        }
+        return size;
+    }
+
+    /**
+     * Iterates over the Spans of the parsed types sorting strictly after
+     * <code>from</code> and strictly before <code>to</code>.
+     *
+     * @param types the types of the spans to iterate
+     * @param from  the lower (exclusive) bound or <code>null</code> to start
+     *              with the first span
+     * @param to    the upper (exclusive) bound or <code>null</code> to iterate
+     *              to the last span
+     * @return the iterator
+     */
+    Iterator<Span> iterator(Set<SpanTypeEnum> types, Span from, Span to) {
+        if (types.isEmpty()) {
+            return Collections.emptyIterator();
+        } else if (types.size() == 1) {
+            return getStore(types.iterator().next()).iterator(from, to);
+        } else {
+            return new MergingIterator(types, from, to);
+        }
+    }
+
+    /**
+     * All spans of the parsed types that overlap with the parsed range
+     *
+     * @param start the start of the range
+     * @param end   the end of the range
+     * @param types the types of the spans
+     * @return the overlapping spans in their natural order
+     * @see SpanStore#collectOverlapping(int, int, List)
+     */
+    List<Span> getOverlapping(int start, int end, Set<SpanTypeEnum> types) {
+        List<Span> result = new ArrayList<>();
+        for (SpanTypeEnum type : types) {
+            getStore(type).collectOverlapping(start, end, result);
+        }
+        if (types.size() > 1) {
+            result.sort(null);
+        }
+        return result;
+    }
+
+    /**
+     * A read-only view over all Spans in their natural order.
+     *
+     * @return the sorted spans
+     */
+    Collection<Span> values() {
+        return new AbstractCollection<Span>() {
+
+            @Override
+            public Iterator<Span> iterator() {
+                Iterator<Span> it = SpanIndex.this.iterator(EnumSet.allOf(SpanTypeEnum.class), null, null);
+                return new Iterator<Span>() { //read-only
+
+                    @Override
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+
+                    @Override
+                    public Span next() {
+                        return it.next();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return SpanIndex.this.size();
+            }
+        };
+    }
+
+    /**
+     * Merges the {@link SpanIterator}s of several {@link SpanStore}s by
+     * always returning the lowest of the next spans.
+     */
+    private final class MergingIterator implements Iterator<Span> {
+
+        private final SpanIterator[] iterators;
+        private SpanIterator last;
+
+        MergingIterator(Set<SpanTypeEnum> types, Span from, Span to) {
+            iterators = new SpanIterator[types.size()];
+            int i = 0;
+            for (SpanTypeEnum type : types) {
+                iterators[i++] = getStore(type).iterator(from, to);
+            }
+        }
+
+        private SpanIterator getNextIterator() {
+            SpanIterator nextIt = null;
+            Span next = null;
+            for (SpanIterator it : iterators) {
+                Span span = it.peek();
+                if (span != null && (next == null || span.compareTo(next) < 0)) {
+                    next = span;
+                    nextIt = it;
+                }
+            }
+            return nextIt;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return getNextIterator() != null;
+        }
+
+        @Override
+        public Span next() {
+            SpanIterator it = getNextIterator();
+            if (it == null) {
+                throw new NoSuchElementException();
+            }
+            last = it;
+            Span next = it.next();
+            for (SpanIterator other : iterators) {
+                if (other != it) {
+                    other.advanceTo(next);
+                }
+            }
+            return next;
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException("remove can not be called before the first call to next");
+            }
+            last.remove();
+        }
+    }
+}
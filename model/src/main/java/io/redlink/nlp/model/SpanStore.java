@@ -0,0 +1,981 @@
+/*
+ * Copyright (c) 2022 Redlink GmbH.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.redlink.nlp.model;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Array backed store for the {@link Span}s of an {@link AnalyzedText}.<p>
+ * Spans are kept in the natural order as defined by {@link Span#compareTo(Span)}
+ * (<code>start</code> ASC, {@link Span.SpanTypeEnum type} ASC, <code>end</code> DESC).
+ * The sort keys are stored in primitive <code>int[]</code> columns so that
+ * lookups do not need to dereference the {@link Span} instances.<p>
+ * Spans are typically added in increasing order (e.g. Tokens of a Sentence).
+ * Those are directly appended to the sorted columns. Spans that would need to
+ * be inserted in the middle are collected in a (sorted) append buffer that
+ * is merged into the main columns as soon as it grows over
+ * {@link #getMergeThreshold()}.<p>
+ * Lookups via {@link #higher(Span)} are based on the sort keys of the parsed
+ * Span (and not on its identity) so callers can iterate over the store while
+ * adding or removing spans without getting {@link ConcurrentModificationException}s.<p>
+ * Instances are not thread safe unless {@link #setShared(boolean) shared}.
+ * After {@link #freeze()} the store is read-only and can be used by several
+ * threads without synchronization. Iterators of a frozen store
+ * directly walk the main columns instead of looking up the next span.
+ */
+final class SpanStore {
+
+    /**
+     * The minimum size of the append buffer before it is merged with the
+     * main columns
+     */
+    private static final int MIN_MERGE_THRESHOLD = 32;
+
+    /**
+     * The sorted main columns
+     */
+    private Columns main = new Columns(16);
+    /**
+     * The sorted append buffer for out of order additions
+     */
+    private Columns buffer = new Columns(MIN_MERGE_THRESHOLD);
+
+    /**
+     * Incremented on every modification
+     */
+    private int modCount = 0;
+
+    /**
+     * If this store is read-only
+     */
+    private boolean frozen = false;
+
+    /**
+     * If this store is accessed by several threads
+     */
+    private volatile boolean shared = false;
+
+    /**
+     * The number of Spans in this store
+     *
+     * @return the number of spans
+     */
+    int size() {
+        if (shared) {
+            synchronized (this) {
+                return doSize();
+            }
+        }
+        return doSize();
+    }
+
+    private int doSize() {
+        return main.size + buffer.size;
+    }
+
+    /**
+     * Counter that is incremented on structural modifications. Can be used
+     * by iterators to detect if cached lookups need to be refreshed.
+     *
+     * @return the modification count
+     */
+    int getModCount() {
+        if (shared) {
+            synchronized (this) {
+                return modCount;
+            }
+        }
+        return modCount;
+    }
+
+    /**
+     * Merges the append buffer, trims the main columns to their size and
+     * makes this store read-only. Subsequent modifications will fail with an
+     * {@link IllegalStateException}.
+     */
+    void freeze() {
+        if (!frozen) {
+            merge();
+            main.trim();
+            main.buildIndex(); //frozen stores are read without synchronization
+            buffer = new Columns(0);
+            modCount++;
+            frozen = true;
+        }
+    }
+
+    /**
+     * Switches the thread safe mode of this store on or off. While shared
+     * all accesses (including the lookups of iterators) are synchronized
+     * on the store. MUST only be called while no other thread accesses
+     * this store.
+     *
+     * @param shared the state
+     */
+    void setShared(boolean shared) {
+        this.shared = shared;
+    }
+
+    /**
+     * If this store is read-only
+     *
+     * @return the state
+     * @see #freeze()
+     */
+    boolean isFrozen() {
+        return frozen;
+    }
+
+    private void checkModifiable() {
+        if (frozen) {
+            throw new IllegalStateException("Unable to modify the Spans of a frozen AnalyzedText!");
+        }
+    }
+
+    /**
+     * Getter for the Span with the same type, start and end as the parsed one
+     *
+     * @param key the span used as key
+     * @return the contained span or <code>null</code> if none
+     */
+    Span get(Span key) {
+        if (shared) {
+            synchronized (this) {
+                return doGet(key);
+            }
+        }
+        return doGet(key);
+    }
+
+    private Span doGet(Span key) {
+        int s = key.getStart();
+        int t = key.getType().ordinal();
+        int e = key.getEnd();
+        int idx = main.indexOf(s, t, e);
+        if (idx >= 0) {
+            return main.spans[idx];
+        }
+        idx = buffer.indexOf(s, t, e);
+        return idx >= 0 ? buffer.spans[idx] : null;
+    }
+
+    /**
+     * Adds the parsed span to the store. If an equivalent span is already
+     * present it is replaced.
+     *
+     * @param span the span to add
+     * @return the replaced span or <code>null</code> if none
+     */
+    Span put(Span span) {
+        if (shared) {
+            synchronized (this) {
+                return doPut(span);
+            }
+        }
+        return doPut(span);
+    }
+
+    private Span doPut(Span span) {
+        checkModifiable();
+        int s = span.getStart();
+        int t = span.getType().ordinal();
+        int e = span.getEnd();
+        if (buffer.size == 0 && main.isAfterLast(s, t, e)) {
+            main.insert(main.size, span, s, t, e); //fast path: append
+            modCount++;
+            return null;
+        }
+        int idx = main.indexOf(s, t, e);
+        if (idx >= 0) {
+            Span old = main.spans[idx];
+            main.spans[idx] = span;
+            modCount++;
+            return old;
+        }
+        idx = buffer.indexOf(s, t, e);
+        if (idx >= 0) {
+            Span old = buffer.spans[idx];
+            buffer.spans[idx] = span;
+            modCount++;
+            return old;
+        }
+        buffer.insert(-(idx + 1), span, s, t, e);
+        modCount++;
+        if (buffer.size >= getMergeThreshold()) {
+            merge();
+        }
+        return null;
+    }
+
+    /**
+     * Adds the parsed span to the store if no equivalent span is present.
+     * In shared mode the lookup and the addition are done atomically.
+     *
+     * @param span the span to add
+     * @return the already present span or <code>null</code> if the parsed
+     * span was added
+     */
+    Span putIfAbsent(Span span) {
+        if (shared) {
+            synchronized (this) {
+                return doPutIfAbsent(span);
+            }
+        }
+        return doPutIfAbsent(span);
+    }
+
+    private Span doPutIfAbsent(Span span) {
+        Span present = doGet(span);
+        if (present == null) {
+            doPut(span);
+        }
+        return present;
+    }
+
+    /**
+     * Adds all parsed spans with a single merge into the main columns. Other
+     * than {@link #put(Span)} already present spans are NOT replaced. Instead
+     * the present instance is returned at the according position of the
+     * result. Spans contained several times in the parsed array are only
+     * added once.<p>
+     * Typically the parsed spans are already sorted and located after the
+     * last span of this store (e.g. the Tokens of a Sentence). In this case
+     * the costs are <code>O(n)</code> for <code>n</code> parsed spans.
+     *
+     * @param spans the spans to add
+     * @return the registered instance for every element of the parsed array.
+     * Either the parsed span or an already present one.
+     */
+    Span[] putAll(Span[] spans) {
+        if (shared) {
+            synchronized (this) {
+                return doPutAll(spans);
+            }
+        }
+        return doPutAll(spans);
+    }
+
+    private Span[] doPutAll(Span[] spans) {
+        checkModifiable();
+        Span[] result = new Span[spans.length];
+        if (spans.length == 0) {
+            return result;
+        }
+        merge(); //we merge directly into the main columns
+        int[] order = sortOrder(spans);
+        Span first = spans[order[0]];
+        int m = main.indexOf(first.getStart(), first.getType().ordinal(), first.getEnd());
+        if (m < 0) { //not present: start at the insertion point
+            m = -(m + 1);
+        }
+        Columns added = new Columns(spans.length);
+        Span prev = null;
+        for (int idx : order) {
+            Span span = spans[idx];
+            int s = span.getStart();
+            int t = span.getType().ordinal();
+            int e = span.getEnd();
+            if (prev != null && compare(prev.getStart(), prev.getType().ordinal(), prev.getEnd(), s, t, e) == 0) {
+                result[idx] = prev; //contained several times in the parsed array
+                continue;
+            }
+            int c = -1;
+            while (m < main.size && (c = compare(main.starts[m], main.types[m], main.ends[m], s, t, e)) < 0) {
+                m++;
+            }
+            if (m < main.size && c == 0) { //already present
+                prev = main.spans[m];
+            } else {
+                prev = span;
+                added.insert(added.size, span, s, t, e);
+            }
+            result[idx] = prev;
+        }
+        if (added.size > 0) {
+            main.mergeFromBack(added);
+            modCount++;
+        }
+        return result;
+    }
+
+    /**
+     * The indexes of the parsed spans in their natural order
+     */
+    private static int[] sortOrder(Span[] spans) {
+        int[] order = new int[spans.length];
+        boolean sorted = true;
+        for (int i = 0; i < spans.length; i++) {
+            order[i] = i;
+            sorted = sorted && (i == 0 || spans[i - 1].compareTo(spans[i]) <= 0);
+        }
+        if (!sorted) {
+            Integer[] boxed = new Integer[spans.length];
+            for (int i = 0; i < boxed.length; i++) {
+                boxed[i] = i;
+            }
+            Arrays.sort(boxed, (i1, i2) -> spans[i1].compareTo(spans[i2]));
+            for (int i = 0; i < boxed.length; i++) {
+                order[i] = boxed[i];
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Removes the Span with the same type, start and end as the parsed one
+     *
+     * @param key the span used as key
+     * @return the removed span or <code>null</code> if none was present
+     */
+    Span remove(Span key) {
+        if (shared) {
+            synchronized (this) {
+                return doRemove(key);
+            }
+        }
+        return doRemove(key);
+    }
+
+    private Span doRemove(Span key) {
+        checkModifiable();
+        int s = key.getStart();
+        int t = key.getType().ordinal();
+        int e = key.getEnd();
+        int idx = main.indexOf(s, t, e);
+        Columns columns = main;
+        if (idx < 0) {
+            idx = buffer.indexOf(s, t, e);
+            columns = buffer;
+        }
+        if (idx < 0) {
+            return null;
+        }
+        Span removed = columns.spans[idx];
+        columns.remove(idx);
+        modCount++;
+        return removed;
+    }
+
+    /**
+     * The lowest Span that sorts strictly after the parsed one. The parsed span
+     * does not need to be part of this store (e.g. if it was removed or if it
+     * is a virtual span used to define a range)
+     *
+     * @param key the span used as key
+     * @return the next span or <code>null</code> if none
+     */
+    Span higher(Span key) {
+        if (shared) {
+            synchronized (this) {
+                return doHigher(key);
+            }
+        }
+        return doHigher(key);
+    }
+
+    private Span doHigher(Span key) {
+        int s = key.getStart();
+        int t = key.getType().ordinal();
+        int e = key.getEnd();
+        int mIdx = main.higherIndex(s, t, e);
+        if (buffer.size == 0) {
+            return mIdx < main.size ? main.spans[mIdx] : null;
+        }
+        int bIdx = buffer.higherIndex(s, t, e);
+        if (mIdx >= main.size) {
+            return bIdx < buffer.size ? buffer.spans[bIdx] : null;
+        } else if (bIdx >= buffer.size) {
+            return main.spans[mIdx];
+        } else {
+            return compare(main.starts[mIdx], main.types[mIdx], main.ends[mIdx],
+                    buffer.starts[bIdx], buffer.types[bIdx], buffer.ends[bIdx]) < 0 ?
+                    main.spans[mIdx] : buffer.spans[bIdx];
+        }
+    }
+
+    /**
+     * Merges pending out of order additions so that all spans are in the
+     * dense main columns. Does not change the content of the store. So this
+     * does not affect the {@link #getModCount()}.
+     */
+    void compact() {
+        if (shared) {
+            synchronized (this) {
+                doCompact();
+            }
+        } else {
+            doCompact();
+        }
+    }
+
+    private void doCompact() {
+        if (buffer.size > 0) {
+            merge();
+        }
+    }
+
+    /**
+     * Compacts this store and looks up the <code>[first, last)</code> index
+     * range of the spans sorting strictly after the <code>from</code> and
+     * strictly before the <code>to</code> sort keys. In shared mode this is
+     * done atomically. Indexes are only valid until the next modification of
+     * this store.
+     *
+     * @param fromS the start of the lower bound
+     * @param fromT the type ordinal of the lower bound
+     * @param fromE the end of the lower bound
+     * @param toS   the start of the upper bound
+     * @param toT   the type ordinal of the upper bound
+     * @param toE   the end of the upper bound
+     * @return <code>{modCount, first, last}</code> where <code>modCount</code>
+     * is the {@link #getModCount()} the indexes are valid for
+     */
+    int[] indexRange(int fromS, int fromT, int fromE, int toS, int toT, int toE) {
+        if (shared) {
+            synchronized (this) {
+                return doIndexRange(fromS, fromT, fromE, toS, toT, toE);
+            }
+        }
+        return doIndexRange(fromS, fromT, fromE, toS, toT, toE);
+    }
+
+    private int[] doIndexRange(int fromS, int fromT, int fromE, int toS, int toT, int toE) {
+        doCompact();
+        return new int[]{modCount, main.higherIndex(fromS, fromT, fromE), main.higherIndex(toS, toT, toE)};
+    }
+
+    /**
+     * The span at the parsed index as returned by
+     * {@link #indexRange(int, int, int, int, int, int)}.
+     *
+     * @param idx      the index
+     * @param modCount the modification count the index is valid for
+     * @return the span
+     * @throws ConcurrentModificationException if this store was modified
+     *                                         since the index was looked up
+     */
+    Span getAt(int idx, int modCount) {
+        if (shared) {
+            synchronized (this) {
+                return doGetAt(idx, modCount);
+            }
+        }
+        return doGetAt(idx, modCount);
+    }
+
+    private Span doGetAt(int idx, int modCount) {
+        if (modCount != this.modCount) {
+            throw new ConcurrentModificationException();
+        }
+        return main.spans[idx];
+    }
+
+    /**
+     * Iterates over the Spans sorting strictly after <code>from</code> and
+     * strictly before <code>to</code>.
+     *
+     * @param from the lower (exclusive) bound or <code>null</code> to start
+     *             with the first span
+     * @param to   the upper (exclusive) bound or <code>null</code> to iterate
+     *             to the last span
+     * @return the iterator
+     * @see SpanIterator
+     */
+    SpanIterator iterator(final Span from, final Span to) {
+        return new SpanIterator(from, to);
+    }
+
+    /**
+     * Collects all spans that overlap with the parsed range (<code>span.start &lt; end</code>
+     * and <code>span.end &gt; start</code>) in their natural order. The main
+     * columns are searched by using an interval index (the maximum end of the
+     * spans in every subtree of a segment tree over the sorted spans). So the
+     * costs are <code>O((k + 1) log n)</code> for <code>k</code> overlapping
+     * spans regardless of the length of the spans. Spans in the append buffer
+     * (at most {@link #getMergeThreshold()}) are scanned.<p>
+     * The index is updated when spans are appended. Other modifications
+     * invalidate it and it is rebuilt (<code>O(n)</code>) by the next lookup.
+     *
+     * @param start  the start of the range
+     * @param end    the end of the range
+     * @param result the list to add the overlapping spans to
+     */
+    void collectOverlapping(int start, int end, List<Span> result) {
+        if (shared) {
+            synchronized (this) {
+                doCollectOverlapping(start, end, result);
+            }
+        } else {
+            doCollectOverlapping(start, end, result);
+        }
+    }
+
+    private void doCollectOverlapping(int start, int end, List<Span> result) {
+        if (buffer.size == 0) {
+            main.collectOverlapping(start, end, result);
+        } else {
+            int offset = result.size();
+            main.collectOverlapping(start, end, result);
+            int split = result.size();
+            buffer.scanOverlapping(start, end, result);
+            if (split > offset && split < result.size()) {
+                result.subList(offset, result.size()).sort(null); //merge both sorted ranges
+            }
+        }
+    }
+
+    /**
+     * The first span of this store
+     *
+     * @return the first span or <code>null</code> if empty
+     */
+    Span first() {
+        if (shared) {
+            synchronized (this) {
+                return doFirst();
+            }
+        }
+        return doFirst();
+    }
+
+    private Span doFirst() {
+        if (buffer.size == 0) {
+            return main.size > 0 ? main.spans[0] : null;
+        } else if (main.size == 0) {
+            return buffer.spans[0];
+        } else {
+            return compare(main.starts[0], main.types[0], main.ends[0],
+                    buffer.starts[0], buffer.types[0], buffer.ends[0]) < 0 ?
+                    main.spans[0] : buffer.spans[0];
+        }
+    }
+
+    /**
+     * The size of the append buffer that triggers a merge with the main
+     * columns. Grows with the square root of the number of spans so that
+     * the (amortized) costs of insertions into the buffer and merges
+     * stay balanced.
+     *
+     * @return the merge threshold
+     */
+    private int getMergeThreshold() {
+        return Math.max(MIN_MERGE_THRESHOLD, (int) Math.sqrt(main.size));
+    }
+
+    /**
+     * Merges the append buffer with the main columns
+     */
+    private void merge() {
+        if (buffer.size == 0) {
+            return;
+        }
+        Columns merged = new Columns(main.size + buffer.size + (main.size >> 2));
+        int m = 0;
+        int b = 0;
+        while (m < main.size || b < buffer.size) {
+            if (b >= buffer.size || (m < main.size &&
+                    compare(main.starts[m], main.types[m], main.ends[m],
+                            buffer.starts[b], buffer.types[b], buffer.ends[b]) < 0)) {
+                merged.add(main, m++);
+            } else {
+                merged.add(buffer, b++);
+            }
+        }
+        main = merged;
+        buffer = new Columns(MIN_MERGE_THRESHOLD);
+    }
+
+    /**
+     * Compares two spans represented by their sort keys. Consistent with
+     * {@link Span#compareTo(Span)}
+     */
+    static int compare(int s1, int t1, int e1, int s2, int t2, int e2) {
+        if (s1 != s2) {
+            return s1 < s2 ? -1 : 1;
+        } else if (t1 != t2) {
+            return t1 < t2 ? -1 : 1;
+        } else { //sort end in DESC order
+            return e1 == e2 ? 0 : (e1 < e2 ? 1 : -1);
+        }
+    }
+
+    /**
+     * Iterator that does not throw {@link ConcurrentModificationException} but
+     * considers modifications of the store by looking up the next span based
+     * on the sort keys of the current one. The next span is cached until
+     * the store is modified. {@link Iterator#remove()} is supported.
+     */
+    final class SpanIterator implements Iterator<Span> {
+
+        private final Span from;
+        private final Span to;
+        private Span current;
+        private boolean removed = true;
+        private Span next;
+        private int nextModCount = -1;
+        /**
+         * The index of {@link #next} within the main columns. Only used
+         * for frozen stores. <code>-1</code> if not known.
+         */
+        private int nextIdx = -1;
+
+        private SpanIterator(Span from, Span to) {
+            this.from = from;
+            this.to = to;
+            this.current = from;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return peek() != null;
+        }
+
+        /**
+         * The span returned by the next call to {@link #next()}
+         *
+         * @return the next span or <code>null</code> if none
+         */
+        Span peek() {
+            if (shared) {
+                synchronized (SpanStore.this) {
+                    return doPeek();
+                }
+            }
+            return doPeek();
+        }
+
+        private Span doPeek() {
+            if (nextModCount != modCount) { //(re)calculate the next span
+                if (frozen) { //no modifications possible: walk the main columns
+                    if (nextIdx < 0) {
+                        nextIdx = current == null ? 0 : main.higherIndex(
+                                current.getStart(), current.getType().ordinal(), current.getEnd());
+                    }
+                    next = nextIdx < main.size ? main.spans[nextIdx] : null;
+                } else {
+                    next = current == null ? first() : higher(current);
+                }
+                if (next != null && to != null && next.compareTo(to) >= 0) {
+                    next = null;
+                }
+                nextModCount = modCount;
+            }
+            return next;
+        }
+
+        @Override
+        public Span next() {
+            Span span = peek();
+            if (span == null) {
+                throw new NoSuchElementException();
+            }
+            current = span;
+            removed = false;
+            nextModCount = -1; //next needs to be calculated for the new current
+            if (nextIdx >= 0) {
+                nextIdx++;
+            }
+            return span;
+        }
+
+        /**
+         * Moves the position of this iterator to the parsed span without
+         * returning it. Used when merging the iterators of several stores
+         * to keep all of them at the same position.
+         *
+         * @param position the span returned by an other iterator. MUST sort
+         *                 lower as {@link #peek()}
+         */
+        void advanceTo(Span position) {
+            //NOTE: a cached next span stays valid as it sorts after position
+            current = position;
+            removed = true;
+            if (nextModCount != modCount) {
+                nextIdx = -1; //lookup based on the new position
+            }
+        }
+
+        @Override
+        public void remove() {
+            if (current == from) {
+                throw new IllegalStateException("remove can not be called before the first call to next");
+            }
+            if (removed) {
+                throw new IllegalStateException("the current Span was already removed!");
+            }
+            SpanStore.this.remove(current);
+            removed = true;
+        }
+    }
+
+    /**
+     * Sorted columns of span keys with the parallel array of spans
+     */
+    private static final class Columns {
+
+        int[] starts;
+        int[] types;
+        int[] ends;
+        Span[] spans;
+        int size;
+        /**
+         * The interval index: a segment tree holding the maximum end of the
+         * spans of every subtree. Leafs start at {@link #leafs}.
+         * <code>null</code> if not built or invalidated by a modification
+         */
+        private int[] maxEnds;
+        private int leafs;
+
+        Columns(int capacity) {
+            starts = new int[capacity];
+            types = new int[capacity];
+            ends = new int[capacity];
+            spans = new Span[capacity];
+        }
+
+        /**
+         * Binary search for the parsed key
+         *
+         * @return the index or <code>-(insertionPoint + 1)</code> if not present
+         */
+        int indexOf(int s, int t, int e) {
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int c = compare(starts[mid], types[mid], ends[mid], s, t, e);
+                if (c < 0) {
+                    low = mid + 1;
+                } else if (c > 0) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+
+        /**
+         * The index of the first key strictly greater as the parsed one
+         *
+         * @return the index or {@link #size} if there is none
+         */
+        int higherIndex(int s, int t, int e) {
+            int idx = indexOf(s, t, e);
+            return idx >= 0 ? idx + 1 : -(idx + 1);
+        }
+
+        /**
+         * The index of the first span with a start greater as the parsed position
+         *
+         * @return the index or {@link #size} if there is none
+         */
+        int firstStartAfter(int pos) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (starts[mid] <= pos) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Collects overlapping spans by using the interval index. Builds the
+         * index if not present
+         */
+        void collectOverlapping(int start, int end, List<Span> result) {
+            int last = firstStartAfter(end - 1); //only spans starting before the end
+            if (last == 0) {
+                return;
+            }
+            if (maxEnds == null) {
+                buildIndex();
+            }
+            collectOverlapping(1, 0, leafs, last, start, result);
+        }
+
+        private void collectOverlapping(int node, int low, int high, int last, int start, List<Span> result) {
+            if (low >= last || maxEnds[node] <= start) {
+                return; //no span of the subtree overlaps
+            }
+            if (node >= leafs) {
+                result.add(spans[low]);
+            } else {
+                int mid = (low + high) >>> 1;
+                collectOverlapping(node << 1, low, mid, last, start, result);
+                collectOverlapping((node << 1) + 1, mid, high, last, start, result);
+            }
+        }
+
+        /**
+         * Collects overlapping spans by scanning all spans starting before
+         * the end. Used for the (small) append buffer
+         */
+        void scanOverlapping(int start, int end, List<Span> result) {
+            for (int i = 0; i < size && starts[i] < end; i++) {
+                if (ends[i] > start) {
+                    result.add(spans[i]);
+                }
+            }
+        }
+
+        /**
+         * Builds the interval index for the current capacity
+         */
+        void buildIndex() {
+            leafs = Integer.highestOneBit(Math.max(1, spans.length - 1)) << 1;
+            int[] index = new int[leafs << 1];
+            Arrays.fill(index, Integer.MIN_VALUE);
+            System.arraycopy(ends, 0, index, leafs, size);
+            for (int node = leafs - 1; node > 0; node--) {
+                index[node] = Math.max(index[node << 1], index[(node << 1) + 1]);
+            }
+            maxEnds = index;
+        }
+
+        /**
+         * Updates the interval index for a span appended at the parsed index
+         */
+        private void indexAppended(int idx) {
+            int node = leafs + idx;
+            maxEnds[node] = ends[idx];
+            for (node >>>= 1; node > 0 && maxEnds[node] < ends[idx]; node >>>= 1) {
+                maxEnds[node] = ends[idx];
+            }
+        }
+
+        boolean isAfterLast(int s, int t, int e) {
+            return size == 0 || compare(starts[size - 1], types[size - 1], ends[size - 1], s, t, e) < 0;
+        }
+
+        void insert(int idx, Span span, int s, int t, int e) {
+            if (size == spans.length) {
+                grow();
+            }
+            if (idx < size) {
+                int len = size - idx;
+                System.arraycopy(starts, idx, starts, idx + 1, len);
+                System.arraycopy(types, idx, types, idx + 1, len);
+                System.arraycopy(ends, idx, ends, idx + 1, len);
+                System.arraycopy(spans, idx, spans, idx + 1, len);
+            }
+            starts[idx] = s;
+            types[idx] = t;
+            ends[idx] = e;
+            spans[idx] = span;
+            size++;
+            if (maxEnds != null) {
+                if (idx == size - 1) {
+                    indexAppended(idx);
+                } else {
+                    maxEnds = null;
+                }
+            }
+        }
+
+        /**
+         * Appends the element at the parsed index of the other columns. Used
+         * for merging. Assumes sufficient capacity.
+         */
+        void add(Columns other, int idx) {
+            starts[size] = other.starts[idx];
+            types[size] = other.types[idx];
+            ends[size] = other.ends[idx];
+            spans[size] = other.spans[idx];
+            size++;
+        }
+
+        /**
+         * Merges the parsed sorted columns into this one. Fills the arrays
+         * from the back so that no temporary copy is needed and appending
+         * (the typical case) does not shift any element. Assumes that the
+         * parsed columns do not contain keys already present.
+         */
+        void mergeFromBack(Columns other) {
+            maxEnds = null;
+            int total = size + other.size;
+            if (total > spans.length) {
+                int capacity = Math.max(total, spans.length + (spans.length >> 1));
+                starts = Arrays.copyOf(starts, capacity);
+                types = Arrays.copyOf(types, capacity);
+                ends = Arrays.copyOf(ends, capacity);
+                spans = Arrays.copyOf(spans, capacity);
+            }
+            int i = size - 1;
+            int j = other.size - 1;
+            int k = total - 1;
+            while (j >= 0) {
+                if (i >= 0 && compare(starts[i], types[i], ends[i],
+                        other.starts[j], other.types[j], other.ends[j]) > 0) {
+                    starts[k] = starts[i];
+                    types[k] = types[i];
+                    ends[k] = ends[i];
+                    spans[k--] = spans[i--];
+                } else {
+                    starts[k] = other.starts[j];
+                    types[k] = other.types[j];
+                    ends[k] = other.ends[j];
+                    spans[k--] = other.spans[j--];
+                }
+            }
+            size = total;
+        }
+
+        /**
+         * Trims the arrays to the size
+         */
+        void trim() {
+            if (size < spans.length) {
+                maxEnds = null;
+                starts = Arrays.copyOf(starts, size);
+                types = Arrays.copyOf(types, size);
+                ends = Arrays.copyOf(ends, size);
+                spans = Arrays.copyOf(spans, size);
+            }
+        }
+
+        void remove(int idx) {
+            maxEnds = null;
+            int len = size - idx - 1;
+            if (len > 0) {
+                System.arraycopy(starts, idx + 1, starts, idx, len);
+                System.arraycopy(types, idx + 1, types, idx, len);
+                System.arraycopy(ends, idx + 1, ends, idx, len);
+                System.arraycopy(spans, idx + 1, spans, idx, len);
+            }
+            size--;
+            spans[size] = null; //allow GC
+        }
+
+        private void grow() {
+            maxEnds = null;
+            int capacity = Math.max(16, spans.length + (spans.length >> 1));
+            starts = Arrays.copyOf(starts, capacity);
+            types = Arrays.copyOf(types, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            spans = Arrays.copyOf(spans, capacity);
+        }
+    }
+}
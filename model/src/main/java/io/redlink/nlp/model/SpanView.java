@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2022 Redlink GmbH.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.redlink.nlp.model;
+
+import java.util.Comparator;
+
+/**
+ * A read-only {@link CharSequence} over a section of the text of an
+ * {@link AnalyzedText}. Other than {@link Span#getSpan()} this does not copy
+ * the characters.<p>
+ * {@link #hashCode()} is compatible with {@link String#hashCode()}.
+ * {@link #equals(Object)} only considers other views (as
+ * {@link String#equals(Object)} only considers Strings). Use
+ * {@link #contentEquals(CharSequence)} to compare with Strings or other
+ * {@link CharSequence}s.
+ *
+ * @see Span#getSpanView()
+ */
+public final class SpanView implements CharSequence {
+
+    /**
+     * Case insensitive order for {@link CharSequence}s. Can be used with
+     * sorted collections of Strings to allow lookups of views (e.g. a
+     * <code>TreeSet&lt;String&gt;</code> created with this comparator).
+     * Consistent with {@link String#CASE_INSENSITIVE_ORDER}.
+     */
+    public static final Comparator<CharSequence> CASE_INSENSITIVE_ORDER = SpanView::compareIgnoreCase;
+
+    private final CharSequence text;
+    private final int start;
+    private final int end;
+    private int hash; //lazily calculated (0 if not yet calculated)
+
+    SpanView(CharSequence text, int start, int end) {
+        this.text = text;
+        this.start = start;
+        this.end = end;
+    }
+
+    @Override
+    public int length() {
+        return end - start;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= end - start) {
+            throw new IndexOutOfBoundsException("index: " + index + ", length: " + (end - start));
+        }
+        return text.charAt(start + index);
+    }
+
+    @Override
+    public SpanView subSequence(int start, int end) {
+        if (start < 0 || end > length() || start > end) {
+            throw new IndexOutOfBoundsException("start: " + start + ", end: " + end + ", length: " + length());
+        }
+        return new SpanView(text, this.start + start, this.start + end);
+    }
+
+    /**
+     * If the content of this view is equal to the parsed {@link CharSequence}
+     *
+     * @param cs the char sequence to compare with
+     * @return the state
+     */
+    public boolean contentEquals(CharSequence cs) {
+        return cs != null && cs.length() == length() && regionMatches(false, 0, cs, 0, length());
+    }
+
+    /**
+     * If the content of this view is equal to the parsed {@link CharSequence}
+     * ignoring case (as defined by {@link String#equalsIgnoreCase(String)})
+     *
+     * @param cs the char sequence to compare with
+     * @return the state
+     */
+    public boolean equalsIgnoreCase(CharSequence cs) {
+        return cs != null && cs.length() == length() && regionMatches(true, 0, cs, 0, length());
+    }
+
+    /**
+     * If this view starts with the parsed prefix
+     *
+     * @param prefix     the prefix
+     * @param ignoreCase if the case should be ignored
+     * @return the state
+     */
+    public boolean startsWith(CharSequence prefix, boolean ignoreCase) {
+        return regionMatches(ignoreCase, 0, prefix, 0, prefix.length());
+    }
+
+    /**
+     * Tests if a region of this view matches a region of the parsed
+     * {@link CharSequence}. Same semantics as
+     * {@link String#regionMatches(boolean, int, String, int, int)}
+     *
+     * @param ignoreCase  if the case should be ignored
+     * @param offset      the offset within this view
+     * @param other       the other char sequence
+     * @param otherOffset the offset within the other char sequence
+     * @param len         the number of chars to compare
+     * @return <code>true</code> if the regions match
+     */
+    public boolean regionMatches(boolean ignoreCase, int offset, CharSequence other, int otherOffset, int len) {
+        if (offset < 0 || otherOffset < 0 || offset > (long) length() - len || otherOffset > (long) other.length() - len) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            char c1 = text.charAt(start + offset + i);
+            char c2 = other.charAt(otherOffset + i);
+            if (c1 != c2 && (!ignoreCase || !equalsIgnoreCase(c1, c2))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean equalsIgnoreCase(char c1, char c2) {
+        //same as String#regionMatches(boolean, int, String, int, int)
+        char u1 = Character.toUpperCase(c1);
+        char u2 = Character.toUpperCase(c2);
+        return u1 == u2 || Character.toLowerCase(u1) == Character.toLowerCase(u2);
+    }
+
+    private static int compareIgnoreCase(CharSequence cs1, CharSequence cs2) {
+        int len1 = cs1.length();
+        int len2 = cs2.length();
+        int min = Math.min(len1, len2);
+        for (int i = 0; i < min; i++) {
+            char c1 = cs1.charAt(i);
+            char c2 = cs2.charAt(i);
+            if (c1 != c2) {
+                c1 = Character.toLowerCase(Character.toUpperCase(c1));
+                c2 = Character.toLowerCase(Character.toUpperCase(c2));
+                if (c1 != c2) {
+                    return c1 - c2;
+                }
+            }
+        }
+        return len1 - len2;
+    }
+
+    /**
+     * Same value as {@link String#hashCode()} of {@link #toString()}
+     */
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            for (int i = start; i < end; i++) {
+                h = 31 * h + text.charAt(i);
+            }
+            hash = h;
+        }
+        return h;
+    }
+
+    /**
+     * <code>true</code> if the parsed object is a {@link SpanView} with the
+     * same content. Use {@link #contentEquals(CharSequence)} to compare with
+     * other {@link CharSequence}s.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        return obj == this || (obj != null && obj.getClass() == getClass() && contentEquals((SpanView) obj));
+    }
+
+    /**
+     * Creates a String with the content of this view. Use {@link Span#getSpan()}
+     * if the String is used several times.
+     */
+    @Override
+    public String toString() {
+        return text.subSequence(start, end).toString();
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2022 Redlink GmbH.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.redlink.nlp.model;
+
+import io.redlink.nlp.model.Span.SpanTypeEnum;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+
+/**
+ * Buffer for the Spans created by a worker that processes a single section of
+ * an {@link AnalyzedText} concurrently with other sections.<p>
+ * Spans added to a buffer are fully functional (e.g. they can be annotated and
+ * {@link Span#getSpan()} returns their text) but they are not added to the
+ * {@link AnalyzedText} until the buffer is merged by
+ * {@link AnalyzedText#mergeStagingBuffers(List)}. Buffers are merged in the
+ * order they are parsed so the result is the same as if the sections would
+ * have been processed sequentially in that order: Spans already present in
+ * the AnalyzedText (or in a previously merged buffer) are not replaced. The
+ * annotations of the staged Span are copied to the present one instead.<p>
+ * While workers write to staging buffers the {@link AnalyzedText} MUST NOT
+ * be modified. Reading it (e.g. the text or annotations of the section) is
+ * safe.<p>
+ * Instances are not thread safe. Every worker needs to use its own buffer.
+ *
+ * @see AnalyzedText#processConcurrently(List, BiConsumer, Executor)
+ */
+public final class StagingBuffer {
+
+    private final AnalyzedText at;
+    private final SpanCollection section;
+    private final SpanIndex index = new SpanIndex();
+
+    StagingBuffer(AnalyzedText at, SpanCollection section) {
+        this.at = at;
+        this.section = section;
+    }
+
+    /**
+     * The AnalyzedText this buffer will be merged with
+     *
+     * @return the analyzed text
+     */
+    public AnalyzedText getContext() {
+        return at;
+    }
+
+    /**
+     * The section of the AnalyzedText this buffer stages Spans for. All
+     * Spans added to this buffer MUST BE within this section
+     *
+     * @return the section
+     */
+    public SpanCollection getSection() {
+        return section;
+    }
+
+    /**
+     * Stages a Sentence.
+     *
+     * @param start the absolute start index
+     * @param end   the absolute end index
+     * @return the staged Sentence
+     * @throws IllegalArgumentException if the Sentence is not within the
+     *                                  {@link #getSection() section} of this buffer
+     */
+    public Sentence addSentence(int start, int end) {
+        checkRange(start, end);
+        return stage(new Sentence(at, null, start, end));
+    }
+
+    /**
+     * Stages several Sentences
+     *
+     * @param starts the absolute start indexes
+     * @param ends   the absolute end indexes
+     * @return the staged Sentences
+     * @throws IllegalArgumentException if the parsed arrays do not have the
+     *                                  same length or a Sentence is not within the
+     *                                  {@link #getSection() section} of this buffer
+     */
+    public Sentence[] addSentences(int[] starts, int[] ends) {
+        SpanCollection.checkBulkOffsets(starts, ends);
+        Sentence[] sentences = new Sentence[starts.length];
+        for (int i = 0; i < sentences.length; i++) {
+            sentences[i] = addSentence(starts[i], ends[i]);
+        }
+        return sentences;
+    }
+
+    /**
+     * Stages a Token.
+     *
+     * @param start the absolute start index
+     * @param end   the absolute end index
+     * @return the staged Token
+     * @throws IllegalArgumentException if the Token is not within the
+     *                                  {@link #getSection() section} of this buffer
+     */
+    public Token addToken(int start, int end) {
+        checkRange(start, end);
+        return stage(new Token(at, null, start, end));
+    }
+
+    /**
+     * Stages several Tokens
+     *
+     * @param starts the absolute start indexes
+     * @param ends   the absolute end indexes
+     * @return the staged Tokens
+     * @throws IllegalArgumentException if the parsed arrays do not have the
+     *                                  same length or a Token is not within the
+     *                                  {@link #getSection() section} of this buffer
+     */
+    public Token[] addTokens(int[] starts, int[] ends) {
+        SpanCollection.checkBulkOffsets(starts, ends);
+        Token[] tokens = new Token[starts.length];
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = addToken(starts[i], ends[i]);
+        }
+        return tokens;
+    }
+
+    /**
+     * Stages a Chunk.
+     *
+     * @param start the absolute start index
+     * @param end   the absolute end index
+     * @return the staged Chunk
+     * @throws IllegalArgumentException if the Chunk is not within the
+     *                                  {@link #getSection() section} of this buffer
+     */
+    public Chunk addChunk(int start, int end) {
+        checkRange(start, end);
+        return stage(new Chunk(at, null, start, end));
+    }
+
+    /**
+     * The number of staged Spans
+     *
+     * @return the number of spans
+     */
+    public int size() {
+        return index.size();
+    }
+
+    private void checkRange(int start, int end) {
+        if (start < section.getStart() || end > section.getEnd()) {
+            throw new IllegalArgumentException("Illegal span [" + start + ',' + end
+                    + "] for StagingBuffer of " + section.getType() + " [" + section.getStart()
+                    + ',' + section.getEnd() + "]: Staged Spans MUST BE within the section!");
+        }
+    }
+
+    private <T extends Span> T stage(T span) {
+        @SuppressWarnings("unchecked")
+        T present = (T) index.get(span);
+        if (present != null) {
+            return present;
+        }
+        index.put(span);
+        return span;
+    }
+
+    /**
+     * The staged spans of the parsed type in their natural order
+     *
+     * @param type the type
+     * @return the staged spans
+     */
+    List<Span> getStaged(SpanTypeEnum type) {
+        List<Span> spans = new ArrayList<>(index.getStore(type).size());
+        index.iterator(EnumSet.of(type), null, null).forEachRemaining(spans::add);
+        return spans;
+    }
+
+}
@@ -0,0 +1,525 @@
+/*
+ * Copyright (c) 2022 Redlink GmbH.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.redlink.nlp.model.cache;
+
+import io.redlink.nlp.api.ProcessingData;
+import io.redlink.nlp.api.Processor;
+import io.redlink.nlp.api.annotation.Annotations;
+import io.redlink.nlp.api.annotation.NamedEntity;
+import io.redlink.nlp.api.cache.ResultCache;
+import io.redlink.nlp.api.model.Value;
+import io.redlink.nlp.model.AnalyzedText;
+import io.redlink.nlp.model.Span.SpanTypeEnum;
+import io.redlink.nlp.model.json.AnalyzedTextParser;
+import io.redlink.nlp.model.json.AnalyzedTextSerializer;
+import io.redlink.nlp.model.util.NlpUtils;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link ResultCache} that stores the serialized {@link AnalyzedText} (see
+ * {@link AnalyzedTextSerializer}) together with the document level
+ * {@link Annotations#LANGUAGE} and {@link Annotations#NAMED_ENTITY}
+ * annotations.<p>
+ * Keys are SHA-256 hashes over the plain text, the language and the
+ * configuration of the document as well as the keys and
+ * {@link Processor#getFingerprint() fingerprints} of the processors. Only documents without annotations
+ * (other than the {@link AnalyzedText} without spans) are cached, as the
+ * results of processors may depend on existing annotations.<p>
+ * Results are kept in a bounded in-heap LRU tier. Optionally a local
+ * directory is used as second tier. If it exceeds its maximum size the least
+ * recently used files are deleted. Hits and misses of both tiers are
+ * counted to allow to monitor the cache.
+ */
+public class AnalysisResultCache implements ResultCache {
+
+    private static final Logger log = LoggerFactory.getLogger(AnalysisResultCache.class);
+
+    /**
+     * The version of the binary format of cached entries
+     */
+    private static final int FORMAT_VERSION = 1;
+    private static final String FILE_EXTENSION = ".result";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final long maxMemoryBytes;
+    private final Path directory;
+    private final long maxDiskBytes;
+
+    /**
+     * The in-heap tier in access order. Guarded by itself
+     */
+    private final LinkedHashMap<String, byte[]> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private long memoryBytes = 0;
+    private final AtomicLong diskBytes = new AtomicLong();
+
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private final AnalyzedTextSerializer serializer;
+    private final AnalyzedTextParser parser;
+
+    /**
+     * Creates an in-heap only cache
+     *
+     * @param maxMemoryBytes the maximum size of the cached (serialized) results
+     */
+    public AnalysisResultCache(long maxMemoryBytes) {
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.directory = null;
+        this.maxDiskBytes = 0;
+        this.serializer = AnalyzedTextSerializer.getDefaultInstance();
+        this.parser = AnalyzedTextParser.getDefaultInstance();
+    }
+
+    /**
+     * Creates a cache with an in-heap and a disk tier
+     *
+     * @param maxMemoryBytes the maximum size of the cached (serialized) results in-heap
+     * @param directory      the directory used to store results. Created if not present
+     * @param maxDiskBytes   the maximum size of the files in the directory
+     * @throws IOException if the directory can not be created or read
+     */
+    public AnalysisResultCache(long maxMemoryBytes, Path directory, long maxDiskBytes) throws IOException {
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.directory = directory;
+        this.maxDiskBytes = maxDiskBytes;
+        this.serializer = AnalyzedTextSerializer.getDefaultInstance();
+        this.parser = AnalyzedTextParser.getDefaultInstance();
+        Files.createDirectories(directory);
+        long size = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + FILE_EXTENSION)) {
+            for (Path file : files) {
+                size += Files.size(file);
+            }
+        }
+        diskBytes.set(size);
+        log.info("Initialized result cache in {} ({} bytes present)", directory, size);
+    }
+
+    @Override
+    public String key(ProcessingData processingData, List<Processor> processors) {
+        if (!processingData.getKeys().isEmpty() && !isFreshAnalyzedText(processingData)) {
+            return null;
+        }
+        //NOTE: do not init the AnalyzedText as this would add an annotation on a miss
+        CharSequence text = NlpUtils.getPlainText(processingData);
+        if (text == null) {
+            return null;
+        }
+        MessageDigest digest = createDigest();
+        update(digest, text.toString());
+        update(digest, processingData.getConfiguration(ProcessingData.Configuration.LANGUAGE, (String) null));
+        update(digest, processingData.getConfiguration());
+        for (Processor processor : processors) {
+            update(digest, processor.getKey());
+            update(digest, processor.getFingerprint());
+        }
+        byte[] hash = digest.digest();
+        char[] key = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            key[i * 2] = HEX[(hash[i] >> 4) & 0xf];
+            key[i * 2 + 1] = HEX[hash[i] & 0xf];
+        }
+        return new String(key);
+    }
+
+    /**
+     * If the only annotation of the parsed document is an AnalyzedText
+     * without spans (e.g. created by
+     * {@link NlpUtils#getOrInitAnalyzedText(ProcessingData)})
+     */
+    private static boolean isFreshAnalyzedText(ProcessingData processingData) {
+        if (processingData.getKeys().size() != 1) {
+            return false;
+        }
+        AnalyzedText at = processingData.getAnnotation(AnalyzedText.ANNOTATION);
+        return at != null && at.getKeys().isEmpty() && !at.getEnclosed(EnumSet.allOf(SpanTypeEnum.class)).hasNext();
+    }
+
+    @Override
+    public boolean restore(String key, ProcessingData processingData) {
+        byte[] data;
+        synchronized (memory) {
+            data = memory.get(key);
+        }
+        if (data != null) {
+            memoryHits.increment();
+        } else {
+            data = readFile(key);
+            if (data == null) {
+                misses.increment();
+                return false;
+            }
+            diskHits.increment();
+            putMemory(key, data);
+        }
+        try {
+            rehydrate(data, processingData);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Unable to restore cached results {} for {} ({}: {})", key, processingData,
+                    e.getClass().getSimpleName(), e.getMessage());
+            remove(key);
+            return false;
+        }
+    }
+
+    @Override
+    public void store(String key, ProcessingData processingData) {
+        AnalyzedText at = processingData.getAnnotation(AnalyzedText.ANNOTATION);
+        if (at == null) {
+            return;
+        }
+        byte[] data;
+        try {
+            data = serialize(at, processingData);
+        } catch (IOException e) {
+            log.warn("Unable to serialize the results of {} ({}: {})", processingData,
+                    e.getClass().getSimpleName(), e.getMessage());
+            return;
+        }
+        putMemory(key, data);
+        writeFile(key, data);
+    }
+
+    private byte[] serialize(AnalyzedText at, ProcessingData processingData) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(FORMAT_VERSION);
+        List<Value<String>> languages = processingData.getValues(Annotations.LANGUAGE);
+        out.writeInt(languages.size());
+        for (Value<String> language : languages) {
+            out.writeUTF(language.value());
+            out.writeDouble(language.probability());
+        }
+        List<NamedEntity> entities = processingData.getAnnotations(Annotations.NAMED_ENTITY);
+        out.writeInt(entities.size());
+        for (NamedEntity entity : entities) {
+            writeString(out, entity.getOriginalName());
+            writeString(out, Objects.equals(entity.getName(), entity.getOriginalName()) ? null : entity.getName());
+            writeString(out, entity.getType());
+            out.writeInt(entity.getCount());
+        }
+        byte[] json = serializer.toJsonString(at).getBytes(StandardCharsets.UTF_8);
+        out.writeInt(json.length);
+        out.write(json);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private void rehydrate(byte[] data, ProcessingData processingData) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported format version " + version);
+        }
+        List<Value<String>> languages = new ArrayList<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            languages.add(Value.value(in.readUTF(), in.readDouble()));
+        }
+        List<NamedEntity> entities = new ArrayList<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            String name = readString(in);
+            String cleanedName = readString(in);
+            NamedEntity entity = new NamedEntity(name, readString(in));
+            entity.setCleanedName(cleanedName);
+            entity.setCount(in.readInt());
+            entities.add(entity);
+        }
+        byte[] json = new byte[in.readInt()];
+        in.readFully(json);
+        //the key was computed for the text of the current AnalyzedText
+        AnalyzedText current = NlpUtils.getOrInitAnalyzedText(processingData);
+        AnalyzedText at = parser.parse(new String(json, StandardCharsets.UTF_8), current.getSpan());
+        processingData.setAnnotation(AnalyzedText.ANNOTATION, at);
+        processingData.addValues(Annotations.LANGUAGE, languages);
+        processingData.addAnnotations(Annotations.NAMED_ENTITY, entities);
+    }
+
+    private void putMemory(String key, byte[] data) {
+        if (data.length > maxMemoryBytes) {
+            return;
+        }
+        synchronized (memory) {
+            byte[] old = memory.put(key, data);
+            memoryBytes += data.length - (old == null ? 0 : old.length);
+            Iterator<byte[]> lru = memory.values().iterator();
+            while (memoryBytes > maxMemoryBytes && lru.hasNext()) {
+                memoryBytes -= lru.next().length;
+                lru.remove();
+            }
+        }
+    }
+
+    private byte[] readFile(String key) {
+        if (directory == null) {
+            return null;
+        }
+        Path file = directory.resolve(key + FILE_EXTENSION);
+        try {
+            byte[] data = Files.readAllBytes(file);
+            //the modification time is used to evict the least recently used files
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return data;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.warn("Unable to read cached results from {} ({}: {})", file, e.getClass().getSimpleName(),
+                    e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeFile(String key, byte[] data) {
+        if (directory == null || data.length > maxDiskBytes) {
+            return;
+        }
+        Path file = directory.resolve(key + FILE_EXTENSION);
+        Path tmp = null;
+        try {
+            //write to a temporary file so that readers never see partial entries
+            tmp = Files.createTempFile(directory, key, ".tmp");
+            Files.write(tmp, data);
+            long present = Files.exists(file) ? Files.size(file) : 0;
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            tmp = null; //moved
+            if (diskBytes.addAndGet(data.length - present) > maxDiskBytes) {
+                evictFiles();
+            }
+        } catch (IOException e) {
+            log.warn("Unable to write cached results to {} ({}: {})", file, e.getClass().getSimpleName(),
+                    e.getMessage());
+        } finally {
+            if (tmp != null) { //failed to write or move the temporary file
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException e) {
+                    log.warn("Unable to delete temporary file {} ({}: {})", tmp, e.getClass().getSimpleName(),
+                            e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes the least recently used files until the disk tier is below
+     * 90% of its maximum size
+     */
+    private synchronized void evictFiles() throws IOException {
+        if (diskBytes.get() <= maxDiskBytes) {
+            return; //evicted by a concurrent call
+        }
+        TreeMap<FileTime, List<Path>> byTime = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + FILE_EXTENSION)) {
+            for (Path file : files) {
+                byTime.computeIfAbsent(Files.getLastModifiedTime(file), t -> new ArrayList<>()).add(file);
+            }
+        }
+        long target = maxDiskBytes / 10 * 9;
+        for (Map.Entry<FileTime, List<Path>> entry : byTime.entrySet()) {
+            for (Path file : entry.getValue()) {
+                if (diskBytes.get() <= target) {
+                    return;
+                }
+                try {
+                    long size = Files.size(file);
+                    Files.delete(file);
+                    diskBytes.addAndGet(-size);
+                } catch (NoSuchFileException e) {
+                    //deleted concurrently
+                }
+            }
+        }
+    }
+
+    private void remove(String key) {
+        synchronized (memory) {
+            byte[] old = memory.remove(key);
+            if (old != null) {
+                memoryBytes -= old.length;
+            }
+        }
+        if (directory != null) {
+            Path file = directory.resolve(key + FILE_EXTENSION);
+            try {
+                long size = Files.size(file);
+                if (Files.deleteIfExists(file)) {
+                    diskBytes.addAndGet(-size);
+                }
+            } catch (IOException e) {
+                //not present
+            }
+        }
+    }
+
+    /**
+     * Removes all cached results (including the files of the disk tier)
+     * and resets the counters
+     *
+     * @throws IOException on any error while deleting the files
+     */
+    public void clear() throws IOException {
+        synchronized (memory) {
+            memory.clear();
+            memoryBytes = 0;
+        }
+        if (directory != null) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + FILE_EXTENSION)) {
+                for (Path file : files) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            diskBytes.set(0);
+        }
+        memoryHits.reset();
+        diskHits.reset();
+        misses.reset();
+    }
+
+    @Override
+    public long getHits() {
+        return memoryHits.sum() + diskHits.sum();
+    }
+
+    /**
+     * The number of lookups answered by the in-heap tier
+     *
+     * @return the hits
+     */
+    public long getMemoryHits() {
+        return memoryHits.sum();
+    }
+
+    /**
+     * The number of lookups answered by the disk tier
+     *
+     * @return the hits
+     */
+    public long getDiskHits() {
+        return diskHits.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * The ratio of lookups that restored results
+     *
+     * @return the hit rate in the range [0..1]. <code>0</code> if no lookup
+     * was made
+     */
+    public double getHitRate() {
+        long h = getHits();
+        long total = h + misses.sum();
+        return total == 0 ? 0 : h / (double) total;
+    }
+
+    /**
+     * The size of the results in the in-heap tier
+     *
+     * @return the size in bytes
+     */
+    public long getMemoryBytes() {
+        synchronized (memory) {
+            return memoryBytes;
+        }
+    }
+
+    /**
+     * The size of the results in the disk tier
+     *
+     * @return the size in bytes. <code>0</code> if no directory is used
+     */
+    public long getDiskBytes() {
+        return diskBytes.get();
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by this JVM", e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        if (value == null) {
+            digest.update((byte) 0);
+        } else {
+            digest.update((byte) 1);
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+    }
+
+    private static void update(MessageDigest digest, Map<String, ?> config) {
+        if (config == null) {
+            digest.update((byte) 0);
+            return;
+        }
+        //sorted to be independent of the iteration order of the map
+        for (Map.Entry<String, ?> entry : new TreeMap<>(config).entrySet()) {
+            update(digest, entry.getKey());
+            update(digest, entry.getValue() == null ? null : entry.getValue().toString());
+        }
+        digest.update((byte) 0);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    @Override
+    public String toString() {
+        return "AnalysisResultCache [memoryBytes=" + getMemoryBytes() + ", diskBytes=" + getDiskBytes()
+                + ", hitRate=" + getHitRate() + "]";
+    }
+}
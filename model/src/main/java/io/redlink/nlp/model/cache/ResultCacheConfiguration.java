@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2022 Redlink GmbH.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.redlink.nlp.model.cache;
+
+import io.redlink.nlp.api.cache.ResultCache;
+import java.io.IOException;
+import java.nio.file.Paths;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Registers an {@link AnalysisResultCache} if <code>nlp.cache.enabled</code>
+ * is set to <code>true</code>. The disk tier is only used if
+ * <code>nlp.cache.directory</code> is configured.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "nlp.cache", name = "enabled", havingValue = "true")
+public class ResultCacheConfiguration {
+
+    @Value("${nlp.cache.memoryBytes:67108864}")
+    private long memoryBytes = 64 * 1024 * 1024;
+
+    @Value("${nlp.cache.directory:}")
+    private String directory;
+
+    @Value("${nlp.cache.diskBytes:1073741824}")
+    private long diskBytes = 1024 * 1024 * 1024;
+
+    @Bean
+    @ConditionalOnMissingBean(ResultCache.class)
+    protected ResultCache getResultCache() throws IOException {
+        return StringUtils.isBlank(directory) ? new AnalysisResultCache(memoryBytes) :
+                new AnalysisResultCache(memoryBytes, Paths.get(directory), diskBytes);
+    }
+
+}
@@ -30,6 +30,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.nio.charset.Charset;
 import java.util.EnumSet;
 import java.util.Iterator;
@@ -128,25 +129,66 @@ public class AnalyzedTextSerializer {
         return sw.toString();
     }
 
+    /**
+     * Serializes the parsed {@link AnalyzedText} of a window of a text stream
+     * as a single line to the parsed {@link Writer}. The line is a JSON object
+     * with the <code>offset</code> of the window and the <code>spans</code>.
+     * The <code>start</code> and <code>end</code> of the spans are absolute
+     * (the window offset is added). So serializing all windows of a stream
+     * results in a <a href="https://jsonlines.org/">JSON Lines</a> document.<p>
+     * The parsed Writer is flushed but not closed.
+     *
+     * @param at     the {@link AnalyzedText} of the window
+     * @param offset the offset of the window within the stream
+     * @param out    the {@link Writer}
+     * @see io.redlink.nlp.model.stream.StreamingAnalyzer
+     */
+    public void serialize(AnalyzedText at, long offset, Writer out) throws IOException {
+        if (at == null) {
+            throw new IllegalArgumentException("The parsed AnalyzedText MUST NOT be NULL!");
+        }
+        if (out == null) {
+            throw new IllegalArgumentException("The parsed Writer MUST NOT be NULL");
+        }
+        JsonGenerator jg = mapper.getFactory().createGenerator(out);
+        jg.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        jg.writeStartObject();
+        jg.writeNumberField("offset", offset);
+        writeSpans(at, offset, jg);
+        jg.writeEndObject();
+        jg.close();
+        out.write('\n');
+        out.flush();
+    }
+
     private void serialize(AnalyzedText at, JsonGenerator jg) throws IOException {
         jg.useDefaultPrettyPrinter();
         jg.writeStartObject();
+        writeSpans(at, 0, jg);
+        jg.writeEndObject();
+        jg.close();
+    }
+
+    private void writeSpans(AnalyzedText at, long offset, JsonGenerator jg) throws IOException {
         jg.writeArrayFieldStart("spans");
-        jg.writeTree(writeSpan(at));
+        jg.writeTree(writeSpan(at, offset));
         for (Iterator<Span> it = at.getEnclosed(EnumSet.allOf(SpanTypeEnum.class)); it.hasNext(); ) {
-            jg.writeTree(writeSpan(it.next()));
+            jg.writeTree(writeSpan(it.next(), offset));
         }
         jg.writeEndArray();
-        jg.writeEndObject();
-        jg.close();
     }
 
-    private ObjectNode writeSpan(Span span) throws IOException {
+    private ObjectNode writeSpan(Span span, long offset) throws IOException {
         LOG.trace("wirte {}", span);
         ObjectNode jSpan = mapper.createObjectNode();
         jSpan.put("type", span.getType().name());
-        jSpan.put("start", span.getStart());
-        jSpan.put("end", span.getEnd());
+        if (offset == 0) {
+            jSpan.put("start", span.getStart());
+            jSpan.put("end", span.getEnd());
+        } else {
+            jSpan.put("start", offset + span.getStart());
+            jSpan.put("end", offset + span.getEnd());
+        }
         for (String key : span.getKeys()) {
             List<Value<?>> values = span.getValues(key);
             //in MongoDB we use '_' instead of '.' so if we convert back to
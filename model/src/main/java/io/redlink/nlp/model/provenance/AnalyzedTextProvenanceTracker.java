@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2022 Redlink GmbH.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.redlink.nlp.model.provenance;
+
+import io.redlink.nlp.api.ProcessingData;
+import io.redlink.nlp.api.Processor;
+import io.redlink.nlp.api.model.Annotated;
+import io.redlink.nlp.api.model.Value;
+import io.redlink.nlp.api.provenance.ProvenanceTracker;
+import io.redlink.nlp.model.AnalyzedText;
+import io.redlink.nlp.model.NlpAnnotations;
+import io.redlink.nlp.model.Span;
+import io.redlink.nlp.model.Span.SpanTypeEnum;
+import io.redlink.nlp.model.util.NlpUtils;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Records the provenance of results as part of the {@link AnalyzedText} so
+ * that it is kept when the AnalyzedText is serialized (see
+ * {@link io.redlink.nlp.model.json.AnalyzedTextSerializer}):<ul>
+ * <li> the {@link AnalyzedText} itself is annotated with the keys and
+ * {@link Processor#getFingerprint() fingerprints} of the processors (see
+ * {@link NlpAnnotations#PROVENANCE_ANNOTATION})
+ * <li> {@link Span}s are annotated with the keys of the processors that
+ * produced them (see {@link NlpAnnotations#PRODUCER_ANNOTATION}). Spans are
+ * attributed to all processors of a stage that declare to write Spans of
+ * their type (as processors of a stage may run concurrently)
+ * <li> annotations are attributed by their key to the processors
+ * {@link Processor#getWrites() writing} them
+ * </ul>
+ * Spans already present before the first processor (e.g. sections created
+ * while parsing the content) are marked with the {@link #INPUT_PRODUCER} by
+ * {@link #begin(ProcessingData)}. They are not attributed to any processor
+ * and are never dropped.<p>
+ * Enabled by setting <code>nlp.provenance.enabled</code> to <code>true</code>.
+ */
+@Component
+@ConditionalOnProperty(prefix = "nlp.provenance", name = "enabled", havingValue = "true")
+public class AnalyzedTextProvenanceTracker implements ProvenanceTracker {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AnalyzedTextProvenanceTracker.class);
+
+    private static final Set<SpanTypeEnum> SPAN_TYPES = Collections.unmodifiableSet(
+            EnumSet.complementOf(EnumSet.of(SpanTypeEnum.Text)));
+
+    private static final char SEPARATOR = '=';
+
+    /**
+     * The {@link NlpAnnotations#PRODUCER_ANNOTATION producer} of Spans that
+     * were present before the first processor
+     */
+    public static final String INPUT_PRODUCER = "input";
+
+    @Override
+    public void begin(ProcessingData processingData) {
+        Optional<AnalyzedText> at = NlpUtils.getAnalyzedText(processingData);
+        if (!at.isPresent()) {
+            return;
+        }
+        Value<String> input = Value.canonical(INPUT_PRODUCER);
+        for (Iterator<Span> spans = at.get().getEnclosed(SPAN_TYPES); spans.hasNext(); ) {
+            Span span = spans.next();
+            if (span.getValue(NlpAnnotations.PRODUCER_ANNOTATION) == null) {
+                span.setValue(NlpAnnotations.PRODUCER_ANNOTATION, input);
+            }
+        }
+    }
+
+    @Override
+    public void record(ProcessingData processingData, Collection<Processor> processors) {
+        Optional<AnalyzedText> at = NlpUtils.getAnalyzedText(processingData);
+        if (!at.isPresent() || processors.isEmpty()) {
+            return;
+        }
+        Map<SpanTypeEnum, List<Value<String>>> producers = new EnumMap<>(SpanTypeEnum.class);
+        for (Processor processor : processors) {
+            Set<String> writes = processor.getWrites();
+            for (SpanTypeEnum type : SPAN_TYPES) {
+                if (writes == null || writes.contains(NlpUtils.spanAccess(type))) {
+                    producers.computeIfAbsent(type, t -> new ArrayList<>(processors.size()))
+                            .add(Value.canonical(processor.getKey()));
+                }
+            }
+        }
+        if (!producers.isEmpty()) {
+            for (Iterator<Span> spans = at.get().getEnclosed(producers.keySet()); spans.hasNext(); ) {
+                Span span = spans.next();
+                if (span.getValue(NlpAnnotations.PRODUCER_ANNOTATION) == null) {
+                    span.setValues(NlpAnnotations.PRODUCER_ANNOTATION, producers.get(span.getType()));
+                }
+            }
+        }
+        List<String> truncated = processingData.getTruncated();
+        Map<String, String> fingerprints = getFingerprints(at.get());
+        for (Processor processor : processors) {
+            if (truncated.contains(processor.getKey())) { //incomplete results
+                fingerprints.remove(processor.getKey());
+            } else {
+                fingerprints.put(processor.getKey(), processor.getFingerprint());
+            }
+        }
+        setFingerprints(at.get(), fingerprints);
+    }
+
+    @Override
+    public Map<String, String> getFingerprints(ProcessingData processingData) {
+        Optional<AnalyzedText> at = NlpUtils.getAnalyzedText(processingData);
+        return at.isPresent() ? getFingerprints(at.get()) : new TreeMap<>();
+    }
+
+    private static Map<String, String> getFingerprints(AnalyzedText at) {
+        Map<String, String> fingerprints = new TreeMap<>();
+        for (String provenance : at.getAnnotations(NlpAnnotations.PROVENANCE_ANNOTATION)) {
+            int idx = provenance.lastIndexOf(SEPARATOR);
+            if (idx > 0) {
+                fingerprints.put(provenance.substring(0, idx), provenance.substring(idx + 1));
+            } else {
+                LOG.warn("Ignore invalid provenance '{}' of {}", provenance, at);
+            }
+        }
+        return fingerprints;
+    }
+
+    private static void setFingerprints(AnalyzedText at, Map<String, String> fingerprints) {
+        List<String> provenance = new ArrayList<>(fingerprints.size());
+        for (Map.Entry<String, String> entry : fingerprints.entrySet()) {
+            provenance.add(entry.getKey() + SEPARATOR + entry.getValue());
+        }
+        at.setAnnotations(NlpAnnotations.PROVENANCE_ANNOTATION, provenance.isEmpty() ? null : provenance);
+    }
+
+    @Override
+    public void drop(ProcessingData processingData, Collection<Processor> processors) {
+        Optional<AnalyzedText> at = NlpUtils.getAnalyzedText(processingData);
+        if (!at.isPresent() || processors.isEmpty()) {
+            return;
+        }
+        Set<String> keys = new HashSet<>();
+        Set<String> annotations = new HashSet<>();
+        Set<SpanTypeEnum> types = EnumSet.noneOf(SpanTypeEnum.class);
+        for (Processor processor : processors) {
+            keys.add(processor.getKey());
+            Set<String> writes = processor.getWrites();
+            if (writes == null) {
+                LOG.debug("{} does not declare its writes: drop all results of {}", processor.getKey(), processingData);
+                dropAll(at.get());
+                setFingerprints(at.get(), Collections.emptyMap());
+                return;
+            }
+            for (String write : writes) {
+                if (write.startsWith(Processor.SPAN_ACCESS_PREFIX)) {
+                    types.add(SpanTypeEnum.valueOf(write.substring(Processor.SPAN_ACCESS_PREFIX.length())));
+                } else {
+                    annotations.add(write);
+                }
+            }
+        }
+        removeAnnotations(processingData, annotations);
+        removeAnnotations(at.get(), annotations);
+        int removed = 0;
+        for (Iterator<Span> spans = at.get().getEnclosed(SPAN_TYPES); spans.hasNext(); ) {
+            Span span = spans.next();
+            removeAnnotations(span, annotations);
+            if (types.contains(span.getType()) && isProducedBy(span, keys) && !hasResults(span)) {
+                spans.remove();
+                removed++;
+            }
+        }
+        Map<String, String> fingerprints = getFingerprints(at.get());
+        fingerprints.keySet().removeAll(keys);
+        setFingerprints(at.get(), fingerprints);
+        LOG.debug("dropped {} annotations and {} spans of {} from {}", annotations, removed, keys, processingData);
+    }
+
+    /**
+     * Removes all Spans created by processors and the annotations of the
+     * others. Document level annotations of the AnalyzedText are kept as
+     * they can not be attributed to processors.
+     */
+    private static void dropAll(AnalyzedText at) {
+        for (Iterator<Span> spans = at.getEnclosed(SPAN_TYPES); spans.hasNext(); ) {
+            Span span = spans.next();
+            List<String> producers = span.getAnnotations(NlpAnnotations.PRODUCER_ANNOTATION);
+            if (!producers.isEmpty() && !producers.equals(Collections.singletonList(INPUT_PRODUCER))) {
+                spans.remove();
+            } else { //keep spans not created by a processor, but remove their annotations
+                Set<String> keys = new HashSet<>(span.getKeys());
+                keys.remove(NlpAnnotations.PRODUCER_ANNOTATION.getKey());
+                removeAnnotations(span, keys);
+            }
+        }
+    }
+
+    private static void removeAnnotations(Annotated annotated, Set<String> keys) {
+        for (String key : keys) {
+            annotated.setValues(key, null);
+        }
+    }
+
+    /**
+     * If the parsed span was produced by the parsed processors only
+     */
+    private static boolean isProducedBy(Span span, Set<String> keys) {
+        List<String> producers = span.getAnnotations(NlpAnnotations.PRODUCER_ANNOTATION);
+        return !producers.isEmpty() && keys.containsAll(producers);
+    }
+
+    /**
+     * If the parsed span has annotations other than its producers
+     */
+    private static boolean hasResults(Span span) {
+        for (String key : span.getKeys()) {
+            if (!NlpAnnotations.PRODUCER_ANNOTATION.getKey().equals(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2022 Redlink GmbH.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.redlink.nlp.model.stream;
+
+import io.redlink.nlp.api.ProcessingData;
+import io.redlink.nlp.api.ProcessingData.Configuration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Context kept by processors between the windows of a stream (e.g. model
+ * instances with adaptive data). The context is owned by the
+ * {@link StreamingAnalyzer} and available for all windows of the stream via
+ * {@link #get(ProcessingData)}. Kept resources are closed if the stream is
+ * closed or processing of a window fails.<p>
+ * As the windows of a stream are processed sequentially instances are not
+ * thread safe.
+ */
+public final class StreamContext {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StreamContext.class);
+
+    private final Map<Object, AutoCloseable> resources = new LinkedHashMap<>();
+
+    StreamContext() {
+    }
+
+    /**
+     * Getter for the context of the stream the parsed {@link ProcessingData}
+     * is a window of
+     *
+     * @param processingData the processing data
+     * @return the context or <code>null</code> if not processed by a
+     * {@link StreamingAnalyzer}
+     */
+    public static StreamContext get(ProcessingData processingData) {
+        Object context = processingData.getConfiguration().get(Configuration.STREAM_CONTEXT);
+        return context instanceof StreamContext ? (StreamContext) context : null;
+    }
+
+    /**
+     * Getter for a kept resource
+     *
+     * @param key the key (typically the instance keeping the resource)
+     * @param <T> the type of the resource
+     * @return the resource or <code>null</code> if none is kept for the key
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends AutoCloseable> T get(Object key) {
+        return (T) resources.get(key);
+    }
+
+    /**
+     * Keeps a resource for the following windows of the stream. A resource
+     * already kept for the key is closed.
+     *
+     * @param key      the key (typically the instance keeping the resource)
+     * @param resource the resource
+     */
+    public void put(Object key, AutoCloseable resource) {
+        assert key != null;
+        assert resource != null;
+        AutoCloseable old = resources.put(key, resource);
+        if (old != null && old != resource) {
+            close(key, old);
+        }
+    }
+
+    /**
+     * Removes a kept resource without closing it
+     *
+     * @param key the key (typically the instance keeping the resource)
+     * @param <T> the type of the resource
+     * @return the removed resource or <code>null</code> if none is kept for the key
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends AutoCloseable> T remove(Object key) {
+        return (T) resources.remove(key);
+    }
+
+    /**
+     * Closes and removes all kept resources
+     */
+    void close() {
+        List<Map.Entry<Object, AutoCloseable>> entries = new ArrayList<>(resources.entrySet());
+        resources.clear();
+        for (Map.Entry<Object, AutoCloseable> entry : entries) {
+            close(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private static void close(Object key, AutoCloseable resource) {
+        try {
+            resource.close();
+        } catch (Exception e) {
+            LOG.warn("Unable to close resource kept by {} for a stream", key, e);
+        }
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2022 Redlink GmbH.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.redlink.nlp.model.stream;
+
+import io.redlink.nlp.api.ProcessingData;
+import io.redlink.nlp.api.ProcessingData.Configuration;
+import io.redlink.nlp.api.ProcessingException;
+import io.redlink.nlp.api.Processor;
+import io.redlink.nlp.api.content.StringContent;
+import io.redlink.nlp.model.AnalyzedText;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Analyzes unbounded text (e.g. logs or transcripts) in windows. Text is
+ * {@link #append(CharSequence) appended} in chunks of any size and cut into
+ * windows of at most {@link #getWindowSize()} chars. Windows are preferably cut
+ * after an empty line, otherwise after a line break or a whitespace, so that
+ * windows are aligned with the sections of the text.<p>
+ * The processors are called for every window with its own
+ * {@link ProcessingData} and {@link AnalyzedText}. After processing the
+ * {@link AnalyzedText} of the window is parsed to the {@link WindowSink} and
+ * evicted afterwards. So memory does not grow with the size of the stream.<p>
+ * Context is carried over from one window to the next:<ul>
+ * <li> all windows use the same {@link Configuration#TEMPORAL_CONTEXT}. If not
+ * configured the time this analyzer was created is used
+ * <li> if not configured the {@link ProcessingData#getLanguage() language}
+ * detected for the first window is configured for all following windows
+ * <li> the {@link Configuration#STREAM_CONTINUED} and
+ * {@link Configuration#STREAM_CONTINUES} flags are set so that processors can
+ * keep context (e.g. adaptive data of NER models) between windows
+ * <li> context kept by processors is stored in the {@link StreamContext} of
+ * the stream (see {@link Configuration#STREAM_CONTEXT}). It is released when
+ * the analyzer is closed or processing of a window fails
+ * </ul>
+ * If processing of a window fails, the window is kept and processed again
+ * by the next call to {@link #append(CharSequence)} or {@link #close()}. As
+ * the context of the stream is lost it is not marked as
+ * {@link Configuration#STREAM_CONTINUED continued}.
+ * Instances are not thread safe.
+ */
+public class StreamingAnalyzer implements AutoCloseable {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    /**
+     * The default maximum size of a window (in chars)
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 64 * 1024;
+
+    private final List<Processor> processors;
+    private final Map<String, Object> configuration;
+    private final WindowSink sink;
+    private final int windowSize;
+    private final StreamContext context = new StreamContext();
+
+    private final StringBuilder buffer = new StringBuilder();
+    /**
+     * A window is only processed after the next one is cut (or the stream
+     * is closed) so that we know if it is the last one
+     */
+    private String pending;
+    private long offset = 0;
+    private int windowCount = 0;
+    /**
+     * If the next window continues the previous one. <code>false</code> for
+     * the first window and after a window failed (as its context is lost)
+     */
+    private boolean continued = false;
+    private boolean closed = false;
+
+    /**
+     * Creates a streaming analyzer with the {@link #DEFAULT_WINDOW_SIZE}
+     *
+     * @param processors    the processors (will be sorted by their phase)
+     * @param configuration the configuration used for all windows or <code>null</code>
+     * @param sink          the sink for the processed windows
+     */
+    public StreamingAnalyzer(List<? extends Processor> processors, Map<String, Object> configuration, WindowSink sink) {
+        this(processors, configuration, sink, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Creates a streaming analyzer
+     *
+     * @param processors    the processors (will be sorted by their phase)
+     * @param configuration the configuration used for all windows or <code>null</code>
+     * @param sink          the sink for the processed windows
+     * @param windowSize    the maximum number of chars of a window
+     * @throws IllegalArgumentException if the sink is <code>null</code> or the
+     *                                  window size is &lt; 2
+     */
+    public StreamingAnalyzer(List<? extends Processor> processors, Map<String, Object> configuration,
+                             WindowSink sink, int windowSize) {
+        if (sink == null) {
+            throw new IllegalArgumentException("The parsed WindowSink MUST NOT be NULL!");
+        }
+        if (windowSize < 2) {
+            throw new IllegalArgumentException("The window size MUST BE >= 2 (parsed: " + windowSize + ")!");
+        }
+        List<Processor> sorted = processors == null ? new ArrayList<>() : new ArrayList<>(processors);
+        Collections.sort(sorted);
+        this.processors = Collections.unmodifiableList(sorted);
+        this.configuration = configuration == null ? new HashMap<>() : new HashMap<>(configuration);
+        this.configuration.putIfAbsent(Configuration.TEMPORAL_CONTEXT, new Date());
+        this.sink = sink;
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * The maximum size of a window
+     *
+     * @return the window size in chars
+     */
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * The number of already processed windows
+     *
+     * @return the number of windows parsed to the {@link WindowSink}
+     */
+    public int getWindowCount() {
+        return windowCount;
+    }
+
+    /**
+     * Appends text to the stream. Completed windows are processed before
+     * this method returns.
+     *
+     * @param chunk the text to append
+     * @return this instance
+     * @throws ProcessingException   if a processor fails for a window
+     * @throws IOException           if the {@link WindowSink} fails for a window
+     * @throws IllegalStateException if this analyzer is already closed
+     */
+    public StreamingAnalyzer append(CharSequence chunk) throws ProcessingException, IOException {
+        if (closed) {
+            throw new IllegalStateException("This StreamingAnalyzer is already closed!");
+        }
+        if (chunk == null || chunk.length() == 0) {
+            return this;
+        }
+        buffer.append(chunk);
+        while (buffer.length() > windowSize) {
+            if (pending != null) { //if this fails the buffer is unchanged and pending is retried
+                processWindow(pending, false);
+                pending = null;
+            }
+            int cut = getCutIndex();
+            pending = buffer.substring(0, cut);
+            buffer.delete(0, cut);
+        }
+        return this;
+    }
+
+    /**
+     * Processes the remaining text of the stream. Calling this on an already
+     * closed analyzer has no effect.
+     *
+     * @throws ProcessingException if a processor fails for a window
+     * @throws IOException         if the {@link WindowSink} fails for a window
+     */
+    @Override
+    public void close() throws ProcessingException, IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (buffer.length() > 0) {
+                if (pending != null) {
+                    processWindow(pending, false);
+                }
+                pending = buffer.toString();
+                buffer.setLength(0);
+            }
+            if (pending != null) {
+                String last = pending;
+                pending = null;
+                processWindow(last, true);
+            }
+        } finally {
+            context.close();
+        }
+    }
+
+    /**
+     * The index to cut the current window. Prefers empty lines over line
+     * breaks over whitespaces. Only considers positions in the 2nd half of
+     * the window.
+     *
+     * @return the exclusive end of the window
+     */
+    private int getCutIndex() {
+        int min = windowSize / 2;
+        int idx = buffer.lastIndexOf("\n\n", windowSize - 2);
+        if (idx >= min) {
+            return idx + 2;
+        }
+        idx = buffer.lastIndexOf("\n", windowSize - 1);
+        if (idx >= min) {
+            return idx + 1;
+        }
+        for (idx = windowSize - 1; idx >= min; idx--) {
+            if (Character.isWhitespace(buffer.charAt(idx))) {
+                return idx + 1;
+            }
+        }
+        //no whitespace ... hard cut (but do not split surrogate pairs)
+        return Character.isHighSurrogate(buffer.charAt(windowSize - 1)) ? windowSize - 1 : windowSize;
+    }
+
+    private void processWindow(String text, boolean last) throws ProcessingException, IOException {
+        Map<String, Object> config = new HashMap<>(configuration);
+        config.put(Configuration.STREAM_CONTINUED, continued);
+        config.put(Configuration.STREAM_CONTINUES, !last);
+        config.put(Configuration.STREAM_CONTEXT, context);
+        log.debug("process window {} [offset: {}, length: {}, last: {}]", windowCount, offset, text.length(), last);
+        boolean success = false;
+        try (ProcessingData pd = new ProcessingData(new StringContent(text), config)) {
+            AnalyzedText at = new AnalyzedText(text);
+            pd.addAnnotation(AnalyzedText.ANNOTATION, at);
+            for (Processor processor : processors) {
+                processor.process(pd);
+            }
+            if (!configuration.containsKey(Configuration.LANGUAGE) && pd.getLanguage() != null) {
+                log.debug(" - use language {} for all following windows", pd.getLanguage());
+                configuration.put(Configuration.LANGUAGE, pd.getLanguage());
+            }
+            sink.accept(at, offset);
+            success = true;
+        } finally {
+            continued = success;
+            if (!success) { //context of the failed window MUST NOT be used by the next one
+                context.close();
+            }
+        }
+        offset += text.length();
+        windowCount++;
+    }
+
+}
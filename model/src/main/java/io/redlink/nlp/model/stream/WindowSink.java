@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2022 Redlink GmbH.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.redlink.nlp.model.stream;
+
+import io.redlink.nlp.model.AnalyzedText;
+import java.io.IOException;
+
+/**
+ * Consumes the results of the windows processed by a {@link StreamingAnalyzer}.
+ * The {@link AnalyzedText} of a window is evicted as soon as this sink returns.
+ *
+ * @see io.redlink.nlp.model.json.AnalyzedTextSerializer#serialize(AnalyzedText, long, java.io.Writer)
+ */
+@FunctionalInterface
+public interface WindowSink {
+
+    /**
+     * Called for every processed window
+     *
+     * @param window the analyzed text of the window. Offsets of Spans are
+     *               relative to the start of the window
+     * @param offset the absolute offset of the window within the stream (a stream
+     *               might have more as {@link Integer#MAX_VALUE} chars)
+     * @throws IOException on any error while writing the results
+     */
+    void accept(AnalyzedText window, long offset) throws IOException;
+
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2022 Redlink GmbH.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.redlink.nlp.model.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A bounded, thread safe pool of shared instances. Used to share immutable
+ * objects (e.g. tags or lemmas) over all processed documents.<p>
+ * The pool never evicts instances. If it is full, new instances are created
+ * but not added to the pool. This keeps the pool free of locking and
+ * bookkeeping on lookups. As the vocabulary of natural language follows
+ * Zipf's law the frequent values are typically added long before the
+ * pool fills up.<p>
+ * Hits and misses are counted to allow to monitor the pool.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the shared instances. MUST BE immutable
+ * @see Interning
+ */
+public final class InternPool<K, V> {
+
+    private final String name;
+    private final int maxSize;
+    private final ConcurrentMap<K, V> pool = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Creates a new pool
+     *
+     * @param name    the name of the pool (e.g. used for metrics)
+     * @param maxSize the maximum number of pooled instances
+     * @throws IllegalArgumentException if the max size is &lt; 1
+     */
+    public InternPool(String name, int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("The max size MUST BE >= 1 (parsed: " + maxSize + ")!");
+        }
+        this.name = name;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the pooled instance for the parsed key. If none is present the
+     * parsed factory is used to create it.
+     *
+     * @param key     the key
+     * @param factory creates the instance for the key if not yet pooled
+     * @return the pooled instance or a newly created one if the pool is full
+     */
+    public V intern(K key, Function<? super K, ? extends V> factory) {
+        V value = pool.get(key);
+        if (value != null) {
+            hits.increment();
+            return value;
+        }
+        misses.increment();
+        value = factory.apply(key);
+        if (value != null && pool.size() < maxSize) {
+            V present = pool.putIfAbsent(key, value);
+            if (present != null) {
+                value = present;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * The name of this pool
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * The maximum number of pooled instances
+     *
+     * @return the max size
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * The number of pooled instances
+     *
+     * @return the size
+     */
+    public int size() {
+        return pool.size();
+    }
+
+    /**
+     * The number of lookups that returned a pooled instance
+     *
+     * @return the hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * The number of lookups that needed to create an instance
+     *
+     * @return the misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * The ratio of lookups that returned a pooled instance
+     *
+     * @return the hit rate in the range [0..1]. <code>0</code> if no lookup
+     * was made
+     */
+    public double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0 : h / (double) total;
+    }
+
+    /**
+     * Removes all pooled instances and resets the hit and miss counters
+     */
+    public void clear() {
+        pool.clear();
+        hits.reset();
+        misses.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "InternPool [name=" + name + ", size=" + pool.size() + ", maxSize=" + maxSize
+                + ", hitRate=" + getHitRate() + "]";
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2022 Redlink GmbH.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.redlink.nlp.model.util;
+
+import io.redlink.nlp.model.dep.RelTag;
+import io.redlink.nlp.model.ner.NerTag;
+import io.redlink.nlp.model.phrase.PhraseTag;
+import io.redlink.nlp.model.pos.PosTag;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Global {@link InternPool}s shared by all processors and documents.<p>
+ * The tag pools are intended for tags that are not part of a
+ * {@link io.redlink.nlp.model.tag.TagSet} (e.g. unmapped tags returned by a
+ * model). The keys are the tag strings. Processors that create tags with
+ * other properties as the ones created by the default constructor of the
+ * tag (e.g. with a type or categories) MUST qualify the key (e.g.
+ * <code>"stanza:" + tag</code>) so that they do not get tags created by
+ * other processors.<p>
+ * The {@link #STRINGS} pool is intended for short String annotation values
+ * of open sets like lemmas, stems or the true case of words.
+ */
+public final class Interning {
+
+    private Interning() {
+        throw new IllegalStateException("Do not use reflection to create instances of this class");
+    }
+
+    /**
+     * Strings longer as this are not {@link #intern(String) interned}
+     */
+    public static final int MAX_STRING_LENGTH = 32;
+
+    public static final InternPool<String, PosTag> POS_TAGS = new InternPool<>("tags.pos", 4096);
+    public static final InternPool<String, NerTag> NER_TAGS = new InternPool<>("tags.ner", 4096);
+    public static final InternPool<String, PhraseTag> PHRASE_TAGS = new InternPool<>("tags.phrase", 4096);
+    public static final InternPool<String, RelTag> REL_TAGS = new InternPool<>("tags.rel", 4096);
+    public static final InternPool<String, String> STRINGS = new InternPool<>("strings", 256 * 1024);
+
+    private static final List<InternPool<?, ?>> POOLS = Collections.unmodifiableList(Arrays.asList(
+            POS_TAGS, NER_TAGS, PHRASE_TAGS, REL_TAGS, STRINGS));
+
+    /**
+     * Returns the shared instance of the parsed String if it is not longer
+     * as {@link #MAX_STRING_LENGTH}.
+     *
+     * @param value the value (e.g. a lemma)
+     * @return the shared instance or the parsed value if <code>null</code>,
+     * too long or the pool is full
+     */
+    public static String intern(String value) {
+        if (value == null || value.length() > MAX_STRING_LENGTH) {
+            return value;
+        }
+        return STRINGS.intern(value, Function.identity());
+    }
+
+    /**
+     * All global pools (e.g. to report their metrics)
+     *
+     * @return the read-only list of pools
+     */
+    public static List<InternPool<?, ?>> getPools() {
+        return POOLS;
+    }
+}
@@ -0,0 +1,550 @@
+/*
+ * Copyright (c) 2022 Redlink GmbH.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.redlink.nlp.model.util;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A bounded, thread safe pool of instances that MUST NOT be used by several
+ * threads at the same time (e.g. the <code>*ME</code> classes of OpenNLP or
+ * Snowball stemmers). Unlike {@link ThreadLocal}s the number of instances
+ * is bound by the {@link #getMaxSize() max size} and not by the number of
+ * threads ever used for processing.<p>
+ * Instances are {@link #borrow() borrowed} and MUST BE {@link #release(Object)
+ * released} afterwards (or use {@link #apply(Function)}). If all instances are
+ * in use, borrowing blocks until one is released (or the timeout parsed to
+ * {@link #borrow(Duration)} expires). Instances idle for longer
+ * as the {@link #getMaxIdle() max idle} time are evicted (on borrow/release
+ * or by calling {@link #evictIdle()}).<p>
+ * Utilization is tracked to allow to monitor and size the pool. All open
+ * pools are available via {@link #getPools()}.
+ *
+ * @param <T> the type of the pooled instances
+ * @see InternPool
+ */
+public final class ModelPool<T> implements AutoCloseable {
+
+    /**
+     * The default maximum number of instances (the number of available
+     * processors, as pooled instances are used for CPU bound work)
+     */
+    public static final int DEFAULT_MAX_SIZE = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The default time instances may be idle before they are evicted
+     */
+    public static final Duration DEFAULT_MAX_IDLE = Duration.ofMinutes(5);
+
+    private static final Set<ModelPool<?>> POOLS = ConcurrentHashMap.newKeySet();
+
+    private final String name;
+    private final Supplier<? extends T> factory;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    /**
+     * Idle instances. The most recently released instance is the first
+     */
+    private final Deque<Idle<T>> idle = new ArrayDeque<>();
+    private int maxSize;
+    private long maxIdleNanos;
+    private int inUse;
+    private int peakInUse;
+    private long borrows;
+    private long waits;
+    private long created;
+    private long evicted;
+    private boolean closed;
+
+    /**
+     * Creates a pool with the {@link #DEFAULT_MAX_SIZE} and
+     * {@link #DEFAULT_MAX_IDLE}
+     *
+     * @param name    the name of the pool (e.g. used for metrics)
+     * @param factory creates new instances
+     */
+    public ModelPool(String name, Supplier<? extends T> factory) {
+        this(name, DEFAULT_MAX_SIZE, DEFAULT_MAX_IDLE, factory);
+    }
+
+    /**
+     * Creates a new pool
+     *
+     * @param name    the name of the pool (e.g. used for metrics)
+     * @param maxSize the maximum number of instances
+     * @param maxIdle the time instances may be idle before they are evicted
+     * @param factory creates new instances
+     * @throws IllegalArgumentException if the max size is &lt; 1 or the max
+     *                                  idle time is negative
+     */
+    public ModelPool(String name, int maxSize, Duration maxIdle, Supplier<? extends T> factory) {
+        assert factory != null;
+        this.name = name;
+        this.factory = factory;
+        setMaxSize(maxSize);
+        setMaxIdle(maxIdle);
+        POOLS.add(this);
+    }
+
+    /**
+     * Borrows an instance. Blocks if all instances are in use.
+     *
+     * @return the instance. MUST BE {@link #release(Object) released}
+     * @throws IllegalStateException if the pool is closed, the factory
+     *                               fails or the thread was interrupted while waiting
+     */
+    public T borrow() {
+        return borrow(null);
+    }
+
+    /**
+     * Borrows an instance. Blocks at most for the parsed timeout if all
+     * instances are in use.
+     *
+     * @param timeout the maximum time to wait or <code>null</code> to wait
+     *                until an instance is released
+     * @return the instance. MUST BE {@link #release(Object) released}
+     * @throws IllegalStateException if the pool is closed, the factory
+     *                               fails, the timeout expired or the thread was interrupted while waiting
+     */
+    public T borrow(Duration timeout) {
+        long remaining = timeout == null ? Long.MAX_VALUE : Math.max(0, timeout.toNanos());
+        lock.lock();
+        try {
+            evict(System.nanoTime());
+            boolean waited = false;
+            while (!closed && idle.isEmpty() && inUse >= maxSize) {
+                waited = true;
+                if (remaining <= 0) {
+                    waits++;
+                    throw new IllegalStateException("Timeout while waiting " + timeout + " for an instance of "
+                            + this);
+                }
+                try {
+                    if (timeout == null) {
+                        released.await();
+                    } else {
+                        remaining = released.awaitNanos(remaining);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for an instance of " + this, e);
+                }
+            }
+            if (closed) {
+                throw new IllegalStateException(this + " is closed");
+            }
+            borrows++;
+            if (waited) {
+                waits++;
+            }
+            inUse++;
+            peakInUse = Math.max(peakInUse, inUse);
+            Idle<T> instance = idle.pollFirst();
+            if (instance != null) {
+                return instance.instance;
+            }
+            created++;
+        } finally {
+            lock.unlock();
+        }
+        boolean success = false;
+        try { //create outside of the lock as this might be expensive
+            T instance = factory.get();
+            if (instance == null) {
+                throw new IllegalStateException("Factory of " + this + " returned null");
+            }
+            success = true;
+            return instance;
+        } finally {
+            if (!success) { //free the slot reserved for the instance
+                lock.lock();
+                try {
+                    inUse--;
+                    created--;
+                    released.signal();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a {@link #borrow() borrowed} instance to the pool. Instances
+     * MUST NOT be used after they are released.
+     *
+     * @param instance the instance
+     */
+    public void release(T instance) {
+        assert instance != null;
+        lock.lock();
+        try {
+            inUse--;
+            long now = System.nanoTime();
+            if (!closed && idle.size() + inUse < maxSize) {
+                idle.addFirst(new Idle<>(instance, now));
+            } else { //closed or max size was decreased
+                evicted++;
+            }
+            evict(now);
+            released.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Detaches a {@link #borrow() borrowed} instance from this pool. The
+     * instance is no longer counted as in use, so other threads can borrow
+     * instances up to the max size. Used for instances that are kept for
+     * longer (e.g. between the windows of a stream) so that they neither
+     * block other threads nor leak a slot if they are never released.
+     * Detached instances MUST NOT be {@link #release(Object) released} but
+     * can be {@link #offer(Object) offered} to the pool.
+     *
+     * @param instance the instance
+     */
+    public void detach(T instance) {
+        assert instance != null;
+        lock.lock();
+        try {
+            inUse--;
+            released.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Offers an instance not in use (e.g. a {@link #detach(Object) detached}
+     * one) to this pool. The instance is added to the idle instances if the
+     * pool is not full and discarded otherwise.
+     *
+     * @param instance the instance
+     * @return if the instance was pooled
+     */
+    public boolean offer(T instance) {
+        assert instance != null;
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            evict(now);
+            if (!closed && idle.size() + inUse < maxSize) {
+                idle.addFirst(new Idle<>(instance, now));
+                released.signal();
+                return true;
+            } else {
+                return false;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Applies the parsed function on a borrowed instance
+     *
+     * @param function the function. The instance MUST NOT be used outside of it
+     * @param <R>      the type of the result
+     * @return the result of the function
+     * @throws IllegalStateException if no instance can be {@link #borrow() borrowed}
+     */
+    public <R> R apply(Function<? super T, ? extends R> function) {
+        T instance = borrow();
+        try {
+            return function.apply(instance);
+        } finally {
+            release(instance);
+        }
+    }
+
+    /**
+     * Evicts instances idle for longer as the {@link #getMaxIdle() max idle}
+     * time. Also called on every borrow/release, so calling this is only
+     * required to free memory of pools that are no longer used.
+     */
+    public void evictIdle() {
+        lock.lock();
+        try {
+            evict(System.nanoTime());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void evict(long now) {
+        //the least recently released instances are at the end
+        for (Idle<T> last = idle.peekLast(); last != null && (now - last.since) > maxIdleNanos;
+             last = idle.peekLast()) {
+            idle.pollLast();
+            evicted++;
+        }
+    }
+
+    /**
+     * Closes the pool. Idle instances are evicted and instances still in
+     * use are not pooled when they are released.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            evicted += idle.size();
+            idle.clear();
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        POOLS.remove(this);
+    }
+
+    /**
+     * The name of this pool
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * The maximum number of instances
+     *
+     * @return the max size
+     */
+    public int getMaxSize() {
+        lock.lock();
+        try {
+            return maxSize;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the maximum number of instances. If decreased, instances in
+     * use are evicted when they are released.
+     *
+     * @param maxSize the max size
+     * @throws IllegalArgumentException if the max size is &lt; 1
+     */
+    public void setMaxSize(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("The max size MUST BE >= 1 (parsed: " + maxSize + ")!");
+        }
+        lock.lock();
+        try {
+            this.maxSize = maxSize;
+            while (!idle.isEmpty() && idle.size() + inUse > maxSize) {
+                idle.pollLast();
+                evicted++;
+            }
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The time instances may be idle before they are evicted
+     *
+     * @return the max idle time
+     */
+    public Duration getMaxIdle() {
+        lock.lock();
+        try {
+            return Duration.ofNanos(maxIdleNanos);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the time instances may be idle before they are evicted
+     *
+     * @param maxIdle the max idle time
+     * @throws IllegalArgumentException if <code>null</code> or negative
+     */
+    public void setMaxIdle(Duration maxIdle) {
+        if (maxIdle == null || maxIdle.isNegative()) {
+            throw new IllegalArgumentException("The max idle time MUST NOT be NULL nor negative (parsed: "
+                    + maxIdle + ")!");
+        }
+        lock.lock();
+        try {
+            this.maxIdleNanos = maxIdle.toNanos();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The number of instances currently borrowed
+     *
+     * @return the number of instances in use
+     */
+    public int getInUse() {
+        lock.lock();
+        try {
+            return inUse;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The number of pooled instances not in use
+     *
+     * @return the number of idle instances
+     */
+    public int getIdle() {
+        lock.lock();
+        try {
+            return idle.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The maximum number of instances that were in use at the same time
+     *
+     * @return the peak number of instances in use
+     */
+    public int getPeakInUse() {
+        lock.lock();
+        try {
+            return peakInUse;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The ratio of the instances in use and the max size
+     *
+     * @return the utilization in the range [0..1]
+     */
+    public double getUtilization() {
+        lock.lock();
+        try {
+            return Math.min(1d, inUse / (double) maxSize);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The number of borrowed instances
+     *
+     * @return the borrows
+     */
+    public long getBorrows() {
+        lock.lock();
+        try {
+            return borrows;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The number of borrows that had to wait for an instance to be released.
+     * If this is high compared to the {@link #getBorrows() borrows} the pool
+     * is too small for the number of processing threads.
+     *
+     * @return the waits
+     */
+    public long getWaits() {
+        lock.lock();
+        try {
+            return waits;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The number of instances created by the factory
+     *
+     * @return the created instances
+     */
+    public long getCreated() {
+        lock.lock();
+        try {
+            return created;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The number of evicted instances
+     *
+     * @return the evicted instances
+     */
+    public long getEvicted() {
+        lock.lock();
+        try {
+            return evicted;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * All pools that are not yet {@link #close() closed} (e.g. to report
+     * their metrics)
+     *
+     * @return a read-only snapshot of the open pools
+     */
+    public static List<ModelPool<?>> getPools() {
+        return Collections.unmodifiableList(new ArrayList<>(POOLS));
+    }
+
+    @Override
+    public String toString() {
+        return "ModelPool [name=" + name + ", inUse=" + getInUse() + ", idle=" + getIdle()
+                + ", maxSize=" + getMaxSize() + "]";
+    }
+
+    private static final class Idle<T> {
+
+        private final T instance;
+        private final long since;
+
+        private Idle(T instance, long since) {
+            this.instance = instance;
+            this.since = since;
+        }
+    }
+}
@@ -18,6 +18,8 @@ package io.redlink.nlp.model.util;
 
 import io.redlink.nlp.api.Content;
 import io.redlink.nlp.api.ProcessingData;
+import io.redlink.nlp.api.Processor;
+import io.redlink.nlp.api.model.Annotation;
 import io.redlink.nlp.api.model.Value;
 import io.redlink.nlp.model.AnalyzedText;
 import io.redlink.nlp.model.Chunk;
@@ -25,7 +27,9 @@ import io.redlink.nlp.model.NlpAnnotations;
 import io.redlink.nlp.model.Section;
 import io.redlink.nlp.model.Sentence;
 import io.redlink.nlp.model.Span;
+import io.redlink.nlp.model.Span.SpanTypeEnum;
 import io.redlink.nlp.model.SpanCollection;
+import io.redlink.nlp.model.SpanView;
 import io.redlink.nlp.model.Token;
 import io.redlink.nlp.model.morpho.MorphoFeatures;
 import io.redlink.nlp.model.ner.NerSet;
@@ -108,37 +112,103 @@ public final class NlpUtils {
      * no 'plain/text' content was present).
      */
     public static AnalyzedText getOrInitAnalyzedText(ProcessingData pd) {
+        if (pd.isShared()) { //processors run concurrently: init only once
+            synchronized (pd) {
+                return doGetOrInitAnalyzedText(pd);
+            }
+        }
+        return doGetOrInitAnalyzedText(pd);
+    }
+
+    private static AnalyzedText doGetOrInitAnalyzedText(ProcessingData pd) {
         Optional<AnalyzedText> existingAt = getAnalyzedText(pd);
         if (existingAt.isPresent()) {
             return existingAt.get();
         } else {
-            AnalyzedText at;
-            Optional<Content> plainText = pd.getContent("text/plain");
-            if (plainText.isPresent()) {
-                Optional<CharSequence> text = plainText.get().getPlainContent();
-                if (text.isPresent()) {
-                    at = new AnalyzedText(text.get());
-                } else {
-                    try {
-                        at = new AnalyzedText(IOUtils.toString(plainText.get().getContent(),
-                                getCharset(plainText.get().getMimeType(), UTF8)));
-                    } catch (IOException e) {
-                        log.error("Unable to create AnalyzedText for 'plain/text' content {} ({} - {})", e.getClass().getSimpleName(), e.getMessage());
-                        log.debug("STACKTRACE", e);
-                        at = null;
-                    }
-                }
-            } else {
-                log.trace("Unable to init AnalyzedText for {} (reason: no 'text/plain' content present)", pd);
-                at = null;
-            }
+            CharSequence text = readPlainText(pd);
+            AnalyzedText at = text == null ? null : new AnalyzedText(text);
             if (at != null) { //if we have created the AnalyzedText we need to add the annotation
+                at.setShared(pd.isShared());
                 pd.addAnnotation(AnalyzedText.ANNOTATION, at);
             }
             return at;
         }
     }
 
+    /**
+     * Getter for the plain text of the parsed {@link ProcessingData}. This is
+     * the text of the {@link AnalyzedText} if present. Otherwise the text of
+     * the first 'text/plain' content. Other than
+     * {@link #getOrInitAnalyzedText(ProcessingData)} this does not add an
+     * {@link AnalyzedText} to the parsed {@link ProcessingData}.
+     *
+     * @param pd the {@link ProcessingData}
+     * @return the plain text or <code>null</code> if no AnalyzedText is present
+     * and the text can not be read (e.g. because no 'plain/text' content is present)
+     */
+    public static CharSequence getPlainText(ProcessingData pd) {
+        Optional<AnalyzedText> existingAt = getAnalyzedText(pd);
+        return existingAt.isPresent() ? existingAt.get().getText() : readPlainText(pd);
+    }
+
+    private static CharSequence readPlainText(ProcessingData pd) {
+        Optional<Content> plainText = pd.getContent("text/plain");
+        if (plainText.isPresent()) {
+            Optional<CharSequence> text = plainText.get().getPlainContent();
+            if (text.isPresent()) {
+                return text.get();
+            } else {
+                try {
+                    return IOUtils.toString(plainText.get().getContent(),
+                            getCharset(plainText.get().getMimeType(), UTF8));
+                } catch (IOException e) {
+                    log.error("Unable to read 'plain/text' content of {} ({} - {})", pd, e.getClass().getSimpleName(), e.getMessage());
+                    log.debug("STACKTRACE", e);
+                    return null;
+                }
+            }
+        } else {
+            log.trace("Unable to read plain text of {} (reason: no 'text/plain' content present)", pd);
+            return null;
+        }
+    }
+
+    /**
+     * The key used to declare read or write access to Spans of the parsed
+     * type (see {@link io.redlink.nlp.api.Processor#getReads()})
+     *
+     * @param type the span type
+     * @return the access key
+     */
+    public static String spanAccess(SpanTypeEnum type) {
+        return Processor.SPAN_ACCESS_PREFIX + type.name();
+    }
+
+    /**
+     * Creates the set of access keys as returned by
+     * {@link io.redlink.nlp.api.Processor#getReads()} and
+     * {@link io.redlink.nlp.api.Processor#getWrites()}
+     *
+     * @param data {@link Annotation}s, {@link SpanTypeEnum}s or String keys
+     * @return the read-only set of access keys
+     * @throws IllegalArgumentException on an unsupported type
+     */
+    public static Set<String> accessKeys(Object... data) {
+        Set<String> keys = new HashSet<>();
+        for (Object d : data) {
+            if (d instanceof Annotation) {
+                keys.add(((Annotation<?>) d).getKey());
+            } else if (d instanceof SpanTypeEnum) {
+                keys.add(spanAccess((SpanTypeEnum) d));
+            } else if (d instanceof String) {
+                keys.add((String) d);
+            } else {
+                throw new IllegalArgumentException("Unsupported access key " + d);
+            }
+        }
+        return Collections.unmodifiableSet(keys);
+    }
+
     /**
      * Checks if the parsed token is a {@link LexicalCategory#Adjective adjective}
      *
@@ -382,7 +452,7 @@ public final class NlpUtils {
         if (span == null) {
             return false;
         } else {
-            return hasAlphaNumeric(span.getSpan());
+            return hasAlphaNumeric(span.getSpanView());
         }
     }
 
@@ -390,12 +460,20 @@ public final class NlpUtils {
      * Checks is the token has an alpha-numeric character.
      */
     public static boolean hasAlphaNumeric(final String token) {
+        return hasAlphaNumeric((CharSequence) token);
+    }
+
+    /**
+     * Checks is the token has an alpha-numeric character.
+     * Also accepts {@link SpanView}s and other {@link CharSequence}s.
+     */
+    public static boolean hasAlphaNumeric(final CharSequence token) {
         if (token == null) {
             return false;
         }
         int sz = token.length();
         for (int i = 0; i < sz; i++) {
-            if (Character.isLetterOrDigit(token.codePointAt(i))) {
+            if (Character.isLetterOrDigit(Character.codePointAt(token, i))) {
                 return true;
             }
         }
@@ -409,7 +487,7 @@ public final class NlpUtils {
         if (span == null) {
             return false;
         } else {
-            return isAlphaNumeric(span.getSpan());
+            return isAlphaNumeric(span.getSpanView());
         }
     }
 
@@ -417,13 +495,21 @@ public final class NlpUtils {
      * Checks is the token has only alpha, numeric, whitespace, hyphen, apostrophe or underline  character.
      */
     public static boolean isAlphaNumeric(final String token) {
+        return isAlphaNumeric((CharSequence) token);
+    }
+
+    /**
+     * Checks is the token has only alpha, numeric, whitespace, hyphen, apostrophe or underline  character.
+     * Also accepts {@link SpanView}s and other {@link CharSequence}s.
+     */
+    public static boolean isAlphaNumeric(final CharSequence token) {
         if (token == null) {
             return false;
         }
         int sz = token.length();
         for (int i = 0; i < sz; i++) {
-            if (!Character.isLetterOrDigit(token.codePointAt(i)) &&
-                    !Character.isWhitespace(token.codePointAt(i)) &&
+            if (!Character.isLetterOrDigit(Character.codePointAt(token, i)) &&
+                    !Character.isWhitespace(Character.codePointAt(token, i)) &&
                     !HYPHEN_AND_UNDERLINE_AND_APOSTROPHE.contains(token.charAt(i))) {
                 return false;
             }
@@ -438,7 +524,7 @@ public final class NlpUtils {
         if (span == null) {
             return false;
         } else {
-            return hasAlpha(span.getSpan());
+            return hasAlpha(span.getSpanView());
         }
     }
 
@@ -446,12 +532,20 @@ public final class NlpUtils {
      * Checks is the token has an alphabetic character.
      */
     public static boolean hasAlpha(final String token) {
+        return hasAlpha((CharSequence) token);
+    }
+
+    /**
+     * Checks is the token has an alphabetic character.
+     * Also accepts {@link SpanView}s and other {@link CharSequence}s.
+     */
+    public static boolean hasAlpha(final CharSequence token) {
         if (token == null) {
             return false;
         }
         int sz = token.length();
         for (int i = 0; i < sz; i++) {
-            if (Character.isLetter(token.codePointAt(i))) {
+            if (Character.isLetter(Character.codePointAt(token, i))) {
                 return true;
             }
         }
@@ -465,7 +559,7 @@ public final class NlpUtils {
         if (span == null) {
             return false;
         } else {
-            return isAlpha(span.getSpan());
+            return isAlpha(span.getSpanView());
         }
     }
 
@@ -474,13 +568,22 @@ public final class NlpUtils {
      * .
      */
     public static boolean isAlpha(final String token) {
+        return isAlpha((CharSequence) token);
+    }
+
+    /**
+     * Checks is the token has only alphabetic, whitespace, hyphen, apostrophe or underline characters.
+     * .
+     * Also accepts {@link SpanView}s and other {@link CharSequence}s.
+     */
+    public static boolean isAlpha(final CharSequence token) {
         if (token == null) {
             return false;
         }
         int sz = token.length();
         for (int i = 0; i < sz; i++) {
-            if (!Character.isLetter(token.codePointAt(i)) &&
-                    !Character.isWhitespace(token.codePointAt(i)) &&
+            if (!Character.isLetter(Character.codePointAt(token, i)) &&
+                    !Character.isWhitespace(Character.codePointAt(token, i)) &&
                     !HYPHEN_AND_UNDERLINE_AND_APOSTROPHE.contains(token.charAt(i))) {
                 return false;
             }
@@ -495,7 +598,7 @@ public final class NlpUtils {
         if (span == null) {
             return false;
         } else {
-            return hasNumeric(span.getSpan());
+            return hasNumeric(span.getSpanView());
         }
     }
 
@@ -503,12 +606,20 @@ public final class NlpUtils {
      * Checks is the token has an alpha-numeric character.
      */
     public static boolean hasNumeric(final String token) {
+        return hasNumeric((CharSequence) token);
+    }
+
+    /**
+     * Checks is the token has an alpha-numeric character.
+     * Also accepts {@link SpanView}s and other {@link CharSequence}s.
+     */
+    public static boolean hasNumeric(final CharSequence token) {
         if (token == null) {
             return false;
         }
         int sz = token.length();
         for (int i = 0; i < sz; i++) {
-            if (Character.isDigit(token.codePointAt(i))) {
+            if (Character.isDigit(Character.codePointAt(token, i))) {
                 return true;
             }
         }
@@ -522,7 +633,7 @@ public final class NlpUtils {
         if (span == null) {
             return false;
         } else {
-            return isNumeric(span.getSpan());
+            return isNumeric(span.getSpanView());
         }
     }
 
@@ -530,12 +641,20 @@ public final class NlpUtils {
      * Checks is the token has only numeric character.
      */
     public static boolean isNumeric(final String token) {
+        return isNumeric((CharSequence) token);
+    }
+
+    /**
+     * Checks is the token has only numeric character.
+     * Also accepts {@link SpanView}s and other {@link CharSequence}s.
+     */
+    public static boolean isNumeric(final CharSequence token) {
         if (token == null) {
             return false;
         }
         int sz = token.length();
         for (int i = 0; i < sz; i++) {
-            if (!Character.isDigit(token.codePointAt(i))) {
+            if (!Character.isDigit(Character.codePointAt(token, i))) {
                 return false;
             }
         }
@@ -736,18 +855,19 @@ public final class NlpUtils {
 
     public static String toTrueCase(Span span, boolean toUpperCaseOnly) {
         if (span instanceof SpanCollection) {
-            Iterator<Token> tokens = ((SpanCollection) span).getTokens();
+            List<Token> tokens = ((SpanCollection) span).getTokenList();
             StringBuilder trueCaseBuilder = new StringBuilder(span.getEnd() - span.getStart());
             CharSequence text = span.getContext().getText();
             int idx = span.getStart();
-            while (tokens.hasNext()) {
-                Token token = tokens.next();
+            for (int i = 0; i < tokens.size(); i++) {
+                Token token = tokens.get(i);
                 Value<String> trueCaseValue = token.getValue(NlpAnnotations.TRUE_CASE_ANNOTATION);
                 if (trueCaseValue != null) {
                     String trueCase = trueCaseValue.value();
-                    assert trueCase.length() == token.getSpan().length();
-                    if (!trueCase.equals(token.getSpan()) &&
-                            trueCase.length() == token.getSpan().length() &&
+                    SpanView tokenSpan = token.getSpanView();
+                    assert trueCase.length() == tokenSpan.length();
+                    if (!tokenSpan.contentEquals(trueCase) &&
+                            trueCase.length() == tokenSpan.length() &&
                             (toUpperCaseOnly || (trueCase.length() > 0 && Character.isUpperCase(trueCase.charAt(0))))) {
                         //append the text in-between the last changed token
                         if (idx < token.getStart()) {
@@ -764,7 +884,7 @@ public final class NlpUtils {
                 trueCaseBuilder.append(text.subSequence(idx, span.getEnd()));
             }
             String trueCaseSpan = trueCaseBuilder.toString();
-            assert trueCaseSpan.length() == span.getSpan().length();
+            assert trueCaseSpan.length() == span.getEnd() - span.getStart();
             return trueCaseSpan;
         } else {
             Value<String> trueCaseValue = span.getValue(NlpAnnotations.TRUE_CASE_ANNOTATION);
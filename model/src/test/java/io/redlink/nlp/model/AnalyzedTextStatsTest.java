@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2022 Redlink GmbH.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.redlink.nlp.model;
+
+import io.redlink.nlp.api.model.Value;
+import io.redlink.nlp.model.Span.SpanTypeEnum;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AnalyzedTextStatsTest {
+
+    private static final int TEXT_LENGTH = 10000;
+
+    @Test
+    public void testStats() {
+        AnalyzedText at = new AnalyzedText(TEXT_LENGTH);
+        for (int i = 0; i < 1000; i++) {
+            Token token = at.addToken(i * 10, i * 10 + 5);
+            token.addAnnotation("test:lemma", "lemma" + i);
+            if (i < 500) {
+                token.addValue("test:flag", Value.TRUE);
+                token.addValue("test:flag", Value.value(Boolean.FALSE, 0.5));
+            }
+        }
+        at.addSentence(0, 5000);
+        at.addSentence(5000, TEXT_LENGTH);
+        AnalyzedTextStats stats = at.stats();
+        Assert.assertEquals(TEXT_LENGTH, stats.getTextLength());
+        Assert.assertEquals(1000, stats.getSpanCount(SpanTypeEnum.Token));
+        Assert.assertEquals(2, stats.getSpanCount(SpanTypeEnum.Sentence));
+        Assert.assertEquals(0, stats.getSpanCount(SpanTypeEnum.Chunk));
+        AnalyzedTextStats.KeyStats lemma = stats.getKeyStats("test:lemma");
+        Assert.assertEquals(1000, lemma.getAnnotatedSpans());
+        Assert.assertEquals(1.0, lemma.getAverageValues(), 0.0001);
+        AnalyzedTextStats.KeyStats flag = stats.getKeyStats("test:flag");
+        Assert.assertEquals(500, flag.getAnnotatedSpans());
+        Assert.assertEquals(2.0, flag.getAverageValues(), 0.0001);
+        //the shared Value.TRUE is only counted once
+        Assert.assertTrue(flag.getEstimatedBytes() < lemma.getEstimatedBytes());
+        Assert.assertTrue(stats.getEstimatedBytes() > stats.getEstimatedSpanBytes());
+        //sampling extrapolates annotation counts
+        AnalyzedTextStats sampled = at.stats(10);
+        Assert.assertEquals(1000, sampled.getSpanCount(SpanTypeEnum.Token));
+        Assert.assertEquals(1000, sampled.getKeyStats("test:lemma").getAnnotatedSpans());
+        Assert.assertEquals(500, sampled.getKeyStats("test:flag").getAnnotatedSpans());
+        Assert.assertEquals(stats.getEstimatedSpanBytes(), sampled.getEstimatedSpanBytes());
+    }
+}
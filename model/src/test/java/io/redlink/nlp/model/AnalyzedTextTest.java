@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2022 Redlink GmbH.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.redlink.nlp.model;
+
+import io.redlink.nlp.model.Span.SpanTypeEnum;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AnalyzedTextTest {
+
+    private static final int TEXT_LENGTH = 10000;
+
+    @Test
+    public void testBulkInsertion() {
+        AnalyzedText at = new AnalyzedText(100);
+        Sentence sentence = at.addSentence(10, 60);
+        Token present = sentence.addToken(5, 10);
+        Iterator<Token> it = sentence.getTokens();
+        Assert.assertSame(present, it.next());
+        //unsorted, with a duplicate and an already present token
+        Token[] tokens = sentence.addTokens(new int[]{20, 0, 5, 0, 30}, new int[]{25, 4, 10, 4, 35});
+        Assert.assertEquals(5, tokens.length);
+        Assert.assertEquals(30, tokens[0].getStart());
+        Assert.assertEquals(10, tokens[1].getStart());
+        Assert.assertSame(present, tokens[2]);
+        Assert.assertSame(tokens[1], tokens[3]);
+        Assert.assertSame(at, tokens[4].getContext());
+        Assert.assertEquals(4, toList(at.getTokens()).size());
+        //the iterator considers the bulk additions
+        Assert.assertSame(tokens[0], it.next());
+        Assert.assertSame(tokens[4], it.next());
+        Assert.assertFalse(it.hasNext());
+        //bulk add sentences before and after the present one
+        Sentence[] sentences = at.addSentences(new int[]{0, 10, 60}, new int[]{10, 60, 100});
+        Assert.assertSame(sentence, sentences[1]);
+        Assert.assertEquals(3, toList(at.getSentences()).size());
+        Assert.assertEquals(new TreeSet<>(at.getSpans()).size(), at.getSpans().size());
+        Assert.assertEquals(new ArrayList<>(new TreeSet<>(at.getSpans())), toList(at.iterator()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBulkInsertionWithIllegalOffsets() {
+        new AnalyzedText(100).addTokens(new int[]{0, 5}, new int[]{4});
+    }
+
+    @Test
+    public void testFreeze() {
+        AnalyzedText at = new AnalyzedText(TEXT_LENGTH);
+        Random rnd = new Random(13);
+        for (int i = 0; i < 2000; i++) {
+            int start = rnd.nextInt(TEXT_LENGTH - 100);
+            if (rnd.nextBoolean()) {
+                at.addToken(start, start + 1 + rnd.nextInt(10));
+            } else {
+                at.addSentence(start, start + 1 + rnd.nextInt(100));
+            }
+        }
+        List<Span> expected = toList(at.iterator());
+        Sentence sentence = at.getSentences().next();
+        List<Span> expectedTokens = toList(sentence.getTokens());
+        List<Span> expectedEnclosed = toList(sentence.getEnclosed(EnumSet.of(SpanTypeEnum.Sentence, SpanTypeEnum.Token)));
+        Token token = at.getTokens().next();
+        token.addAnnotation("test:key", "value");
+
+        Assert.assertFalse(at.isFrozen());
+        Assert.assertSame(at, at.freeze());
+        Assert.assertTrue(at.isFrozen());
+        Assert.assertEquals(expected, toList(at.iterator()));
+        Assert.assertEquals(expectedTokens, toList(sentence.getTokens()));
+        Assert.assertEquals(expectedEnclosed, toList(sentence.getEnclosed(
+                EnumSet.of(SpanTypeEnum.Sentence, SpanTypeEnum.Token))));
+        Assert.assertEquals("value", token.getAnnotation("test:key"));
+        try {
+            at.addToken(0, 1);
+            Assert.fail("Adding a Token to a frozen AnalyzedText MUST fail");
+        } catch (IllegalStateException e) {/* expected */}
+        try {
+            token.addAnnotation("test:key", "other");
+            Assert.fail("Annotating a Token of a frozen AnalyzedText MUST fail");
+        } catch (IllegalStateException e) {/* expected */}
+        try {
+            Iterator<Token> tokens = at.getTokens();
+            tokens.next();
+            tokens.remove();
+            Assert.fail("Removing a Token of a frozen AnalyzedText MUST fail");
+        } catch (IllegalStateException e) {/* expected */}
+        Assert.assertEquals(expected.size(), at.getSpans().size());
+    }
+
+    private static <T extends Span> List<Span> toList(Iterator<T> it) {
+        List<Span> list = new ArrayList<>();
+        it.forEachRemaining(list::add);
+        return list;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2022 Redlink GmbH.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.redlink.nlp.model;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SpanCollectionTest {
+
+    @Test
+    public void testTokenList() {
+        AnalyzedText at = new AnalyzedText(100);
+        Sentence s1 = at.addSentence(0, 50);
+        Sentence s2 = at.addSentence(50, 100);
+        List<Token> tokens = s1.getTokenList();
+        Assert.assertTrue(tokens.isEmpty());
+        s1.addTokens(new int[]{0, 10, 20}, new int[]{5, 15, 25});
+        s2.addToken(0, 5);
+        Assert.assertEquals(3, tokens.size()); //the view reflects additions
+        at.addToken(7, 9); //out of order addition
+        Assert.assertEquals(toList(s1.getTokens()), new ArrayList<>(tokens));
+        Assert.assertEquals(7, tokens.get(1).getStart());
+        Assert.assertEquals(1, s2.getTokenList().size());
+        Assert.assertEquals(5, at.getTokenList().size());
+        Iterator<Token> it = at.getTokens();
+        it.next();
+        it.remove();
+        Assert.assertEquals(3, tokens.size());
+        Assert.assertEquals(7, tokens.get(0).getStart());
+    }
+
+    private static <T extends Span> List<Span> toList(Iterator<T> it) {
+        List<Span> list = new ArrayList<>();
+        it.forEachRemaining(list::add);
+        return list;
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright (c) 2022 Redlink GmbH.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.redlink.nlp.model;
+
+import io.redlink.nlp.model.Span.SpanTypeEnum;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SpanStoreTest {
+
+    private static final int TEXT_LENGTH = 10000;
+
+    @Test
+    public void testNaturalOrder() {
+        AnalyzedText at = new AnalyzedText(TEXT_LENGTH);
+        TreeSet<Span> expected = new TreeSet<>();
+        Random rnd = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            int start = rnd.nextInt(TEXT_LENGTH - 20);
+            int end = start + 1 + rnd.nextInt(20);
+            Span span;
+            switch (rnd.nextInt(4)) {
+                case 0:
+                    span = at.addSection(start, end);
+                    break;
+                case 1:
+                    span = at.addSentence(start, end);
+                    break;
+                case 2:
+                    span = at.addChunk(start, end);
+                    break;
+                default:
+                    span = at.addToken(start, end);
+            }
+            Span present = expected.ceiling(span);
+            if (present != null && present.compareTo(span) == 0) {
+                Assert.assertSame(present, span);
+            } else {
+                expected.add(span);
+            }
+        }
+        Assert.assertEquals(expected.size(), at.getSpans().size());
+        Assert.assertEquals(new ArrayList<>(expected), toList(at.iterator()));
+        Assert.assertEquals(new ArrayList<>(expected), toList(at.getEnclosed(
+                EnumSet.allOf(SpanTypeEnum.class))));
+    }
+
+    @Test
+    public void testIteratorConsidersAdditions() {
+        AnalyzedText at = new AnalyzedText(100);
+        Sentence sentence = at.addSentence(0, 50);
+        sentence.addToken(0, 5);
+        sentence.addToken(20, 25);
+        Iterator<Token> tokens = sentence.getTokens();
+        Token token = tokens.next();
+        Assert.assertEquals(0, token.getStart());
+        sentence.addToken(10, 15); //add a token between the current and the next
+        Assert.assertTrue(tokens.hasNext());
+        Assert.assertEquals(10, tokens.next().getStart());
+        Assert.assertEquals(20, tokens.next().getStart());
+        sentence.addToken(30, 35); //add a token after the last one
+        Assert.assertEquals(30, tokens.next().getStart());
+        Assert.assertFalse(tokens.hasNext());
+    }
+
+    @Test
+    public void testTypedIteration() {
+        AnalyzedText at = new AnalyzedText(100);
+        Sentence sentence = at.addSentence(0, 50);
+        at.addSentence(50, 100);
+        sentence.addToken(0, 5);
+        sentence.addChunk(0, 15);
+        sentence.addToken(10, 15);
+        Assert.assertEquals(2, toList(sentence.getTokens()).size());
+        Assert.assertEquals(1, toList(sentence.getChunks()).size());
+        Assert.assertEquals(2, toList(at.getSentences()).size());
+        //merged iteration over several types needs to keep the natural order
+        Iterator<Span> spans = sentence.getEnclosed(EnumSet.of(SpanTypeEnum.Chunk, SpanTypeEnum.Token));
+        Assert.assertEquals(SpanTypeEnum.Chunk, spans.next().getType());
+        Span token = spans.next();
+        Assert.assertEquals(SpanTypeEnum.Token, token.getType());
+        Assert.assertEquals(0, token.getStart());
+        sentence.addChunk(0, 10); //sorts before the current position
+        sentence.addChunk(5, 10); //sorts after the current position
+        Assert.assertEquals(5, spans.next().getStart());
+        Assert.assertEquals(10, spans.next().getStart());
+        Assert.assertFalse(spans.hasNext());
+    }
+
+    @Test
+    public void testOverlappingAndCovering() {
+        AnalyzedText at = new AnalyzedText(TEXT_LENGTH);
+        Random rnd = new Random(7);
+        for (int i = 0; i < 3000; i++) {
+            int start = rnd.nextInt(TEXT_LENGTH - 200);
+            if (rnd.nextBoolean()) {
+                at.addToken(start, start + 1 + rnd.nextInt(10));
+            } else {
+                at.addSentence(start, start + 1 + rnd.nextInt(200));
+            }
+        }
+        Set<SpanTypeEnum> types = EnumSet.of(SpanTypeEnum.Sentence, SpanTypeEnum.Token);
+        for (int i = 0; i < 200; i++) {
+            int start = rnd.nextInt(TEXT_LENGTH);
+            int end = start + 1 + rnd.nextInt(50);
+            List<Span> expected = new ArrayList<>();
+            List<Span> covering = new ArrayList<>();
+            for (Span span : at) {
+                if (span.getStart() < end && span.getEnd() > start) {
+                    expected.add(span);
+                }
+                if (span.getStart() <= start && span.getEnd() > start) {
+                    covering.add(span);
+                }
+            }
+            Assert.assertEquals(expected, at.getOverlapping(start, end, types));
+            Assert.assertEquals(covering, at.getCovering(start, types));
+        }
+    }
+
+    @Test
+    public void testOverlappingWithLongSpans() {
+        AnalyzedText at = new AnalyzedText(TEXT_LENGTH);
+        Random rnd = new Random(11);
+        Set<SpanTypeEnum> types = EnumSet.of(SpanTypeEnum.Chunk);
+        at.addChunk(0, TEXT_LENGTH); //a single long span MUST NOT affect other lookups
+        for (int i = 0; i < 2000; i++) {
+            int start = rnd.nextInt(TEXT_LENGTH - 10);
+            switch (rnd.nextInt(10)) {
+                case 0: //long span
+                    at.addChunk(start, start + 1 + rnd.nextInt(TEXT_LENGTH - start));
+                    break;
+                case 1: //remove (invalidates the index)
+                    Iterator<Chunk> chunks = at.getChunks();
+                    Chunk chunk = null;
+                    for (int skip = 1 + rnd.nextInt(100); skip > 0 && chunks.hasNext(); skip--) {
+                        chunk = chunks.next();
+                    }
+                    if (chunk != null && chunk.getEnd() - chunk.getStart() < TEXT_LENGTH) {
+                        chunks.remove();
+                    }
+                    break;
+                default: //mostly appended short spans
+                    at.addChunk(start, start + 1 + rnd.nextInt(10));
+            }
+            if (i % 50 == 0) {
+                assertOverlapping(at, rnd, types);
+            }
+        }
+        at.freeze();
+        assertOverlapping(at, rnd, types);
+    }
+
+    private static void assertOverlapping(AnalyzedText at, Random rnd, Set<SpanTypeEnum> types) {
+        for (int i = 0; i < 20; i++) {
+            int start = rnd.nextInt(TEXT_LENGTH);
+            int end = start + 1 + rnd.nextInt(50);
+            List<Span> expected = new ArrayList<>();
+            for (Span span : at) {
+                if (span.getStart() < end && span.getEnd() > start) {
+                    expected.add(span);
+                }
+            }
+            Assert.assertEquals(expected, at.getOverlapping(start, end, types));
+        }
+    }
+
+    @Test
+    public void testIteratorRemove() {
+        AnalyzedText at = new AnalyzedText(100);
+        for (int i = 0; i < 10; i++) {
+            at.addToken(i * 10, i * 10 + 5);
+        }
+        Iterator<Token> tokens = at.getTokens();
+        int count = 0;
+        while (tokens.hasNext()) {
+            tokens.next();
+            if (count++ % 2 == 0) {
+                tokens.remove();
+            }
+        }
+        Assert.assertEquals(10, count);
+        List<Span> remaining = toList(at.iterator());
+        Assert.assertEquals(5, remaining.size());
+        Assert.assertEquals(10, remaining.get(0).getStart());
+    }
+
+    @Test
+    public void testSharedConcurrentWrites() throws Exception {
+        AnalyzedText at = new AnalyzedText(TEXT_LENGTH);
+        for (int i = 0; i < TEXT_LENGTH / 10; i++) {
+            at.addToken(i * 10, i * 10 + 5);
+        }
+        at.setShared(true);
+        int workers = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int w = 0; w < workers; w++) {
+                int worker = w;
+                tasks.add(executor.submit(() -> {
+                    //all workers annotate the same tokens with different keys
+                    Iterator<Token> tokens = at.getTokens();
+                    while (tokens.hasNext()) {
+                        Token token = tokens.next();
+                        token.addAnnotation("test:worker" + worker, worker);
+                        if (token.getStart() % workers == 0) { //and add chunks in the same store
+                            at.addChunk(token.getStart() + worker, token.getEnd());
+                        }
+                    }
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        at.setShared(false);
+        Iterator<Token> tokens = at.getTokens();
+        while (tokens.hasNext()) {
+            Assert.assertEquals(workers, tokens.next().getKeys().size());
+        }
+        Assert.assertEquals(TEXT_LENGTH / 10 / 2 * workers, toList(at.getChunks()).size());
+    }
+
+    @Test
+    public void testSharedConcurrentSameSpans() throws Exception {
+        int workers = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            for (int run = 0; run < 20; run++) {
+                AnalyzedText at = new AnalyzedText(TEXT_LENGTH);
+                at.setShared(true);
+                CyclicBarrier start = new CyclicBarrier(workers);
+                List<Future<?>> tasks = new ArrayList<>();
+                for (int w = 0; w < workers; w++) {
+                    int worker = w;
+                    tasks.add(executor.submit(() -> {
+                        start.await();
+                        //all workers add the same chunks (with their annotation)
+                        for (int i = TEXT_LENGTH / 10 - 1; i >= 0; i--) { //out of order
+                            Chunk chunk = new Chunk(at, null, i * 10, i * 10 + 5);
+                            chunk.addAnnotation("test:worker" + worker, worker);
+                            at.register(chunk);
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> task : tasks) {
+                    task.get();
+                }
+                at.setShared(false);
+                List<Span> chunks = toList(at.getChunks());
+                Assert.assertEquals(TEXT_LENGTH / 10, chunks.size());
+                for (Span chunk : chunks) { //no annotation is lost
+                    Assert.assertEquals(workers, chunk.getKeys().size());
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static <T extends Span> List<Span> toList(Iterator<T> it) {
+        List<Span> list = new ArrayList<>();
+        it.forEachRemaining(list::add);
+        return list;
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2022 Redlink GmbH.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.redlink.nlp.model;
+
+import java.util.Set;
+import java.util.TreeSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SpanViewTest {
+
+    @Test
+    public void testSpanView() {
+        AnalyzedText at = new AnalyzedText("Das ist KEIN Test.");
+        Token token = at.addToken(8, 12);
+        SpanView view = token.getSpanView();
+        Assert.assertEquals("KEIN", view.toString());
+        Assert.assertEquals("KEIN".hashCode(), view.hashCode());
+        Assert.assertTrue(view.contentEquals("KEIN"));
+        //equals is symmetric: only other views are equal
+        Assert.assertFalse(view.equals("KEIN"));
+        Assert.assertEquals(view, at.addChunk(8, 12).getSpanView());
+        Assert.assertTrue(view.contentEquals(new StringBuilder("KEIN")));
+        Assert.assertFalse(view.contentEquals("kein"));
+        Assert.assertTrue(view.equalsIgnoreCase("kein"));
+        Assert.assertTrue(view.startsWith("ke", true));
+        Assert.assertFalse(view.startsWith("ke", false));
+        Assert.assertTrue(view.regionMatches(false, 1, "xEI", 1, 2));
+        Assert.assertFalse(view.regionMatches(false, 3, "NN", 0, 2));
+        Assert.assertEquals("EI", view.subSequence(1, 3).toString());
+        Assert.assertEquals("EI".hashCode(), view.subSequence(1, 3).hashCode());
+        //lookups in sorted collections of Strings
+        Set<String> insensitive = new TreeSet<>(SpanView.CASE_INSENSITIVE_ORDER);
+        insensitive.add("kein");
+        Assert.assertTrue(insensitive.contains(view));
+    }
+}
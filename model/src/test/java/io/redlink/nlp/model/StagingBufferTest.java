@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2022 Redlink GmbH.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.redlink.nlp.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StagingBufferTest {
+
+    @Test
+    public void testConcurrentSections() {
+        AnalyzedText sequential = createSectionedText();
+        AnalyzedText concurrent = createSectionedText();
+        BiConsumer<Section, StagingBuffer> worker = (section, buffer) -> {
+            for (int start = section.getStart(); start < section.getEnd(); start += 10) {
+                Sentence sentence = buffer.addSentence(start, start + 10);
+                Token[] tokens = buffer.addTokens(new int[]{start, start + 5}, new int[]{start + 4, start + 10});
+                tokens[0].addAnnotation("test:key", section.getStart());
+                buffer.addChunk(start, start + 10).addAnnotation("test:key", sentence.getStart());
+            }
+        };
+        List<Section> sections = toSections(sequential);
+        for (Section section : sections) { //sequential processing
+            StagingBuffer buffer = sequential.createStagingBuffer(section);
+            worker.accept(section, buffer);
+            sequential.mergeStagingBuffers(Collections.singletonList(buffer));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            concurrent.processConcurrently(toSections(concurrent), worker, executor);
+        } finally {
+            executor.shutdown();
+        }
+        List<Span> expected = toList(sequential.iterator());
+        List<Span> actual = toList(concurrent.iterator());
+        Assert.assertEquals(expected, actual);
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertSame(concurrent, actual.get(i).getContext());
+            Assert.assertEquals(expected.get(i).getAnnotations("test:key"), actual.get(i).getAnnotations("test:key"));
+        }
+        //the present Token got the annotation of the staged one
+        Assert.assertEquals(Collections.singletonList(0), concurrent.getTokens().next().getAnnotations("test:key"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testStagingOutsideSection() {
+        AnalyzedText at = new AnalyzedText(100);
+        at.createStagingBuffer(at.addSection(0, 50)).addToken(45, 55);
+    }
+
+    private static AnalyzedText createSectionedText() {
+        AnalyzedText at = new AnalyzedText(1000);
+        for (int i = 0; i < 10; i++) {
+            at.addSection(i * 100, i * 100 + 100);
+        }
+        at.addToken(0, 4); //already present token
+        return at;
+    }
+
+    private static List<Section> toSections(AnalyzedText at) {
+        List<Section> sections = new ArrayList<>();
+        at.getSections().forEachRemaining(sections::add);
+        return sections;
+    }
+
+    private static <T extends Span> List<Span> toList(Iterator<T> it) {
+        List<Span> list = new ArrayList<>();
+        it.forEachRemaining(list::add);
+        return list;
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2022 Redlink GmbH.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.redlink.nlp.model.cache;
+
+import io.redlink.nlp.api.ProcessingData;
+import io.redlink.nlp.api.annotation.Annotations;
+import io.redlink.nlp.api.annotation.NamedEntity;
+import io.redlink.nlp.api.content.StringContent;
+import io.redlink.nlp.api.model.Value;
+import io.redlink.nlp.model.AnalyzedText;
+import io.redlink.nlp.model.Span.SpanTypeEnum;
+import io.redlink.nlp.model.util.NlpUtils;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AnalysisResultCacheTest {
+
+    private static final String TEXT = "Mayor Michelle Wu welcomed the guests.";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testMemoryTier() {
+        AnalysisResultCache cache = new AnalysisResultCache(1024 * 1024);
+        ProcessingData pd = createData(TEXT, "en");
+        String key = cache.key(pd, Collections.emptyList());
+        Assert.assertNotNull(key);
+        Assert.assertTrue(pd.getKeys().isEmpty()); //computing the key does not add annotations
+        Assert.assertFalse(cache.restore(key, pd));
+        analyze(pd);
+        cache.store(key, pd);
+
+        //a document with existing annotations is not cacheable
+        Assert.assertNull(cache.key(pd, Collections.emptyList()));
+        //other text or configuration results in an other key
+        Assert.assertNotEquals(key, cache.key(createData(TEXT + " ", "en"), Collections.emptyList()));
+        Assert.assertNotEquals(key, cache.key(createData(TEXT, "de"), Collections.emptyList()));
+
+        ProcessingData duplicate = createData(TEXT, "en");
+        Assert.assertEquals(key, cache.key(duplicate, Collections.emptyList()));
+        Assert.assertTrue(cache.restore(key, duplicate));
+        assertRestored(duplicate);
+        Assert.assertEquals(1, cache.getMemoryHits());
+        Assert.assertEquals(1, cache.getMisses());
+        Assert.assertEquals(0.5, cache.getHitRate(), 0.0001);
+    }
+
+    @Test
+    public void testDiskTier() throws IOException {
+        AnalysisResultCache cache = new AnalysisResultCache(1024 * 1024, folder.getRoot().toPath(), 1024 * 1024);
+        ProcessingData pd = createData(TEXT, "en");
+        String key = cache.key(pd, Collections.emptyList());
+        analyze(pd);
+        cache.store(key, pd);
+        Assert.assertTrue(cache.getDiskBytes() > 0);
+
+        //a new instance (e.g. after a restart) finds the results on disk
+        cache = new AnalysisResultCache(1024 * 1024, folder.getRoot().toPath(), 1024 * 1024);
+        ProcessingData duplicate = createData(TEXT, "en");
+        Assert.assertTrue(cache.restore(cache.key(duplicate, Collections.emptyList()), duplicate));
+        assertRestored(duplicate);
+        Assert.assertEquals(1, cache.getDiskHits());
+        //now also present in-heap
+        Assert.assertTrue(cache.restore(key, createData(TEXT, "en")));
+        Assert.assertEquals(1, cache.getMemoryHits());
+
+        cache.clear();
+        Assert.assertEquals(0, cache.getDiskBytes());
+        Assert.assertFalse(cache.restore(key, createData(TEXT, "en")));
+    }
+
+    @Test
+    public void testFailedWrite() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        AnalysisResultCache cache = new AnalysisResultCache(1024 * 1024, dir, 1024 * 1024);
+        ProcessingData pd = createData(TEXT, "en");
+        String key = cache.key(pd, Collections.emptyList());
+        analyze(pd);
+        //a non empty directory can not be replaced by the entry
+        Files.createFile(Files.createDirectory(dir.resolve(key + ".result")).resolve("blocker"));
+        cache.store(key, pd);
+        Assert.assertEquals(0, cache.getDiskBytes());
+        try (DirectoryStream<Path> tmpFiles = Files.newDirectoryStream(dir, "*.tmp")) {
+            Assert.assertFalse(tmpFiles.iterator().hasNext());
+        }
+    }
+
+    @Test
+    public void testMemoryEviction() {
+        ProcessingData pd = createData(TEXT, "en");
+        AnalysisResultCache probe = new AnalysisResultCache(1024 * 1024);
+        String key = probe.key(pd, Collections.emptyList());
+        analyze(pd);
+        probe.store(key, pd);
+        long entrySize = probe.getMemoryBytes();
+        //space for two entries
+        AnalysisResultCache cache = new AnalysisResultCache(entrySize * 2 + entrySize / 2);
+        String[] keys = new String[3];
+        for (int i = 0; i < keys.length; i++) {
+            ProcessingData doc = createData(TEXT, "en");
+            doc.getConfiguration().put("test.doc", i);
+            keys[i] = cache.key(doc, Collections.emptyList());
+            analyze(doc);
+            cache.store(keys[i], doc);
+        }
+        Assert.assertFalse(cache.restore(keys[0], createData(TEXT, "en")));
+        Assert.assertTrue(cache.getMemoryBytes() <= entrySize * 2 + entrySize / 2);
+    }
+
+    private static ProcessingData createData(String text, String language) {
+        Map<String, Object> config = new HashMap<>();
+        config.put(ProcessingData.Configuration.LANGUAGE, language);
+        return new ProcessingData(new StringContent(text), config);
+    }
+
+    private static void analyze(ProcessingData pd) {
+        AnalyzedText at = NlpUtils.getOrInitAnalyzedText(pd);
+        at.addSentence(0, TEXT.length());
+        at.addTokens(new int[]{0, 6, 15, 18, 27, 31, 37}, new int[]{5, 14, 17, 26, 30, 37, 38});
+        pd.addValue(Annotations.LANGUAGE, Value.value("en", 0.9));
+        NamedEntity entity = new NamedEntity("Michelle Wu", "person");
+        entity.setCount(1);
+        pd.addAnnotation(Annotations.NAMED_ENTITY, entity);
+    }
+
+    private static void assertRestored(ProcessingData pd) {
+        AnalyzedText at = pd.getAnnotation(AnalyzedText.ANNOTATION);
+        Assert.assertNotNull(at);
+        Assert.assertEquals(TEXT, at.getSpan());
+        int tokens = 0;
+        for (Iterator<?> it = at.getEnclosed(EnumSet.of(SpanTypeEnum.Token)); it.hasNext(); it.next()) {
+            tokens++;
+        }
+        Assert.assertEquals(7, tokens);
+        Assert.assertTrue(at.getEnclosed(EnumSet.of(SpanTypeEnum.Sentence)).hasNext());
+        Value<String> language = pd.getValue(Annotations.LANGUAGE);
+        Assert.assertEquals("en", language.value());
+        Assert.assertEquals(0.9, language.probability(), 0.0001);
+        List<NamedEntity> entities = pd.getAnnotations(Annotations.NAMED_ENTITY);
+        Assert.assertEquals(1, entities.size());
+        Assert.assertEquals("Michelle Wu", entities.get(0).getName());
+        Assert.assertEquals("person", entities.get(0).getType());
+        Assert.assertEquals(1, entities.get(0).getCount());
+    }
+}
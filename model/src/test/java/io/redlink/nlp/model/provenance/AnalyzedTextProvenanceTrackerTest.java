@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2022 Redlink GmbH.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.redlink.nlp.model.provenance;
+
+import io.redlink.nlp.api.ProcessingData;
+import io.redlink.nlp.api.Processor;
+import io.redlink.nlp.api.annotation.Annotations;
+import io.redlink.nlp.api.content.StringContent;
+import io.redlink.nlp.model.AnalyzedText;
+import io.redlink.nlp.model.Chunk;
+import io.redlink.nlp.model.NlpAnnotations;
+import io.redlink.nlp.model.Span;
+import io.redlink.nlp.model.Span.SpanTypeEnum;
+import io.redlink.nlp.model.json.AnalyzedTextParser;
+import io.redlink.nlp.model.json.AnalyzedTextSerializer;
+import io.redlink.nlp.model.json.valuetype.ValueTypeParserRegistry;
+import io.redlink.nlp.model.json.valuetype.ValueTypeSerializerRegistry;
+import io.redlink.nlp.model.json.valuetype.impl.NerTagSupport;
+import io.redlink.nlp.model.json.valuetype.impl.PhraseTagSupport;
+import io.redlink.nlp.model.ner.NerTag;
+import io.redlink.nlp.model.phrase.PhraseTag;
+import io.redlink.nlp.model.util.NlpUtils;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AnalyzedTextProvenanceTrackerTest {
+
+    private static final String TEXT = "Mayor Michelle Wu welcomed the guests.";
+
+    private final Processor tokenizer = new TestProcessor("token",
+            NlpUtils.accessKeys(SpanTypeEnum.Sentence, SpanTypeEnum.Token));
+    private final Processor ner = new TestProcessor("ner",
+            NlpUtils.accessKeys(SpanTypeEnum.Chunk, NlpAnnotations.NER_ANNOTATION));
+    private final Processor chunker = new TestProcessor("phrase",
+            NlpUtils.accessKeys(SpanTypeEnum.Chunk, NlpAnnotations.PHRASE_ANNOTATION));
+
+    private final AnalyzedTextProvenanceTracker tracker = new AnalyzedTextProvenanceTracker();
+
+    @Test
+    public void testRecord() {
+        ProcessingData pd = analyze();
+        AnalyzedText at = pd.getAnnotation(AnalyzedText.ANNOTATION);
+        Map<String, String> fingerprints = tracker.getFingerprints(pd);
+        Assert.assertEquals(3, fingerprints.size());
+        Assert.assertEquals(ner.getFingerprint(), fingerprints.get(ner.getKey()));
+        for (Span span : spans(at, SpanTypeEnum.Sentence, SpanTypeEnum.Token)) {
+            Assert.assertEquals(tokenizer.getKey(), span.getAnnotation(NlpAnnotations.PRODUCER_ANNOTATION));
+        }
+        //chunks are attributed to the processor that created them
+        List<Span> chunks = spans(at, SpanTypeEnum.Chunk);
+        Assert.assertEquals(3, chunks.size());
+        Assert.assertEquals(ner.getKey(), chunk(at, 6, 17).getAnnotation(NlpAnnotations.PRODUCER_ANNOTATION));
+        Assert.assertEquals(chunker.getKey(), chunk(at, 27, 37).getAnnotation(NlpAnnotations.PRODUCER_ANNOTATION));
+
+        //truncated processors are not fingerprinted
+        pd.addAnnotation(Annotations.TRUNCATED, ner.getKey());
+        tracker.record(pd, Collections.singletonList(ner));
+        Assert.assertFalse(tracker.getFingerprints(pd).containsKey(ner.getKey()));
+    }
+
+    @Test
+    public void testDrop() throws IOException {
+        ProcessingData pd = analyze();
+        //provenance is kept by the serialized form
+        AnalyzedTextSerializer serializer = new AnalyzedTextSerializer(new ValueTypeSerializerRegistry(
+                Arrays.asList(new NerTagSupport(), new PhraseTagSupport())));
+        AnalyzedTextParser parser = new AnalyzedTextParser(new ValueTypeParserRegistry(
+                Arrays.asList(new NerTagSupport(), new PhraseTagSupport())));
+        AnalyzedText at = parser.parse(serializer.toJsonString(pd.getAnnotation(AnalyzedText.ANNOTATION)), TEXT);
+        pd.setAnnotation(AnalyzedText.ANNOTATION, at);
+        Assert.assertEquals(3, tracker.getFingerprints(pd).size());
+
+        tracker.drop(pd, Collections.singletonList(ner));
+        Assert.assertEquals(Arrays.asList(chunker.getKey(), tokenizer.getKey()),
+                new ArrayList<>(tracker.getFingerprints(pd).keySet()));
+        //the chunk only created by NER is removed
+        Assert.assertNull(chunk(at, 15, 17));
+        //the chunk also annotated by the chunker is kept
+        Chunk shared = chunk(at, 6, 17);
+        Assert.assertNotNull(shared);
+        Assert.assertNull(shared.getAnnotation(NlpAnnotations.NER_ANNOTATION));
+        Assert.assertNotNull(shared.getAnnotation(NlpAnnotations.PHRASE_ANNOTATION));
+        Assert.assertEquals(7, spans(at, SpanTypeEnum.Token).size());
+
+        //re-processing attributes the new results to NER
+        addEntities(at);
+        tracker.record(pd, Collections.singletonList(ner));
+        Assert.assertEquals(ner.getKey(), chunk(at, 15, 17).getAnnotation(NlpAnnotations.PRODUCER_ANNOTATION));
+        Assert.assertEquals(3, tracker.getFingerprints(pd).size());
+    }
+
+    @Test
+    public void testDropUndeclared() {
+        ProcessingData pd = analyze();
+        AnalyzedText at = pd.getAnnotation(AnalyzedText.ANNOTATION);
+        //a section present before processing
+        at.addSection(0, TEXT.length()).addAnnotation(NlpAnnotations.LANGUAGE_ANNOTATION, "en");
+
+        tracker.drop(pd, Collections.singletonList(new TestProcessor("undeclared", null)));
+        Assert.assertTrue(tracker.getFingerprints(pd).isEmpty());
+        Assert.assertTrue(spans(at, SpanTypeEnum.Sentence, SpanTypeEnum.Token, SpanTypeEnum.Chunk).isEmpty());
+        List<Span> sections = spans(at, SpanTypeEnum.TextSection);
+        Assert.assertEquals(1, sections.size());
+        Assert.assertTrue(sections.get(0).getKeys().isEmpty());
+    }
+
+    @Test
+    public void testInputSpans() {
+        ProcessingData pd = new ProcessingData(new StringContent(TEXT), new HashMap<>());
+        AnalyzedText at = NlpUtils.getOrInitAnalyzedText(pd);
+        //a section and a document level annotation added before processing
+        at.addSection(0, TEXT.length());
+        at.addAnnotation(NlpAnnotations.LANGUAGE_ANNOTATION, "en");
+        tracker.begin(pd);
+        Processor undeclared = new TestProcessor("undeclared", null);
+        at.addSentence(0, TEXT.length());
+        tracker.record(pd, Collections.singletonList(undeclared));
+        //only the sentence created by the stage is attributed to the processor
+        Assert.assertEquals(AnalyzedTextProvenanceTracker.INPUT_PRODUCER,
+                spans(at, SpanTypeEnum.TextSection).get(0).getAnnotation(NlpAnnotations.PRODUCER_ANNOTATION));
+        Assert.assertEquals(undeclared.getKey(),
+                spans(at, SpanTypeEnum.Sentence).get(0).getAnnotation(NlpAnnotations.PRODUCER_ANNOTATION));
+
+        tracker.drop(pd, Collections.singletonList(undeclared));
+        Assert.assertTrue(spans(at, SpanTypeEnum.Sentence).isEmpty());
+        Assert.assertEquals(1, spans(at, SpanTypeEnum.TextSection).size());
+        Assert.assertEquals("en", at.getAnnotation(NlpAnnotations.LANGUAGE_ANNOTATION));
+        Assert.assertTrue(tracker.getFingerprints(pd).isEmpty());
+    }
+
+    /**
+     * Simulates the processing of {@link #TEXT} by a tokenizer, NER and a
+     * chunker each recorded as an own stage.
+     */
+    private ProcessingData analyze() {
+        ProcessingData pd = new ProcessingData(new StringContent(TEXT), new HashMap<>());
+        AnalyzedText at = NlpUtils.getOrInitAnalyzedText(pd);
+        at.addSentence(0, TEXT.length());
+        at.addTokens(new int[]{0, 6, 15, 18, 27, 31, 37}, new int[]{5, 14, 17, 26, 30, 37, 38});
+        tracker.record(pd, Collections.singletonList(tokenizer));
+        addEntities(at);
+        tracker.record(pd, Collections.singletonList(ner));
+        at.addChunk(6, 17).addAnnotation(NlpAnnotations.PHRASE_ANNOTATION, new PhraseTag("NP"));
+        at.addChunk(27, 37).addAnnotation(NlpAnnotations.PHRASE_ANNOTATION, new PhraseTag("NP"));
+        tracker.record(pd, Collections.singletonList(chunker));
+        return pd;
+    }
+
+    private static void addEntities(AnalyzedText at) {
+        at.addChunk(6, 17).addAnnotation(NlpAnnotations.NER_ANNOTATION, new NerTag("person"));
+        at.addChunk(15, 17).addAnnotation(NlpAnnotations.NER_ANNOTATION, new NerTag("person"));
+    }
+
+    private static Chunk chunk(AnalyzedText at, int start, int end) {
+        for (Span span : spans(at, SpanTypeEnum.Chunk)) {
+            if (span.getStart() == start && span.getEnd() == end) {
+                return (Chunk) span;
+            }
+        }
+        return null;
+    }
+
+    private static List<Span> spans(AnalyzedText at, SpanTypeEnum type, SpanTypeEnum... types) {
+        List<Span> spans = new ArrayList<>();
+        for (Iterator<Span> it = at.getEnclosed(EnumSet.of(type, types)); it.hasNext(); ) {
+            spans.add(it.next());
+        }
+        return spans;
+    }
+
+    private static class TestProcessor extends Processor {
+
+        private final Set<String> writes;
+
+        TestProcessor(String name, Set<String> writes) {
+            super("test." + name, name, Phase.pre);
+            this.writes = writes;
+        }
+
+        @Override
+        protected void init() {
+            //nothing to do
+        }
+
+        @Override
+        protected void doProcessing(ProcessingData processingData) {
+            //results are added by the test
+        }
+
+        @Override
+        public Set<String> getWrites() {
+            return writes;
+        }
+
+        @Override
+        public Map<String, Object> getDefaultConfiguration() {
+            return Collections.emptyMap();
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2022 Redlink GmbH.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.redlink.nlp.model.stream;
+
+import io.redlink.nlp.api.ProcessingData;
+import io.redlink.nlp.api.ProcessingData.Configuration;
+import io.redlink.nlp.api.ProcessingException;
+import io.redlink.nlp.api.Processor;
+import io.redlink.nlp.model.AnalyzedText;
+import io.redlink.nlp.model.Token;
+import io.redlink.nlp.model.json.AnalyzedTextSerializer;
+import io.redlink.nlp.model.util.NlpUtils;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StreamingAnalyzerTest {
+
+    private static final String LINE = "Lorem ipsum dolor sit amet, consectetur adipiscing elit.\n";
+
+    @Test
+    public void testWindows() throws ProcessingException, IOException {
+        WordTokenizer tokenizer = new WordTokenizer();
+        StringBuilder expected = new StringBuilder();
+        List<String> tokens = new ArrayList<>();
+        List<Long> offsets = new ArrayList<>();
+        try (StreamingAnalyzer analyzer = new StreamingAnalyzer(Collections.singletonList(tokenizer), null,
+                (window, offset) -> {
+                    Assert.assertEquals(expected.length(), offset);
+                    offsets.add(offset);
+                    expected.append(window.getText());
+                    for (Iterator<Token> it = window.getTokens(); it.hasNext(); ) {
+                        tokens.add(it.next().getSpan());
+                    }
+                }, 1000)) {
+            for (int i = 0; i < 100; i++) {
+                analyzer.append(LINE);
+                if (i % 10 == 9) {
+                    analyzer.append("\n");
+                }
+            }
+        }
+        Assert.assertTrue(offsets.size() > 5);
+        Assert.assertEquals(100 * 8, tokens.size());
+        Assert.assertEquals("Lorem", tokens.get(0));
+        Assert.assertEquals(100 * LINE.length() + 10, expected.length());
+        //first window is not continued, last window has no continuation
+        Assert.assertEquals(Boolean.FALSE, tokenizer.continued.get(0));
+        Assert.assertEquals(Boolean.TRUE, tokenizer.continued.get(1));
+        Assert.assertEquals(Boolean.TRUE, tokenizer.continues.get(0));
+        Assert.assertEquals(Boolean.FALSE, tokenizer.continues.get(tokenizer.continues.size() - 1));
+        //all windows need to use the same temporal context
+        Assert.assertEquals(1, tokenizer.temporalContexts.stream().distinct().count());
+        Assert.assertEquals(offsets.size(), tokenizer.temporalContexts.size());
+    }
+
+    @Test
+    public void testHardCut() throws ProcessingException, IOException {
+        StringBuilder expected = new StringBuilder();
+        try (StreamingAnalyzer analyzer = new StreamingAnalyzer(Collections.emptyList(), null,
+                (window, offset) -> {
+                    Assert.assertTrue(window.getEnd() <= 10);
+                    expected.append(window.getText());
+                }, 10)) {
+            for (int i = 0; i < 7; i++) {
+                analyzer.append("abcdefg");
+            }
+        }
+        Assert.assertEquals(49, expected.length());
+    }
+
+    @Test
+    public void testJsonLines() throws ProcessingException, IOException {
+        StringWriter out = new StringWriter();
+        AnalyzedTextSerializer serializer = AnalyzedTextSerializer.getDefaultInstance();
+        try (StreamingAnalyzer analyzer = new StreamingAnalyzer(Collections.singletonList(new WordTokenizer()),
+                null, (window, offset) -> serializer.serialize(window, offset, out), 100)) {
+            for (int i = 0; i < 10; i++) {
+                analyzer.append(LINE);
+            }
+        }
+        String[] lines = out.toString().split("\n");
+        Assert.assertTrue(lines.length > 1);
+        Assert.assertTrue(lines[0].startsWith("{\"offset\":0,"));
+        Assert.assertTrue(lines[1].contains("\"start\":" + LINE.length() + ","));
+    }
+
+    @Test
+    public void testStreamContext() throws ProcessingException, IOException {
+        ContextKeeper keeper = new ContextKeeper();
+        try (StreamingAnalyzer analyzer = new StreamingAnalyzer(Collections.singletonList(keeper), null,
+                (window, offset) -> {
+                }, 100)) {
+            for (int i = 0; i < 10; i++) {
+                analyzer.append(LINE);
+            }
+        }
+        Assert.assertTrue(keeper.windows > 1);
+        //the same resource is used for all windows and closed with the stream
+        Assert.assertEquals(1, keeper.created.get());
+        Assert.assertEquals(1, keeper.closed.get());
+    }
+
+    @Test
+    public void testStreamContextOnFailure() throws ProcessingException, IOException {
+        ContextKeeper keeper = new ContextKeeper();
+        AtomicInteger windows = new AtomicInteger();
+        StringBuilder written = new StringBuilder();
+        StreamingAnalyzer analyzer = new StreamingAnalyzer(Collections.singletonList(keeper), null,
+                (window, offset) -> {
+                    if (windows.incrementAndGet() == 2) {
+                        throw new IOException("unable to write window");
+                    }
+                    Assert.assertEquals(written.length(), offset);
+                    written.append(window.getText());
+                }, 100);
+        int failures = 0;
+        for (int i = 0; i < 10; i++) {
+            try {
+                analyzer.append(LINE);
+            } catch (IOException e) {
+                failures++;
+            }
+        }
+        Assert.assertEquals("the failure of the WindowSink MUST BE thrown", 1, failures);
+        //the resource is closed as the window failed and not used by following windows
+        Assert.assertEquals(2, keeper.created.get());
+        Assert.assertEquals(1, keeper.closed.get());
+        analyzer.close();
+        Assert.assertEquals(2, keeper.created.get());
+        Assert.assertEquals(2, keeper.closed.get());
+        //the failed window is retried as start of a new stream and no text is lost
+        Assert.assertEquals(Arrays.asList(false, true, false), keeper.continued.subList(0, 3));
+        Assert.assertEquals(10 * LINE.length(), written.length());
+    }
+
+    /**
+     * Keeps a resource in the {@link StreamContext}
+     */
+    private static class ContextKeeper extends Processor {
+
+        private final AtomicInteger created = new AtomicInteger();
+        private final AtomicInteger closed = new AtomicInteger();
+        private int windows = 0;
+        private final List<Boolean> continued = new ArrayList<>();
+
+        ContextKeeper() {
+            super("test.keeper", "Test Context Keeper", Phase.nlp);
+        }
+
+        @Override
+        protected void init() {
+            //nothing to do
+        }
+
+        @Override
+        protected void doProcessing(ProcessingData processingData) {
+            windows++;
+            continued.add(processingData.getConfiguration(Configuration.STREAM_CONTINUED, false));
+            StreamContext context = StreamContext.get(processingData);
+            Assert.assertNotNull(context);
+            if (context.get(this) == null) {
+                created.incrementAndGet();
+                context.put(this, closed::incrementAndGet);
+            }
+        }
+
+        @Override
+        public Map<String, Object> getDefaultConfiguration() {
+            return Collections.emptyMap();
+        }
+    }
+
+    /**
+     * Adds a Token for every sequence of letters and records the stream flags
+     */
+    private static class WordTokenizer extends Processor {
+
+        private final List<Boolean> continued = new ArrayList<>();
+        private final List<Boolean> continues = new ArrayList<>();
+        private final List<Object> temporalContexts = new ArrayList<>();
+
+        WordTokenizer() {
+            super("test.tokenizer", "Test Tokenizer", Phase.nlp);
+        }
+
+        @Override
+        protected void init() {
+            //nothing to do
+        }
+
+        @Override
+        protected void doProcessing(ProcessingData processingData) {
+            continued.add(processingData.getConfiguration(Configuration.STREAM_CONTINUED, false));
+            continues.add(processingData.getConfiguration(Configuration.STREAM_CONTINUES, false));
+            temporalContexts.add(processingData.getConfiguration().get(Configuration.TEMPORAL_CONTEXT));
+            AnalyzedText at = NlpUtils.getAnalyzedText(processingData).get();
+            CharSequence text = at.getText();
+            int start = -1;
+            for (int i = 0; i <= text.length(); i++) {
+                boolean letter = i < text.length() && Character.isLetter(text.charAt(i));
+                if (letter && start < 0) {
+                    start = i;
+                } else if (!letter && start >= 0) {
+                    at.addToken(start, i);
+                    start = -1;
+                }
+            }
+        }
+
+        @Override
+        public Map<String, Object> getDefaultConfiguration() {
+            return Collections.emptyMap();
+        }
+    }
+}
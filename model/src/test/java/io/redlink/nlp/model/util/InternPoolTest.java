@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2022 Redlink GmbH.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.redlink.nlp.model.util;
+
+import io.redlink.nlp.model.pos.PosTag;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class InternPoolTest {
+
+    @Test
+    public void testBoundedPool() {
+        InternPool<String, PosTag> pool = new InternPool<>("test", 2);
+        PosTag nn = pool.intern("NN", PosTag::new);
+        Assert.assertSame(nn, pool.intern("NN", PosTag::new));
+        Assert.assertSame(pool.intern("VB", PosTag::new), pool.intern("VB", PosTag::new));
+        //the pool is full: new instances are not pooled
+        PosTag adj = pool.intern("ADJ", PosTag::new);
+        Assert.assertEquals("ADJ", adj.getTag());
+        Assert.assertNotSame(adj, pool.intern("ADJ", PosTag::new));
+        Assert.assertEquals(2, pool.size());
+        Assert.assertEquals(2, pool.getHits());
+        Assert.assertEquals(4, pool.getMisses());
+        Assert.assertEquals(2 / 6d, pool.getHitRate(), 0.0001);
+        pool.clear();
+        Assert.assertEquals(0, pool.size());
+        Assert.assertEquals(0, pool.getHitRate(), 0.0001);
+    }
+
+    @Test
+    public void testStringInterning() {
+        String lemma = Interning.intern(new String("gehen"));
+        Assert.assertSame(lemma, Interning.intern(new String("gehen")));
+        String longValue = StringUtils.repeat('a', Interning.MAX_STRING_LENGTH + 1);
+        Assert.assertSame(longValue, Interning.intern(longValue));
+        Assert.assertNull(Interning.intern(null));
+    }
+}
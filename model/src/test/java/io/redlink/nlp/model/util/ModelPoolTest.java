@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2022 Redlink GmbH.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.redlink.nlp.model.util;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ModelPoolTest {
+
+    @Test
+    public void testBorrowAndRelease() throws Exception {
+        AtomicInteger count = new AtomicInteger();
+        try (ModelPool<StringBuilder> pool = new ModelPool<>("test", 2, Duration.ofMinutes(1),
+                () -> new StringBuilder("instance-" + count.incrementAndGet()))) {
+            Assert.assertTrue(ModelPool.getPools().contains(pool));
+            StringBuilder first = pool.borrow();
+            StringBuilder second = pool.borrow();
+            Assert.assertNotSame(first, second);
+            Assert.assertEquals(2, pool.getInUse());
+            Assert.assertEquals(1d, pool.getUtilization(), 0.0001);
+
+            //the pool is exhausted: borrowing blocks until an instance is released
+            CompletableFuture<StringBuilder> third = CompletableFuture.supplyAsync(pool::borrow);
+            try {
+                third.get(100, TimeUnit.MILLISECONDS);
+                Assert.fail("borrow MUST block if all instances are in use");
+            } catch (TimeoutException e) {
+                //expected
+            }
+            pool.release(first);
+            Assert.assertSame(first, third.get(5, TimeUnit.SECONDS));
+            pool.release(third.get());
+            pool.release(second);
+
+            //the most recently released instance is reused
+            Assert.assertEquals("instance-2", pool.apply(StringBuilder::toString));
+            Assert.assertEquals(0, pool.getInUse());
+            Assert.assertEquals(2, pool.getIdle());
+            Assert.assertEquals(2, pool.getPeakInUse());
+            Assert.assertEquals(2, pool.getCreated());
+            Assert.assertEquals(4, pool.getBorrows());
+            Assert.assertEquals(1, pool.getWaits());
+
+            //decreasing the max size evicts idle instances
+            pool.setMaxSize(1);
+            Assert.assertEquals(1, pool.getIdle());
+            Assert.assertEquals(1, pool.getEvicted());
+        }
+    }
+
+    @Test
+    public void testIdleEviction() {
+        ModelPool<Object> pool = new ModelPool<>("test", 4, Duration.ZERO, Object::new);
+        Object instance = pool.borrow();
+        pool.release(instance);
+        pool.evictIdle();
+        Assert.assertEquals(0, pool.getIdle());
+        Assert.assertEquals(1, pool.getEvicted());
+        Assert.assertNotSame(instance, pool.borrow());
+        Assert.assertEquals(2, pool.getCreated());
+
+        pool.close();
+        Assert.assertFalse(ModelPool.getPools().contains(pool));
+        try {
+            pool.borrow();
+            Assert.fail("borrow MUST fail on a closed pool");
+        } catch (IllegalStateException e) {
+            //expected
+        }
+    }
+
+    @Test
+    public void testBorrowTimeout() {
+        try (ModelPool<Object> pool = new ModelPool<>("test", 1, Duration.ofMinutes(1), Object::new)) {
+            Object instance = pool.borrow();
+            try {
+                pool.borrow(Duration.ofMillis(50));
+                Assert.fail("borrow MUST fail if no instance is released before the timeout");
+            } catch (IllegalStateException e) {
+                //expected
+            }
+            Assert.assertEquals(1, pool.getWaits());
+            pool.release(instance);
+            Assert.assertSame(instance, pool.borrow(Duration.ZERO));
+        }
+    }
+
+    @Test
+    public void testDetachAndOffer() {
+        try (ModelPool<Object> pool = new ModelPool<>("test", 1, Duration.ofMinutes(1), Object::new)) {
+            Object detached = pool.borrow();
+            pool.detach(detached);
+            //the detached instance does not count against the max size
+            Assert.assertEquals(0, pool.getInUse());
+            Object other = pool.borrow(Duration.ZERO);
+            Assert.assertNotSame(detached, other);
+            //not pooled as the pool is full
+            Assert.assertFalse(pool.offer(detached));
+            pool.release(other);
+            Assert.assertEquals(1, pool.getIdle());
+
+            pool.detach(pool.borrow());
+            Assert.assertTrue(pool.offer(detached));
+            Assert.assertSame(detached, pool.borrow());
+        }
+    }
+
+    @Test
+    public void testFailingFactory() {
+        try (ModelPool<Object> pool = new ModelPool<>("test", 1, Duration.ofMinutes(1), () -> {
+            throw new IllegalStateException("unable to load model");
+        })) {
+            try {
+                pool.borrow();
+                Assert.fail("borrow MUST fail if the factory fails");
+            } catch (IllegalStateException e) {
+                Assert.assertEquals("unable to load model", e.getMessage());
+            }
+            //the slot reserved for the instance is freed
+            Assert.assertEquals(0, pool.getInUse());
+            Assert.assertEquals(0, pool.getCreated());
+        }
+    }
+}
@@ -64,6 +64,11 @@ public abstract class NamedRegexDetector extends RegexNamedEntityFactory {
 
     protected abstract Map<String, List<NamedPattern>> loadPatterns() throws IOException;
 
+    @Override
+    public String getFingerprint() {
+        return fingerprint(type, langPatterns);
+    }
+
 
     @Override
     protected List<NamedPattern> getRegexes(SpanCollection section, String lang) {
@@ -21,9 +21,12 @@ import io.redlink.nlp.model.Span;
 import io.redlink.nlp.model.Span.SpanTypeEnum;
 import io.redlink.nlp.model.SpanCollection;
 import io.redlink.nlp.regex.ner.RegexNerProcessor.NamedEntity;
+import java.util.Comparator;
 import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.regex.MatchResult;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -109,6 +112,42 @@ public abstract class RegexNamedEntityFactory {
      */
     protected abstract List<NamedPattern> getRegexes(SpanCollection section, String language);
 
+    /**
+     * A string that changes if the configuration of this factory (e.g. the
+     * loaded patterns or vocabulary) changes. Included in the
+     * {@link RegexNerProcessor#getFingerprint() fingerprint} of the
+     * {@link RegexNerProcessor} so that entities extracted with an other
+     * configuration are detected as outdated. Does not need to be a digest.
+     *
+     * @return the fingerprint. The name of the class by default
+     */
+    public String getFingerprint() {
+        return getClass().getName();
+    }
+
+    /**
+     * Creates a {@link #getFingerprint() fingerprint} over the name of the
+     * class and the parsed parts. Entries of {@link Map}s are sorted by
+     * their keys.
+     *
+     * @param parts the parts
+     * @return the fingerprint
+     */
+    protected final String fingerprint(Object... parts) {
+        StringBuilder fingerprint = new StringBuilder(getClass().getName());
+        for (Object part : parts) {
+            fingerprint.append('|');
+            if (part instanceof Map) {
+                Map<Object, Object> sorted = new TreeMap<>(Comparator.nullsFirst(Comparator.comparing(Object::toString)));
+                sorted.putAll((Map<?, ?>) part);
+                fingerprint.append(sorted);
+            } else {
+                fingerprint.append(part);
+            }
+        }
+        return fingerprint.toString();
+    }
+
     /**
      * A regex {@link Pattern} with an assigned Name. The name is parsed
      * to the {@link RegexNamedEntityFactory#createNamedEntity(String, MatchResult)}
@@ -136,5 +175,10 @@ public abstract class RegexNamedEntityFactory {
         public Pattern getPattern() {
             return pattern;
         }
+
+        @Override
+        public String toString() {
+            return name + ": " + pattern.pattern() + " (flags: " + pattern.flags() + ")";
+        }
     }
 }
@@ -109,6 +109,11 @@ public abstract class RegexNerDetector extends RegexNamedEntityFactory {
 
     protected abstract Map<String, List<Pattern>> initPatterns() throws IOException;
 
+    @Override
+    public String getFingerprint() {
+        return fingerprint(name, type, langPatterns);
+    }
+
     @Override
     protected final List<NamedPattern> getRegexes(SpanCollection section, String lang) {
         if (langPatterns == null) {
@@ -17,10 +17,12 @@ package io.redlink.nlp.regex.ner;
 
 import io.redlink.nlp.api.ProcessingData;
 import io.redlink.nlp.api.Processor;
+import io.redlink.nlp.api.annotation.Annotations;
 import io.redlink.nlp.api.model.Value;
 import io.redlink.nlp.model.AnalyzedText;
 import io.redlink.nlp.model.Chunk;
 import io.redlink.nlp.model.NlpAnnotations;
+import io.redlink.nlp.model.Span.SpanTypeEnum;
 import io.redlink.nlp.model.ner.NerTag;
 import io.redlink.nlp.model.util.NlpUtils;
 import java.util.ArrayList;
@@ -28,6 +30,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -37,8 +40,21 @@ import org.springframework.stereotype.Component;
 @Component
 public class RegexNerProcessor extends Processor {
 
+    /**
+     * {@link RegexNamedEntityFactory}s may use Sections, Sentences and Tokens
+     */
+    private static final Set<String> READS = NlpUtils.accessKeys(Annotations.LANGUAGE,
+            SpanTypeEnum.TextSection, SpanTypeEnum.Sentence, SpanTypeEnum.Token);
+    private static final Set<String> WRITES = NlpUtils.accessKeys(SpanTypeEnum.Chunk,
+            NlpAnnotations.NER_ANNOTATION, NlpAnnotations.LEMMA_ANNOTATION);
+
     private List<RegexNamedEntityFactory> tokenFactories = Collections.emptyList();
 
+    /**
+     * The fingerprint as computed on initialization (as vocabularies can be big)
+     */
+    private volatile String fingerprint;
+
     public RegexNerProcessor() {
         this(Collections.emptyList());
     }
@@ -57,6 +73,36 @@ public class RegexNerProcessor extends Processor {
     @Override
     protected void init() {
         log.debug("Initializing with {} token-factories", tokenFactories.size());
+        fingerprint = computeFingerprint();
+    }
+
+    /**
+     * Includes the {@link RegexNamedEntityFactory#getFingerprint() fingerprints}
+     * of the token factories so that results get outdated if a vocabulary
+     * or the patterns of a factory change
+     */
+    @Override
+    public String getFingerprint() {
+        String fingerprint = this.fingerprint;
+        return fingerprint == null ? computeFingerprint() : fingerprint;
+    }
+
+    private String computeFingerprint() {
+        List<String> factories = new ArrayList<>(tokenFactories.size());
+        for (RegexNamedEntityFactory tokenFactory : tokenFactories) {
+            factories.add(tokenFactory.getFingerprint());
+        }
+        return fingerprint(super.getFingerprint(), factories);
+    }
+
+    @Override
+    public Set<String> getReads() {
+        return READS;
+    }
+
+    @Override
+    public Set<String> getWrites() {
+        return WRITES;
     }
 
     @Override
@@ -225,6 +225,11 @@ public abstract class VocabularyDetector extends RegexNamedEntityFactory {
 
     protected abstract Collection<VocabularyEntry> loadEntries() throws IOException;
 
+    @Override
+    public String getFingerprint() {
+        return fingerprint(name, type, lang, cs, words);
+    }
+
     @Override
     protected NamedEntity createNamedEntity(String patternName, MatchResult match) {
         log.debug("Create {} Token for [{},{}] - {}", type, match.start(), match.end(), match.group());
@@ -40,6 +40,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import org.slf4j.Logger;
@@ -73,6 +74,16 @@ public class NamedEntityCollector extends Processor {
 
     private static final float DEFAULT_PROB = 0.8f;
 
+    /**
+     * NOTE: the NER annotations of Chunks are merged in place. They are only
+     * declared as reads, as they are the results of the NER processors this
+     * one depends on. Dropping the results of this processor MUST NOT remove
+     * them.
+     */
+    private static final Set<String> READS = NlpUtils.accessKeys(SpanTypeEnum.TextSection,
+            SpanTypeEnum.Chunk, NlpAnnotations.NER_ANNOTATION);
+    private static final Set<String> WRITES = NlpUtils.accessKeys(Annotations.NAMED_ENTITY);
+
     public NamedEntityCollector() {
         super("ner.collector", "Named Entity Collector", Phase.post, 100); //run late in the post processing phase
     }
@@ -87,6 +98,16 @@ public class NamedEntityCollector extends Processor {
         //no op
     }
 
+    @Override
+    public Set<String> getReads() {
+        return READS;
+    }
+
+    @Override
+    public Set<String> getWrites() {
+        return WRITES;
+    }
+
     @Override
     protected void doProcessing(io.redlink.nlp.api.ProcessingData processingData) throws ProcessingException {
         Optional<AnalyzedText> at = NlpUtils.getAnalyzedText(processingData);
@@ -17,6 +17,9 @@
 package io.redlink.nlp.opennlp;
 
 import io.redlink.nlp.model.ner.NerTag;
+import io.redlink.nlp.model.stream.StreamContext;
+import io.redlink.nlp.model.util.ModelPool;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
 import opennlp.tools.namefind.NameFinderME;
@@ -26,8 +29,10 @@ import opennlp.tools.namefind.TokenNameFinderModel;
  * Represents a configured OpenNLP {@link TokenNameFinderModel}.
  * <p>
  * During construction the name and type mappings are set. During the
- * activation the model is loaded. {@link ThreadLocal} {@link NameFinderME}
- * instances are created at runtime.
+ * activation the model is loaded. {@link NameFinderME} instances are created
+ * at runtime and {@link ModelPool pooled}. While processing a stream of text
+ * the instance is kept in the {@link StreamContext} so that adaptive data are
+ * kept between windows (see {@link #releaseNameFinder(NameFinderME, StreamContext, boolean)}).
  *
  * @author Rupert Westenthaler
  */
@@ -39,7 +44,7 @@ public class NameFinderModel {
      */
     protected final String modelName;
     private TokenNameFinderModel model;
-    private ThreadLocal<NameFinderME> nameFinder;
+    private ModelPool<NameFinderME> nameFinder;
 
     public NameFinderModel(String modelName) {
         assert modelName != null;
@@ -84,12 +89,7 @@ public class NameFinderModel {
     void setModel(TokenNameFinderModel model) {
         assert model != null;
         this.model = model;
-        this.nameFinder = new ThreadLocal<NameFinderME>() {
-            @Override
-            protected NameFinderME initialValue() {
-                return new NameFinderME(NameFinderModel.this.model);
-            }
-        };
+        this.nameFinder = new ModelPool<>("opennlp.ner." + modelName, () -> new NameFinderME(model));
     }
 
     /**
@@ -97,7 +97,10 @@ public class NameFinderModel {
      */
     void reset() {
         this.model = null;
-        this.nameFinder = null;
+        if (nameFinder != null) {
+            nameFinder.close();
+            nameFinder = null;
+        }
     }
 
     /**
@@ -110,12 +113,87 @@ public class NameFinderModel {
     }
 
     /**
-     * Getter for the name finder
+     * Getter for the pool of name finders
+     *
+     * @return the pool or <code>null</code> if not activated
+     */
+    public ModelPool<NameFinderME> getNameFinderPool() {
+        return nameFinder;
+    }
+
+    /**
+     * Getter for a name finder
      *
-     * @return the name finder
+     * @return a new name finder or <code>null</code> if not activated
+     * @deprecated name finders are pooled. Use {@link #borrowNameFinder(StreamContext, Duration)}
+     * and {@link #releaseNameFinder(NameFinderME, StreamContext, boolean)} instead. This creates
+     * a new instance (that is not pooled) on every call.
      */
+    @Deprecated
     public NameFinderME getNameFinder() {
-        return nameFinder == null ? null : nameFinder.get();
+        TokenNameFinderModel model = this.model;
+        return model == null ? null : new NameFinderME(model);
+    }
+
+    /**
+     * Borrows a name finder. If an instance is kept for the parsed stream
+     * this instance is returned. Callers MUST
+     * {@link #releaseNameFinder(NameFinderME, StreamContext, boolean) release}
+     * the instance.
+     *
+     * @param stream  the context of the processed stream or <code>null</code>
+     * @param timeout the maximum time to wait for an instance or <code>null</code>
+     *                to wait until one is released
+     * @return the name finder or <code>null</code> if not activated
+     * @throws IllegalStateException if no instance can be borrowed
+     */
+    public NameFinderME borrowNameFinder(StreamContext stream, Duration timeout) {
+        ModelPool<NameFinderME> pool = nameFinder;
+        Pinned p = stream == null ? null : stream.get(this);
+        if (p != null) {
+            if (p.pool == pool) {
+                return p.nameFinder;
+            } //else the model was reset since the instance was pinned
+            stream.remove(this);
+        }
+        return pool == null ? null : pool.borrow(timeout);
+    }
+
+    /**
+     * Releases a {@link #borrowNameFinder(StreamContext, Duration) borrowed}
+     * name finder. Instances kept for a stream are
+     * {@link ModelPool#detach(Object) detached} from the pool, so they do not
+     * count against its max size. They are offered back to the pool when the
+     * stream ends (or the {@link StreamContext} is closed).
+     *
+     * @param nameFinder the name finder. If not kept the caller is expected to
+     *                   clear its adaptive data.
+     * @param stream     the context of the processed stream or <code>null</code>
+     * @param keep       if the instance is kept because more text of the
+     *                   processed stream will follow. Ignored if no stream
+     *                   context is parsed
+     */
+    public void releaseNameFinder(NameFinderME nameFinder, StreamContext stream, boolean keep) {
+        ModelPool<NameFinderME> pool = this.nameFinder;
+        if (pool == null) { //model was reset
+            if (stream != null) {
+                stream.remove(this);
+            }
+            return;
+        }
+        Pinned p = stream == null ? null : stream.get(this);
+        boolean pinned = p != null && p.nameFinder == nameFinder;
+        if (keep && stream != null) {
+            if (!pinned) {
+                pool.detach(nameFinder);
+                stream.put(this, new Pinned(pool, nameFinder));
+            }
+        } else if (pinned) {
+            stream.remove(this);
+            pool.offer(nameFinder);
+        } else {
+            pool.release(nameFinder);
+        }
     }
 
     @Override
@@ -134,4 +212,25 @@ public class NameFinderModel {
     public String getType(String type) {
         return type == null ? NerTag.NAMED_ENTITY_UNKOWN : typeMappings.get(type);
     }
+
+    /**
+     * A name finder kept for a stream. Closed if the stream ends without
+     * the instance being released (e.g. processing of a window failed)
+     */
+    private static final class Pinned implements AutoCloseable {
+
+        private final ModelPool<NameFinderME> pool;
+        private final NameFinderME nameFinder;
+
+        private Pinned(ModelPool<NameFinderME> pool, NameFinderME nameFinder) {
+            this.pool = pool;
+            this.nameFinder = nameFinder;
+        }
+
+        @Override
+        public void close() {
+            nameFinder.clearAdaptiveData();
+            pool.offer(nameFinder);
+        }
+    }
 }
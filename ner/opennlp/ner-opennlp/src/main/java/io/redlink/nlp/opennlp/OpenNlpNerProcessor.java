@@ -16,8 +16,12 @@
 
 package io.redlink.nlp.opennlp;
 
+import io.redlink.nlp.api.Deadline;
 import io.redlink.nlp.api.ProcessingData;
+import io.redlink.nlp.api.ProcessingData.Configuration;
+import io.redlink.nlp.api.ProcessingException;
 import io.redlink.nlp.api.Processor;
+import io.redlink.nlp.api.annotation.Annotations;
 import io.redlink.nlp.api.model.Value;
 import io.redlink.nlp.model.AnalyzedText;
 import io.redlink.nlp.model.Chunk;
@@ -26,8 +30,10 @@ import io.redlink.nlp.model.Sentence;
 import io.redlink.nlp.model.Span.SpanTypeEnum;
 import io.redlink.nlp.model.SpanCollection;
 import io.redlink.nlp.model.ner.NerTag;
+import io.redlink.nlp.model.stream.StreamContext;
 import io.redlink.nlp.model.util.NlpUtils;
 import java.io.IOException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -39,6 +45,8 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.PreDestroy;
 import opennlp.tools.namefind.NameFinderME;
 import opennlp.tools.util.Span;
@@ -61,6 +69,10 @@ public class OpenNlpNerProcessor extends Processor {
 
     private static final int CONTENT_INTERRUPTION = 80;
 
+    private static final Set<String> READS = NlpUtils.accessKeys(Annotations.LANGUAGE,
+            SpanTypeEnum.TextSection, SpanTypeEnum.Sentence, SpanTypeEnum.Token);
+    private static final Set<String> WRITES = NlpUtils.accessKeys(SpanTypeEnum.Chunk, NlpAnnotations.NER_ANNOTATION);
+
     private final List<OpenNlpNerModel> nerModels;
 
     private final Map<String, OpenNlpNerModel> lang2NerModel;
@@ -125,6 +137,16 @@ public class OpenNlpNerProcessor extends Processor {
     }
 
 
+    @Override
+    public Set<String> getReads() {
+        return READS;
+    }
+
+    @Override
+    public Set<String> getWrites() {
+        return WRITES;
+    }
+
     @Override
     protected void doProcessing(ProcessingData processingData) {
 
@@ -149,12 +171,55 @@ public class OpenNlpNerProcessor extends Processor {
         if (model == null) {
             LOG.debug("Unable to preprocess conversation {} because language {} "
                     + "is not supported", processingData, language);
+            unsupportedLanguage(processingData);
             return;
         }
+        process(model, processingData, at.get());
+    }
+
+    /**
+     * Looks up the model once per language and extracts the named entities
+     * of all documents of that language with it.
+     */
+    @Override
+    protected List<ProcessingException> doProcessing(List<ProcessingData> batch) {
+        List<ProcessingException> failures = new ArrayList<>();
+        for (Map.Entry<String, List<ProcessingData>> group : groupByLanguage(batch).entrySet()) {
+            String language = group.getKey();
+            if (language == null || language.length() < 2) {
+                LOG.warn("Unable to process {} documents because missing/invalid language {}",
+                        group.getValue().size(), language);
+                continue;
+            }
+            OpenNlpNerModel model = getModel(language);
+            if (model == null) {
+                LOG.debug("Unable to preprocess {} documents because language {} is not supported",
+                        group.getValue().size(), language);
+                group.getValue().forEach(this::unsupportedLanguage);
+                continue;
+            }
+            for (ProcessingData processingData : group.getValue()) {
+                try {
+                    Optional<AnalyzedText> at = NlpUtils.getAnalyzedText(processingData);
+                    if (at.isPresent()) {
+                        process(model, processingData, at.get());
+                    } else {
+                        LOG.warn("Unable to preprocess conversation {} because no AnalyzedText is present "
+                                + "and this QueryPreperator requires Tokens and Sentences!", processingData);
+                    }
+                } catch (RuntimeException e) {
+                    failures.add(toProcessingException(processingData, e));
+                }
+            }
+        }
+        return failures;
+    }
+
+    private void process(OpenNlpNerModel model, ProcessingData processingData, AnalyzedText at) {
         //get the sections of the content
-        Iterator<? extends SpanCollection> contentSections = at.get().getSections();
+        Iterator<? extends SpanCollection> contentSections = at.getSections();
         if (!contentSections.hasNext()) { //fallback use the AnalyzedText as a whole
-            contentSections = Collections.singleton(at.get()).iterator();
+            contentSections = Collections.singleton(at).iterator();
         }
         //try to get sentences from content sections
         Collection<SpanCollection> sentences = new LinkedList<>();
@@ -169,51 +234,71 @@ public class OpenNlpNerProcessor extends Processor {
                 sentences.add(section); //process the whole section as a single sentence
             }
         }
-        extractNamedEntities(model, sentences);
+        //when processing a stream of text the adaptive data are kept between windows
+        boolean continued = processingData.getConfiguration(Configuration.STREAM_CONTINUED, false);
+        boolean continues = processingData.getConfiguration(Configuration.STREAM_CONTINUES, false);
+        extractNamedEntities(model, processingData, sentences, continued, continues);
     }
 
-    private void extractNamedEntities(OpenNlpNerModel langNerModel, Iterable<SpanCollection> sentences) {
+    private void extractNamedEntities(OpenNlpNerModel langNerModel, ProcessingData processingData,
+                                      Iterable<SpanCollection> sentences, boolean continued, boolean continues) {
         AnalyzedText at = null;
         int lastEnd = 0; //the end of the last processed sentence (used to track if we need to reset adaptive data in the NameFinder)
         LOG.trace("> extract Named Entities");
+        List<NameFinderModel> models = langNerModel.getNameFinders();
+        NameFinderME[] nameFinders = new NameFinderME[models.size()];
+        StreamContext stream = StreamContext.get(processingData);
+        //do not wait longer for a NameFinder as the deadline allows
+        Deadline deadline = processingData.getDeadline();
+        Duration timeout = deadline != null && deadline.isBounded()
+                ? Duration.ofNanos(deadline.getRemaining(TimeUnit.NANOSECONDS)) : null;
+        boolean success = false;
         try {
+            for (int i = 0; i < nameFinders.length; i++) {
+                try {
+                    nameFinders[i] = models.get(i).borrowNameFinder(stream, timeout); //null if deactivating
+                } catch (IllegalStateException e) {
+                    if (deadlineExceeded(processingData)) {
+                        return; //timeout while waiting for a NameFinder
+                    }
+                    throw e;
+                }
+            }
+            if (!continued) { //adaptive data of an aborted stream might still be present
+                clearAdaptiveData(nameFinders);
+            }
             nextSentence:
             for (SpanCollection sentence : sentences) {
+                if (deadlineExceeded(processingData)) {
+                    break;
+                }
                 if (at == null) { //init the Analyzed Text field
                     at = sentence.getContext(); //with the first processed sentence
                 }
                 int offset = sentence.getStart();
-                Iterator<io.redlink.nlp.model.Token> tokenIt = sentence.getTokens();
-                if (!tokenIt.hasNext()) {
+                List<io.redlink.nlp.model.Token> tokens = sentence.getTokenList();
+                if (tokens.isEmpty()) {
                     LOG.warn("{} {} has not Tokens. Will not extract Named Entities",
                             sentence, StringUtils.abbreviate(sentence.getSpan(), 40));
                     continue nextSentence;
                 }
-                List<io.redlink.nlp.model.Token> tokens = new ArrayList<>();
-                while (tokenIt.hasNext()) {
-                    tokens.add(tokenIt.next());
-                }
                 String[] spans = new String[tokens.size()];
                 for (int i = 0; i < spans.length; i++) {
                     //use the case sensitive state to get the correct token
                     spans[i] = langNerModel.isCaseSensitive() ?
                             NlpUtils.toTrueCase(tokens.get(i)) : //this uses true case annotations (if present)
-                            tokens.get(i).getSpan().toLowerCase(langNerModel.getLocale()); //to lower case
+                            tokens.get(i).getSpanView().toString().toLowerCase(langNerModel.getLocale()); //to lower case
                 }
                 if ((offset - lastEnd) > CONTENT_INTERRUPTION) { //reset statistics
                     LOG.trace(" - content interuption (clear adaptive data of NER models)");
-                    for (NameFinderModel model : langNerModel.getNameFinders()) {
-                        NameFinderME nameFinder = model.getNameFinder();
-                        if (nameFinder != null) { //might be null if deactivating
-                            nameFinder.clearAdaptiveData();
-                        }
-                    }
+                    clearAdaptiveData(nameFinders);
                 }
                 if (LOG.isTraceEnabled()) {
                     LOG.trace("> sentence: {}: {}", sentence, Arrays.toString(spans));
                 }
-                for (NameFinderModel model : langNerModel.getNameFinders()) {
-                    NameFinderME nameFinder = model.getNameFinder();
+                for (int m = 0; m < nameFinders.length; m++) {
+                    NameFinderModel model = models.get(m);
+                    NameFinderME nameFinder = nameFinders[m];
                     if (nameFinder != null) { //might be null if deactivating
                         Span[] entitySpans = nameFinder.find(spans);
                         if (entitySpans != null) {
@@ -246,14 +331,26 @@ public class OpenNlpNerProcessor extends Processor {
                 lastEnd = sentence.getEnd();
 
             } //end for all content Sentences to process
+            success = true;
         } finally { //finally we want to clear adaptive data from the use NameFinder
             //otherwise results of the previous Document might affect those of the next
-            for (NameFinderModel model : langNerModel.getNameFinders()) {
-                NameFinderME nameFinder = model.getNameFinder();
-                if (nameFinder != null) {
-                    nameFinder.clearAdaptiveData();
+            boolean keep = continues && success; //keep the NameFinders for the next window
+            if (!keep) {
+                clearAdaptiveData(nameFinders);
+            }
+            for (int i = 0; i < nameFinders.length; i++) {
+                if (nameFinders[i] != null) {
+                    models.get(i).releaseNameFinder(nameFinders[i], stream, keep);
                 }
             }
         }
     }
+
+    private void clearAdaptiveData(NameFinderME[] nameFinders) {
+        for (NameFinderME nameFinder : nameFinders) {
+            if (nameFinder != null) {
+                nameFinder.clearAdaptiveData();
+            }
+        }
+    }
 }
@@ -19,6 +19,7 @@ package io.redlink.nlp.negation;
 import com.sun.management.VMOption.Origin;
 import io.redlink.nlp.api.ProcessingData;
 import io.redlink.nlp.api.Processor;
+import io.redlink.nlp.api.model.Value;
 import io.redlink.nlp.model.AnalyzedText;
 import io.redlink.nlp.model.Chunk;
 import io.redlink.nlp.model.NlpAnnotations;
@@ -27,7 +28,6 @@ import io.redlink.nlp.model.Token;
 import io.redlink.nlp.model.pos.Pos;
 import io.redlink.nlp.model.pos.PosSet;
 import io.redlink.nlp.model.util.NlpUtils;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -150,18 +150,16 @@ public class NegationProcessor extends Processor {
         if (LOG.isTraceEnabled()) {
             LOG.trace("Sentence  [{},{}]: {}", sentence.getStart(), sentence.getEnd(), sentence.getSpan());
         }
-        Iterator<Token> tokens = sentence.getTokens();
+        List<Token> tokenList = sentence.getTokenList();
         NavigableMap<Integer, Token> negations = new TreeMap<Integer, Token>();
         NavigableMap<Integer, Token> negateable = new TreeMap<Integer, Token>();
         //NavigableMap<Integer,Token> verbs = new TreeMap<Integer,Token>();
         //NavigableMap<Integer,Token> adjectives = new TreeMap<Integer,Token>();
         NavigableMap<Integer, Token> conjuctions = new TreeMap<Integer, Token>();
         NavigableMap<Integer, Token> sectionBorders = new TreeMap<Integer, Token>();
-        List<Token> tokenList = new ArrayList<>();
-        while (tokens.hasNext()) {
-            final Token token = tokens.next();
-            Integer idx = tokenList.size();
-            tokenList.add(token);
+        for (int i = 0; i < tokenList.size(); i++) {
+            final Token token = tokenList.get(i);
+            Integer idx = i;
             LOG.trace(" {}. {}: {}", idx, token, token.getValues(NlpAnnotations.POS_ANNOTATION));
             if (isNegation(negationRules, token)) {
                 negations.put(idx, token);
@@ -222,7 +220,7 @@ public class NegationProcessor extends Processor {
                         sentence.getSpan().substring(startChar - sentence.getStart(), endChar - sentence.getStart()));
             }
             Chunk negatedChunk = sentence.addChunk(startChar - sentence.getStart(), endChar - sentence.getStart());
-            negatedChunk.addAnnotation(NlpAnnotations.NEGATION_ANNOTATION, Boolean.TRUE);
+            negatedChunk.addValue(NlpAnnotations.NEGATION_ANNOTATION, Value.TRUE);
         }
 
     }
@@ -16,13 +16,14 @@
 
 package io.redlink.nlp.negation.de;
 
+import io.redlink.nlp.model.SpanView;
 import io.redlink.nlp.model.Token;
 import io.redlink.nlp.model.pos.Pos;
 import io.redlink.nlp.model.pos.PosSet;
 import io.redlink.nlp.model.util.NlpUtils;
 import io.redlink.nlp.negation.DefaultNegationRule;
 import io.redlink.nlp.negation.NegationRule;
-import java.util.Locale;
+import java.util.regex.Pattern;
 import org.springframework.stereotype.Component;
 
 /**
@@ -36,6 +37,8 @@ public class GermanNegationRule extends DefaultNegationRule implements NegationR
 
     private static final PosSet INDEV_PRONOUN = PosSet.of(Pos.IndefinitePronoun);
     private static final PosSet PREPOS = PosSet.of(Pos.Preposition);
+    private static final Pattern EXCLUSIVE = Pattern.compile("ex(c|k)l(\\.?$|usiv)",
+            Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
 
     public GermanNegationRule() {
         super();
@@ -44,20 +47,20 @@ public class GermanNegationRule extends DefaultNegationRule implements NegationR
     @Override
     public boolean isNegation(Token token) {
         if (!super.isNegation(token)) {
-            String word = token.getSpan().toLowerCase(Locale.GERMAN);
+            SpanView word = token.getSpanView();
             //keine <Token>
             if (NlpUtils.isOfPos(token, INDEV_PRONOUN)) {
-                if (word.startsWith("kein")) {
+                if (word.startsWith("kein", true)) {
                     return true;
                 }
             }
             //exclusive <Token>
-            if (word.matches("ex(c|k)l(\\.?$|usiv)")) {
+            if (word.startsWith("ex", true) && EXCLUSIVE.matcher(word).matches()) {
                 return true;
             }
             //ohne <Token>
             if (NlpUtils.isOfPos(token, PREPOS)) {
-                if (word.startsWith("ohne")) {
+                if (word.startsWith("ohne", true)) {
                     return true;
                 }
             }
@@ -17,6 +17,7 @@
 package io.redlink.nlp.stanza;
 
 import java.net.URI;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Locale;
@@ -33,6 +34,8 @@ public class StanzaConfiguration {
 
     private URI url = null;
     private Set<String> langs = new HashSet<>();
+    private int batchChars = 100_000;
+    private Duration requestTimeout = Duration.ofMinutes(1);
 
 
     public URI getUrl() {
@@ -55,6 +58,38 @@ public class StanzaConfiguration {
                         .collect(Collectors.toSet());
     }
 
+    /**
+     * The maximum number of characters of a batch request. Batches of
+     * documents are split into several requests so that this limit is not
+     * exceeded. Documents exceeding the limit are sent in an own request.
+     * A value &lt; 1 deactivates batch requests.
+     *
+     * @return the maximum number of characters of a batch request
+     */
+    public int getBatchChars() {
+        return batchChars;
+    }
+
+    public void setBatchChars(int batchChars) {
+        this.batchChars = batchChars;
+    }
+
+    /**
+     * The timeout of requests to Stanza. Requests for documents with a
+     * {@link io.redlink.nlp.api.ProcessingData#getDeadline() deadline} use
+     * the remaining time if it is shorter. <code>null</code> or a value
+     * &lt;= 0 deactivates the timeout.
+     *
+     * @return the request timeout
+     */
+    public Duration getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    public void setRequestTimeout(Duration requestTimeout) {
+        this.requestTimeout = requestTimeout;
+    }
+
     public boolean supports(String lang) {
         return lang != null && (langs.isEmpty() || langs.contains(lang.toLowerCase(Locale.ROOT)));
     }
@@ -19,11 +19,12 @@ package io.redlink.nlp.stanza;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonParser;
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.redlink.nlp.api.Deadline;
 import io.redlink.nlp.api.ProcessingException;
 import io.redlink.nlp.api.Processor;
+import io.redlink.nlp.api.model.Value;
 import io.redlink.nlp.model.AnalyzedText;
 import io.redlink.nlp.model.Chunk;
 import io.redlink.nlp.model.NlpAnnotations;
@@ -32,28 +33,34 @@ import io.redlink.nlp.model.Token;
 import io.redlink.nlp.model.ner.NerTag;
 import io.redlink.nlp.model.pos.PosTag;
 import io.redlink.nlp.model.tag.TagSet;
+import io.redlink.nlp.model.util.Interning;
 import io.redlink.nlp.model.util.NlpUtils;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.http.HttpHeaders;
-import org.apache.http.HttpResponse;
-import org.apache.http.client.ClientProtocolException;
-import org.apache.http.client.ResponseHandler;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.ByteArrayEntity;
-import org.apache.http.entity.ContentType;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -78,21 +85,25 @@ public class StanzaProcessor extends Processor {
 
     private final ObjectMapper mapper;
 
-    private final CloseableHttpClient httpClient;
+    private final HttpClient httpClient;
 
-    private final Map<String, PosTag> unmappedUPosTags;
-    private final Map<String, Map<String, PosTag>> unmappedXPosTags;
-    private final Map<String, NerTag> unmappedNerTags;
+    /**
+     * Prefix for the keys of language specific xPos tags in the global
+     * {@link Interning#POS_TAGS} pool
+     */
+    private static final String INTERN_KEY_PREFIX = "stanza:";
+
+    /**
+     * Separates the texts of documents sent with a single batch request
+     */
+    private static final String BATCH_SEPARATOR = "\n\n";
 
     @Autowired
     public StanzaProcessor(StanzaConfiguration config, ObjectMapper mapper) {
         super("stanza", "Stanza NLP", Phase.pos); //this does token, sent, pos and ner
         this.config = config;
         this.mapper = mapper;
-        httpClient = HttpClientBuilder.create().build();
-        unmappedUPosTags = new HashMap<>();
-        unmappedXPosTags = new HashMap<>();
-        unmappedNerTags = new HashMap<>();
+        httpClient = HttpClient.newHttpClient();
     }
 
     @Override
@@ -108,77 +119,305 @@ public class StanzaProcessor extends Processor {
     @Override
     protected void doProcessing(io.redlink.nlp.api.ProcessingData processingData) throws ProcessingException {
         LOG.debug("> process {} with {}", processingData, getClass().getSimpleName());
+        AnalyzedText at = NlpUtils.getOrInitAnalyzedText(processingData);
+        String language = getLanguage(processingData, at);
+        if (language == null) {
+            return;
+        }
+        try {
+            analyse(language, at.getSpan(), timeout(Collections.singleton(processingData)),
+                    new AnalysisResponseHandler(language, at));
+        } catch (HttpTimeoutException e) {
+            if (!processingData.isExpired()) {
+                throw requestFailed(processingData, e);
+            }
+            truncated(processingData);
+        } catch (IOException e) {
+            throw requestFailed(processingData, e);
+        }
+    }
 
+    /**
+     * Sends the analysis request by using the non-blocking HTTP client. The
+     * calling thread is not blocked while waiting for the response. The
+     * response is processed by a thread of the HTTP client.
+     */
+    @Override
+    protected CompletionStage<Void> doProcessingAsync(io.redlink.nlp.api.ProcessingData processingData) {
+        LOG.debug("> process {} async with {}", processingData, getClass().getSimpleName());
         AnalyzedText at = NlpUtils.getOrInitAnalyzedText(processingData);
+        String language = getLanguage(processingData, at);
+        if (language == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        HttpRequest request;
+        try {
+            request = request(language, at.getSpan(), timeout(Collections.singleton(processingData)));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(requestFailed(processingData, e));
+        }
+        AnalysisResponseHandler handler = new AnalysisResponseHandler(language, at);
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()).whenComplete((response, e) -> {
+            try {
+                if (e != null) {
+                    throw e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                }
+                handler.handleResponse(response.statusCode(), new ByteArrayInputStream(response.body()));
+                result.complete(null);
+            } catch (HttpTimeoutException ex) {
+                if (processingData.isExpired()) {
+                    truncated(processingData);
+                    result.complete(null);
+                } else {
+                    result.completeExceptionally(requestFailed(processingData, ex));
+                }
+            } catch (IOException | RuntimeException ex) {
+                result.completeExceptionally(requestFailed(processingData, ex));
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * The language of the parsed document if it can be processed
+     *
+     * @return the language or <code>null</code> if the document can not be
+     * processed
+     */
+    private String getLanguage(io.redlink.nlp.api.ProcessingData processingData, AnalyzedText at) {
         if (at == null) {
             LOG.debug("Unable to process {} because no palin/text content is present", processingData);
-            return;
+            return null;
         }
 
         String language = processingData.getLanguage();
         if (!config.supports(language)) {
             LOG.debug("Unable to preprocess {} because language '{}' is not supported (supported: {})",
                     processingData, language, config.getLangs());
-            return;
+            unsupportedLanguage(processingData);
+            return null;
         }
         LOG.debug(" - language: {}", language);
         if (language == null || language.length() < 2) {
             LOG.warn("Unable to process {} because missing/invalid language {}",
                     processingData, language);
-            return;
+            return null;
         }
+        return language;
+    }
 
-        HttpPost req = new HttpPost(config.getUrl());
-        Map<String, String> reqData = new HashMap<>();
-        reqData.put("lang", language);
-        reqData.put("text", at.getSpan());
-        req.setHeader(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.toString());
-        req.setHeader(HttpHeaders.ACCEPT, ContentType.APPLICATION_JSON.toString());
-        try {
-            req.setEntity(new ByteArrayEntity(mapper.writeValueAsBytes(reqData)));
-        } catch (JsonProcessingException e) {
-            throw new ProcessingException(String.format("Unable to create JSON Response (reason: %s", e.getMessage()),
-                    e, this, processingData);
+    private ProcessingException requestFailed(io.redlink.nlp.api.ProcessingData processingData, Exception e) {
+        return new ProcessingException(String.format("Error wile Stanza Analyis Request (endpoint: %s, reason: %s",
+                config.getUrl(), e.getMessage()), e, this, processingData);
+    }
+
+    /**
+     * Groups the documents by language and sends the texts of documents with
+     * the same language with a single request (up to
+     * {@link StanzaConfiguration#getBatchChars()} characters). The texts are
+     * separated by an empty line. If a batch request fails (or Stanza detects
+     * a sentence crossing the border of two documents) the documents of the
+     * batch are processed one by one to isolate the failing document.
+     */
+    @Override
+    protected List<ProcessingException> doProcessing(List<io.redlink.nlp.api.ProcessingData> batch) {
+        List<ProcessingException> failures = new ArrayList<>();
+        for (Map.Entry<String, List<io.redlink.nlp.api.ProcessingData>> group : groupByLanguage(batch).entrySet()) {
+            String language = group.getKey();
+            if (language == null || language.length() < 2 || !config.supports(language)) {
+                LOG.debug("Unable to preprocess {} documents because language '{}' is missing, invalid or "
+                        + "not supported (supported: {})", group.getValue().size(), language, config.getLangs());
+                if (language != null && language.length() >= 2) {
+                    group.getValue().forEach(this::unsupportedLanguage);
+                }
+                continue;
+            }
+            List<io.redlink.nlp.api.ProcessingData> request = new ArrayList<>();
+            List<AnalyzedText> texts = new ArrayList<>();
+            int chars = 0;
+            for (io.redlink.nlp.api.ProcessingData processingData : group.getValue()) {
+                AnalyzedText at;
+                try {
+                    at = NlpUtils.getOrInitAnalyzedText(processingData);
+                } catch (RuntimeException e) {
+                    failures.add(toProcessingException(processingData, e));
+                    continue;
+                }
+                if (at == null) {
+                    LOG.debug("Unable to process {} because no palin/text content is present", processingData);
+                    continue;
+                }
+                if (!request.isEmpty() && chars + at.getEnd() + BATCH_SEPARATOR.length() > config.getBatchChars()) {
+                    processBatch(language, request, texts, failures);
+                    request.clear();
+                    texts.clear();
+                    chars = 0;
+                }
+                request.add(processingData);
+                texts.add(at);
+                chars += at.getEnd() + BATCH_SEPARATOR.length();
+            }
+            if (!request.isEmpty()) {
+                processBatch(language, request, texts, failures);
+            }
+        }
+        return failures;
+    }
+
+    private void processBatch(String language, List<io.redlink.nlp.api.ProcessingData> request, List<AnalyzedText> texts,
+                              List<ProcessingException> failures) {
+        if (request.size() > 1) {
+            AnalyzedText[] ats = texts.toArray(new AnalyzedText[0]);
+            int[] offsets = new int[ats.length];
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < ats.length; i++) {
+                if (i > 0) {
+                    text.append(BATCH_SEPARATOR);
+                }
+                offsets[i] = text.length();
+                text.append(ats[i].getText());
+            }
+            try {
+                analyse(language, text.toString(), timeout(request), new AnalysisResponseHandler(language, ats, offsets));
+                return;
+            } catch (IOException | RuntimeException e) {
+                LOG.debug("Batch request for {} documents failed ({}: {}). Fall back to process documents one by one",
+                        ats.length, e.getClass().getSimpleName(), e.getMessage());
+            }
+        }
+        for (io.redlink.nlp.api.ProcessingData processingData : request) {
+            try {
+                doProcessing(processingData);
+            } catch (ProcessingException | RuntimeException e) {
+                failures.add(toProcessingException(processingData, e));
+            }
         }
+    }
+
+    /**
+     * Sends an analysis request for the parsed text to Stanza
+     *
+     * @param language the language of the text
+     * @param text     the text
+     * @param timeout  the timeout of the request or <code>null</code> if none
+     * @param handler  the handler adding the results
+     * @throws HttpTimeoutException if the request timed out
+     * @throws IOException          on any error during the request or while processing the response
+     */
+    private void analyse(String language, String text, Duration timeout, AnalysisResponseHandler handler)
+            throws IOException {
+        HttpResponse<InputStream> response;
         try {
-            httpClient.execute(req, new AnalysisResponseHandler(language, at));
-        } catch (IOException e) {
-            throw new ProcessingException(String.format("Error wile Stanza Analyis Request (endpoint: %s, reason: %s",
-                    config.getUrl(), e.getMessage()), e, this, processingData);
+            response = httpClient.send(request(language, text, timeout), HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the Stanza response");
         }
+        handler.handleResponse(response.statusCode(), response.body());
+    }
+
+    private HttpRequest request(String language, String text, Duration timeout) throws IOException {
+        Map<String, String> reqData = new HashMap<>();
+        reqData.put("lang", language);
+        reqData.put("text", text);
+        HttpRequest.Builder builder = HttpRequest.newBuilder(config.getUrl())
+                .header("Content-Type", "application/json; charset=UTF-8")
+                .header("Accept", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(reqData)));
+        if (timeout != null) {
+            builder.timeout(timeout);
+        }
+        return builder.build();
+    }
+
+    /**
+     * The timeout of a request for the parsed documents: the configured
+     * {@link StanzaConfiguration#getRequestTimeout() request timeout} limited
+     * by the latest {@link io.redlink.nlp.api.ProcessingData#getDeadline() deadline}
+     * of the documents
+     *
+     * @return the timeout or <code>null</code> if none
+     */
+    private Duration timeout(Collection<io.redlink.nlp.api.ProcessingData> documents) {
+        Duration timeout = config.getRequestTimeout();
+        if (timeout != null && (timeout.isZero() || timeout.isNegative())) {
+            timeout = null;
+        }
+        long remaining = 0;
+        for (io.redlink.nlp.api.ProcessingData processingData : documents) {
+            Deadline deadline = processingData.getDeadline();
+            if (deadline == null || !deadline.isBounded()) {
+                return timeout;
+            }
+            remaining = Math.max(remaining, deadline.getRemaining(TimeUnit.NANOSECONDS));
+        }
+        //the timeout of a request needs to be positive
+        Duration left = Duration.ofNanos(Math.max(1, remaining));
+        return timeout == null || left.compareTo(timeout) < 0 ? left : timeout;
     }
 
     /**
      * Response Handler for Stanza Annotation results that adds the
      * corresponding Redlink NLP annotations directly to the Analyzed Text
      */
-    class AnalysisResponseHandler implements ResponseHandler<Void> {
+    class AnalysisResponseHandler {
 
         final String language;
-        final AnalyzedText at;
-        final Map<String, StanzaToken> tokens;
+        /**
+         * The documents of the request. Only a single one unless this is a
+         * batch request
+         */
+        final AnalyzedText[] ats;
+        /**
+         * The offsets of the {@link #ats} within the text of the request
+         */
+        final int[] offsets;
+        /**
+         * The {@link Token}s added to the {@link #ats} by Stanza token id
+         */
+        final Map<String, Token> tokens;
         final Map<String, StanzaWord> words;
+        /**
+         * Batch requests first collect the results and only add them after
+         * the whole response was validated. This ensures that the documents
+         * are not modified if the response can not be mapped to them.
+         */
+        final List<StanzaSentence> sentences;
+        final List<StanzaEntity> entities;
 
         public AnalysisResponseHandler(String language, AnalyzedText at) {
+            this(language, new AnalyzedText[]{Objects.requireNonNull(at)}, new int[]{0});
+        }
+
+        public AnalysisResponseHandler(String language, AnalyzedText[] ats, int[] offsets) {
             this.language = Objects.requireNonNull(language);
-            this.at = Objects.requireNonNull(at);
+            this.ats = Objects.requireNonNull(ats);
+            this.offsets = Objects.requireNonNull(offsets);
             tokens = new HashMap<>();
             words = new HashMap<>();
+            sentences = ats.length > 1 ? new ArrayList<>() : null;
+            entities = ats.length > 1 ? new ArrayList<>() : null;
         }
 
-        @Override
-        public Void handleResponse(HttpResponse response) throws IOException {
-
-            int status = response.getStatusLine().getStatusCode();
-            if (status >= 200 && status < 300) {
-                try (InputStream in = response.getEntity().getContent()) {
-                    processAnnptations(in);
+        /**
+         * Processes the response
+         *
+         * @param status the HTTP status code
+         * @param in     the response body. Closed by this method
+         * @throws IOException on an unexpected status or if the response can
+         *                     not be processed
+         */
+        public void handleResponse(int status, InputStream in) throws IOException {
+            try (InputStream body = in) {
+                if (status >= 200 && status < 300) {
+                    processAnnptations(body);
+                } else {
+                    throw new IOException(String.format("Unexpected response status '%d' ", status));
                 }
-            } else {
-                throw new ClientProtocolException(String.format(
-                        "Unexpected response status '%s' ", response.getStatusLine()));
             }
-            return null;
         }
 
         /**
@@ -195,14 +434,38 @@ public class StanzaProcessor extends Processor {
                 while (parser.nextToken() != null) {
                     String fieldname = parser.getCurrentName();
                     if ("sentences".equals(fieldname)) {
-                        consumeArray(parser, StanzaSentence.class, this::annotateSentence);
+                        consumeArray(parser, StanzaSentence.class, sentences == null ? this::annotateSentence : sentences::add);
                     } else if ("entities".equals(fieldname)) {
-                        consumeArray(parser, StanzaEntity.class, this::annotateEntity);
+                        consumeArray(parser, StanzaEntity.class, entities == null ? this::annotateEntity : entities::add);
                     } else if (!parser.getCurrentToken().isStructEnd()) {
                         consumeTree(parser); //consume unknown trees
                     } //else we are done
                 }
             }
+            if (sentences != null) {
+                for (StanzaSentence sent : sentences) { //validate before modifying any document
+                    int start = sent.getTokens().get(0).getStart();
+                    int end = sent.getTokens().get(sent.getTokens().size() - 1).getEnd();
+                    int idx = indexOf(start);
+                    if (end > offsets[idx] + ats[idx].getEnd()) {
+                        throw new IOException(String.format("Sentence [%d, %d] crosses the border of batched documents",
+                                start, end));
+                    }
+                }
+                sentences.forEach(this::annotateSentence);
+                entities.forEach(this::annotateEntity);
+            }
+        }
+
+        /**
+         * The index of the document containing the parsed offset
+         *
+         * @param offset the offset within the text of the request
+         * @return the index of the document in {@link #ats}
+         */
+        private int indexOf(int offset) {
+            int idx = Arrays.binarySearch(offsets, offset);
+            return idx >= 0 ? idx : Math.max(0, -idx - 2);
         }
 
         /**
@@ -249,27 +512,37 @@ public class StanzaProcessor extends Processor {
         private void annotateSentence(StanzaSentence sent) {
             int start = sent.getTokens().get(0).getStart();
             int end = sent.getTokens().get(sent.getTokens().size() - 1).getEnd();
-            Sentence s = at.addSentence(start, end);
+            int idx = indexOf(start);
+            Sentence s = ats[idx].addSentence(start - offsets[idx], end - offsets[idx]);
             if (sent.getSentiment() != null) {
                 s.addAnnotation(NlpAnnotations.SENTIMENT_ANNOTATION, sent.getSentiment());
             }
-            sent.getTokens().forEach(this::annotateToken);
+            annotateTokens(ats[idx], offsets[idx], sent.getTokens());
             sent.getWords().forEach(this::annotateWord);
         }
 
-        private void annotateToken(StanzaToken token) {
-            tokens.put(token.getId(), token);
+        private void annotateTokens(AnalyzedText at, int offset, List<StanzaToken> sentTokens) {
+            int[] starts = new int[sentTokens.size()];
+            int[] ends = new int[sentTokens.size()];
+            for (int i = 0; i < starts.length; i++) {
+                StanzaToken token = sentTokens.get(i);
+                starts[i] = token.getStart() - offset;
+                ends[i] = token.getEnd() - offset;
+            }
+            Token[] added = at.addTokens(starts, ends);
+            for (int i = 0; i < added.length; i++) {
+                tokens.put(sentTokens.get(i).getId(), added[i]);
+            }
         }
 
         private void annotateWord(StanzaWord word) {
-            StanzaToken token = tokens.get(word.getToken());
-            Objects.requireNonNull(token, String.format("Unresolfable link to Token[id:%s] for %s", word.getToken(), token));
-            Token t = at.addToken(token.getStart(), token.getEnd());
+            Token t = tokens.get(word.getToken());
+            Objects.requireNonNull(t, String.format("Unresolfable link to Token[id:%s] for %s", word.getToken(), word));
             if (word.getPos() != null) {
-                t.addAnnotation(NlpAnnotations.POS_ANNOTATION, getPosTag(language, word.getXPos(), word.getPos()));
+                t.addValue(NlpAnnotations.POS_ANNOTATION, Value.canonical(getPosTag(language, word.getXPos(), word.getPos())));
             }
             if (word.getLemma() != null) {
-                t.addAnnotation(NlpAnnotations.LEMMA_ANNOTATION, word.getLemma());
+                t.addAnnotation(NlpAnnotations.LEMMA_ANNOTATION, Interning.intern(word.getLemma()));
             }
             //TODO: Add support for Word Features
             //MorphoFeatures features = new MorphoFeatures(word.getLemma());
@@ -277,9 +550,10 @@ public class StanzaProcessor extends Processor {
         }
 
         private void annotateEntity(StanzaEntity entity) {
-            Chunk chunk = at.addChunk(entity.getStart(), entity.getEnd());
+            int idx = indexOf(entity.getStart());
+            Chunk chunk = ats[idx].addChunk(entity.getStart() - offsets[idx], entity.getEnd() - offsets[idx]);
             if (entity.getType() != null) {
-                chunk.addAnnotation(NlpAnnotations.NER_ANNOTATION, getNerTag(entity.getType()));
+                chunk.addValue(NlpAnnotations.NER_ANNOTATION, Value.canonical(getNerTag(entity.getType())));
             }
         }
 
@@ -290,7 +564,7 @@ public class StanzaProcessor extends Processor {
         NerTag tag = StanzaConstants.NER_TAG_SET.getTag(ner);
         if (tag == null) {
             LOG.trace("Unmapped NER '{}'", ner);
-            tag = unmappedNerTags.computeIfAbsent(ner, NerTag::new);
+            tag = Interning.NER_TAGS.intern(ner, NerTag::new);
         }
         return tag;
     }
@@ -301,14 +575,15 @@ public class StanzaProcessor extends Processor {
         if (langTagSet != null && StringUtils.isNotEmpty(xPos)) {
             tag = langTagSet.getTag(xPos);
             if (tag == null) {
-                tag = unmappedXPosTags.computeIfAbsent(lang, l -> new HashMap<>())
-                        .computeIfAbsent(xPos, createUnmappedXPosTag(uPos));
+                //xPos tags are language specific and use the uPos as fallback
+                tag = Interning.POS_TAGS.intern(INTERN_KEY_PREFIX + lang + ':' + xPos,
+                        k -> createUnmappedXPosTag(uPos).apply(xPos));
             }
         } else if (StringUtils.isNotEmpty(uPos)) {
             tag = StanzaConstants.U_POS.getTag(uPos);
             if (tag == null) {
                 LOG.trace("Unmapped POS '{}'", uPos);
-                tag = unmappedUPosTags.computeIfAbsent(uPos, PosTag::new);
+                tag = Interning.POS_TAGS.intern(uPos, PosTag::new);
             }
         }
         return tag;
@@ -18,8 +18,11 @@ package io.redlink.nlp.stopword;
 
 import io.redlink.nlp.api.ProcessingData;
 import io.redlink.nlp.api.Processor;
+import io.redlink.nlp.api.annotation.Annotations;
+import io.redlink.nlp.api.model.Value;
 import io.redlink.nlp.model.AnalyzedText;
 import io.redlink.nlp.model.NlpAnnotations;
+import io.redlink.nlp.model.Span.SpanTypeEnum;
 import io.redlink.nlp.model.Token;
 import io.redlink.nlp.model.pos.PosSet;
 import io.redlink.nlp.model.util.NlpUtils;
@@ -46,6 +49,10 @@ public class StopwordExtractor extends Processor {
      */
     private static final PosSet NO_STOPWORD_LEX_CAT = PosSet.union(PosSet.NOUNS, PosSet.ADJECTIVES, PosSet.VERBS);
 
+    private static final Set<String> READS = NlpUtils.accessKeys(Annotations.LANGUAGE, SpanTypeEnum.Token,
+            NlpAnnotations.POS_ANNOTATION);
+    private static final Set<String> WRITES = NlpUtils.accessKeys(NlpAnnotations.STOPWORD_ANNOTATION);
+
     private StopwordListRegistry registry;
 
     private final StopwordExtractorConfiguration config;
@@ -67,6 +74,16 @@ public class StopwordExtractor extends Processor {
         return Collections.emptyMap();
     }
 
+    @Override
+    public Set<String> getReads() {
+        return READS;
+    }
+
+    @Override
+    public Set<String> getWrites() {
+        return WRITES;
+    }
+
     @Override
     public void doProcessing(ProcessingData processingData) {
         Optional<AnalyzedText> at = NlpUtils.getAnalyzedText(processingData);
@@ -76,7 +93,7 @@ public class StopwordExtractor extends Processor {
             String lang = processingData.getLanguage();
             Set<String> stopwords = registry.getStopwords(lang == null ? null : Locale.forLanguageTag(lang), caseSensitive);
             if (stopwords != null) {
-                process(at.get(), stopwords, usePos);
+                process(at.get(), stopwords, caseSensitive, usePos);
                 log.trace("mark stopwords for {} (language: {})", processingData, lang);
             } else {
                 log.trace("no stopword list available for language {} (processingData: {})", lang, processingData);
@@ -85,13 +102,16 @@ public class StopwordExtractor extends Processor {
 
     }
 
-    private void process(AnalyzedText at, Set<String> stopwords, boolean usePos) {
+    private void process(AnalyzedText at, Set<String> stopwords, boolean caseSensitive, boolean usePos) {
         Iterator<Token> tokens = at.getTokens();
         while (tokens.hasNext()) {
             Token token = tokens.next();
-            if (stopwords.contains(token.getSpan())) { //this might be a stop word
+            //case sensitive lists are hash based and need Strings. Case insensitive
+            //ones are sorted by a comparator that also accepts SpanViews
+            Object word = caseSensitive ? token.getSpan() : token.getSpanView();
+            if (stopwords.contains(word)) { //this might be a stop word
                 if (!usePos || !NlpUtils.isOfPos(token, NO_STOPWORD_LEX_CAT)) {
-                    token.setAnnotation(NlpAnnotations.STOPWORD_ANNOTATION, Boolean.TRUE);
+                    token.setValue(NlpAnnotations.STOPWORD_ANNOTATION, Value.TRUE);
                 }//else even that it matches the stop word list we do not mark this as stop word
             } //else not a stop word
         }
@@ -16,6 +16,7 @@
 
 package io.redlink.nlp.stopword;
 
+import io.redlink.nlp.model.SpanView;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Collections;
@@ -127,7 +128,8 @@ public class StopwordListRegistry {
             } else {
                 Set<String> localeStopwords = init(locale);
                 stopwords.put(Key.build(locale, false), localeStopwords);
-                Set<String> insensitiveLocaleStopwords = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+                //NOTE: the comparator also allows lookups of SpanViews
+                Set<String> insensitiveLocaleStopwords = new TreeSet<>(SpanView.CASE_INSENSITIVE_ORDER);
                 if (localeStopwords != null) {
                     insensitiveLocaleStopwords.addAll(localeStopwords);
                 } //no stopwords for this combination
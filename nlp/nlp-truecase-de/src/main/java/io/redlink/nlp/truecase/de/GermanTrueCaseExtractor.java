@@ -31,6 +31,7 @@ import io.redlink.nlp.api.Processor;
 import io.redlink.nlp.model.AnalyzedText;
 import io.redlink.nlp.model.NlpAnnotations;
 import io.redlink.nlp.model.Token;
+import io.redlink.nlp.model.util.Interning;
 import io.redlink.nlp.model.util.NlpUtils;
 import io.redlink.nlp.stanfordnlp.annotators.AnalyzedTextSectionAnnotator;
 import java.util.Arrays;
@@ -143,7 +144,7 @@ public class GermanTrueCaseExtractor extends Processor {
                     if (isNoun || tokenIdx == 0) { //upper case
                         if (Character.isAlphabetic(c) && !Character.isUpperCase(c)) {
                             t.addAnnotation(NlpAnnotations.TRUE_CASE_ANNOTATION,
-                                    WordUtils.capitalize(span, " -–—".toCharArray()));
+                                    Interning.intern(WordUtils.capitalize(span, " -–—".toCharArray())));
                         } //else already upper case
                     } else { //lower case
                         if (Character.isAlphabetic(c) && Character.isUpperCase(c)) {
@@ -155,7 +156,7 @@ public class GermanTrueCaseExtractor extends Processor {
                                 }
                             }
                             if (!otherUcChar) {
-                                t.addAnnotation(NlpAnnotations.TRUE_CASE_ANNOTATION, span.toLowerCase(Locale.GERMAN));
+                                t.addAnnotation(NlpAnnotations.TRUE_CASE_ANNOTATION, Interning.intern(span.toLowerCase(Locale.GERMAN)));
                             }
                         }
                     }
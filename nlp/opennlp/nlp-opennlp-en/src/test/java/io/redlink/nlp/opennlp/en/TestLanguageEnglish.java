@@ -25,6 +25,7 @@ import io.redlink.nlp.model.AnalyzedText;
 import io.redlink.nlp.model.NlpAnnotations;
 import io.redlink.nlp.model.Span;
 import io.redlink.nlp.model.Span.SpanTypeEnum;
+import io.redlink.nlp.model.Token;
 import io.redlink.nlp.model.pos.PosTag;
 import io.redlink.nlp.model.util.NlpUtils;
 import io.redlink.nlp.opennlp.pos.OpenNlpLanguageModel;
@@ -124,6 +125,53 @@ public class TestLanguageEnglish {
         assertNlpProcessingResults(pd);
     }
 
+    @Test
+    public void testNestedSections() throws ProcessingException {
+        String text = CONTENTS.get(0);
+        int middle = text.indexOf('\n', text.length() / 2);
+        Assert.assertTrue(middle > 0);
+        List<String> expected = null;
+        for (boolean concurrent : new boolean[]{false, true}) {
+            ProcessingData pd = initTestData(0, Collections.singletonMap(
+                    OpenNlpPosProcessor.CONCURRENT_SECTIONS, concurrent));
+            AnalyzedText at = NlpUtils.getAnalyzedText(pd).get();
+            at.addSection(0, middle);
+            at.addSection(middle, text.length());
+            //nested in the first section: its text is processed with the first section
+            at.addSection(10, middle - 10);
+            processor.process(pd);
+            assertNlpProcessingResults(pd);
+            List<String> tokens = new ArrayList<>();
+            at.getTokens().forEachRemaining(token -> tokens.add(token.getStart() + ":" + token.getEnd()));
+            if (expected == null) {
+                expected = tokens;
+            } else { //concurrent processing MUST give the same results
+                Assert.assertEquals(expected, tokens);
+            }
+        }
+    }
+
+    @Test
+    public void testOverlappingSections() throws ProcessingException {
+        String text = CONTENTS.get(0);
+        int middle = text.indexOf('\n', text.length() / 2);
+        Assert.assertTrue(middle > 0);
+        for (boolean concurrent : new boolean[]{false, true}) {
+            ProcessingData pd = initTestData(0, Collections.singletonMap(
+                    OpenNlpPosProcessor.CONCURRENT_SECTIONS, concurrent));
+            AnalyzedText at = NlpUtils.getAnalyzedText(pd).get();
+            at.addSection(0, middle);
+            //partially overlaps with the first section: the text after its end MUST BE processed
+            at.addSection(middle / 2, text.length());
+            processor.process(pd);
+            boolean tokenAfterMiddle = false;
+            for (Iterator<Token> tokens = at.getTokens(); tokens.hasNext() && !tokenAfterMiddle; ) {
+                tokenAfterMiddle = tokens.next().getStart() > middle;
+            }
+            Assert.assertTrue(tokenAfterMiddle);
+        }
+    }
+
     private void assertNlpProcessingResults(ProcessingData pd) {
         Optional<AnalyzedText> at = NlpUtils.getAnalyzedText(pd);
         Assert.assertNotNull(at.isPresent());
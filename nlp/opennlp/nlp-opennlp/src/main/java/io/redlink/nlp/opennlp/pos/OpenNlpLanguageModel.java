@@ -19,16 +19,16 @@ package io.redlink.nlp.opennlp.pos;
 import io.redlink.nlp.api.model.Value;
 import io.redlink.nlp.model.pos.PosTag;
 import io.redlink.nlp.model.tag.TagSet;
+import io.redlink.nlp.model.util.Interning;
+import io.redlink.nlp.model.util.ModelPool;
 import io.redlink.nlp.opennlp.pos.impl.RegexSentenceSplitter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -74,9 +74,9 @@ public abstract class OpenNlpLanguageModel implements Comparable<OpenNlpLanguage
     private POSModel taggerModel = null;
     private TokenizerModel tokenModel = null;
 
-    private ThreadLocal<SentenceDetector> splitter;
-    private ThreadLocal<Tokenizer> tokenizer;
-    private ThreadLocal<POSTaggerME> tagger;
+    private ModelPool<SentenceDetector> splitter;
+    private ModelPool<Tokenizer> tokenizer;
+    private ModelPool<POSTaggerME> tagger;
 
     private boolean caseSensitive = true;
 
@@ -85,11 +85,6 @@ public abstract class OpenNlpLanguageModel implements Comparable<OpenNlpLanguage
     private double minAvrgPosScore = DEFAULT_MIN_AVRG_POS_SCORE;
 
     private final TagSet<PosTag> tagset;
-    /**
-     * Stores {@link TagSet} for string tags returned by the {@link #taggerModel}
-     * but but mapped in the {@link #tagset}.
-     */
-    private final Map<String, PosTag> adhocTags = new HashMap<>();
 
     private final String sentModelResource;
     private final String tokenModelResource;
@@ -173,38 +168,20 @@ public abstract class OpenNlpLanguageModel implements Comparable<OpenNlpLanguage
                     } else {
                         splitterModel = null;
                     }
-                    splitter = new ThreadLocal<SentenceDetector>() {
-                        @Override
-                        protected SentenceDetector initialValue() {
-                            return splitterModel == null ? RegexSentenceSplitter.getInstance() :
-                                    new SentenceDetectorME(splitterModel);
-                        }
-                    };
+                    splitter = new ModelPool<>(getPoolName("splitter"), this::createSplitter);
                     log.info("  ... loading Tokenizer Model");
                     if (tokenModelResource != null) {
                         tokenModel = new TokenizerModel(cl.getResourceAsStream(tokenModelResource));
                     } else {
                         tokenModel = null;
                     }
-                    tokenizer = new ThreadLocal<Tokenizer>() {
-                        @Override
-                        protected Tokenizer initialValue() {
-                            return tokenModel == null ? SimpleTokenizer.INSTANCE :
-                                    new TokenizerME(tokenModel);
-                        }
-                    };
+                    tokenizer = new ModelPool<>(getPoolName("tokenizer"), this::createTokenizer);
                     if (posModelResource != null) {
                         log.info("  ... loading PoS Tagger Model");
                         taggerModel = new POSModel(cl.getResourceAsStream(posModelResource));
-                        tagger = new ThreadLocal<POSTaggerME>() {
-                            @Override
-                            protected POSTaggerME initialValue() {
-                                return new POSTaggerME(taggerModel);
-                            }
-                        };
+                        tagger = new ModelPool<>(getPoolName("tagger"), this::createTagger);
                         log.info("> inspect supported POS tags:");
-                        POSTaggerME tagger = new POSTaggerME(taggerModel);
-                        for (String tag : tagger.getAllPosTags()) {
+                        for (String tag : tagger.apply(POSTaggerME::getAllPosTags)) {
                             PosTag posTag = tagset.getTag(tag);
                             if (posTag == null) {
                                 log.warn(" - unmapped Tag {}", tag);
@@ -228,14 +205,40 @@ public abstract class OpenNlpLanguageModel implements Comparable<OpenNlpLanguage
             log.info("> deactivate {}", getName());
             activated = false;
             splitterModel = null;
-            splitter = null;
+            splitter = close(splitter);
             tokenModel = null;
-            tokenizer = null;
-            tagger = null;
-            tagger = null;
+            tokenizer = close(tokenizer);
+            taggerModel = null;
+            tagger = close(tagger);
         }
     }
 
+    private static <T> ModelPool<T> close(ModelPool<T> pool) {
+        if (pool != null) {
+            pool.close();
+        }
+        return null;
+    }
+
+    private SentenceDetector createSplitter() {
+        SentenceModel model = splitterModel;
+        return model == null ? RegexSentenceSplitter.getInstance() : new SentenceDetectorME(model);
+    }
+
+    private Tokenizer createTokenizer() {
+        TokenizerModel model = tokenModel;
+        return model == null ? SimpleTokenizer.INSTANCE : new TokenizerME(model);
+    }
+
+    private POSTaggerME createTagger() {
+        POSModel model = taggerModel;
+        return model == null ? null : new POSTaggerME(model);
+    }
+
+    private String getPoolName(String component) {
+        return "opennlp." + component + "." + (language == null ? "default" : language.toLanguageTag());
+    }
+
     /**
      * Allows to set the minimum average POS score for a Sentence to be
      * expected to be well formed. If the average POS score is lower as this the
@@ -278,6 +281,10 @@ public abstract class OpenNlpLanguageModel implements Comparable<OpenNlpLanguage
      * Split sentences within the paragraph text.
      */
     public final Span[] split(String text) {
+        return splitter.apply(s -> split(text, s));
+    }
+
+    private Span[] split(String text, SentenceDetector detector) {
         text = preprocessText(text);
         //double line breaks do indicate paragraphs.
         Matcher m = PARAGRAPH_SPLIT.matcher(text);
@@ -289,12 +296,12 @@ public abstract class OpenNlpLanguageModel implements Comparable<OpenNlpLanguage
                 if (log.isDebugEnabled()) {
                     log.debug("> process paragrpah: [{},{}] {}", index, m.start(), StringUtils.abbreviate(paragraph, 40));
                 }
-                splitParagrpah(index, m.start(), paragraph, sentences);
+                splitParagrpah(index, m.start(), paragraph, sentences, detector);
             } //else ignore empty paragraph
             index = m.end();
         }
         if (index < text.length()) {
-            splitParagrpah(index, text.length(), text.substring(index), sentences);
+            splitParagrpah(index, text.length(), text.substring(index), sentences, detector);
         }
         return sentences.toArray(new Span[sentences.size()]);
     }
@@ -320,9 +327,10 @@ public abstract class OpenNlpLanguageModel implements Comparable<OpenNlpLanguage
      *
      * @param text
      * @param sentList
+     * @param detector the borrowed sentence detector
      */
-    private void splitParagrpah(int start, int end, String text, List<Span> sentList) {
-        Span[] sentPos = splitter.get().sentPosDetect(text);
+    private void splitParagrpah(int start, int end, String text, List<Span> sentList, SentenceDetector detector) {
+        Span[] sentPos = detector.sentPosDetect(text);
         if (sentPos.length > 1) {
             Span prevSent = sentPos[0];
             for (int i = 1; i < sentPos.length; i++) {
@@ -358,8 +366,11 @@ public abstract class OpenNlpLanguageModel implements Comparable<OpenNlpLanguage
      * Tokenize the sentence text into an array of tokens.
      */
     public final Span[] tokenize(final String text) {
-        final Span[] tokenSpans = tokenizer.get().tokenizePos(text);
-        return correctTokens(text, tokenSpans);
+        return tokenizer.apply(t -> tokenize(text, t));
+    }
+
+    private Span[] tokenize(final String text, Tokenizer tokenizer) {
+        return correctTokens(text, tokenizer.tokenizePos(text));
     }
 
     /**
@@ -408,8 +419,12 @@ public abstract class OpenNlpLanguageModel implements Comparable<OpenNlpLanguage
         if (taggerModel == null) { //no PoS tagger present
             return null;
         }
+        return tagger.apply(t -> tag(sentTokens, t));
+    }
+
+    private List<Value<PosTag>>[] tag(final String[] sentTokens, POSTaggerME tagger) {
         //get the topK POS tags and props and copy it over to the 2dim Arrays
-        Sequence[] posSequences = tagger.get().topKSequences(sentTokens);
+        Sequence[] posSequences = tagger.topKSequences(sentTokens);
         //extract the POS tags and props for the current token from the
         //posSequences.
         //NOTE: Sequence includes always POS tags for all Tokens. If
@@ -439,9 +454,9 @@ public abstract class OpenNlpLanguageModel implements Comparable<OpenNlpLanguage
     }
 
     /**
-     * Uses the {@link #tagset} and {@link #adhocTags} to return existing instances
-     * of {@link PosTag}s. If not present it will create a new one and add it to
-     * {@link #adhocTags}
+     * Uses the {@link #tagset} and the global {@link Interning#POS_TAGS} pool
+     * to return existing instances of {@link PosTag}s. If not present it will
+     * create a new one and add it to the pool
      *
      * @param tag the String pos tag as returned by the {@link #tagger}
      * @return the {@link PosTag} guaranteed to be not <code>null</code>
@@ -451,41 +466,159 @@ public abstract class OpenNlpLanguageModel implements Comparable<OpenNlpLanguage
         if (posTag != null) {
             return posTag;
         }
-        posTag = adhocTags.get(tag);
-        if (posTag != null) {
-            return posTag;
-        }
-        posTag = new PosTag(tag);
-        adhocTags.put(tag, posTag);
-        log.info("Encountered umapped POS tag '{}' for langauge '{}'", tag, language.getLanguage());
-        return posTag;
+        return Interning.POS_TAGS.intern(tag, t -> {
+            log.info("Encountered umapped POS tag '{}' for langauge '{}'", t, language.getLanguage());
+            return new PosTag(t);
+        });
     }
 
     /**
-     * Getter for the Sentence Splitter used by this OpenNLP language model
+     * Getter for the pool of Sentence Splitters used by this OpenNLP language model
      *
-     * @return the Sentence Splitter (one instance per thread)
+     * @return the Sentence Splitter pool or <code>null</code> if not activated
      */
+    public ModelPool<SentenceDetector> getSplitterPool() {
+        return splitter;
+    }
+
+    /**
+     * Getter for the pool of Tokenizers used by this OpenNLP language model
+     *
+     * @return the Tokenizer pool or <code>null</code> if not activated
+     */
+    public ModelPool<Tokenizer> getTokenizerPool() {
+        return tokenizer;
+    }
+
+    /**
+     * Getter for the pool of POS taggers used by this OpenNLP language model
+     *
+     * @return the Pos tagger pool or <code>null</code> if not activated or
+     * no POS model is present
+     */
+    public ModelPool<POSTaggerME> getTaggerPool() {
+        return tagger;
+    }
+
+    /**
+     * Getter for a Sentence Splitter used by this OpenNLP language model
+     *
+     * @return a new Sentence Splitter or <code>null</code> if not activated
+     * @deprecated Sentence Splitters are pooled. Use {@link #borrow()} or
+     * {@link #getSplitterPool()} instead. This creates a new instance (that is
+     * not pooled) on every call.
+     */
+    @Deprecated
     public SentenceDetector getSplitter() {
-        return splitter.get();
+        return splitter == null ? null : createSplitter();
     }
 
     /**
-     * Getter for the Tokenizer used by this OpenNLP language model
+     * Getter for a Tokenizer used by this OpenNLP language model
      *
-     * @return the Tokenizer (one instance per thread)
+     * @return a new Tokenizer or <code>null</code> if not activated
+     * @deprecated Tokenizers are pooled. Use {@link #borrow()} or
+     * {@link #getTokenizerPool()} instead. This creates a new instance (that
+     * is not pooled) on every call.
      */
+    @Deprecated
     public Tokenizer getTokenizer() {
-        return tokenizer.get();
+        return tokenizer == null ? null : createTokenizer();
     }
 
     /**
-     * Getter for the POS tagger used by this OpenNLP language model
+     * Getter for a POS tagger used by this OpenNLP language model
      *
-     * @return the Pos tagger (one instance per thread)
+     * @return a new Pos tagger or <code>null</code> if not activated or no
+     * POS model is present
+     * @deprecated POS taggers are pooled. Use {@link #borrow()} or
+     * {@link #getTaggerPool()} instead. This creates a new instance (that is
+     * not pooled) on every call.
      */
+    @Deprecated
     public POSTaggerME getTagger() {
-        return tagger.get();
+        return tagger == null ? null : createTagger();
+    }
+
+    /**
+     * Borrows the instances of this model to process several texts (e.g.
+     * all sentences of a section) without acquiring a pooled instance for
+     * every call. Instances are borrowed on their first use.
+     *
+     * @return the borrowed instances. MUST BE closed and MUST NOT be used by
+     * several threads
+     */
+    public final Instances borrow() {
+        return new Instances();
+    }
+
+    /**
+     * Instances {@link OpenNlpLanguageModel#borrow() borrowed} from the pools
+     * of an {@link OpenNlpLanguageModel}
+     */
+    public final class Instances implements AutoCloseable {
+
+        private final ModelPool<SentenceDetector> splitterPool = splitter;
+        private final ModelPool<Tokenizer> tokenizerPool = tokenizer;
+        private final ModelPool<POSTaggerME> taggerPool = tagger;
+        private SentenceDetector splitterInstance;
+        private Tokenizer tokenizerInstance;
+        private POSTaggerME taggerInstance;
+
+        private Instances() {
+        }
+
+        /**
+         * @see OpenNlpLanguageModel#split(String)
+         */
+        public Span[] split(String text) {
+            if (splitterInstance == null) {
+                splitterInstance = splitterPool.borrow();
+            }
+            return OpenNlpLanguageModel.this.split(text, splitterInstance);
+        }
+
+        /**
+         * @see OpenNlpLanguageModel#tokenize(String)
+         */
+        public Span[] tokenize(String text) {
+            if (tokenizerInstance == null) {
+                tokenizerInstance = tokenizerPool.borrow();
+            }
+            return OpenNlpLanguageModel.this.tokenize(text, tokenizerInstance);
+        }
+
+        /**
+         * @see OpenNlpLanguageModel#tag(String[])
+         */
+        public List<Value<PosTag>>[] tag(String[] sentTokens) {
+            if (taggerPool == null) { //no PoS tagger present
+                return null;
+            }
+            if (taggerInstance == null) {
+                taggerInstance = taggerPool.borrow();
+            }
+            return OpenNlpLanguageModel.this.tag(sentTokens, taggerInstance);
+        }
+
+        /**
+         * Releases the borrowed instances
+         */
+        @Override
+        public void close() {
+            if (splitterInstance != null) {
+                splitterPool.release(splitterInstance);
+                splitterInstance = null;
+            }
+            if (tokenizerInstance != null) {
+                tokenizerPool.release(tokenizerInstance);
+                tokenizerInstance = null;
+            }
+            if (taggerInstance != null) {
+                taggerPool.release(taggerInstance);
+                taggerInstance = null;
+            }
+        }
     }
 
     /**
@@ -17,16 +17,19 @@
 package io.redlink.nlp.opennlp.pos;
 
 import io.redlink.nlp.api.ProcessingData;
+import io.redlink.nlp.api.ProcessingException;
 import io.redlink.nlp.api.Processor;
 import io.redlink.nlp.api.model.Value;
 import io.redlink.nlp.model.AnalyzedText;
 import io.redlink.nlp.model.NlpAnnotations;
 import io.redlink.nlp.model.Sentence;
 import io.redlink.nlp.model.SpanCollection;
+import io.redlink.nlp.model.StagingBuffer;
 import io.redlink.nlp.model.Token;
 import io.redlink.nlp.model.pos.PosTag;
 import io.redlink.nlp.model.util.NlpUtils;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -37,6 +40,8 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import opennlp.tools.util.Span;
@@ -50,6 +55,17 @@ public class OpenNlpPosProcessor extends Processor {
 
     private static final Logger LOG = LoggerFactory.getLogger(OpenNlpPosProcessor.class);
 
+    private static final String KEY = "opennlp.pos";
+    /**
+     * Allows to process the Sections of a single document concurrently.
+     * Results are the same as with sequential processing.
+     */
+    public static final String CONCURRENT_SECTIONS = KEY + ".concurrent";
+    public static final boolean DEFAULT_CONCURRENT_SECTIONS = false;
+
+    private static final Map<String, Object> DEFAULT_CONFIG = Collections.singletonMap(
+            CONCURRENT_SECTIONS, DEFAULT_CONCURRENT_SECTIONS);
+
     /**
      * Map holding language to language model mappings. Built up dynamically based
      * on languages parsed to {@link #lookupModel(String)}
@@ -61,7 +77,7 @@ public class OpenNlpPosProcessor extends Processor {
 
     @Autowired
     public OpenNlpPosProcessor(Collection<OpenNlpLanguageModel> models) {
-        super("opennlp.pos", "OpenNLP POS", Phase.pos);
+        super(KEY, "OpenNLP POS", Phase.pos);
         OpenNlpLanguageModel[] modelArray = models.toArray(new OpenNlpLanguageModel[models.size()]);
         //we need to sort based on their priority
         Arrays.sort(modelArray);
@@ -72,7 +88,7 @@ public class OpenNlpPosProcessor extends Processor {
 
     @Override
     public Map<String, Object> getDefaultConfiguration() {
-        return Collections.emptyMap();
+        return DEFAULT_CONFIG;
     }
 
     @Override
@@ -102,21 +118,81 @@ public class OpenNlpPosProcessor extends Processor {
 
         if (model == null || !model.supports(language)) {
             LOG.debug("No Model for Language '{}' available. Unable to POS tag {}", language, processingData);
+            unsupportedLanguage(processingData);
             return;
         }
+        process(model, processingData, at);
+    }
+
+    /**
+     * Looks up the model once per language and tags all documents of that
+     * language with it.
+     */
+    @Override
+    protected List<ProcessingException> doProcessing(List<ProcessingData> batch) {
+        List<ProcessingException> failures = new ArrayList<>();
+        for (Map.Entry<String, List<ProcessingData>> group : groupByLanguage(batch).entrySet()) {
+            String language = group.getKey();
+            OpenNlpLanguageModel model = lookupModel(language);
+            boolean supported = model != null && model.supports(language);
+            if (!supported) {
+                LOG.debug("No Model for Language '{}' available. Unable to POS tag {} documents",
+                        language, group.getValue().size());
+            }
+            for (ProcessingData processingData : group.getValue()) {
+                try {
+                    AnalyzedText at = NlpUtils.getOrInitAnalyzedText(processingData);
+                    if (supported) {
+                        process(model, processingData, at);
+                    } else {
+                        unsupportedLanguage(processingData);
+                    }
+                } catch (RuntimeException e) {
+                    failures.add(toProcessingException(processingData, e));
+                }
+            }
+        }
+        return failures;
+    }
 
+    private void process(OpenNlpLanguageModel model, ProcessingData processingData, AnalyzedText at) {
         Iterator<? extends SpanCollection> contentSections = at.getSections();
         if (!contentSections.hasNext()) { //no content sections available
             contentSections = Collections.singleton(at).iterator(); //fall back to the text as a whole
         }
+        List<SpanCollection> sections = new ArrayList<>();
         SpanCollection prevSection = null;
+        boolean overlapping = false;
         while (contentSections.hasNext()) {
             SpanCollection section = contentSections.next();
-            if (prevSection != null && section.getStart() < prevSection.getStart()) { //overlapping sections
-                LOG.warn("will ignore overlapping Section in Document {} (prev: {} | overlapping: {})", prevSection, section);
-                continue;
+            if (prevSection != null && section.getEnd() <= prevSection.getEnd()) { //nested section
+                LOG.debug("ignore Section nested in the previous one in Document {} (prev: {} | nested: {})",
+                        processingData, prevSection, section);
+                continue; //its text is processed with the previous section
             }
-            process(model, section);
+            overlapping = overlapping || (prevSection != null && section.getStart() < prevSection.getEnd());
+            sections.add(section);
+            prevSection = section;
+        }
+        AtomicBoolean truncated = new AtomicBoolean();
+        if (sections.size() > 1 && !overlapping
+                && processingData.getConfiguration(CONCURRENT_SECTIONS, DEFAULT_CONCURRENT_SECTIONS)) {
+            //non overlapping sections are processed concurrently into staging buffers
+            at.processConcurrently(sections, (section, buffer) -> {
+                if (!process(model, processingData, section, buffer)) {
+                    truncated.set(true);
+                }
+            }, ForkJoinPool.commonPool());
+        } else { //partially overlapping sections are processed sequentially
+            for (SpanCollection section : sections) {
+                if (!process(model, processingData, section, null)) {
+                    truncated.set(true);
+                    break;
+                }
+            }
+        }
+        if (truncated.get()) {
+            truncated(processingData);
         }
     }
 
@@ -172,32 +248,68 @@ public class OpenNlpPosProcessor extends Processor {
         }
     }
 
-    private void process(OpenNlpLanguageModel model, SpanCollection section) {
-        AnalyzedText at = section.getContext();
-        int offset = section.getStart();
-        String sectionText = model.isCaseSensitive() ? NlpUtils.toTrueCase(section) :
-                section.getSpan().toLowerCase(model.getLocale());
-        Span[] sentSpans = model.split(sectionText);
-        String[] sentStrings = Span.spansToStrings(sentSpans, sectionText);
-        for (int sidx = 0; sidx < sentSpans.length; sidx++) {
-            Span sentSpan = sentSpans[sidx];
-            String sentString = sentStrings[sidx];
-            Sentence sentence = at.addSentence(offset + sentSpan.getStart(), offset + sentSpan.getEnd());
-            //save guard that asserts that we use the same offsets as OpenNLP
-            assert sentString.equals(sentence.getSpan());
-            Span[] tokenSpans = model.tokenize(sentString);
-            String[] sentTokens = Span.spansToStrings(tokenSpans, sentString);
-            List<Value<PosTag>>[] posTags = model.tag(sentTokens);
-            for (int tidx = 0; tidx < tokenSpans.length; tidx++) {
-                Span tokenSpan = tokenSpans[tidx];
-                Token token = sentence.addToken(tokenSpan.getStart(), tokenSpan.getEnd());
+    /**
+     * Processes a section. If enabled called concurrently for the sections
+     * of a document so the deadline is checked without marking the processor as
+     * truncated.
+     *
+     * @param buffer the buffer to stage Spans in or <code>null</code> to
+     *               directly add them to the AnalyzedText
+     *
+     * @return <code>false</code> if processing stopped early because the
+     * deadline of the document expired
+     */
+    private boolean process(OpenNlpLanguageModel model, ProcessingData processingData,
+                            SpanCollection section, StagingBuffer buffer) {
+        if (processingData.isExpired()) {
+            return false;
+        }
+        //borrow the model instances once for all sentences of the section
+        try (OpenNlpLanguageModel.Instances instances = model.borrow()) {
+            int offset = section.getStart();
+            String sectionText = model.isCaseSensitive() ? NlpUtils.toTrueCase(section) :
+                    section.getSpan().toLowerCase(model.getLocale());
+            Span[] sentSpans = instances.split(sectionText);
+            String[] sentStrings = Span.spansToStrings(sentSpans, sectionText);
+            int[] sentStarts = new int[sentSpans.length];
+            int[] sentEnds = new int[sentSpans.length];
+            for (int sidx = 0; sidx < sentSpans.length; sidx++) {
+                sentStarts[sidx] = offset + sentSpans[sidx].getStart();
+                sentEnds[sidx] = offset + sentSpans[sidx].getEnd();
+            }
+            AnalyzedText at = section.getContext();
+            Sentence[] sentences = buffer == null ? at.addSentences(sentStarts, sentEnds) :
+                    buffer.addSentences(sentStarts, sentEnds);
+            for (int sidx = 0; sidx < sentSpans.length; sidx++) {
+                if (processingData.isExpired()) {
+                    return false;
+                }
+                String sentString = sentStrings[sidx];
+                Sentence sentence = sentences[sidx];
                 //save guard that asserts that we use the same offsets as OpenNLP
-                assert tokenSpan.getCoveredText(sentString).toString().equals(token.getSpan());
-                if (posTags != null) { //POS tagging is supported by the model
-                    token.addValues(NlpAnnotations.POS_ANNOTATION, posTags[tidx]);
+                assert sentString.equals(sentence.getSpan());
+                Span[] tokenSpans = instances.tokenize(sentString);
+                String[] sentTokens = Span.spansToStrings(tokenSpans, sentString);
+                List<Value<PosTag>>[] posTags = instances.tag(sentTokens);
+                int[] tokenStarts = new int[tokenSpans.length];
+                int[] tokenEnds = new int[tokenSpans.length];
+                for (int tidx = 0; tidx < tokenSpans.length; tidx++) {
+                    tokenStarts[tidx] = sentence.getStart() + tokenSpans[tidx].getStart();
+                    tokenEnds[tidx] = sentence.getStart() + tokenSpans[tidx].getEnd();
+                }
+                Token[] tokens = buffer == null ? at.addTokens(tokenStarts, tokenEnds) :
+                        buffer.addTokens(tokenStarts, tokenEnds);
+                for (int tidx = 0; tidx < tokenSpans.length; tidx++) {
+                    Token token = tokens[tidx];
+                    //save guard that asserts that we use the same offsets as OpenNLP
+                    assert tokenSpans[tidx].getCoveredText(sentString).toString().equals(token.getSpan());
+                    if (posTags != null) { //POS tagging is supported by the model
+                        token.addValues(NlpAnnotations.POS_ANNOTATION, posTags[tidx]);
+                    }
                 }
             }
         }
+        return true;
     }
 
 }
@@ -28,15 +28,14 @@ import io.redlink.nlp.model.ner.NerTag;
 import io.redlink.nlp.model.phrase.PhraseTag;
 import io.redlink.nlp.model.pos.PosTag;
 import io.redlink.nlp.model.tag.TagSet;
+import io.redlink.nlp.model.util.Interning;
 import io.redlink.nlp.stanfordnlp.annotators.AnalyzedTextSectionAnnotator;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import org.apache.commons.lang3.StringUtils;
@@ -94,29 +93,10 @@ public abstract class StanfordNlpPipeline {
     private AnnotatorPool pool;
 
     /**
-     * Stores {@link TagSet} for string POS tags returned by the pipeline
-     * but but mapped in the {@link #posTagset}.
+     * Prefix for the keys of tags in the global {@link Interning} pools
+     * that are specific to this implementation
      */
-    private final Map<String, PosTag> adhocPosTags = new HashMap<>();
-
-
-    /**
-     * Stores {@link TagSet} for string NER tags returned by the pipeline
-     * but but mapped in the {@link #nerTagset}.
-     */
-    private final Map<String, NerTag> adhocNerTags = new HashMap<>();
-
-    /**
-     * Stores a set of unmapped {@link RelTag}s as encountered
-     * during parsing but not mapped in the {@link #relTagset}
-     */
-    private final Map<String, RelTag> adhocRelTags = new HashMap<>();
-
-    /**
-     * Stores a set of unmapped {@link PhraseTag}s as encountered
-     * during parsing but not mapped in the {@link #relTagset}
-     */
-    private Map<String, PhraseTag> adhocPhraseTags = new HashMap<>();
+    private static final String INTERN_KEY_PREFIX = "stanfordnlp:";
 
     private List<String> annotators;
 
@@ -402,9 +382,9 @@ public abstract class StanfordNlpPipeline {
     }
 
     /**
-     * Uses the {@link #posTagset} and {@link #adhocPosTags} to return existing instances
-     * of {@link PosTag}s. If not present it will create a new one and add it to
-     * {@link #adhocPosTags}
+     * Uses the {@link #posTagset} and the global {@link Interning#POS_TAGS}
+     * pool to return existing instances of {@link PosTag}s. If not present
+     * it will create a new one and add it to the pool
      *
      * @param tag the String pos tag as returned by the {@link #tagger}
      * @return the {@link PosTag} or <code>null</code> if the parsed tag was
@@ -417,15 +397,11 @@ public abstract class StanfordNlpPipeline {
         if (posTag != null) {
             return posTag;
         }
-        posTag = adhocPosTags.get(tag);
-        if (posTag != null) {
-            return posTag;
-        }
         if (StringUtils.isNotBlank(tag)) {
-            posTag = new PosTag(tag);
-            adhocPosTags.put(tag, posTag);
-            log.info("Encountered umapped POS tag '{}' for langauge '{}'", tag, locale.getLanguage());
-            return posTag;
+            return Interning.POS_TAGS.intern(tag, t -> {
+                log.info("Encountered umapped POS tag '{}' for langauge '{}'", t, locale.getLanguage());
+                return new PosTag(t);
+            });
         } else {
             return null;
         }
@@ -433,12 +409,12 @@ public abstract class StanfordNlpPipeline {
 
 
     /**
-     * Uses the {@link #posTagset} and {@link #adhocPosTags} to return existing instances
-     * of {@link PosTag}s. If not present it will create a new one and add it to
-     * {@link #adhocPosTags}
+     * Uses the {@link #getNerTagset()} and the global {@link Interning#NER_TAGS}
+     * pool to return existing instances of {@link NerTag}s. If not present
+     * it will create a new one and add it to the pool
      *
-     * @param tag the String pos tag as returned by the {@link #tagger}
-     * @return the {@link PosTag} guaranteed to be not <code>null</code>
+     * @param tag the String ner tag as returned by the pipeline
+     * @return the {@link NerTag} guaranteed to be not <code>null</code>
      */
     public final NerTag getNerTag(String tag) {
         TagSet<NerTag> nerTagset = getNerTagset();
@@ -446,27 +422,31 @@ public abstract class StanfordNlpPipeline {
         if (nerTag != null) {
             return nerTag;
         }
-        nerTag = adhocNerTags.get(tag);
-        if (nerTag != null) {
-            return nerTag;
+        if (tag == null) {
+            return createNerTag(tag);
         }
+        //we create NerTags with a type, so we need to qualify the key
+        return Interning.NER_TAGS.intern(INTERN_KEY_PREFIX + tag, k -> createNerTag(tag));
+    }
+
+    private NerTag createNerTag(String tag) {
+        NerTag nerTag;
         if (StringUtils.isBlank(tag)) { //for NULL or blank use UNKOWN
             nerTag = new NerTag(tag, NerTag.NAMED_ENTITY_UNKOWN);
         } else { //else use other
             nerTag = new NerTag(tag, NerTag.NAMED_ENTITY_MISC);
         }
-        adhocNerTags.put(tag, nerTag);
         log.info("Encountered umapped Ner tag '{}' for langauge '{}'", tag, locale.getLanguage());
         return nerTag;
     }
 
     /**
-     * Uses the {@link #posTagset} and {@link #adhocPosTags} to return existing instances
-     * of {@link PosTag}s. If not present it will create a new one and add it to
-     * {@link #adhocPosTags}
+     * Uses the {@link #getRelTagset()} and the global {@link Interning#REL_TAGS}
+     * pool to return existing instances of {@link RelTag}s. If not present
+     * it will create a new one and add it to the pool
      *
-     * @param tag the String pos tag as returned by the {@link #tagger}
-     * @return the {@link PosTag} guaranteed to be not <code>null</code>
+     * @param tag the String relation tag as returned by the parser
+     * @return the {@link RelTag} guaranteed to be not <code>null</code>
      */
     public final RelTag getRelationTag(String tag) {
         TagSet<RelTag> relTagset = getRelTagset();
@@ -474,20 +454,16 @@ public abstract class StanfordNlpPipeline {
         if (relTag != null) {
             return relTag;
         }
-        relTag = adhocRelTags.get(tag);
-        if (relTag != null) {
-            return relTag;
-        }
-        relTag = new RelTag(tag);
-        adhocRelTags.put(tag, relTag);
-        log.info("Encountered umapped gramatical relation tag '{}' for langauge '{}'", tag, locale.getLanguage());
-        return relTag;
+        return Interning.REL_TAGS.intern(tag, t -> {
+            log.info("Encountered umapped gramatical relation tag '{}' for langauge '{}'", t, locale.getLanguage());
+            return new RelTag(t);
+        });
     }
 
     /**
-     * Uses the {@link #getPhraseTagset()} and {@link #adhocPhraseTags} to return existing instances
-     * of {@link PhraseTag}s. If not present it will create a new one and add it to
-     * {@link #adhocPhraseTags}
+     * Uses the {@link #getPhraseTagset()} and the global {@link Interning#PHRASE_TAGS}
+     * pool to return existing instances of {@link PhraseTag}s. If not present
+     * it will create a new one and add it to the pool
      *
      * @param tag the String phrase tag as returned by the parser
      * @return the {@link PhraseTag} guaranteed to be not <code>null</code>
@@ -498,14 +474,10 @@ public abstract class StanfordNlpPipeline {
         if (phraseTag != null) {
             return phraseTag;
         }
-        phraseTag = adhocPhraseTags.get(tag);
-        if (phraseTag != null) {
-            return phraseTag;
-        }
-        phraseTag = new PhraseTag(tag);
-        adhocPhraseTags.put(tag, phraseTag);
-        log.info("Encountered umapped phrase tag '{}' for langauge '{}'", tag, locale.getLanguage());
-        return phraseTag;
+        return Interning.PHRASE_TAGS.intern(tag, t -> {
+            log.info("Encountered umapped phrase tag '{}' for langauge '{}'", t, locale.getLanguage());
+            return new PhraseTag(t);
+        });
     }
 
 
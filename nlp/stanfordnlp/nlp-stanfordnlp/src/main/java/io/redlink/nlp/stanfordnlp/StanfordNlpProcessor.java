@@ -37,7 +37,9 @@ import edu.stanford.nlp.trees.TreeCoreAnnotations.TreeAnnotation;
 import edu.stanford.nlp.trees.TreePrint;
 import edu.stanford.nlp.util.CoreMap;
 import edu.stanford.nlp.util.Filters;
+import io.redlink.nlp.api.ProcessingException;
 import io.redlink.nlp.api.Processor;
+import io.redlink.nlp.api.model.Value;
 import io.redlink.nlp.model.AnalyzedText;
 import io.redlink.nlp.model.Chunk;
 import io.redlink.nlp.model.NlpAnnotations;
@@ -49,6 +51,7 @@ import io.redlink.nlp.model.dep.Relation;
 import io.redlink.nlp.model.ner.NerTag;
 import io.redlink.nlp.model.phrase.PhraseTag;
 import io.redlink.nlp.model.pos.PosTag;
+import io.redlink.nlp.model.util.Interning;
 import io.redlink.nlp.model.util.NlpUtils;
 import io.redlink.nlp.stanfordnlp.annotators.AnalyzedTextSectionAnnotator;
 import io.redlink.nlp.stanfordnlp.sentiment.LinearSentimentClassMapping;
@@ -178,15 +181,60 @@ public class StanfordNlpProcessor extends Processor {
         if (pipeline == null) {
             LOG.debug("Unable to preprocess conversation {} because language {} "
                     + "is not supported", processingData, language);
+            unsupportedLanguage(processingData);
             return;
         }
+        process(pipeline, locale, processingData, at);
+    }
+
+    /**
+     * Looks up the pipeline once per language and annotates all documents of
+     * that language with it. Documents are annotated one by one so that a
+     * failing document does not affect the others.
+     */
+    @Override
+    protected List<ProcessingException> doProcessing(List<io.redlink.nlp.api.ProcessingData> batch) {
+        List<ProcessingException> failures = new ArrayList<>();
+        for (Map.Entry<String, List<io.redlink.nlp.api.ProcessingData>> group : groupByLanguage(batch).entrySet()) {
+            String language = group.getKey();
+            boolean validLanguage = language != null && language.length() >= 2;
+            StanfordNlpPipeline pipeline = validLanguage ? getPipeline(language) : null;
+            if (pipeline == null) {
+                LOG.debug("Unable to preprocess {} documents because language {} is missing, invalid "
+                        + "or not supported", group.getValue().size(), language);
+            }
+            Locale locale = language == null ? Locale.ROOT : Locale.forLanguageTag(language);
+            for (io.redlink.nlp.api.ProcessingData processingData : group.getValue()) {
+                try {
+                    AnalyzedText at = NlpUtils.getOrInitAnalyzedText(processingData);
+                    if (pipeline != null) {
+                        process(pipeline, locale, processingData, at);
+                    } else if (validLanguage) {
+                        unsupportedLanguage(processingData);
+                    }
+                } catch (RuntimeException e) {
+                    failures.add(toProcessingException(processingData, e));
+                }
+            }
+        }
+        return failures;
+    }
+
+    private void process(StanfordNlpPipeline pipeline, Locale locale,
+                         io.redlink.nlp.api.ProcessingData processingData, AnalyzedText at) {
         Annotation document = new Annotation(pipeline.isCaseSensitive() ?
                 NlpUtils.toTrueCase(at) : //for case sensitive models get the case corrected version of the parsed text
                 at.getSpan().toLowerCase(locale)); //otherwise use the lower case version
         //add the AnalyzedText to the document so that the TextSectionAnnotator can do its work
         document.set(AnalyzedTextSectionAnnotator.AnalyzedTextAnnotation.class, at);
 
-        pipeline.getPipeline().annotate(document);
+        //run the annotators one by one so that we can stop if the deadline expires
+        for (String annotator : pipeline.getAnnotators()) {
+            if (deadlineExceeded(processingData)) {
+                break;
+            }
+            pipeline.getAnnotator(annotator).annotate(document);
+        }
 
         //lazily initialized when we need to process sentiment annotations
         SentimentClassMapping sentClassMapping = null;
@@ -194,6 +242,9 @@ public class StanfordNlpProcessor extends Processor {
         // these are all the sentences in this document
         // a CoreMap is essentially a Map that uses class objects as keys and has values with custom types
         List<CoreMap> sentences = document.get(SentencesAnnotation.class);
+        if (sentences == null) { //stopped before sentence splitting
+            return;
+        }
 
         for (CoreMap sentence : sentences) {
             // traversing the words in the current sentence
@@ -208,12 +259,27 @@ public class StanfordNlpProcessor extends Processor {
 
             int tokenIdxInSentence = 0;
 
+            //add all tokens of the sentence at once
+            int[] starts = new int[tokens.size()];
+            int[] ends = new int[tokens.size()];
+            int numTokens = 0;
             for (CoreLabel token : tokens) {
                 if (token.beginPosition() >= token.endPosition()) {
                     LOG.warn("Illegal Token start:{}/end:{} values -> ignored", token.beginPosition(), token.endPosition());
-                    continue;
+                } else {
+                    starts[numTokens] = token.beginPosition();
+                    ends[numTokens++] = token.endPosition();
+                }
+            }
+            Token[] sentTokens = numTokens == starts.length ? at.addTokens(starts, ends) :
+                    at.addTokens(Arrays.copyOf(starts, numTokens), Arrays.copyOf(ends, numTokens));
+            int tIdx = 0;
+
+            for (CoreLabel token : tokens) {
+                if (token.beginPosition() >= token.endPosition()) {
+                    continue; //ignored (see above)
                 }
-                Token t = at.addToken(token.beginPosition(), token.endPosition());
+                Token t = sentTokens[tIdx++];
                 // This can be used to ensure that the text indexes are correct
 //              String word = token.get(OriginalTextAnnotation.class);
 //              String span = t.getSpan();
@@ -229,7 +295,7 @@ public class StanfordNlpProcessor extends Processor {
                 PosTag posTag = pipeline.getPosTag(pos);
                 if (posTag != null) {
                     LOG.trace(" > '{}' pos: {}", t.getSpan(), posTag);
-                    t.addAnnotation(NlpAnnotations.POS_ANNOTATION, posTag);
+                    t.addValue(NlpAnnotations.POS_ANNOTATION, Value.canonical(posTag));
                 } //no POS Tag assigned
                 // Process NER annotations
                 String ne = token.get(NamedEntityTagAnnotation.class);
@@ -243,7 +309,7 @@ public class StanfordNlpProcessor extends Processor {
                 }
                 if (nerTag != null && !nerTag.equals(actNerTag)) {
                     Chunk nerChunk = at.addChunk(nerStart.getStart(), nerEnd.getEnd());
-                    nerChunk.addAnnotation(NlpAnnotations.NER_ANNOTATION, nerTag);
+                    nerChunk.addValue(NlpAnnotations.NER_ANNOTATION, Value.canonical(nerTag));
                     if (LOG.isDebugEnabled()) {
                         LOG.debug(" - add Named Entity {} | tag: {}", nerChunk.getSpan(), nerTag);
                     }
@@ -261,7 +327,7 @@ public class StanfordNlpProcessor extends Processor {
                 //Process the Lemma
                 String lemma = token.get(LemmaAnnotation.class);
                 if (lemma != null && !lemma.equals(t.getSpan())) {
-                    t.addAnnotation(NlpAnnotations.LEMMA_ANNOTATION, lemma);
+                    t.addAnnotation(NlpAnnotations.LEMMA_ANNOTATION, Interning.intern(lemma));
                 }
 
                 //Dependency relation - Part 1 (consumes 'parse' annotator results)
@@ -317,7 +383,7 @@ public class StanfordNlpProcessor extends Processor {
                         int beginTokenIdx = value.get(CoreAnnotations.BeginIndexAnnotation.class);
                         int endTokenIdx = value.get(CoreAnnotations.EndIndexAnnotation.class);
                         Chunk chunk = at.addChunk(tokens.get(beginTokenIdx).beginPosition(), tokens.get(endTokenIdx - 1).endPosition());
-                        chunk.addAnnotation(NlpAnnotations.PHRASE_ANNOTATION, phraseTag);
+                        chunk.addValue(NlpAnnotations.PHRASE_ANNOTATION, Value.canonical(phraseTag));
                         LOG.debug("    add {} ({}) - {}", chunk, phraseTag.getTag(), chunk.getSpan());
                     }
                 }
@@ -367,7 +433,7 @@ public class StanfordNlpProcessor extends Processor {
             //we might have still an open NER annotation
             if (nerTag != null) {
                 Chunk nerChunk = at.addChunk(nerStart.getStart(), nerEnd.getEnd());
-                nerChunk.addAnnotation(NlpAnnotations.NER_ANNOTATION, nerTag);
+                nerChunk.addValue(NlpAnnotations.NER_ANNOTATION, Value.canonical(nerTag));
             }
         }
 
@@ -16,6 +16,7 @@
 
 package io.redlink.nlp.stemmer.lucene;
 
+import io.redlink.nlp.model.util.ModelPool;
 import io.redlink.nlp.stemmer.StemmerModel;
 import java.util.Locale;
 import org.slf4j.Logger;
@@ -38,9 +39,9 @@ public class LuceneStemmerModel implements StemmerModel {
      */
     private final Class<? extends SnowballProgram> stemmerClass;
     /**
-     * the stemmer as thread local var
+     * the pooled stemmer instances
      */
-    private final ThreadLocal<SnowballProgram> stemmer;
+    private final ModelPool<SnowballProgram> stemmer;
 
     private Locale language;
 
@@ -49,16 +50,13 @@ public class LuceneStemmerModel implements StemmerModel {
         this.language = language;
         this.stemmerClass = clazz;
         log.info("  ... loading {} Snowball Stemmer", stemmerClass);
-        stemmer = new ThreadLocal<SnowballProgram>() {
-            @Override
-            protected SnowballProgram initialValue() {
-                try {
-                    return stemmerClass.newInstance();
-                } catch (InstantiationException | IllegalAccessException e) {
-                    throw new IllegalStateException("Unable to create Snowball Stemmer instance!");
-                }
+        stemmer = new ModelPool<>("stemmer.lucene." + language.toLanguageTag(), () -> {
+            try {
+                return stemmerClass.newInstance();
+            } catch (InstantiationException | IllegalAccessException e) {
+                throw new IllegalStateException("Unable to create Snowball Stemmer instance!");
             }
-        };
+        });
     }
 
     public final String getName() {
@@ -70,14 +68,55 @@ public class LuceneStemmerModel implements StemmerModel {
         return language;
     }
 
+    /**
+     * The pool of stemmer instances (e.g. to configure its size)
+     *
+     * @return the pool
+     */
+    public ModelPool<SnowballProgram> getPool() {
+        return stemmer;
+    }
+
     /**
      * Perform stemming on the given token.
      */
     @Override
     public final String stemToken(final String token) {
-        SnowballProgram s = stemmer.get();
-        s.setCurrent(token);
-        s.stem();
-        return s.getCurrent();
+        return stemmer.apply(s -> stem(s, token));
+    }
+
+    /**
+     * Borrows a stemmer instance from the {@link #getPool() pool} until the
+     * returned stemmer is closed.
+     */
+    @Override
+    public final Stemmer borrow() {
+        final SnowballProgram instance = stemmer.borrow();
+        return new Stemmer() {
+
+            private boolean closed = false;
+
+            @Override
+            public String stem(String token) {
+                if (closed) {
+                    throw new IllegalStateException("This Stemmer is already closed!");
+                }
+                return LuceneStemmerModel.stem(instance, token);
+            }
+
+            @Override
+            public void close() {
+                if (!closed) {
+                    closed = true;
+                    stemmer.release(instance);
+                }
+            }
+        };
+    }
+
+    private static String stem(SnowballProgram stemmer, String token) {
+        stemmer.setCurrent(token);
+        stemmer.stem();
+        return stemmer.getCurrent();
     }
 }
@@ -16,6 +16,7 @@
 
 package io.redlink.nlp.stemmer.snowball;
 
+import io.redlink.nlp.model.util.ModelPool;
 import io.redlink.nlp.stemmer.StemmerModel;
 import java.util.Locale;
 import org.slf4j.Logger;
@@ -38,9 +39,9 @@ public class SnowballStemmerModel implements StemmerModel {
      */
     private final Class<? extends SnowballStemmer> stemmerClass;
     /**
-     * the stemmer as thread local var
+     * the pooled stemmer instances
      */
-    private final ThreadLocal<SnowballStemmer> stemmer;
+    private final ModelPool<SnowballStemmer> stemmer;
 
     private Locale language;
 
@@ -49,16 +50,13 @@ public class SnowballStemmerModel implements StemmerModel {
         this.language = language;
         this.stemmerClass = clazz;
         log.info("  ... loading {} Snowball Stemmer", stemmerClass);
-        stemmer = new ThreadLocal<SnowballStemmer>() {
-            @Override
-            protected SnowballStemmer initialValue() {
-                try {
-                    return stemmerClass.newInstance();
-                } catch (InstantiationException | IllegalAccessException e) {
-                    throw new IllegalStateException("Unable to create Snowball Stemmer instance!");
-                }
+        stemmer = new ModelPool<>("stemmer.snowball." + language.toLanguageTag(), () -> {
+            try {
+                return stemmerClass.newInstance();
+            } catch (InstantiationException | IllegalAccessException e) {
+                throw new IllegalStateException("Unable to create Snowball Stemmer instance!");
             }
-        };
+        });
     }
 
     public final String getName() {
@@ -70,14 +68,55 @@ public class SnowballStemmerModel implements StemmerModel {
         return language;
     }
 
+    /**
+     * The pool of stemmer instances (e.g. to configure its size)
+     *
+     * @return the pool
+     */
+    public ModelPool<SnowballStemmer> getPool() {
+        return stemmer;
+    }
+
     /**
      * Perform stemming on the given token.
      */
     @Override
     public final String stemToken(final String token) {
-        SnowballStemmer s = stemmer.get();
-        s.setCurrent(token);
-        s.stem();
-        return s.getCurrent();
+        return stemmer.apply(s -> stem(s, token));
+    }
+
+    /**
+     * Borrows a stemmer instance from the {@link #getPool() pool} until the
+     * returned stemmer is closed.
+     */
+    @Override
+    public final Stemmer borrow() {
+        final SnowballStemmer instance = stemmer.borrow();
+        return new Stemmer() {
+
+            private boolean closed = false;
+
+            @Override
+            public String stem(String token) {
+                if (closed) {
+                    throw new IllegalStateException("This Stemmer is already closed!");
+                }
+                return SnowballStemmerModel.stem(instance, token);
+            }
+
+            @Override
+            public void close() {
+                if (!closed) {
+                    closed = true;
+                    stemmer.release(instance);
+                }
+            }
+        };
+    }
+
+    private static String stem(SnowballStemmer stemmer, String token) {
+        stemmer.setCurrent(token);
+        stemmer.stem();
+        return stemmer.getCurrent();
     }
 }
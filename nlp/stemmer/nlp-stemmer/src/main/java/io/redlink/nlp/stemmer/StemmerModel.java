@@ -19,4 +19,41 @@ package io.redlink.nlp.stemmer;
 public interface StemmerModel {
 
     String stemToken(final String token);
+
+    /**
+     * Borrows a stemmer to stem several tokens (e.g. all tokens of a
+     * document) without acquiring a model instance for every token.
+     * The returned stemmer MUST BE closed afterwards and MUST NOT be used
+     * by several threads.
+     *
+     * @return the stemmer. The default uses {@link #stemToken(String)}
+     */
+    default Stemmer borrow() {
+        return new Stemmer() {
+
+            @Override
+            public String stem(String token) {
+                return stemToken(token);
+            }
+
+            @Override
+            public void close() {
+                //nothing to release
+            }
+        };
+    }
+
+    /**
+     * A stemmer {@link StemmerModel#borrow() borrowed} from a model
+     */
+    interface Stemmer extends AutoCloseable {
+
+        String stem(String token);
+
+        /**
+         * Releases the stemmer
+         */
+        @Override
+        void close();
+    }
 }
\ No newline at end of file
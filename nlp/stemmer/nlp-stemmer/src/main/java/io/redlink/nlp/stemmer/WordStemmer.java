@@ -18,13 +18,17 @@ package io.redlink.nlp.stemmer;
 
 import io.redlink.nlp.api.ProcessingData;
 import io.redlink.nlp.api.Processor;
+import io.redlink.nlp.api.annotation.Annotations;
 import io.redlink.nlp.model.AnalyzedText;
+import io.redlink.nlp.model.Span.SpanTypeEnum;
 import io.redlink.nlp.model.Token;
+import io.redlink.nlp.model.util.Interning;
 import io.redlink.nlp.model.util.NlpUtils;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -34,6 +38,9 @@ import static io.redlink.nlp.model.NlpAnnotations.STEM_ANNOTATION;
 @Component
 public class WordStemmer extends Processor {
 
+    private static final Set<String> READS = NlpUtils.accessKeys(Annotations.LANGUAGE, SpanTypeEnum.Token);
+    private static final Set<String> WRITES = NlpUtils.accessKeys(STEM_ANNOTATION);
+
     private StemmerRegistry registry;
 
     @Autowired
@@ -52,6 +59,16 @@ public class WordStemmer extends Processor {
 
     }
 
+    @Override
+    public Set<String> getReads() {
+        return READS;
+    }
+
+    @Override
+    public Set<String> getWrites() {
+        return WRITES;
+    }
+
     @Override
     protected void doProcessing(ProcessingData processingData) {
         Optional<AnalyzedText> at = NlpUtils.getAnalyzedText(processingData);
@@ -72,13 +89,17 @@ public class WordStemmer extends Processor {
     }
 
     private void process(AnalyzedText at, StemmerModel model) {
-        Iterator<Token> tokens = at.getTokens();
-        while (tokens.hasNext()) {
-            Token token = tokens.next();
-            String span = token.getSpan();
-            String stem = model.stemToken(token.getSpan());
-            if (!StringUtils.equals(span, stem)) {
-                token.setAnnotation(STEM_ANNOTATION, stem);
+        //borrow a single stemmer for all tokens of the document
+        try (StemmerModel.Stemmer stemmer = model.borrow()) {
+            Iterator<Token> tokens = at.getTokens();
+            while (tokens.hasNext()) {
+                Token token = tokens.next();
+                //the stemmer needs a String. Create it from the view so that it is not cached by the token
+                String span = token.getSpanView().toString();
+                String stem = stemmer.stem(span);
+                if (!StringUtils.equals(span, stem)) {
+                    token.setAnnotation(STEM_ANNOTATION, Interning.intern(stem));
+                }
             }
         }
     }